@@ -0,0 +1,73 @@
+package com.github.abrarsl.courseworkclassversion.benchmarks;
+
+import com.github.abrarsl.courseworkclassversion.Customer;
+import com.github.abrarsl.courseworkclassversion.FoodQueue;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks for {@link FoodQueue#addCustomer}, {@link FoodQueue#serveCustomer} and {@link FoodQueue#removeCustomer}.
+ * Each benchmark undoes its own change, so the queues stay at the same fill level throughout.
+ * One invocation covers every queue in the shop.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class FoodQueueBenchmark extends ShopState {
+    /**
+     * Serve the front customer of each queue and add them back at the rear.
+     * @throws Exception If a queue operation fails.
+     */
+    @Benchmark
+    public void serveThenAdd() throws Exception {
+        for (FoodQueue queue : this.queues) {
+            if (queue.getCustomerCount() > 0) {
+                queue.addCustomer(queue.serveCustomer());
+            }
+        }
+    }
+
+    /**
+     * Remove the middle customer of each queue and add them back at the rear.
+     * @throws Exception If a queue operation fails.
+     */
+    @Benchmark
+    public void removeMiddleThenAdd() throws Exception {
+        for (FoodQueue queue : this.queues) {
+            if (queue.getCustomerCount() > 0) {
+                Customer customer = queue.removeCustomer(queue.getCustomerCount() / 2);
+                queue.addCustomer(customer);
+            }
+        }
+    }
+
+    /**
+     * Remove the front customer of each queue without serving and add them back at the rear.
+     * @throws Exception If a queue operation fails.
+     */
+    @Benchmark
+    public void removeFrontThenAdd() throws Exception {
+        for (FoodQueue queue : this.queues) {
+            if (queue.getCustomerCount() > 0) {
+                queue.addCustomer(queue.removeCustomer(0));
+            }
+        }
+    }
+
+    /**
+     * Add a customer to each queue with space and remove them again from the rear.
+     * @throws Exception If a queue operation fails.
+     */
+    @Benchmark
+    public void addThenRemoveLast() throws Exception {
+        for (FoodQueue queue : this.queues) {
+            if (!queue.isQueueFull()) {
+                queue.addCustomer(this.spareCustomer);
+                queue.removeCustomer(queue.getCustomerCount() - 1);
+            }
+        }
+    }
+}
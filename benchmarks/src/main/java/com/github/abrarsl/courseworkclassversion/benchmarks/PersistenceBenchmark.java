@@ -0,0 +1,91 @@
+package com.github.abrarsl.courseworkclassversion.benchmarks;
+
+import com.github.abrarsl.courseworkclassversion.BinarySnapshot;
+import com.github.abrarsl.courseworkclassversion.FoodQueue;
+import com.github.abrarsl.courseworkclassversion.ProgramState;
+import com.github.abrarsl.courseworkclassversion.TextStateReader;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks for storing and loading program data, in both the binary snapshot and the older text format.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class PersistenceBenchmark extends ShopState {
+    private Path directory;
+    private Path snapshotPath;
+    private Path textPath;
+
+    /**
+     * Write both file formats for the shop into a temporary directory.
+     * @throws IOException If the files could not be written.
+     */
+    @Setup
+    public void setUpFiles() throws IOException {
+        this.directory = Files.createTempDirectory("benchmark");
+        this.snapshotPath = this.directory.resolve("programState.bin");
+        this.textPath = this.directory.resolve("programState.txt");
+
+        BinarySnapshot.write(this.snapshotPath, ProgramState.capture(this.queues, this.waitingQueue, this.itemStock));
+
+        StringBuilder text = new StringBuilder(String.format("%d%n%d%n", this.itemStock.get(), this.queues.length));
+
+        for (FoodQueue queue : this.queues) {
+            text.append(queue);
+        }
+
+        text.append(this.waitingQueue);
+        Files.writeString(this.textPath, text);
+    }
+
+    /**
+     * Remove the temporary files.
+     * @throws IOException If the files could not be removed.
+     */
+    @TearDown
+    public void tearDownFiles() throws IOException {
+        Files.deleteIfExists(this.snapshotPath);
+        Files.deleteIfExists(this.textPath);
+        Files.deleteIfExists(this.directory);
+    }
+
+    /**
+     * @return The checksum of the written snapshot.
+     * @throws IOException If the snapshot could not be written.
+     */
+    @Benchmark
+    public long storeSnapshot() throws IOException {
+        return BinarySnapshot.write(
+                this.snapshotPath,
+                ProgramState.capture(this.queues, this.waitingQueue, this.itemStock)
+        );
+    }
+
+    /**
+     * @return The loaded state.
+     * @throws Exception If the snapshot could not be read.
+     */
+    @Benchmark
+    public ProgramState loadSnapshot() throws Exception {
+        return BinarySnapshot.read(this.snapshotPath);
+    }
+
+    /**
+     * @return The loaded state.
+     * @throws Exception If the text file could not be read.
+     */
+    @Benchmark
+    public ProgramState loadText() throws Exception {
+        return TextStateReader.read(this.textPath);
+    }
+}
@@ -0,0 +1,68 @@
+package com.github.abrarsl.courseworkclassversion.benchmarks;
+
+import com.github.abrarsl.courseworkclassversion.Customer;
+import com.github.abrarsl.courseworkclassversion.CustomerSearchIndex;
+import com.github.abrarsl.courseworkclassversion.FoodQueue;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks searching every queue for a name, both by scanning with {@link FoodQueue#searchCustomer} and through a
+ * {@link CustomerSearchIndex}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class SearchBenchmark extends ShopState {
+    @Param({"an", "elfoga"})
+    public String searchTerm;
+
+    private CustomerSearchIndex searchIndex;
+
+    /**
+     * Build the search index over the shop.
+     */
+    @Setup
+    public void setUpIndex() {
+        this.searchIndex = new CustomerSearchIndex(this.queues, this.waitingQueue);
+    }
+
+    /**
+     * Search each queue in turn, as the GUI did before the index existed.
+     * @param blackhole Consumes the results.
+     */
+    @Benchmark
+    public void scanQueues(Blackhole blackhole) {
+        for (FoodQueue queue : this.queues) {
+            blackhole.consume(queue.searchCustomer(this.searchTerm));
+        }
+
+        blackhole.consume(this.waitingQueue.searchCustomer(this.searchTerm));
+    }
+
+    /**
+     * Search through the index.
+     * @return The matches.
+     */
+    @Benchmark
+    public List<CustomerSearchIndex.Hit> searchIndex() {
+        return this.searchIndex.search(this.searchTerm);
+    }
+
+    /**
+     * Remove a customer from the index and add them back.
+     */
+    @Benchmark
+    public void indexRemoveThenAdd() {
+        Customer customer = this.customers[0];
+        this.searchIndex.remove(customer);
+        this.searchIndex.add(customer, 0);
+    }
+}
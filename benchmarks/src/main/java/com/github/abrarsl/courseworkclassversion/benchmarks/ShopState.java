@@ -0,0 +1,98 @@
+package com.github.abrarsl.courseworkclassversion.benchmarks;
+
+import com.github.abrarsl.courseworkclassversion.Customer;
+import com.github.abrarsl.courseworkclassversion.CustomerStore;
+import com.github.abrarsl.courseworkclassversion.FoodQueue;
+import com.github.abrarsl.courseworkclassversion.ItemStock;
+import com.github.abrarsl.courseworkclassversion.WaitingQueue;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Random;
+
+/**
+ * A shop with {@link ShopState#queueCount} {@link FoodQueue}s of {@link ShopState#queueLength} each, holding
+ * {@link ShopState#customerCount} customers. Customers that do not fit in the {@link FoodQueue}s are placed in the
+ * {@link WaitingQueue}, which always keeps one free slot.
+ * The {@link FoodQueue}s serve from one {@link ItemStock}. Customers require no burgers, so serving never runs out
+ * of stock.
+ * With {@link ShopState#compact} set, every queue keeps its customers in its own {@link CustomerStore}.
+ */
+@State(Scope.Benchmark)
+public class ShopState {
+    private static final String[] NAME_PARTS = {"an", "ba", "ce", "di", "el", "fo", "ga", "hu", "in", "jo", "ka", "lu"};
+    private static final long SEED = 42;
+
+    @Param({"3", "16"})
+    public int queueCount;
+
+    @Param({"5", "500"})
+    public int queueLength;
+
+    @Param({"10", "5000"})
+    public int customerCount;
+
+    @Param({"false", "true"})
+    public boolean compact;
+
+    public ItemStock itemStock;
+    public FoodQueue[] queues;
+    public WaitingQueue waitingQueue;
+    public Customer[] customers;
+    public Customer spareCustomer;
+
+    /**
+     * Build the queues and place the customers in them, filling the {@link FoodQueue}s in turn.
+     * @throws Exception If a customer could not be placed.
+     */
+    @Setup
+    public void setUpShop() throws Exception {
+        Random random = new Random(SEED);
+        this.customers = new Customer[this.customerCount];
+
+        for (int i = 0; i < this.customers.length; i++) {
+            this.customers[i] = new Customer(randomName(random), randomName(random), 0);
+        }
+
+        this.spareCustomer = new Customer(randomName(random), randomName(random), 0);
+        this.itemStock = new ItemStock(FoodQueue.MAX_STOCK, FoodQueue.STOCK_WARN_THRESHOLD);
+        this.queues = new FoodQueue[this.queueCount];
+
+        for (int i = 0; i < this.queues.length; i++) {
+            this.queues[i] = this.compact
+                    ? new FoodQueue(new Customer[this.queueLength], 0, new CustomerStore(), this.itemStock)
+                    : new FoodQueue(this.queueLength, this.itemStock);
+        }
+
+        int capacity = this.queueCount * this.queueLength;
+        Customer[] waitingCustomers = new Customer[Math.max(this.customerCount - capacity, 0) + 1];
+        this.waitingQueue = this.compact
+                ? new WaitingQueue(waitingCustomers, new CustomerStore())
+                : new WaitingQueue(waitingCustomers);
+
+        for (int i = 0; i < this.customers.length; i++) {
+            if (i < capacity) {
+                this.queues[i % this.queueCount].addCustomer(this.customers[i]);
+            } else {
+                this.waitingQueue.enqueue(this.customers[i]);
+            }
+        }
+    }
+
+    /**
+     * @param random The source of randomness.
+     * @return A name made of two to four random parts.
+     */
+    private static String randomName(Random random) {
+        StringBuilder name = new StringBuilder();
+        int parts = 2 + random.nextInt(3);
+
+        for (int i = 0; i < parts; i++) {
+            name.append(NAME_PARTS[random.nextInt(NAME_PARTS.length)]);
+        }
+
+        return name.toString();
+    }
+}
@@ -0,0 +1,77 @@
+package com.github.abrarsl.courseworkclassversion.benchmarks;
+
+import com.github.abrarsl.courseworkclassversion.Customer;
+import com.github.abrarsl.courseworkclassversion.FoodQueue;
+import com.github.abrarsl.courseworkclassversion.SortedCustomerIndex;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Setup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks for the alphabetical customer view kept by {@link SortedCustomerIndex}.
+ * This replaced the sortCustomers method in the TUI, which rebuilt and bubble sorted the list after every change.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class SortBenchmark extends ShopState {
+    private SortedCustomerIndex sortedCustomers;
+    private Customer indexedCustomer;
+
+    /**
+     * Build the index from the food queues.
+     * @throws Exception If a customer could not be read.
+     */
+    @Setup
+    public void setUpIndex() throws Exception {
+        this.sortedCustomers = this.buildIndex();
+        this.indexedCustomer = this.queues[0].getCustomer(0);
+    }
+
+    /**
+     * Build a new index from every customer in the food queues, the cost paid after loading data.
+     * @return The new index.
+     * @throws Exception If a customer could not be read.
+     */
+    @Benchmark
+    public SortedCustomerIndex rebuild() throws Exception {
+        return this.buildIndex();
+    }
+
+    /**
+     * Remove a customer from the index and add them back, the cost paid on each queue change.
+     */
+    @Benchmark
+    public void removeThenAdd() {
+        this.sortedCustomers.remove(this.indexedCustomer);
+        this.sortedCustomers.add(this.indexedCustomer);
+    }
+
+    /**
+     * Walk the ids of the index in alphabetical order, the cost of viewing the sorted customers.
+     * @return The sum of the ids, so the walk is not optimised away.
+     */
+    @Benchmark
+    public long iterate() {
+        return this.sortedCustomers.ids().sum();
+    }
+
+    /**
+     * @return An index holding every customer in the food queues.
+     * @throws Exception If a customer could not be read.
+     */
+    private SortedCustomerIndex buildIndex() throws Exception {
+        SortedCustomerIndex index = new SortedCustomerIndex();
+
+        for (FoodQueue queue : this.queues) {
+            for (int i = 0; i < queue.getCustomerCount(); i++) {
+                index.add(queue.getCustomer(i));
+            }
+        }
+
+        return index;
+    }
+}
@@ -0,0 +1,51 @@
+package com.github.abrarsl.courseworkclassversion.benchmarks;
+
+import com.github.abrarsl.courseworkclassversion.Customer;
+import com.github.abrarsl.courseworkclassversion.WaitingQueue;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks for {@link WaitingQueue#enqueue}, {@link WaitingQueue#dequeue}, {@link WaitingQueue#getQueue} and the
+ * in-place {@link WaitingQueue#forEach} view.
+ * The waiting queue holds the customers that did not fit in the food queues, plus one free slot.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class WaitingQueueBenchmark extends ShopState {
+    /**
+     * Add a customer at the rear and remove the front customer.
+     * @return The removed customer.
+     * @throws Exception If a queue operation fails.
+     */
+    @Benchmark
+    public Customer enqueueThenDequeue() throws Exception {
+        this.waitingQueue.enqueue(this.spareCustomer);
+        Customer customer = this.waitingQueue.dequeue();
+        this.spareCustomer = customer; // Keep the queue contents rotating
+        return customer;
+    }
+
+    /**
+     * Copy the waiting queue into an array.
+     * @return The copied array.
+     */
+    @Benchmark
+    public Customer[] getQueue() {
+        return this.waitingQueue.getQueue();
+    }
+
+    /**
+     * Walk the waiting queue in place.
+     * @param blackhole Consumes each customer.
+     */
+    @Benchmark
+    public void forEach(Blackhole blackhole) {
+        this.waitingQueue.forEach(blackhole::consume);
+    }
+}
@@ -0,0 +1,73 @@
+package com.github.abrarsl.courseworkclassversion;
+
+import java.util.Arrays;
+
+/**
+ * The result of a batch operation on a {@link FoodQueue}, with one {@link Outcome} per {@link Customer}.
+ * @param customers The {@link Customer}s that were part of the batch, in order.
+ * @param outcomes The {@link Outcome} for the {@link Customer} at the same index.
+ */
+public record BatchReport(Customer[] customers, Outcome[] outcomes) {
+    /**
+     * What happened to a single {@link Customer} in a batch.
+     */
+    public enum Outcome {
+        ADDED,
+        QUEUE_FULL,
+        SERVED,
+        INSUFFICIENT_STOCK
+    }
+
+    /**
+     * @return The number of {@link Customer}s in the batch.
+     */
+    public int size() {
+        return this.customers.length;
+    }
+
+    /**
+     * @param outcome The {@link Outcome} to count.
+     * @return The number of {@link Customer}s with the given {@link Outcome}.
+     */
+    public int count(Outcome outcome) {
+        int count = 0;
+
+        for (Outcome itemOutcome : this.outcomes) {
+            if (itemOutcome == outcome) {
+                count++;
+            }
+        }
+
+        return count;
+    }
+
+    /**
+     * @param outcome The {@link Outcome} to look for.
+     * @return The {@link Customer}s with the given {@link Outcome}, in batch order.
+     */
+    public Customer[] getCustomers(Outcome outcome) {
+        Customer[] matches = new Customer[this.count(outcome)];
+        int matchIndex = 0;
+
+        for (int i = 0; i < this.customers.length; i++) {
+            if (this.outcomes[i] == outcome) {
+                matches[matchIndex] = this.customers[i];
+                matchIndex++;
+            }
+        }
+
+        return matches;
+    }
+
+    /**
+     * @return A string representation of the {@link BatchReport}.
+     */
+    @Override
+    public String toString() {
+        return String.format(
+                "BatchReport[customers=%s, outcomes=%s]",
+                Arrays.toString(this.customers),
+                Arrays.toString(this.outcomes)
+        );
+    }
+}
@@ -0,0 +1,406 @@
+package com.github.abrarsl.courseworkclassversion;
+
+import com.github.abrarsl.courseworkclassversion.exceptions.InvalidFileDataException;
+import com.github.abrarsl.courseworkclassversion.exceptions.SelectionOutOfRangeException;
+import com.github.abrarsl.courseworkclassversion.metrics.Metrics;
+import com.github.abrarsl.courseworkclassversion.metrics.Operation;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+
+/**
+ * Reads and writes a {@link ProgramState} as a binary snapshot through a memory-mapped file.
+ * A snapshot can also be written straight from the queues of a shop, without copying them first.
+ * <p>
+ * Layout (all integers are big-endian):
+ * <pre>
+ * int    magic number
+ * int    format version
+ * int    item stock
+ * int    number of food queues
+ * queue  food queues
+ * queue  waiting queue
+ * long   CRC32 of all preceding bytes
+ *
+ * queue:    int length, int income (food queues only), int customer count, customer[customer count]
+ * customer: int first name byte length, UTF-8 bytes, int last name byte length, UTF-8 bytes, int burgers required
+ * </pre>
+ */
+public class BinarySnapshot {
+    private static final int MAGIC_NUMBER = 0x46514253; // "FQBS"
+    private static final int FORMAT_VERSION = 1;
+    private static final int CHECKSUM_SIZE = Long.BYTES;
+    private static final int WAITING_QUEUE = -1;
+
+    /**
+     * The data written to a snapshot, passed one {@link Customer} at a time so that it never has to be copied.
+     * Queue number -1 is the {@link WaitingQueue}.
+     */
+    private interface Contents {
+        int itemStock();
+
+        int queueCount();
+
+        int queueLength(int queueNumber);
+
+        int queueIncome(int queueNumber);
+
+        void forEachCustomer(int queueNumber, Consumer<Customer> action);
+    }
+
+    /**
+     * Writes the given state to a file, replacing any existing file.
+     * The snapshot is written next to the file and then moved into place, so a crash never leaves a partial snapshot.
+     * @param path The file to write.
+     * @param state The state to write.
+     * @return The checksum of the written snapshot.
+     * @throws IOException If the file could not be written.
+     */
+    public static long write(Path path, ProgramState state) throws IOException {
+        return write(path, new Contents() {
+            @Override
+            public int itemStock() {
+                return state.itemStock();
+            }
+
+            @Override
+            public int queueCount() {
+                return state.queueCustomers().length;
+            }
+
+            @Override
+            public int queueLength(int queueNumber) {
+                return this.customersOf(queueNumber).length;
+            }
+
+            @Override
+            public int queueIncome(int queueNumber) {
+                return queueNumber == WAITING_QUEUE ? 0 : state.queueIncomes()[queueNumber];
+            }
+
+            @Override
+            public void forEachCustomer(int queueNumber, Consumer<Customer> action) {
+                for (Customer customer : this.customersOf(queueNumber)) {
+                    if (customer != null) { // Null holes are skipped
+                        action.accept(customer);
+                    }
+                }
+            }
+
+            private Customer[] customersOf(int queueNumber) {
+                return queueNumber == WAITING_QUEUE ? state.waitingCustomers() : state.queueCustomers()[queueNumber];
+            }
+        });
+    }
+
+    /**
+     * Writes the data of the given queues to a file, replacing any existing file, in the same format as
+     * {@link BinarySnapshot#write(Path, ProgramState)}.
+     * The {@link Customer}s are read straight from the queues, so a {@link SegmentedWaitingQueue} that spilled to
+     * disk is decoded one segment at a time instead of all at once. The queues must not change while this runs.
+     * @param path The file to write.
+     * @param queues The {@link FoodQueue}s to write.
+     * @param waitingQueue The {@link WaitingQueue} to write.
+     * @param itemStock The {@link ItemStock} the {@link FoodQueue}s serve from.
+     * @return The checksum of the written snapshot.
+     * @throws IOException If the file could not be written.
+     */
+    public static long write(Path path, FoodQueue[] queues, WaitingQueue waitingQueue, ItemStock itemStock)
+            throws IOException {
+        return write(path, new Contents() {
+            @Override
+            public int itemStock() {
+                return itemStock.get();
+            }
+
+            @Override
+            public int queueCount() {
+                return queues.length;
+            }
+
+            @Override
+            public int queueLength(int queueNumber) {
+                return queueNumber == WAITING_QUEUE
+                        ? waitingQueue.getQueueLength()
+                        : queues[queueNumber].getQueueLength();
+            }
+
+            @Override
+            public int queueIncome(int queueNumber) {
+                return queueNumber == WAITING_QUEUE ? 0 : queues[queueNumber].getQueueIncome();
+            }
+
+            @Override
+            public void forEachCustomer(int queueNumber, Consumer<Customer> action) {
+                if (queueNumber == WAITING_QUEUE) {
+                    waitingQueue.forEach(action);
+                    return;
+                }
+
+                FoodQueue queue = queues[queueNumber];
+
+                for (int i = 0; i < queue.getCustomerCount(); i++) {
+                    try {
+                        action.accept(queue.getCustomer(i));
+                    } catch (SelectionOutOfRangeException ignored) { // The position is below the customer count
+                    }
+                }
+            }
+        });
+    }
+
+    /**
+     * Writes the given contents to a file through a mapped buffer sized by a first pass over the {@link Customer}s.
+     * @param path The file to write.
+     * @param contents The data to write.
+     * @return The checksum of the written snapshot.
+     * @throws IOException If the file could not be written.
+     */
+    private static long write(Path path, Contents contents) throws IOException {
+        long startTime = Metrics.start();
+
+        try {
+            long size = 4L * Integer.BYTES + sizeOfQueue(contents, WAITING_QUEUE) + CHECKSUM_SIZE;
+
+            for (int i = 0; i < contents.queueCount(); i++) {
+                size += sizeOfQueue(contents, i);
+            }
+
+            Path tempPath = path.resolveSibling(path.getFileName() + ".tmp");
+            long checksum;
+
+            try (FileChannel channel = FileChannel.open(
+                    tempPath,
+                    StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING,
+                    StandardOpenOption.READ,
+                    StandardOpenOption.WRITE
+            )) {
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+
+                buffer.putInt(MAGIC_NUMBER);
+                buffer.putInt(FORMAT_VERSION);
+                buffer.putInt(contents.itemStock());
+                buffer.putInt(contents.queueCount());
+
+                for (int i = 0; i < contents.queueCount(); i++) {
+                    putQueue(buffer, contents, i);
+                }
+
+                putQueue(buffer, contents, WAITING_QUEUE);
+                checksum = checksum(buffer, buffer.position());
+                buffer.putLong(checksum);
+                buffer.force();
+            }
+
+            Files.move(tempPath, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            return checksum;
+        } finally {
+            Metrics.record(Operation.SAVE, startTime);
+        }
+    }
+
+    /**
+     * Reads the checksum stored at the end of a snapshot without reading the rest of the file.
+     * @param path The file to read.
+     * @return The stored checksum.
+     * @throws IOException If the file could not be read.
+     * @throws InvalidFileDataException If the file is too short to be a snapshot.
+     */
+    public static long readChecksum(Path path) throws IOException, InvalidFileDataException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            ByteBuffer buffer = ByteBuffer.allocate(CHECKSUM_SIZE);
+
+            if (channel.size() < CHECKSUM_SIZE || channel.read(buffer, channel.size() - CHECKSUM_SIZE) != CHECKSUM_SIZE) {
+                throw new InvalidFileDataException("Snapshot data ended unexpectedly!");
+            }
+
+            return buffer.getLong(0);
+        }
+    }
+
+    /**
+     * Reads a state from a file written by {@link BinarySnapshot#write}.
+     * @param path The file to read.
+     * @return The state held in the file.
+     * @throws IOException If the file could not be read.
+     * @throws InvalidFileDataException If the file is not a valid snapshot.
+     */
+    public static ProgramState read(Path path) throws IOException, InvalidFileDataException {
+        long startTime = Metrics.start();
+
+        try {
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+
+                if (buffer.limit() < 2 * Integer.BYTES + CHECKSUM_SIZE || buffer.getInt() != MAGIC_NUMBER) {
+                    throw new InvalidFileDataException("Snapshot marker not found!");
+                }
+
+                int version = buffer.getInt();
+
+                if (version != FORMAT_VERSION) {
+                    throw new InvalidFileDataException(String.format("Unsupported snapshot version %d!", version));
+                }
+
+                int dataEnd = buffer.limit() - CHECKSUM_SIZE;
+
+                if (checksum(buffer, dataEnd) != buffer.getLong(dataEnd)) {
+                    throw new InvalidFileDataException("Snapshot checksum does not match!");
+                }
+
+                buffer.limit(dataEnd); // Keep reads inside the checksummed data
+
+                try {
+                    int itemStock = buffer.getInt();
+                    int numberOfQueues = readLength(buffer, "Number of queues");
+                    Customer[][] queueCustomers = new Customer[numberOfQueues][];
+                    int[] queueIncomes = new int[numberOfQueues];
+
+                    for (int i = 0; i < numberOfQueues; i++) {
+                        int queueLength = readLength(buffer, "FoodQueue length");
+                        queueIncomes[i] = buffer.getInt();
+                        queueCustomers[i] = getCustomers(buffer, queueLength);
+                    }
+
+                    Customer[] waitingCustomers = getCustomers(buffer, readLength(buffer, "Waiting queue length"));
+
+                    return new ProgramState(itemStock, queueCustomers, queueIncomes, waitingCustomers);
+                } catch (BufferUnderflowException exception) {
+                    throw new InvalidFileDataException("Snapshot data ended unexpectedly!", exception);
+                }
+            }
+        } finally {
+            Metrics.record(Operation.LOAD, startTime);
+        }
+    }
+
+    /**
+     * @param contents The data being written.
+     * @param queueNumber The number of the queue. -1 for the {@link WaitingQueue}.
+     * @return The number of bytes used to store the queue.
+     */
+    private static long sizeOfQueue(Contents contents, int queueNumber) {
+        long[] size = {(queueNumber == WAITING_QUEUE ? 2L : 3L) * Integer.BYTES};
+
+        contents.forEachCustomer(queueNumber, customer -> size[0] += 3L * Integer.BYTES
+                + customer.getFirstName().getBytes(StandardCharsets.UTF_8).length
+                + customer.getLastName().getBytes(StandardCharsets.UTF_8).length);
+
+        return size[0];
+    }
+
+    /**
+     * @param buffer The buffer to write to.
+     * @param contents The data being written.
+     * @param queueNumber The number of the queue. -1 for the {@link WaitingQueue}, which has no income.
+     */
+    private static void putQueue(ByteBuffer buffer, Contents contents, int queueNumber) {
+        buffer.putInt(contents.queueLength(queueNumber));
+
+        if (queueNumber != WAITING_QUEUE) {
+            buffer.putInt(contents.queueIncome(queueNumber));
+        }
+
+        int countPosition = buffer.position();
+        int[] customerCount = {0};
+        buffer.putInt(0); // Filled in once the customers are written
+
+        contents.forEachCustomer(queueNumber, customer -> {
+            putString(buffer, customer.getFirstName());
+            putString(buffer, customer.getLastName());
+            buffer.putInt(customer.getBurgersRequired());
+            customerCount[0]++;
+        });
+
+        buffer.putInt(countPosition, customerCount[0]);
+    }
+
+    /**
+     * @param buffer The buffer to write to.
+     * @param text The text to write as a length-prefixed UTF-8 string.
+     */
+    private static void putString(ByteBuffer buffer, String text) {
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        buffer.putInt(bytes.length);
+        buffer.put(bytes);
+    }
+
+    /**
+     * @param buffer The buffer to read from.
+     * @param queueLength The length of the queue.
+     * @return An array of the given length with the stored customers at the front.
+     * @throws InvalidFileDataException If the stored data is not valid.
+     */
+    private static Customer[] getCustomers(ByteBuffer buffer, int queueLength) throws InvalidFileDataException {
+        int customerCount = readLength(buffer, "Customer count");
+
+        if (customerCount > queueLength) {
+            throw new InvalidFileDataException("Customer count is larger than the queue length!");
+        }
+
+        Customer[] customers = new Customer[queueLength];
+
+        for (int i = 0; i < customerCount; i++) {
+            String firstName = getString(buffer);
+            String lastName = getString(buffer);
+            customers[i] = new Customer(firstName, lastName, buffer.getInt());
+        }
+
+        return customers;
+    }
+
+    /**
+     * @param buffer The buffer to read from.
+     * @return The length-prefixed UTF-8 string at the current position.
+     * @throws InvalidFileDataException If the stored length is not valid.
+     */
+    private static String getString(ByteBuffer buffer) throws InvalidFileDataException {
+        int length = readLength(buffer, "Name length");
+
+        if (length > buffer.remaining()) {
+            throw new BufferUnderflowException();
+        }
+
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * @param buffer The buffer to read from.
+     * @param name The name of the value, used in the error message.
+     * @return A non-negative int.
+     * @throws InvalidFileDataException If the stored value is negative.
+     */
+    private static int readLength(ByteBuffer buffer, String name) throws InvalidFileDataException {
+        int length = buffer.getInt();
+
+        if (length < 0) {
+            throw new InvalidFileDataException(String.format("%s is negative!", name));
+        }
+
+        return length;
+    }
+
+    /**
+     * @param buffer The buffer holding the data.
+     * @param end The position where the checksummed data ends.
+     * @return The CRC32 value of the bytes from the start of the buffer up to the given position.
+     */
+    private static long checksum(ByteBuffer buffer, int end) {
+        CRC32 crc = new CRC32();
+        crc.update(buffer.duplicate().position(0).limit(end));
+        return crc.getValue();
+    }
+}
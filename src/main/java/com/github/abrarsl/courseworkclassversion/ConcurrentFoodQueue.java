@@ -0,0 +1,254 @@
+package com.github.abrarsl.courseworkclassversion;
+
+import com.github.abrarsl.courseworkclassversion.exceptions.*;
+
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.ObjIntConsumer;
+
+/**
+ * A {@link FoodQueue} that can be shared between threads.
+ * Each instance is guarded by its own lock so that different queues never block each other.
+ * A {@link ReentrantLock} is used instead of synchronized methods so that virtual threads are not pinned while waiting.
+ */
+public class ConcurrentFoodQueue extends FoodQueue {
+    private final ReentrantLock lock = new ReentrantLock();
+
+    /**
+     * @param queueLength The maximum length of the {@link ConcurrentFoodQueue} to construct.
+     * @param itemStock The {@link ItemStock} to serve from.
+     */
+    public ConcurrentFoodQueue(int queueLength, ItemStock itemStock) {
+        super(queueLength, itemStock);
+    }
+
+    /**
+     * @param queue The internal array. Ensure there are no holes in this array.
+     * @param income The queue income value.
+     * @param itemStock The {@link ItemStock} to serve from.
+     */
+    public ConcurrentFoodQueue(Customer[] queue, int income, ItemStock itemStock) {
+        super(queue, income, itemStock);
+    }
+
+    /**
+     * Create a {@link ConcurrentFoodQueue} that keeps its {@link Customer}s in a {@link CustomerStore}.
+     * The store is guarded by the lock of this queue, so it must not be shared with other queues.
+     * @param queue The {@link Customer}s to copy into the store. Ensure there are no holes in this array.
+     * @param income The queue income value.
+     * @param store The {@link CustomerStore} to keep the {@link Customer}s in.
+     * @param itemStock The {@link ItemStock} to serve from.
+     */
+    public ConcurrentFoodQueue(Customer[] queue, int income, CustomerStore store, ItemStock itemStock) {
+        super(queue, income, store, itemStock);
+    }
+
+    /**
+     * @return The lock guarding this queue, so that an owner can hold it across several calls.
+     */
+    ReentrantLock getLock() {
+        return this.lock;
+    }
+
+    /**
+     * @return The total income for the particular {@link ConcurrentFoodQueue}.
+     */
+    @Override
+    public int getQueueIncome() {
+        this.lock.lock();
+
+        try {
+            return super.getQueueIncome();
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    /**
+     * @return 'true' if {@link ConcurrentFoodQueue} is full.
+     */
+    @Override
+    public boolean isQueueFull() {
+        this.lock.lock();
+
+        try {
+            return super.isQueueFull();
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    /**
+     * @return The number of {@link Customer}s currently in the {@link ConcurrentFoodQueue}.
+     */
+    @Override
+    public int getCustomerCount() {
+        this.lock.lock();
+
+        try {
+            return super.getCustomerCount();
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    /**
+     * @param customerIndex The position of the {@link Customer} in the {@link ConcurrentFoodQueue}.
+     * @return Reference to the {@link Customer}.
+     * @throws SelectionOutOfRangeException If given index is out of range.
+     */
+    @Override
+    public Customer getCustomer(int customerIndex) throws SelectionOutOfRangeException {
+        this.lock.lock();
+
+        try {
+            return super.getCustomer(customerIndex);
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    /**
+     * Adds a {@link Customer} to the end of the {@link ConcurrentFoodQueue}.
+     * @param customer The {@link Customer} to be added.
+     * @throws FullQueueException If {@link ConcurrentFoodQueue} is full.
+     */
+    @Override
+    public void addCustomer(Customer customer) throws FullQueueException {
+        this.lock.lock();
+
+        try {
+            super.addCustomer(customer);
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    /**
+     * Remove {@link Customer} from the given position.
+     * @param customerIndex The index from which to remove the {@link Customer}.
+     * @return A reference to the {@link Customer} that was removed.
+     * @throws SelectionOutOfRangeException If given index is out of range.
+     * @throws CustomerNotFoundException If {@link Customer} cannot be found at the given position.
+     */
+    @Override
+    public Customer removeCustomer(int customerIndex) throws SelectionOutOfRangeException, CustomerNotFoundException {
+        this.lock.lock();
+
+        try {
+            return super.removeCustomer(customerIndex);
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    /**
+     * Serve the {@link Customer} at the front of the {@link ConcurrentFoodQueue}.
+     * @return A reference to the served {@link Customer}.
+     * @throws CustomerNotFoundException If a {@link Customer} is not available at the front of the queue.
+     * @throws InsufficientStockException If the stock level is not enough to serve the {@link Customer}.
+     */
+    @Override
+    public Customer serveCustomer() throws CustomerNotFoundException, InsufficientStockException {
+        this.lock.lock();
+
+        try {
+            return super.serveCustomer();
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    /**
+     * Adds as many of the given {@link Customer}s to the end of the {@link ConcurrentFoodQueue} as will fit.
+     * @param customers The {@link Customer}s to be added, in order.
+     * @return A {@link BatchReport} with an {@link BatchReport.Outcome} for each {@link Customer}.
+     */
+    @Override
+    public BatchReport addCustomers(Customer[] customers) {
+        this.lock.lock();
+
+        try {
+            return super.addCustomers(customers);
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    /**
+     * Serve up to the given number of {@link Customer}s from the front of the {@link ConcurrentFoodQueue}.
+     * @param count The maximum number of {@link Customer}s to serve.
+     * @return A {@link BatchReport} with an {@link BatchReport.Outcome} for each {@link Customer}.
+     */
+    @Override
+    public BatchReport serveUpTo(int count) {
+        this.lock.lock();
+
+        try {
+            return super.serveUpTo(count);
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    /**
+     * @param customer The {@link Customer} to look for. Customers are compared by id, not by name.
+     * @return The position of the {@link Customer} in the {@link ConcurrentFoodQueue}. -1 if the {@link Customer} is not found.
+     */
+    @Override
+    public int getCustomerPosition(Customer customer) {
+        this.lock.lock();
+
+        try {
+            return super.getCustomerPosition(customer);
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    /**
+     * Find many {@link Customer}s in one pass. The lock is held for the whole pass, so the action should not block.
+     * @param ids The ids of the {@link Customer}s to look for.
+     * @param action Called with each {@link Customer} found and its position, in queue order.
+     */
+    @Override
+    public void findCustomers(Set<Long> ids, ObjIntConsumer<Customer> action) {
+        this.lock.lock();
+
+        try {
+            super.findCustomers(ids, action);
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    /**
+     * Search for {@link Customer}s with the given search term within their name.
+     * @param searchTerm The search term that is checked.
+     * @return An array of {@link Customer}s who match the criteria.
+     */
+    @Override
+    public Customer[] searchCustomer(String searchTerm) {
+        this.lock.lock();
+
+        try {
+            return super.searchCustomer(searchTerm);
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    /**
+     * @return A string representation of the {@link ConcurrentFoodQueue} instance.
+     */
+    @Override
+    public String toString() {
+        this.lock.lock();
+
+        try {
+            return super.toString();
+        } finally {
+            this.lock.unlock();
+        }
+    }
+}
@@ -0,0 +1,232 @@
+package com.github.abrarsl.courseworkclassversion;
+
+import com.github.abrarsl.courseworkclassversion.exceptions.CustomerNotFoundException;
+import com.github.abrarsl.courseworkclassversion.exceptions.FullQueueException;
+import com.github.abrarsl.courseworkclassversion.exceptions.SelectionOutOfRangeException;
+
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.function.ObjIntConsumer;
+
+/**
+ * A {@link WaitingQueue} that can be shared between threads.
+ * The instance is guarded by its own lock, independent of the locks used by {@link ConcurrentFoodQueue}.
+ */
+public class ConcurrentWaitingQueue extends WaitingQueue {
+    private final ReentrantLock lock = new ReentrantLock();
+
+    /**
+     * @param length The maximum length of the {@link ConcurrentWaitingQueue}.
+     */
+    public ConcurrentWaitingQueue(int length) {
+        super(length);
+    }
+
+    /**
+     * @param queue An array that will be used to construct a {@link ConcurrentWaitingQueue}. Ensure that the array has no holes.
+     */
+    public ConcurrentWaitingQueue(Customer[] queue) {
+        super(queue);
+    }
+
+    /**
+     * Create a {@link ConcurrentWaitingQueue} that keeps its {@link Customer}s in a {@link CustomerStore}.
+     * The store is guarded by the lock of this queue, so it must not be shared with other queues.
+     * @param queue The {@link Customer}s to copy into the store. Ensure that the array has no holes.
+     * @param store The {@link CustomerStore} to keep the {@link Customer}s in.
+     */
+    public ConcurrentWaitingQueue(Customer[] queue, CustomerStore store) {
+        super(queue, store);
+    }
+
+    /**
+     * @return The lock guarding this queue, so that an owner can hold it across several calls.
+     */
+    ReentrantLock getLock() {
+        return this.lock;
+    }
+
+    /**
+     * Adds {@link Customer} to the rear of the {@link ConcurrentWaitingQueue}.
+     * @param customer The customer to be added.
+     * @throws FullQueueException If the {@link ConcurrentWaitingQueue} instance is full.
+     */
+    @Override
+    public void enqueue(Customer customer) throws FullQueueException {
+        this.lock.lock();
+
+        try {
+            super.enqueue(customer);
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    /**
+     * Remove {@link Customer} from the front of the {@link ConcurrentWaitingQueue}.
+     * @return The {@link Customer} that was removed.
+     * @throws CustomerNotFoundException If {@link Customer} cannot be found (queue is empty).
+     */
+    @Override
+    public Customer dequeue() throws CustomerNotFoundException {
+        this.lock.lock();
+
+        try {
+            return super.dequeue();
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    /**
+     * @return 'true' if {@link ConcurrentWaitingQueue} is empty.
+     */
+    @Override
+    public boolean isQueueEmpty() {
+        this.lock.lock();
+
+        try {
+            return super.isQueueEmpty();
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    /**
+     * @return The number of {@link Customer}s currently in the {@link ConcurrentWaitingQueue}.
+     */
+    @Override
+    public int getCustomerCount() {
+        this.lock.lock();
+
+        try {
+            return super.getCustomerCount();
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    /**
+     * @param position The position of the {@link Customer}, counted from the front of the queue.
+     * @return Reference to the {@link Customer}. null if there is no {@link Customer} at that position.
+     * @throws SelectionOutOfRangeException If the given position is out of bounds for the internal queue.
+     */
+    @Override
+    public Customer getCustomer(int position) throws SelectionOutOfRangeException {
+        this.lock.lock();
+
+        try {
+            return super.getCustomer(position);
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    /**
+     * Pass each {@link Customer} to the given action in queue order.
+     * The lock is held for the whole walk, so the action should not block.
+     * @param action The action to run for each {@link Customer}.
+     */
+    @Override
+    public void forEach(Consumer<Customer> action) {
+        this.lock.lock();
+
+        try {
+            super.forEach(action);
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    /**
+     * @return An array of {@link Customer} objects representing the {@link ConcurrentWaitingQueue} state.
+     */
+    @Override
+    public Customer[] getQueue() {
+        this.lock.lock();
+
+        try {
+            return super.getQueue();
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    /**
+     * @param customer The {@link Customer} to look for. Customers are compared by id, not by name.
+     * @return The position of the {@link Customer} in the {@link ConcurrentWaitingQueue}. -1 if the {@link Customer} is not found.
+     */
+    @Override
+    public int getCustomerPosition(Customer customer) {
+        this.lock.lock();
+
+        try {
+            return super.getCustomerPosition(customer);
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    /**
+     * Find many {@link Customer}s in one pass. The lock is held for the whole pass, so the action should not block.
+     * @param ids The ids of the {@link Customer}s to look for.
+     * @param action Called with each {@link Customer} found and its position, in queue order.
+     */
+    @Override
+    public void findCustomers(Set<Long> ids, ObjIntConsumer<Customer> action) {
+        this.lock.lock();
+
+        try {
+            super.findCustomers(ids, action);
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    /**
+     * Search for matching {@link Customer}s. The lock is held for the whole walk, so the action should not block.
+     * @param searchTerm The search term that is checked.
+     * @param action Called with each matching {@link Customer} and its position, in queue order.
+     */
+    @Override
+    public void searchCustomers(String searchTerm, ObjIntConsumer<Customer> action) {
+        this.lock.lock();
+
+        try {
+            super.searchCustomers(searchTerm, action);
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    /**
+     * Search for {@link Customer}s with the given search term within their name.
+     * @param searchTerm The search term that is checked.
+     * @return An array of {@link Customer}s who match the criteria.
+     */
+    @Override
+    public Customer[] searchCustomer(String searchTerm) {
+        this.lock.lock();
+
+        try {
+            return super.searchCustomer(searchTerm);
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    /**
+     * @return A string representation of the {@link ConcurrentWaitingQueue} instance.
+     */
+    @Override
+    public String toString() {
+        this.lock.lock();
+
+        try {
+            return super.toString();
+        } finally {
+            this.lock.unlock();
+        }
+    }
+}
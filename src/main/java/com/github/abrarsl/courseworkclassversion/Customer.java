@@ -1,13 +1,37 @@
 package com.github.abrarsl.courseworkclassversion;
 
+import java.text.CollationKey;
+import java.text.Collator;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+
 /**
  * A class that is used to represent a customer.
  * The customer's first and last names as well as their order is stored.
+ * Each customer is given a unique id, which is used for equality. A copy made with the same id, for example after
+ * a customer is read back from disk, is equal to the original.
+ * <p>
+ * Customers are stamped with {@link System#nanoTime()} when they arrive, when they join a {@link FoodQueue} and
+ * when they are served, so wait times can be measured. Stamps are monotonic and only meaningful within one run,
+ * so they are not saved with the customer.
+ * <p>
+ * The full name, search key and collation key are built on first use and kept, since names never change.
+ * Building them again on another thread gives an equal value, so they are not locked.
  */
 public class Customer {
+    private static final AtomicLong NEXT_ID = new AtomicLong();
+    private static final Collator NAME_COLLATOR = Collator.getInstance(Locale.ROOT); // Guarded by itself
+    public static final long NOT_STAMPED = Long.MIN_VALUE; // System.nanoTime() may return any other value
+    private final long id;
     private final String firstName;
     private final String lastName;
     private final int burgersRequired;
+    private long arrivedAt = NOT_STAMPED;
+    private long queuedAt = NOT_STAMPED;
+    private long servedAt = NOT_STAMPED;
+    private String fullName; // null until first used
+    private String searchKey; // null until first used
+    private CollationKey collationKey; // null until first used
     public static final String INFO_DELIMITER = ",";
 
     /**
@@ -16,11 +40,30 @@ public class Customer {
      * @param burgersRequired The amount of burgers required.
      */
     public Customer(String firstName, String lastName, int burgersRequired) {
+        this(NEXT_ID.getAndIncrement(), firstName, lastName, burgersRequired);
+    }
+
+    /**
+     * Recreate a {@link Customer} that was stored with its id.
+     * @param id The id of the stored {@link Customer}.
+     * @param firstName Customer's first name.
+     * @param lastName Customer's last name.
+     * @param burgersRequired The amount of burgers required.
+     */
+    Customer(long id, String firstName, String lastName, int burgersRequired) {
+        this.id = id;
         this.firstName = firstName;
         this.lastName = lastName;
         this.burgersRequired = burgersRequired;
     }
 
+    /**
+     * @return The unique id of the {@link Customer}.
+     */
+    long getId() {
+        return this.id;
+    }
+
     /**
      * @return The first name of the {@link Customer}.
      */
@@ -36,10 +79,60 @@ public class Customer {
     }
 
     /**
-     * @return The full name of the {@link Customer}.
+     * @return The full name of the {@link Customer}, built on first use.
      */
     public String getFullName() {
-        return this.firstName + " " + this.lastName;
+        if (this.fullName == null) {
+            this.fullName = this.firstName + " " + this.lastName;
+        }
+
+        return this.fullName;
+    }
+
+    /**
+     * @return The full name of the {@link Customer} in the form used for searches, built on first use.
+     * @see Customer#toSearchKey(String)
+     */
+    public String getSearchKey() {
+        if (this.searchKey == null) {
+            this.searchKey = toSearchKey(this.getFullName());
+        }
+
+        return this.searchKey;
+    }
+
+    /**
+     * @return The key that orders the {@link Customer} alphabetically by full name, built on first use.
+     * Keys are compared as bytes, so comparing two {@link Customer}s allocates nothing, and the order is the same
+     * whatever the default locale.
+     */
+    public CollationKey getCollationKey() {
+        if (this.collationKey == null) {
+            this.collationKey = toCollationKey(this.getFullName());
+        }
+
+        return this.collationKey;
+    }
+
+    /**
+     * @param fullName A full name.
+     * @return The key that orders the full name alphabetically.
+     * @see Customer#getCollationKey()
+     */
+    static CollationKey toCollationKey(String fullName) {
+        synchronized (NAME_COLLATOR) { // Collators are not thread-safe
+            return NAME_COLLATOR.getCollationKey(fullName);
+        }
+    }
+
+    /**
+     * Case-fold text so that searches ignore case. The root locale is used, so the result does not depend on the
+     * default locale, such as the dotless i of Turkish.
+     * @param text The text to case-fold, such as a search term.
+     * @return The text in the form used for searches.
+     */
+    public static String toSearchKey(String text) {
+        return text.toUpperCase(Locale.ROOT).toLowerCase(Locale.ROOT); // Upper first folds characters like 'ß' to "ss"
     }
 
     /**
@@ -49,6 +142,78 @@ public class Customer {
         return this.burgersRequired;
     }
 
+    /**
+     * @return The time the {@link Customer} joined the first queue, either a {@link FoodQueue} or the
+     * {@link WaitingQueue}. {@link Customer#NOT_STAMPED} if not known.
+     */
+    public long getArrivedAt() {
+        return this.arrivedAt;
+    }
+
+    /**
+     * @param arrivedAt The time the {@link Customer} joined the first queue.
+     */
+    void setArrivedAt(long arrivedAt) {
+        this.arrivedAt = arrivedAt;
+    }
+
+    /**
+     * @return The time the {@link Customer} joined a {@link FoodQueue}, directly or by promotion from the
+     * {@link WaitingQueue}. {@link Customer#NOT_STAMPED} if not known.
+     */
+    public long getQueuedAt() {
+        return this.queuedAt;
+    }
+
+    /**
+     * @param queuedAt The time the {@link Customer} joined a {@link FoodQueue}.
+     */
+    void setQueuedAt(long queuedAt) {
+        this.queuedAt = queuedAt;
+    }
+
+    /**
+     * @return The time the {@link Customer} was served. {@link Customer#NOT_STAMPED} if not served yet.
+     */
+    public long getServedAt() {
+        return this.servedAt;
+    }
+
+    /**
+     * @param servedAt The time the {@link Customer} was served.
+     */
+    void setServedAt(long servedAt) {
+        this.servedAt = servedAt;
+    }
+
+    /**
+     * Stamp the arrival time unless the {@link Customer} has already arrived, for example in the
+     * {@link WaitingQueue} before being promoted.
+     * @param time The time of the arrival.
+     */
+    void markArrived(long time) {
+        if (this.getArrivedAt() == NOT_STAMPED) {
+            this.setArrivedAt(time);
+        }
+    }
+
+    /**
+     * @param object The object to compare with.
+     * @return 'true' if the object is a {@link Customer} with the same id.
+     */
+    @Override
+    public boolean equals(Object object) {
+        return object instanceof Customer customer && customer.id == this.id;
+    }
+
+    /**
+     * @return A hash code based on the id of the {@link Customer}.
+     */
+    @Override
+    public int hashCode() {
+        return Long.hashCode(this.id);
+    }
+
     /**
      * @return A string representation of a {@link Customer} instance.
      */
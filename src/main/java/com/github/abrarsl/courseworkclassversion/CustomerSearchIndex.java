@@ -0,0 +1,458 @@
+package com.github.abrarsl.courseworkclassversion;
+
+import com.github.abrarsl.courseworkclassversion.exceptions.SelectionOutOfRangeException;
+import com.github.abrarsl.courseworkclassversion.metrics.Metrics;
+import com.github.abrarsl.courseworkclassversion.metrics.Operation;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A case-insensitive substring search index over the names of all {@link Customer}s in a set of {@link FoodQueue}s
+ * and a {@link WaitingQueue}.
+ * <p>
+ * Each distinct {@link Customer#getSearchKey()} is stored once and given a name number, and every substring of up to
+ * {@link CustomerSearchIndex#GRAM_LENGTH} characters of it is mapped to the name numbers containing it. The
+ * {@link Customer}s themselves are only kept as ids, each linked into the list of the name it has, so the index holds
+ * no {@link Customer} objects and a name shared by many {@link Customer}s costs nothing more than one int per
+ * {@link Customer}. A search only checks the names listed under the rarest gram of the search term, so the cost
+ * follows the number of candidates instead of the total queue capacity.
+ * <p>
+ * Positions are not kept, as they shift whenever a queue moves. A search finds the matching ids first, then the
+ * positions of all matches in a queue in one pass over that queue.
+ * <p>
+ * Lists of names are not searched when a name is dropped. The dropped name is left in the lists of its grams until
+ * the lists hold as many dropped names as live ones, when they are built again, so dropping a name costs O(1)
+ * amortized. Searches check each name against the whole search term, so a dropped or reused name number is never
+ * returned by mistake.
+ * <p>
+ * The index must be told about every {@link Customer} that is added, moved or removed.
+ * The {@link Customer}s of a {@link SegmentedWaitingQueue} are not indexed, as the index should not grow with the
+ * spilled part of the queue. A search scans that queue instead.
+ * This class is not thread-safe.
+ */
+public class CustomerSearchIndex {
+    private static final int GRAM_LENGTH = 3;
+    private static final int INITIAL_CAPACITY = 16;
+    private static final int NONE = -1;
+    private static final int MIN_STALE_POSTINGS = 1024; // Small lists are not worth building again
+    private final FoodQueue[] queues;
+    private final WaitingQueue waitingQueue;
+    private final boolean waitingQueueIndexed; // 'false' if the waiting queue is scanned on each search instead
+    private final Map<String, Integer> nameNumbers = new HashMap<>();
+    private final Map<String, Postings> namesByGram = new HashMap<>();
+    private final LongIntMap entriesById = new LongIntMap();
+    private String[] names = new String[INITIAL_CAPACITY]; // null once the name number is free
+    private int[] firstEntries = new int[INITIAL_CAPACITY]; // The entries with each name, linked by nextEntries
+    private int[] nameGramCounts = new int[INITIAL_CAPACITY];
+    private int[] nameSearchNumbers = new int[INITIAL_CAPACITY]; // The last search that checked each name
+    private int[] freeNames = new int[INITIAL_CAPACITY];
+    private int freeNameCount;
+    private int nameCount; // Number of name numbers handed out, including freed ones
+    private long[] ids = new long[INITIAL_CAPACITY];
+    private int[] queueNumbers = new int[INITIAL_CAPACITY];
+    private int[] entryNames = new int[INITIAL_CAPACITY];
+    private int[] nextEntries = new int[INITIAL_CAPACITY];
+    private int[] previousEntries = new int[INITIAL_CAPACITY];
+    private int[] freeEntries = new int[INITIAL_CAPACITY];
+    private int freeEntryCount;
+    private int entryCount; // Number of entries handed out, including freed ones
+    private long postingCount; // Including the postings of dropped names
+    private long livePostingCount;
+    private int searchNumber;
+
+    /**
+     * A {@link Customer} that matched a search.
+     * @param queueNumber The number of the {@link FoodQueue}. -1 if the {@link Customer} is in the {@link WaitingQueue}.
+     * @param position The position of the {@link Customer} in its queue.
+     * @param customer The {@link Customer} that matched.
+     */
+    public record Hit(int queueNumber, int position, Customer customer) {
+    }
+
+    /**
+     * The name numbers listed under one gram, in a growable int array.
+     */
+    private static final class Postings {
+        private int[] names = new int[2];
+        private int size;
+
+        /**
+         * @param name The name number to add. Not added again if it was the last one added.
+         * @return 'true' if the name number was added.
+         */
+        private boolean add(int name) {
+            if (this.size > 0 && this.names[this.size - 1] == name) { // A gram can occur twice in one name
+                return false;
+            }
+
+            if (this.size == this.names.length) {
+                this.names = Arrays.copyOf(this.names, this.size * 2);
+            }
+
+            this.names[this.size] = name;
+            this.size++;
+
+            return true;
+        }
+    }
+
+    /**
+     * Creates an index holding all {@link Customer}s currently in the given queues.
+     * @param queues The {@link FoodQueue}s to index. The array is not copied.
+     * @param waitingQueue The {@link WaitingQueue} to index.
+     */
+    public CustomerSearchIndex(FoodQueue[] queues, WaitingQueue waitingQueue) {
+        this.queues = queues;
+        this.waitingQueue = waitingQueue;
+        this.waitingQueueIndexed = !(waitingQueue instanceof SegmentedWaitingQueue);
+
+        for (int i = 0; i < queues.length; i++) {
+            for (int j = 0; j < queues[i].getCustomerCount(); j++) {
+                try {
+                    this.add(queues[i].getCustomer(j), i);
+                } catch (SelectionOutOfRangeException ignored) {
+                }
+            }
+        }
+
+        if (this.waitingQueueIndexed) {
+            waitingQueue.forEach(customer -> this.add(customer, -1));
+        }
+    }
+
+    /**
+     * @return The number of {@link Customer}s in the index.
+     */
+    public int getCustomerCount() {
+        return this.entriesById.size();
+    }
+
+    /**
+     * @return The number of distinct names in the index.
+     */
+    public int getNameCount() {
+        return this.nameNumbers.size();
+    }
+
+    /**
+     * Adds a {@link Customer} to the index. A {@link Customer} that is already indexed is moved to the given queue.
+     * Only the id and the name of the {@link Customer} are kept, so the {@link Customer} may be a short-lived view.
+     * Does nothing for a {@link Customer} joining a {@link SegmentedWaitingQueue}.
+     * @param customer The {@link Customer} to add.
+     * @param queueNumber The number of the {@link FoodQueue}. -1 if the {@link Customer} is in the {@link WaitingQueue}.
+     */
+    public void add(Customer customer, int queueNumber) {
+        if (queueNumber < 0 && !this.waitingQueueIndexed) {
+            return;
+        }
+
+        int entry = this.entriesById.get(customer.getId());
+
+        if (entry != LongIntMap.NO_VALUE) { // Only the location changed
+            this.queueNumbers[entry] = queueNumber;
+            return;
+        }
+
+        if (this.freeEntryCount > 0) {
+            this.freeEntryCount--;
+            entry = this.freeEntries[this.freeEntryCount];
+        } else {
+            if (this.entryCount == this.ids.length) {
+                this.growEntries();
+            }
+
+            entry = this.entryCount;
+            this.entryCount++;
+        }
+
+        int name = this.addName(customer.getSearchKey());
+        this.ids[entry] = customer.getId();
+        this.queueNumbers[entry] = queueNumber;
+        this.entryNames[entry] = name;
+        this.previousEntries[entry] = NONE;
+        this.nextEntries[entry] = this.firstEntries[name];
+
+        if (this.firstEntries[name] != NONE) {
+            this.previousEntries[this.firstEntries[name]] = entry;
+        }
+
+        this.firstEntries[name] = entry;
+        this.entriesById.put(customer.getId(), entry);
+    }
+
+    /**
+     * Removes a {@link Customer} from the index.
+     * @param customer The {@link Customer} to remove. Only its id is used.
+     */
+    public void remove(Customer customer) {
+        int entry = this.entriesById.remove(customer.getId());
+
+        if (entry == LongIntMap.NO_VALUE) {
+            return;
+        }
+
+        int name = this.entryNames[entry];
+
+        if (this.previousEntries[entry] == NONE) {
+            this.firstEntries[name] = this.nextEntries[entry];
+        } else {
+            this.nextEntries[this.previousEntries[entry]] = this.nextEntries[entry];
+        }
+
+        if (this.nextEntries[entry] != NONE) {
+            this.previousEntries[this.nextEntries[entry]] = this.previousEntries[entry];
+        }
+
+        if (this.firstEntries[name] == NONE) { // No one has the name any more
+            this.removeName(name);
+        }
+
+        if (this.freeEntryCount == this.freeEntries.length) {
+            this.freeEntries = Arrays.copyOf(this.freeEntries, this.freeEntries.length * 2);
+        }
+
+        this.freeEntries[this.freeEntryCount] = entry;
+        this.freeEntryCount++;
+    }
+
+    /**
+     * Search for {@link Customer}s with the given search term within their name.
+     * Searches are case-insensitive.
+     * @param searchTerm The search term that is checked.
+     * @return The matches ordered by queue number and position, with {@link WaitingQueue} matches last.
+     */
+    public List<Hit> search(String searchTerm) {
+        Map<Integer, Set<Long>> matches = this.findMatches(searchTerm);
+        List<Hit> hits = new ArrayList<>();
+
+        for (int i = 0; i < this.queues.length; i++) {
+            int queueNumber = i;
+            Set<Long> ids = matches.get(queueNumber);
+
+            if (ids != null) {
+                this.queues[i].findCustomers(ids, (customer, position) ->
+                        hits.add(new Hit(queueNumber, position, customer)));
+            }
+        }
+
+        if (this.waitingQueueIndexed) {
+            Set<Long> ids = matches.get(-1);
+
+            if (ids != null) {
+                this.waitingQueue.findCustomers(ids, (customer, position) -> hits.add(new Hit(-1, position, customer)));
+            }
+        } else {
+            this.waitingQueue.searchCustomers(searchTerm, (customer, position) ->
+                    hits.add(new Hit(-1, position, customer)));
+        }
+
+        return hits;
+    }
+
+    /**
+     * Find the ids of the indexed {@link Customer}s with the given search term within their name, without looking up
+     * their positions. {@link Customer}s of a {@link SegmentedWaitingQueue} are not included.
+     * Searches are case-insensitive.
+     * @param searchTerm The search term that is checked.
+     * @return The ids of the matches, by the number of their {@link FoodQueue}, or -1 for the {@link WaitingQueue}.
+     * Pass each set to {@link FoodQueue#findCustomers} or {@link WaitingQueue#findCustomers} to find the matches.
+     */
+    public Map<Integer, Set<Long>> findMatches(String searchTerm) {
+        long startTime = Metrics.start();
+
+        try {
+            String normalizedTerm = Customer.toSearchKey(searchTerm);
+            int gramLength = Math.min(GRAM_LENGTH, normalizedTerm.length());
+            Map<Integer, Set<Long>> matches = new HashMap<>();
+            Postings candidates = null;
+
+            for (int i = 0; gramLength > 0 && i + gramLength <= normalizedTerm.length(); i++) {
+                Postings postings = this.namesByGram.get(normalizedTerm.substring(i, i + gramLength));
+
+                if (postings == null) { // No indexed name contains this part of the term
+                    return matches;
+                }
+
+                if (candidates == null || postings.size < candidates.size) { // Keep the rarest gram
+                    candidates = postings;
+                }
+            }
+
+            this.nextSearchNumber();
+
+            if (candidates == null) { // An empty term matches everyone
+                for (int name = 0; name < this.nameCount; name++) {
+                    this.addMatches(name, normalizedTerm, matches);
+                }
+            } else {
+                for (int i = 0; i < candidates.size; i++) {
+                    this.addMatches(candidates.names[i], normalizedTerm, matches);
+                }
+            }
+
+            return matches;
+        } finally {
+            Metrics.record(Operation.SEARCH, startTime);
+        }
+    }
+
+    /**
+     * Add the ids of every {@link Customer} with a name, if the name contains the search term and has not been checked
+     * by this search already.
+     * @param name A name number, which may have been dropped or reused since it was listed.
+     * @param normalizedTerm The search term as a search key.
+     * @param matches The ids of the matches, by queue number.
+     */
+    private void addMatches(int name, String normalizedTerm, Map<Integer, Set<Long>> matches) {
+        if (this.nameSearchNumbers[name] == this.searchNumber) { // Listed again after the name number was reused
+            return;
+        }
+
+        this.nameSearchNumbers[name] = this.searchNumber;
+
+        if (this.names[name] == null || !this.names[name].contains(normalizedTerm)) {
+            return;
+        }
+
+        for (int entry = this.firstEntries[name]; entry != NONE; entry = this.nextEntries[entry]) {
+            matches.computeIfAbsent(this.queueNumbers[entry], queueNumber -> new HashSet<>()).add(this.ids[entry]);
+        }
+    }
+
+    /**
+     * Start a new search, so that every name counts as not checked yet.
+     */
+    private void nextSearchNumber() {
+        this.searchNumber++;
+
+        if (this.searchNumber == 0) { // Wrapped around, so old numbers could match again
+            Arrays.fill(this.nameSearchNumbers, 0);
+            this.searchNumber = 1;
+        }
+    }
+
+    /**
+     * Look up a name in the dictionary, adding it and its grams if needed.
+     * @param searchKey The search key of a {@link Customer}.
+     * @return The name number.
+     */
+    private int addName(String searchKey) {
+        Integer name = this.nameNumbers.get(searchKey);
+
+        if (name != null) {
+            return name;
+        }
+
+        if (this.freeNameCount > 0) {
+            this.freeNameCount--;
+            name = this.freeNames[this.freeNameCount];
+        } else {
+            if (this.nameCount == this.names.length) {
+                this.growNames();
+            }
+
+            name = this.nameCount;
+            this.nameCount++;
+        }
+
+        this.names[name] = searchKey;
+        this.firstEntries[name] = NONE;
+        this.nameGramCounts[name] = this.addGrams(name, searchKey);
+        this.livePostingCount += this.nameGramCounts[name];
+        this.nameNumbers.put(searchKey, name);
+
+        return name;
+    }
+
+    /**
+     * Drop a name that no indexed {@link Customer} has any more. Its grams are left listed until the lists are built
+     * again.
+     * @param name The name number.
+     */
+    private void removeName(int name) {
+        this.nameNumbers.remove(this.names[name]);
+        this.names[name] = null;
+        this.livePostingCount -= this.nameGramCounts[name];
+
+        if (this.freeNameCount == this.freeNames.length) {
+            this.freeNames = Arrays.copyOf(this.freeNames, this.freeNames.length * 2);
+        }
+
+        this.freeNames[this.freeNameCount] = name;
+        this.freeNameCount++;
+
+        if (this.postingCount - this.livePostingCount > Math.max(this.livePostingCount, MIN_STALE_POSTINGS)) {
+            this.rebuildPostings();
+        }
+    }
+
+    /**
+     * List a name under each of its grams.
+     * @param name The name number.
+     * @param searchKey The name.
+     * @return The number of lists the name was added to.
+     */
+    private int addGrams(int name, String searchKey) {
+        int addedCount = 0;
+
+        for (int length = 1; length <= GRAM_LENGTH; length++) {
+            for (int i = 0; i + length <= searchKey.length(); i++) {
+                Postings postings = this.namesByGram.computeIfAbsent(searchKey.substring(i, i + length), key -> new Postings());
+
+                if (postings.add(name)) {
+                    addedCount++;
+                }
+            }
+        }
+
+        this.postingCount += addedCount;
+        return addedCount;
+    }
+
+    /**
+     * Build every list of names again from the live names only.
+     */
+    private void rebuildPostings() {
+        this.namesByGram.clear();
+        this.postingCount = 0;
+
+        for (int name = 0; name < this.nameCount; name++) {
+            if (this.names[name] != null) {
+                this.nameGramCounts[name] = this.addGrams(name, this.names[name]);
+            }
+        }
+
+        this.livePostingCount = this.postingCount;
+    }
+
+    /**
+     * Double the capacity of the per name arrays.
+     */
+    private void growNames() {
+        int capacity = this.names.length * 2;
+
+        this.names = Arrays.copyOf(this.names, capacity);
+        this.firstEntries = Arrays.copyOf(this.firstEntries, capacity);
+        this.nameGramCounts = Arrays.copyOf(this.nameGramCounts, capacity);
+        this.nameSearchNumbers = Arrays.copyOf(this.nameSearchNumbers, capacity);
+    }
+
+    /**
+     * Double the capacity of the per entry arrays.
+     */
+    private void growEntries() {
+        int capacity = this.ids.length * 2;
+
+        this.ids = Arrays.copyOf(this.ids, capacity);
+        this.queueNumbers = Arrays.copyOf(this.queueNumbers, capacity);
+        this.entryNames = Arrays.copyOf(this.entryNames, capacity);
+        this.nextEntries = Arrays.copyOf(this.nextEntries, capacity);
+        this.previousEntries = Arrays.copyOf(this.previousEntries, capacity);
+    }
+}
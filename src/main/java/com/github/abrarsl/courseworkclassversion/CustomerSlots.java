@@ -0,0 +1,147 @@
+package com.github.abrarsl.courseworkclassversion;
+
+/**
+ * The fixed size array of slots behind a {@link FoodQueue} or {@link WaitingQueue}.
+ * Slots either hold {@link Customer} references directly, or int handles into a {@link CustomerStore}.
+ */
+interface CustomerSlots {
+    /**
+     * @return The number of slots.
+     */
+    int length();
+
+    /**
+     * @param index The index of the slot.
+     * @return The {@link Customer} in the slot. null if the slot is empty.
+     */
+    Customer get(int index);
+
+    /**
+     * Read the id of a {@link Customer} without building a view of it.
+     * @param index The index of a slot that holds a {@link Customer}.
+     * @return The id of the {@link Customer} in the slot.
+     */
+    long getId(int index);
+
+    /**
+     * @param index The index of the slot.
+     * @param customer The {@link Customer} to store in the slot, replacing any previous one.
+     */
+    void set(int index, Customer customer);
+
+    /**
+     * Empty a slot.
+     * @param index The index of the slot.
+     * @return The {@link Customer} that was in the slot, which stays valid after it is removed. null if the slot was empty.
+     */
+    Customer take(int index);
+
+    /**
+     * Move a {@link Customer} to another slot, leaving the original slot empty.
+     * @param from The index of the slot to move from.
+     * @param to The index of the slot to move to.
+     */
+    void move(int from, int to);
+
+    /**
+     * Slots that hold {@link Customer} references.
+     * @param customers The internal array.
+     */
+    record References(Customer[] customers) implements CustomerSlots {
+        @Override
+        public int length() {
+            return this.customers.length;
+        }
+
+        @Override
+        public Customer get(int index) {
+            return this.customers[index];
+        }
+
+        @Override
+        public long getId(int index) {
+            return this.customers[index].getId();
+        }
+
+        @Override
+        public void set(int index, Customer customer) {
+            this.customers[index] = customer;
+        }
+
+        @Override
+        public Customer take(int index) {
+            Customer customer = this.customers[index];
+            this.customers[index] = null;
+
+            return customer;
+        }
+
+        @Override
+        public void move(int from, int to) {
+            this.customers[to] = this.customers[from];
+            this.customers[from] = null;
+        }
+    }
+
+    /**
+     * Slots that hold int handles into a {@link CustomerStore}.
+     * {@link Customer}s read from the slots are views, {@link Customer}s taken out are detached copies.
+     */
+    final class Handles implements CustomerSlots {
+        private static final int EMPTY = -1;
+        private final int[] handles;
+        private final CustomerStore store;
+
+        /**
+         * @param customers The {@link Customer}s to store. Null entries are left empty.
+         * @param store The {@link CustomerStore} that holds the {@link Customer} data.
+         */
+        Handles(Customer[] customers, CustomerStore store) {
+            this.handles = new int[customers.length];
+            this.store = store;
+
+            for (int i = 0; i < customers.length; i++) {
+                this.handles[i] = customers[i] == null ? EMPTY : store.add(customers[i]);
+            }
+        }
+
+        @Override
+        public int length() {
+            return this.handles.length;
+        }
+
+        @Override
+        public Customer get(int index) {
+            return this.handles[index] == EMPTY ? null : this.store.view(this.handles[index]);
+        }
+
+        @Override
+        public long getId(int index) {
+            return this.store.getId(this.handles[index]);
+        }
+
+        @Override
+        public void set(int index, Customer customer) {
+            this.take(index);
+            this.handles[index] = customer == null ? EMPTY : this.store.add(customer);
+        }
+
+        @Override
+        public Customer take(int index) {
+            if (this.handles[index] == EMPTY) {
+                return null;
+            }
+
+            Customer customer = this.store.remove(this.handles[index]);
+            this.handles[index] = EMPTY;
+
+            return customer;
+        }
+
+        @Override
+        public void move(int from, int to) {
+            this.handles[to] = this.handles[from];
+            this.handles[from] = EMPTY;
+        }
+    }
+}
@@ -0,0 +1,272 @@
+package com.github.abrarsl.courseworkclassversion;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Stores {@link Customer} data as a struct of arrays, addressed by int handles.
+ * <p>
+ * Names are dictionary encoded, so a name shared by many customers is stored once. Burger counts, ids and
+ * timestamps are kept in primitive arrays, and nothing else is kept per customer: the full name and the keys derived
+ * from it are built by whoever reads them, and indices keep their own key once per distinct name. Handles and name
+ * ids are reused after they are removed, so the arrays only grow to the largest number of customers stored at the
+ * same time.
+ * <p>
+ * {@link Customer}s read from the store are flyweight views over a handle, built on each read and not kept by the
+ * store, so the heap used per customer does not depend on how often it is read. Indices hold the id of a
+ * {@link Customer} rather than its view. A view stays valid while its customer is in the store. Using it after the
+ * customer has been removed throws an {@link IllegalStateException}.
+ * <p>
+ * This class is not thread-safe.
+ */
+public class CustomerStore {
+    private static final int INITIAL_CAPACITY = 8;
+    private static final long NO_CUSTOMER = -1; // Customer ids are never negative
+    private final Map<String, Integer> nameIds = new HashMap<>();
+    private String[] names = new String[INITIAL_CAPACITY];
+    private int[] nameReferences = new int[INITIAL_CAPACITY];
+    private int[] freeNameIds = new int[INITIAL_CAPACITY];
+    private int freeNameIdCount;
+    private int nameCount; // Number of name ids handed out, including freed ones
+    private long[] ids = new long[INITIAL_CAPACITY];
+    private int[] firstNameIds = new int[INITIAL_CAPACITY];
+    private int[] lastNameIds = new int[INITIAL_CAPACITY];
+    private int[] burgersRequired = new int[INITIAL_CAPACITY];
+    private long[] arrivedAt = new long[INITIAL_CAPACITY];
+    private long[] queuedAt = new long[INITIAL_CAPACITY];
+    private int[] freeHandles = new int[INITIAL_CAPACITY];
+    private int freeHandleCount;
+    private int handleCount; // Number of handles handed out, including freed ones
+    private int customerCount;
+
+    /**
+     * A {@link Customer} that reads its data from a {@link CustomerStore}.
+     */
+    private static final class View extends Customer {
+        private final CustomerStore store;
+        private final int handle;
+
+        /**
+         * @param store The {@link CustomerStore} that holds the data.
+         * @param handle The handle of the {@link Customer} in the store.
+         */
+        private View(CustomerStore store, int handle) {
+            super(store.ids[handle], null, null, 0);
+            this.store = store;
+            this.handle = handle;
+        }
+
+        /**
+         * @return The handle of the {@link Customer}.
+         * @throws IllegalStateException If the {@link Customer} has been removed from the store.
+         */
+        private int validHandle() {
+            if (this.store.ids[this.handle] != this.getId()) {
+                throw new IllegalStateException("Customer has been removed from the store.");
+            }
+
+            return this.handle;
+        }
+
+        @Override
+        public String getFirstName() {
+            return this.store.names[this.store.firstNameIds[this.validHandle()]];
+        }
+
+        @Override
+        public String getLastName() {
+            return this.store.names[this.store.lastNameIds[this.validHandle()]];
+        }
+
+        @Override
+        public String getFullName() { // The search and collation keys of the view are built from this
+            int handle = this.validHandle();
+            return this.store.names[this.store.firstNameIds[handle]] + " "
+                    + this.store.names[this.store.lastNameIds[handle]];
+        }
+
+        @Override
+        public int getBurgersRequired() {
+            return this.store.burgersRequired[this.validHandle()];
+        }
+
+        @Override
+        public long getArrivedAt() {
+            return this.store.arrivedAt[this.validHandle()];
+        }
+
+        @Override
+        void setArrivedAt(long arrivedAt) {
+            this.store.arrivedAt[this.validHandle()] = arrivedAt;
+        }
+
+        @Override
+        public long getQueuedAt() {
+            return this.store.queuedAt[this.validHandle()];
+        }
+
+        @Override
+        void setQueuedAt(long queuedAt) {
+            this.store.queuedAt[this.validHandle()] = queuedAt;
+        }
+    }
+
+    /**
+     * @return The number of {@link Customer}s in the {@link CustomerStore}.
+     */
+    public int getCustomerCount() {
+        return this.customerCount;
+    }
+
+    /**
+     * @return The number of distinct names in the {@link CustomerStore}.
+     */
+    public int getNameCount() {
+        return this.nameIds.size();
+    }
+
+    /**
+     * Copy a {@link Customer} into the {@link CustomerStore}. The id of the {@link Customer} is kept.
+     * @param customer The {@link Customer} to store.
+     * @return The handle of the stored {@link Customer}.
+     */
+    public int add(Customer customer) {
+        int handle;
+
+        if (this.freeHandleCount > 0) {
+            this.freeHandleCount--;
+            handle = this.freeHandles[this.freeHandleCount];
+        } else {
+            if (this.handleCount == this.ids.length) {
+                this.growCustomers();
+            }
+
+            handle = this.handleCount;
+            this.handleCount++;
+        }
+
+        this.ids[handle] = customer.getId();
+        this.firstNameIds[handle] = this.addName(customer.getFirstName());
+        this.lastNameIds[handle] = this.addName(customer.getLastName());
+        this.burgersRequired[handle] = customer.getBurgersRequired();
+        this.arrivedAt[handle] = customer.getArrivedAt();
+        this.queuedAt[handle] = customer.getQueuedAt(); // Customers leave the store when served, so no serve stamp
+        this.customerCount++;
+
+        return handle;
+    }
+
+    /**
+     * @param handle The handle of a stored {@link Customer}.
+     * @return A new flyweight view of the {@link Customer}.
+     */
+    public Customer view(int handle) {
+        return new View(this, handle);
+    }
+
+    /**
+     * @param handle The handle of a stored {@link Customer}.
+     * @return The id of the {@link Customer}, read without building a view.
+     */
+    public long getId(int handle) {
+        return this.ids[handle];
+    }
+
+    /**
+     * Remove a {@link Customer} from the {@link CustomerStore}. Views of the {@link Customer} become invalid.
+     * @param handle The handle of the stored {@link Customer}.
+     * @return A copy of the {@link Customer} that does not depend on the store.
+     */
+    public Customer remove(int handle) {
+        Customer customer = new Customer(
+                this.ids[handle],
+                this.names[this.firstNameIds[handle]],
+                this.names[this.lastNameIds[handle]],
+                this.burgersRequired[handle]
+        );
+        customer.setArrivedAt(this.arrivedAt[handle]);
+        customer.setQueuedAt(this.queuedAt[handle]);
+
+        this.removeName(this.firstNameIds[handle]);
+        this.removeName(this.lastNameIds[handle]);
+        this.ids[handle] = NO_CUSTOMER; // The handle may be reused, and old views must stay invalid
+        this.customerCount--;
+
+        if (this.freeHandleCount == this.freeHandles.length) {
+            this.freeHandles = Arrays.copyOf(this.freeHandles, this.freeHandles.length * 2);
+        }
+
+        this.freeHandles[this.freeHandleCount] = handle;
+        this.freeHandleCount++;
+
+        return customer;
+    }
+
+    /**
+     * Look up a name in the dictionary, adding it if needed.
+     * @param name The name to add.
+     * @return The id of the name.
+     */
+    private int addName(String name) {
+        Integer nameId = this.nameIds.get(name);
+
+        if (nameId == null) {
+            if (this.freeNameIdCount > 0) {
+                this.freeNameIdCount--;
+                nameId = this.freeNameIds[this.freeNameIdCount];
+            } else {
+                if (this.nameCount == this.names.length) {
+                    this.names = Arrays.copyOf(this.names, this.nameCount * 2);
+                    this.nameReferences = Arrays.copyOf(this.nameReferences, this.nameCount * 2);
+                }
+
+                nameId = this.nameCount;
+                this.nameCount++;
+            }
+
+            this.names[nameId] = name;
+            this.nameIds.put(name, nameId);
+        }
+
+        this.nameReferences[nameId]++;
+
+        return nameId;
+    }
+
+    /**
+     * Release one use of a name, removing it from the dictionary when it is no longer used.
+     * @param nameId The id of the name.
+     */
+    private void removeName(int nameId) {
+        this.nameReferences[nameId]--;
+
+        if (this.nameReferences[nameId] > 0) {
+            return;
+        }
+
+        this.nameIds.remove(this.names[nameId]);
+        this.names[nameId] = null;
+
+        if (this.freeNameIdCount == this.freeNameIds.length) {
+            this.freeNameIds = Arrays.copyOf(this.freeNameIds, this.freeNameIds.length * 2);
+        }
+
+        this.freeNameIds[this.freeNameIdCount] = nameId;
+        this.freeNameIdCount++;
+    }
+
+    /**
+     * Double the capacity of the per customer arrays.
+     */
+    private void growCustomers() {
+        int capacity = this.ids.length * 2;
+
+        this.ids = Arrays.copyOf(this.ids, capacity);
+        this.firstNameIds = Arrays.copyOf(this.firstNameIds, capacity);
+        this.lastNameIds = Arrays.copyOf(this.lastNameIds, capacity);
+        this.burgersRequired = Arrays.copyOf(this.burgersRequired, capacity);
+        this.arrivedAt = Arrays.copyOf(this.arrivedAt, capacity);
+        this.queuedAt = Arrays.copyOf(this.queuedAt, capacity);
+    }
+}
@@ -1,56 +1,93 @@
 package com.github.abrarsl.courseworkclassversion;
 
 import com.github.abrarsl.courseworkclassversion.exceptions.*;
+import com.github.abrarsl.courseworkclassversion.metrics.Metrics;
+import com.github.abrarsl.courseworkclassversion.metrics.Operation;
+
+import java.util.Arrays;
+import java.util.Set;
+import java.util.function.ObjIntConsumer;
 
 /**
  * A class that is used to store and manipulate a queue of Customer objects.
- * The class will also statically store info such as stock information.
+ * Each queue serves from the {@link ItemStock} it is given, which is usually shared by every queue of a shop.
  * Each instance of the class will also track the total income.
+ * The internal array is used as a circular buffer so that serving from the front does not shift the queue.
+ * Customers can optionally be kept in a compact {@link CustomerStore} instead of as object references.
  */
 public class FoodQueue {
-    private final Customer[] queue;
+    private final CustomerSlots queue;
     private static final int ITEM_PRICE = 650;
-    private static final int MIN_STOCK = 0;
     public static final int MAX_STOCK = 50;
-    private static final int STOCK_WARN_THRESHOLD = 10;
+    public static final int STOCK_WARN_THRESHOLD = 10;
     public static final String FOODQUEUE_START_MARK = "FOODQUEUE_START";
+    private final ItemStock itemStock;
+    private final QueueStatistics statistics = new QueueStatistics();
+    private volatile QueueEventBus eventBus;
+    private int queueNumber;
     private int queueIncome;
-    private int endIndex;
-    private static int itemStock = 0;
+    private int frontIndex;
+    private int customerCount;
 
     /**
      * @param queueLength The maximum length of the {@link FoodQueue} to construct.
+     * @param itemStock The {@link ItemStock} to serve from.
      */
-    public FoodQueue(int queueLength) {
-        this.queue = new Customer[queueLength];
+    public FoodQueue(int queueLength, ItemStock itemStock) {
+        this.queue = new CustomerSlots.References(new Customer[queueLength]);
+        this.itemStock = itemStock;
         this.queueIncome = 0;
-        this.endIndex = 0;
+        this.frontIndex = 0;
+        this.customerCount = 0;
     }
 
     /**
      * @param queue The internal array. Ensure there are no holes in this array.
      * @param income The queue income value.
+     * @param itemStock The {@link ItemStock} to serve from.
+     */
+    public FoodQueue(Customer[] queue, int income, ItemStock itemStock) {
+        this(new CustomerSlots.References(queue), income, itemStock);
+    }
+
+    /**
+     * Create a {@link FoodQueue} that keeps its {@link Customer}s in a {@link CustomerStore}.
+     * {@link Customer}s read from the queue are views that stay valid while the {@link Customer} is in the queue.
+     * {@link Customer}s that are removed or served are returned as detached copies.
+     * @param queue The {@link Customer}s to copy into the store. Ensure there are no holes in this array.
+     * @param income The queue income value.
+     * @param store The {@link CustomerStore} to keep the {@link Customer}s in.
+     * @param itemStock The {@link ItemStock} to serve from.
      */
-    public FoodQueue(Customer[] queue, int income) {
+    public FoodQueue(Customer[] queue, int income, CustomerStore store, ItemStock itemStock) {
+        this(new CustomerSlots.Handles(queue, store), income, itemStock);
+    }
+
+    /**
+     * @param queue The internal slots. Ensure there are no holes in the slots.
+     * @param income The queue income value.
+     * @param itemStock The {@link ItemStock} to serve from.
+     */
+    private FoodQueue(CustomerSlots queue, int income, ItemStock itemStock) {
         this.queue = queue;
+        this.itemStock = itemStock;
         this.queueIncome = income;
-        this.endIndex = this.queue.length;
+        this.frontIndex = 0;
+        this.customerCount = this.queue.length();
 
-        for (int i = 0; i < this.queue.length; i++) { // Linear search for the end of the queue.
-            if (this.queue[i] == null) {
-                this.endIndex = i;
+        for (int i = 0; i < this.queue.length(); i++) { // Linear search for the end of the queue.
+            if (this.queue.get(i) == null) {
+                this.customerCount = i;
                 break;
             }
         }
-
-        System.out.println(this.endIndex);
     }
 
     /**
      * @return The length of the particular {@link FoodQueue}.
      */
     public int getQueueLength() {
-        return this.queue.length;
+        return this.queue.length();
     }
 
     /**
@@ -61,44 +98,86 @@ public class FoodQueue {
     }
 
     /**
-     * @return The stock information for all {@link FoodQueue}.
+     * @return The {@link ItemStock} this {@link FoodQueue} serves from.
      */
-    public static int getItemStock() {
-        return itemStock;
+    public ItemStock getStock() {
+        return this.itemStock;
     }
 
     /**
-     * Will set {@link FoodQueue#itemStock}.
-     * @param newItemStock The stock value to be set.
-     * @throws StockOutOfRangeException Will be thrown if given stock is not between
-     * {@link FoodQueue#MIN_STOCK} and {@link FoodQueue#MAX_STOCK}
+     * @return 'true' if {@link FoodQueue} is full.
      */
-    public static void setItemStock(int newItemStock) throws StockOutOfRangeException {
-        if (newItemStock > MAX_STOCK || newItemStock < MIN_STOCK) {
-            throw new StockOutOfRangeException(
-                    String.format(
-                            "Stock range is %d to %d.",
-                            MIN_STOCK,
-                            MAX_STOCK
-                    )
-            );
-        }
+    public boolean isQueueFull() {
+        return this.customerCount >= this.getQueueLength();
+    }
 
-        FoodQueue.itemStock = newItemStock;
+    /**
+     * @return The number of {@link Customer}s currently in the {@link FoodQueue}.
+     */
+    public int getCustomerCount() {
+        return this.customerCount;
     }
 
     /**
-     * @return 'true' if {@link FoodQueue#itemStock} is lower than or equal to {@link FoodQueue#STOCK_WARN_THRESHOLD}.
+     * @return The wait time and service rate statistics of the {@link FoodQueue}.
      */
-    public static boolean isStockLow() {
-        return getItemStock() <= STOCK_WARN_THRESHOLD;
+    public QueueStatistics getStatistics() {
+        return this.statistics;
     }
 
     /**
-     * @return 'true' if {@link FoodQueue} is full.
+     * @return The expected wait in nanoseconds before a {@link Customer} joining now is served.
+     * -1 if not enough {@link Customer}s have been served to estimate.
      */
-    public boolean isQueueFull() {
-        return this.endIndex >= this.getQueueLength();
+    public long estimateWait() {
+        return this.statistics.estimateWait(this.getCustomerCount());
+    }
+
+    /**
+     * Publish every change to the {@link FoodQueue} from now on.
+     * @param eventBus The {@link QueueEventBus} to publish on, or null to stop publishing.
+     * @param queueNumber The number of the {@link FoodQueue} in its events.
+     */
+    public void setEventBus(QueueEventBus eventBus, int queueNumber) {
+        this.queueNumber = queueNumber;
+        this.eventBus = eventBus; // Written last, so the number is seen with the bus
+    }
+
+    /**
+     * Publish a change to the {@link FoodQueue}, if it has a {@link QueueEventBus}.
+     * @param type What changed.
+     * @param position The position of the {@link Customer} before it left, or after it joined.
+     * @param customer The {@link Customer} that joined or left, or null.
+     * @param amount The income added, or 0.
+     */
+    private void publish(QueueEvent.Type type, int position, Customer customer, int amount) {
+        QueueEventBus eventBus = this.eventBus;
+
+        if (eventBus != null) {
+            eventBus.publish(type, this.queueNumber, position, customer, amount);
+        }
+    }
+
+    /**
+     * Stamp a {@link Customer} as joining the {@link FoodQueue}. This must happen before the {@link Customer} is
+     * placed in {@link FoodQueue#queue}, which may copy it into a {@link CustomerStore}.
+     * @param customer The {@link Customer} joining the {@link FoodQueue}.
+     * @param queuedAt The time the {@link Customer} joined.
+     */
+    private void stampQueued(Customer customer, long queuedAt) {
+        customer.markArrived(queuedAt); // Customers promoted from the WaitingQueue keep their earlier arrival
+        customer.setQueuedAt(queuedAt);
+    }
+
+    /**
+     * Stamp a {@link Customer} as served and add their wait in the {@link FoodQueue} to {@link FoodQueue#statistics}.
+     * Time spent in the {@link WaitingQueue} before joining is measured by the {@link WaitingQueue} instead.
+     * @param customer The {@link Customer} that was served, after being taken out of {@link FoodQueue#queue}.
+     * @param servedAt The time the {@link Customer} was served.
+     */
+    private void recordServed(Customer customer, long servedAt) {
+        customer.setServedAt(servedAt);
+        this.statistics.recordDeparture(customer.getQueuedAt(), servedAt);
     }
 
     /**
@@ -118,16 +197,32 @@ public class FoodQueue {
     }
 
     /**
-     * Shifts all elements to the right of the given point one step to the left.
-     * @param startPosition The index to start shifting from.
+     * Maps a position in the {@link FoodQueue} to an index in the internal circular array.
+     * @param position The position relative to the front of the {@link FoodQueue}.
+     * @return The index of the position in {@link FoodQueue#queue}.
+     */
+    private int toArrayIndex(int position) {
+        return (this.frontIndex + position) % this.getQueueLength(); // Increment with overflow
+    }
+
+    /**
+     * Closes the gap left at the given position by shifting whichever side of the {@link FoodQueue} is shorter.
+     * @param position The position of the element that was removed. Its slot must already be empty.
      */
-    private void shiftLeftQueue(int startPosition) {
-        for (int i = startPosition; i < this.getQueueLength() - 1; i++) {
-            this.queue[i] = this.queue[i + 1];
+    private void closeGap(int position) {
+        if (position < this.customerCount / 2) { // Front side is shorter, shift it one step towards the rear
+            for (int i = position; i > 0; i--) {
+                this.queue.move(this.toArrayIndex(i - 1), this.toArrayIndex(i));
+            }
+
+            this.frontIndex = this.toArrayIndex(1);
+        } else { // Rear side is shorter, shift it one step towards the front
+            for (int i = position; i < this.customerCount - 1; i++) {
+                this.queue.move(this.toArrayIndex(i + 1), this.toArrayIndex(i));
+            }
         }
 
-        this.queue[this.getQueueLength() - 1] = null;
-        this.endIndex--;
+        this.customerCount--;
     }
 
     /**
@@ -136,8 +231,64 @@ public class FoodQueue {
      * @throws SelectionOutOfRangeException
      */
     public Customer getCustomer(int customerIndex) throws SelectionOutOfRangeException {
-        this.validateSelection(customerIndex);
-        return this.queue[customerIndex];
+        long startTime = Metrics.start();
+
+        try {
+            this.validateSelection(customerIndex);
+
+            if (customerIndex >= this.customerCount) {
+                return null;
+            }
+
+            return this.queue.get(this.toArrayIndex(customerIndex));
+        } finally {
+            Metrics.record(Operation.FOOD_QUEUE_GET, startTime);
+        }
+    }
+
+    /**
+     * @param customer The {@link Customer} to look for. Customers are compared by id, not by name.
+     * @return The position of the {@link Customer} in the {@link FoodQueue}. -1 if the {@link Customer} is not found.
+     */
+    public int getCustomerPosition(Customer customer) {
+        long startTime = Metrics.start();
+
+        try {
+            for (int i = 0; i < this.customerCount; i++) {
+                if (customer.equals(this.queue.get(this.toArrayIndex(i)))) {
+                    return i;
+                }
+            }
+
+            return -1;
+        } finally {
+            Metrics.record(Operation.FOOD_QUEUE_POSITION, startTime);
+        }
+    }
+
+    /**
+     * Find many {@link Customer}s in one pass over the {@link FoodQueue}, such as the matches of a search.
+     * Only the ids of the slots are read until a {@link Customer} is found, so no views are built for the others.
+     * @param ids The ids of the {@link Customer}s to look for.
+     * @param action Called with each {@link Customer} found and its position, in queue order.
+     */
+    public void findCustomers(Set<Long> ids, ObjIntConsumer<Customer> action) {
+        long startTime = Metrics.start();
+
+        try {
+            int remaining = ids.size();
+
+            for (int i = 0; i < this.customerCount && remaining > 0; i++) { // Stop once every id is found
+                int index = this.toArrayIndex(i);
+
+                if (ids.contains(this.queue.getId(index))) {
+                    action.accept(this.queue.get(index), i);
+                    remaining--;
+                }
+            }
+        } finally {
+            Metrics.record(Operation.FOOD_QUEUE_POSITION, startTime);
+        }
     }
 
     /**
@@ -146,30 +297,47 @@ public class FoodQueue {
      * @throws FullQueueException If {@link FoodQueue} is full.
      */
     public void addCustomer(Customer customer) throws FullQueueException {
-        if (this.isQueueFull()) {
-            throw new FullQueueException();
-        }
+        long startTime = Metrics.start();
 
-        this.queue[this.endIndex++] = customer;
+        try {
+            if (this.isQueueFull()) {
+                throw new FullQueueException();
+            }
+
+            this.stampQueued(customer, System.nanoTime());
+            this.queue.set(this.toArrayIndex(this.customerCount), customer);
+            this.customerCount++;
+            this.publish(QueueEvent.Type.CUSTOMER_ADDED, this.customerCount - 1, customer, 0);
+        } finally {
+            Metrics.record(Operation.FOOD_QUEUE_ADD, startTime);
+        }
     }
 
     /**
-     * Remove {@link Customer} from the given position. All elements are shifted to remove holes in the {@link FoodQueue}.
+     * Remove {@link Customer} from the given position.
+     * The shorter side of the {@link FoodQueue} is shifted to remove holes in the {@link FoodQueue}.
      * @param customerIndex The index from which to remove the {@link Customer}.
      * @return A reference to the {@link Customer} that was removed.
      * @throws SelectionOutOfRangeException If given index is out of range.
      * @throws CustomerNotFoundException If {@link Customer} cannot be found at the given position.
      */
     public Customer removeCustomer(int customerIndex) throws SelectionOutOfRangeException, CustomerNotFoundException {
-        this.validateSelection(customerIndex);
-        Customer customer = this.queue[customerIndex];
+        long startTime = Metrics.start();
 
-        if (customer == null) {
-            throw new CustomerNotFoundException("No customer found in that position!");
-        }
+        try {
+            this.validateSelection(customerIndex);
 
-        this.shiftLeftQueue(customerIndex);
-        return customer;
+            if (customerIndex >= this.customerCount) { // Checked directly so removals are not also timed as lookups
+                throw new CustomerNotFoundException("No customer found in that position!");
+            }
+
+            Customer customer = this.queue.take(this.toArrayIndex(customerIndex));
+            this.closeGap(customerIndex);
+            this.publish(QueueEvent.Type.CUSTOMER_REMOVED, customerIndex, customer, 0);
+            return customer;
+        } finally {
+            Metrics.record(Operation.FOOD_QUEUE_REMOVE, startTime);
+        }
     }
 
     /**
@@ -179,24 +347,137 @@ public class FoodQueue {
      * @throws InsufficientStockException If the stock level is not enough to serve the {@link Customer}.
      */
     public Customer serveCustomer() throws CustomerNotFoundException, InsufficientStockException {
-        final int queuePosition = 0;
-        Customer customer = this.queue[queuePosition];
+        long startTime = Metrics.start();
+
+        try {
+            if (this.customerCount == 0) {
+                throw new CustomerNotFoundException("No customer found in that position!");
+            }
+
+            Customer customer = this.queue.get(this.frontIndex);
+
+            if (!this.itemStock.reserve(customer.getBurgersRequired())) { // Ensure there is enough stock to serve customer
+                throw new InsufficientStockException(String.valueOf(customer.getBurgersRequired()));
+            }
 
-        if (customer == null) {
-            throw new CustomerNotFoundException("No customer found in that position!");
+            int income = ITEM_PRICE * customer.getBurgersRequired();
+            this.queueIncome += income; // Update queue income
+
+            // Advance the front of the queue instead of shifting
+            customer = this.queue.take(this.frontIndex);
+            this.frontIndex = this.toArrayIndex(1);
+            this.customerCount--;
+            this.recordServed(customer, System.nanoTime());
+            this.publish(QueueEvent.Type.CUSTOMER_SERVED, 0, customer, 0);
+            this.publish(QueueEvent.Type.INCOME_ADDED, 0, null, income);
+
+            return customer;
+        } finally {
+            Metrics.record(Operation.FOOD_QUEUE_SERVE, startTime);
         }
+    }
+
+    /**
+     * Adds as many of the given {@link Customer}s to the end of the {@link FoodQueue} as will fit, in one pass.
+     * @param customers The {@link Customer}s to be added, in order.
+     * @return A {@link BatchReport} where each {@link Customer} is either
+     * {@link BatchReport.Outcome#ADDED} or {@link BatchReport.Outcome#QUEUE_FULL}.
+     */
+    public BatchReport addCustomers(Customer[] customers) {
+        long startTime = Metrics.start();
+
+        try {
+            BatchReport.Outcome[] outcomes = new BatchReport.Outcome[customers.length];
+            int addedCount = Math.min(customers.length, this.getQueueLength() - this.customerCount);
+            long queuedAt = System.nanoTime();
+
+            for (int i = 0; i < addedCount; i++) {
+                this.stampQueued(customers[i], queuedAt);
+                this.queue.set(this.toArrayIndex(this.customerCount + i), customers[i]);
+                outcomes[i] = BatchReport.Outcome.ADDED;
+            }
 
-        int newFoodStock = itemStock - customer.getBurgersRequired();
+            Arrays.fill(outcomes, addedCount, outcomes.length, BatchReport.Outcome.QUEUE_FULL);
+            this.customerCount += addedCount;
 
-        if (newFoodStock < MIN_STOCK) { // Ensure there is enough stock to serve customer
-            throw new InsufficientStockException(String.valueOf(customer.getBurgersRequired()));
+            for (int i = 0; i < addedCount; i++) {
+                this.publish(QueueEvent.Type.CUSTOMER_ADDED, this.customerCount - addedCount + i, customers[i], 0);
+            }
+
+            return new BatchReport(customers.clone(), outcomes);
+        } finally {
+            Metrics.record(Operation.FOOD_QUEUE_ADD_BATCH, startTime);
         }
+    }
+
+    /**
+     * Serve up to the given number of {@link Customer}s from the front of the {@link FoodQueue}.
+     * The stock for all of them is reserved at once and the income is updated once.
+     * Serving stops early at the first {@link Customer} whose order cannot be met with the remaining stock.
+     * @param count The maximum number of {@link Customer}s to serve.
+     * @return A {@link BatchReport} with the served {@link Customer}s as {@link BatchReport.Outcome#SERVED}.
+     * If serving stopped early, the {@link Customer} that could not be served is included last as
+     * {@link BatchReport.Outcome#INSUFFICIENT_STOCK} and is left in the {@link FoodQueue}.
+     */
+    public BatchReport serveUpTo(int count) {
+        long startTime = Metrics.start();
+
+        try {
+            int servableCount = Math.min(Math.max(count, 0), this.customerCount);
+            int servedCount;
+            int burgersRequired;
+
+            do { // Retry if another thread has taken stock since it was read
+                int availableStock = this.itemStock.get();
+                servedCount = 0;
+                burgersRequired = 0;
 
-        itemStock = newFoodStock;
-        this.queueIncome += ITEM_PRICE * customer.getBurgersRequired(); // Update queue income
-        this.shiftLeftQueue(queuePosition);
+                while (servedCount < servableCount) { // Longest run of customers the stock can cover
+                    int customerBurgers = this.queue.get(this.toArrayIndex(servedCount)).getBurgersRequired();
+
+                    if (burgersRequired + customerBurgers > availableStock) {
+                        break;
+                    }
+
+                    burgersRequired += customerBurgers;
+                    servedCount++;
+                }
+            } while (burgersRequired > 0 && !this.itemStock.reserve(burgersRequired));
+
+            this.queueIncome += ITEM_PRICE * burgersRequired; // Update queue income
+
+            int reportSize = servedCount < servableCount ? servedCount + 1 : servedCount;
+            Customer[] customers = new Customer[reportSize];
+            BatchReport.Outcome[] outcomes = new BatchReport.Outcome[reportSize];
+
+            long servedAt = System.nanoTime();
+
+            for (int i = 0; i < servedCount; i++) { // Advance the front of the queue instead of shifting
+                customers[i] = this.queue.take(this.frontIndex);
+                this.recordServed(customers[i], servedAt);
+                outcomes[i] = BatchReport.Outcome.SERVED;
+                this.frontIndex = this.toArrayIndex(1);
+            }
 
-        return customer;
+            this.customerCount -= servedCount;
+
+            for (int i = 0; i < servedCount; i++) {
+                this.publish(QueueEvent.Type.CUSTOMER_SERVED, 0, customers[i], 0);
+            }
+
+            if (servedCount > 0) { // One income event for the whole batch
+                this.publish(QueueEvent.Type.INCOME_ADDED, 0, null, ITEM_PRICE * burgersRequired);
+            }
+
+            if (servedCount < reportSize) {
+                customers[servedCount] = this.queue.get(this.frontIndex);
+                outcomes[servedCount] = BatchReport.Outcome.INSUFFICIENT_STOCK;
+            }
+
+            return new BatchReport(customers, outcomes);
+        } finally {
+            Metrics.record(Operation.FOOD_QUEUE_SERVE_BATCH, startTime);
+        }
     }
 
     /**
@@ -208,15 +489,24 @@ public class FoodQueue {
      * @return An array of {@link Customer}s who match the criteria.
      */
     public Customer[] searchCustomer(String searchTerm) {
-        Customer[] tempQueue = new Customer[this.getQueueLength()];
+        long startTime = Metrics.start();
+
+        try {
+            Customer[] tempQueue = new Customer[this.getQueueLength()];
+            String searchKey = Customer.toSearchKey(searchTerm);
 
-        for (int i = 0; i < tempQueue.length; i++) {
-            if (this.queue[i] != null && this.queue[i].getFullName().toUpperCase().contains(searchTerm.toUpperCase())) {
-                tempQueue[i] = this.queue[i];
+            for (int i = 0; i < this.customerCount; i++) {
+                Customer customer = this.queue.get(this.toArrayIndex(i));
+
+                if (customer.getSearchKey().contains(searchKey)) {
+                    tempQueue[i] = customer;
+                }
             }
-        }
 
-        return tempQueue;
+            return tempQueue;
+        } finally {
+            Metrics.record(Operation.FOOD_QUEUE_SEARCH, startTime);
+        }
     }
 
     /**
@@ -233,14 +523,12 @@ public class FoodQueue {
                 )
         );
 
-        for (Customer customer : this.queue) {
-            if (customer != null) {
-                state.append(customer);
-            } else {
-                state.append(String.format("null%n"));
-            }
+        for (int i = 0; i < this.customerCount; i++) { // Write customers in queue order
+            state.append(this.queue.get(this.toArrayIndex(i)));
         }
 
+        state.append(String.format("null%n".repeat(this.getQueueLength() - this.customerCount)));
+
         return state.toString();
     }
 }
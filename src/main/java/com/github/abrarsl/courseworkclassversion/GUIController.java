@@ -1,68 +1,304 @@
 package com.github.abrarsl.courseworkclassversion;
 
 import com.github.abrarsl.courseworkclassversion.exceptions.SelectionOutOfRangeException;
+
+import javafx.animation.AnimationTimer;
+import javafx.application.Platform;
+import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
-import javafx.event.EventHandler;
 import javafx.fxml.FXML;
 import javafx.geometry.Insets;
 import javafx.geometry.Pos;
-import javafx.scene.Node;
 import javafx.scene.control.Alert;
 import javafx.scene.control.Label;
+import javafx.scene.control.ListCell;
+import javafx.scene.control.ListView;
 import javafx.scene.control.TextField;
-import javafx.scene.input.MouseEvent;
 import javafx.scene.layout.HBox;
+import javafx.scene.layout.Priority;
 import javafx.scene.layout.VBox;
 import javafx.scene.text.TextAlignment;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
 public class GUIController {
+    private static final double CELL_HEIGHT = 40;
+    private ShopEngine engine;
     private FoodQueue[] queues;
-    private WaitingQueue waitingQueue;
+    private final List<QueueView> queueViews = new ArrayList<>();
+    private volatile QueueSlotList[] slotLists = new QueueSlotList[0]; // By queue number, the waiting queue last
+    private final QueueEventListener eventListener = this::queueEvents;
+    private final AtomicBoolean refreshScheduled = new AtomicBoolean();
+    private final AnimationTimer refreshTimer = new AnimationTimer() {
+        @Override
+        public void handle(long now) {
+            GUIController.this.refreshChangedViews();
+        }
+    };
 
     @FXML
     protected HBox queueContainer;
     @FXML
     protected TextField searchField;
     @FXML
-    protected VBox searchResultContainer;
+    protected ListView<CustomerSearchIndex.Hit> searchResultList;
+
+    /**
+     * A cell that shows a {@link Customer}, or a vacant slot.
+     * Cells are reused by their {@link ListView} as it scrolls, so only the visible rows ever have nodes.
+     * @param <T> The type of the items of the {@link ListView}.
+     */
+    private abstract class CustomerCell<T> extends ListCell<T> {
+        /**
+         * Show the details of the {@link Customer} in the cell when it is clicked.
+         */
+        private CustomerCell() {
+            this.getStyleClass().add("customer-label");
+            this.setTextAlignment(TextAlignment.CENTER);
+            this.setOnMouseClicked(mouseEvent -> {
+                if (!this.isEmpty() && this.getCustomer(this.getItem()) != null) {
+                    GUIController.this.showCustomerInfo(
+                            this.getCustomer(this.getItem()),
+                            this.getQueueNumber(this.getItem()),
+                            this.getPosition(this.getItem())
+                    );
+                }
+            });
+        }
+
+        /**
+         * @param item An item of the {@link ListView}.
+         * @return The {@link Customer} the item shows, or null for a vacant slot.
+         */
+        protected abstract Customer getCustomer(T item);
+
+        /**
+         * @param item An item of the {@link ListView}.
+         * @return The queue number of the item. -1 for the {@link WaitingQueue}.
+         */
+        protected abstract int getQueueNumber(T item);
+
+        /**
+         * @param item An item of the {@link ListView}.
+         * @return The position of the item in its queue.
+         */
+        protected abstract int getPosition(T item);
+
+        /**
+         * @param item The item to show.
+         * @param empty 'true' if the cell is past the end of the list and shows nothing.
+         */
+        @Override
+        protected void updateItem(T item, boolean empty) {
+            super.updateItem(item, empty);
+
+            ObservableList<String> styleClasses = this.getStyleClass();
+            styleClasses.remove("vacant-label");
+            this.setVisible(!empty);
+
+            if (empty) {
+                this.setText(null);
+                return;
+            }
+
+            Customer customer = this.getCustomer(item);
+            this.setText(this.getPosition(item) + ". " + (customer == null ? "X" : customer.getFullName()));
+
+            if (customer == null) {
+                styleClasses.add("vacant-label");
+            }
+        }
+    }
+
+    /**
+     * A cell that shows one slot of a queue, whose position is the index of the cell.
+     */
+    private final class SlotCell extends CustomerCell<Customer> {
+        private final int queueNumber;
+
+        /**
+         * @param queueNumber The queue number. -1 for the {@link WaitingQueue}.
+         */
+        private SlotCell(int queueNumber) {
+            this.queueNumber = queueNumber;
+        }
+
+        @Override
+        protected Customer getCustomer(Customer item) {
+            return item;
+        }
+
+        @Override
+        protected int getQueueNumber(Customer item) {
+            return this.queueNumber;
+        }
+
+        @Override
+        protected int getPosition(Customer item) {
+            return this.getIndex();
+        }
+    }
+
+    /**
+     * A cell that shows one search result.
+     */
+    private final class SearchResultCell extends CustomerCell<CustomerSearchIndex.Hit> {
+        @Override
+        protected Customer getCustomer(CustomerSearchIndex.Hit item) {
+            return item.customer();
+        }
+
+        @Override
+        protected int getQueueNumber(CustomerSearchIndex.Hit item) {
+            return item.queueNumber();
+        }
+
+        @Override
+        protected int getPosition(CustomerSearchIndex.Hit item) {
+            return item.position();
+        }
+    }
+
+    /**
+     * The widgets of one queue. The slots are shown in a virtualized {@link ListView} over a {@link QueueSlotList},
+     * so the number of nodes depends on the height of the window, not the length of the queue.
+     */
+    private final class QueueView {
+        private final int queueNumber;
+        private final VBox queueBox;
+        private final Label waitLabel;
+        private final QueueSlotList slots;
+
+        /**
+         * @param queueNumber The queue number. -1 for the {@link WaitingQueue}.
+         * @param title The title of the queue box.
+         */
+        private QueueView(int queueNumber, String title) {
+            this.queueNumber = queueNumber;
+            this.queueBox = GUIController.this.createQueueBox(title);
+            this.waitLabel = GUIController.this.createWaitLabel(this.estimateWait());
+            this.slots = new QueueSlotList(
+                    GUIController.this.engine,
+                    queueNumber < 0 ? QueueEvent.WAITING_QUEUE : queueNumber
+            );
+
+            ListView<Customer> slotView = new ListView<>(this.slots);
+            slotView.setCellFactory(listView -> new SlotCell(queueNumber));
+            slotView.setFixedCellSize(CELL_HEIGHT); // Cells are never measured, so layout does not grow with the queue
+            slotView.getStyleClass().add("queue-list");
+            VBox.setVgrow(slotView, Priority.ALWAYS);
+
+            this.queueBox.getChildren().addAll(this.waitLabel, slotView);
+        }
+
+        /**
+         * @return The expected wait in nanoseconds for a customer joining the queue now, as the engine estimates it.
+         */
+        private long estimateWait() {
+            try {
+                return GUIController.this.engine.estimateWait(this.queueNumber);
+            } catch (SelectionOutOfRangeException exception) { // Queue views are only made for existing queues
+                throw new IllegalStateException(exception);
+            }
+        }
+
+        /**
+         * Show the changes to the queue and the new estimated wait. Must be called on the FX application thread.
+         */
+        private void refresh() {
+            this.slots.refresh();
+            this.waitLabel.setText(GUIController.this.formatWait(this.estimateWait()));
+        }
+    }
 
     /**
      * This method is automatically called by JavaFX when the FXML file is loaded.
      * All initialization work should be handled here.
-     * This method is also used as a callback for reinitializing the GUI after a change in the data structures.
+     * This method is also used as a callback for reinitializing the GUI after a change in the data structures,
+     * such as loading a new state, which is reported as {@link QueueEvent.Type#QUEUES_REPLACED}.
+     * Changes to the customers in the queues are drawn without reinitializing.
      */
     @FXML
     protected void initialize() {
+        this.close();
+
         // Copy reference to data
-        this.queues = TUIController.getQueues();
-        this.waitingQueue = TUIController.getWaitingQueue();
+        this.engine = TUIController.getEngine();
+        this.queues = this.engine.getQueues();
 
         this.queueContainer.getChildren().clear();
+        this.searchResultList.setCellFactory(listView -> new SearchResultCell());
+        this.searchResultList.setFixedCellSize(CELL_HEIGHT);
 
         this.constructQueues();
         this.constructWaitingQueues();
+
+        QueueSlotList[] slotLists = new QueueSlotList[this.queueViews.size()];
+
+        for (int i = 0; i < slotLists.length; i++) {
+            slotLists[i] = this.queueViews.get(i).slots;
+        }
+
+        this.slotLists = slotLists;
+        this.engine.addEventListener(this.eventListener);
+
+        for (QueueSlotList slots : slotLists) { // Catch up on changes made before the listener was added
+            slots.markChanged(0, Integer.MAX_VALUE);
+        }
+
+        this.scheduleRefresh();
     }
 
     /**
-     * This method will construct queue widgets and add them to the {@link GUIController#queueContainer}.
+     * Stop listening for changes to the queues. Called when the window is closed.
      */
-    protected void constructQueues() {
-        ObservableList<Node> queueContainerChildren = this.queueContainer.getChildren();
+    public void close() {
+        if (this.engine != null) {
+            this.engine.removeEventListener(this.eventListener);
+        }
 
-        for (int i = 0; i < this.queues.length; i++) { // Get each FoodQueue
-            VBox queueBox = this.createQueueBox("Queue " + i);
-            ObservableList<Node> queueBoxChildren = queueBox.getChildren();
+        this.slotLists = new QueueSlotList[0];
+        this.queueViews.clear();
+    }
 
-            try {
-                for (int j = 0; j < this.queues[i].getQueueLength(); j++) { // Create a Label for each Customer
-                    Customer customer = this.queues[i].getCustomer(j);
-                    Label customerLabel = this.createCustomerLabel(customer, i, j, this::handleCustomerAction);
-                    queueBoxChildren.add(customerLabel);
-                }
-            } catch (SelectionOutOfRangeException ignored) {
+    /**
+     * Mark the slots changed by a batch of events, and draw them all on the next pulse.
+     * Called on the delivery thread of the {@link QueueEventBus}.
+     * @param events The events, in order.
+     */
+    private void queueEvents(List<QueueEvent> events) {
+        QueueSlotList[] slotLists = this.slotLists;
+        boolean changed = false;
+
+        for (QueueEvent event : events) {
+            if (event.type() == QueueEvent.Type.QUEUES_REPLACED) { // Every view is built again from the new queues
+                Platform.runLater(this::initialize);
+                return;
             }
 
-            queueContainerChildren.add(queueBox);
+            int index = event.queueNumber() == QueueEvent.WAITING_QUEUE ? slotLists.length - 1 : event.queueNumber();
+
+            if (index < 0 || index >= slotLists.length || event.getLastChangedPosition() < 0) {
+                continue;
+            }
+
+            slotLists[index].markChanged(event.getFirstChangedPosition(), event.getLastChangedPosition());
+            changed = true;
+        }
+
+        if (changed) {
+            this.scheduleRefresh();
+        }
+    }
+
+    /**
+     * This method will construct queue widgets and add them to the {@link GUIController#queueContainer}.
+     */
+    protected void constructQueues() {
+        for (int i = 0; i < this.queues.length; i++) { // Get each FoodQueue
+            this.addQueueView(new QueueView(i, "Queue " + i));
         }
     }
 
@@ -71,16 +307,38 @@ public class GUIController {
      * and add them to {@link GUIController#queueContainer}.
      */
     protected void constructWaitingQueues() {
-        VBox waitingBox = this.createQueueBox("Waiting Queue");
-        ObservableList<Node> waitingBoxChildren = waitingBox.getChildren();
+        this.addQueueView(new QueueView(-1, "Waiting Queue"));
+    }
 
-        for (int i = 0; i < this.waitingQueue.getQueueLength(); i++) { // Construct a Label for each Customer
-            Customer customer = this.waitingQueue.getQueue()[i];
-            Label customerLabel = this.createCustomerLabel(customer, -1, i, this::handleCustomerAction);
-            waitingBoxChildren.add(customerLabel);
+    /**
+     * @param queueView The view to add to {@link GUIController#queueContainer}.
+     */
+    private void addQueueView(QueueView queueView) {
+        this.queueViews.add(queueView);
+        this.queueContainer.getChildren().add(queueView.queueBox);
+    }
+
+    /**
+     * Make sure {@link GUIController#refreshTimer} runs on the next pulse. Can be called from any thread.
+     * However many changes arrive before that pulse, they are drawn once.
+     */
+    private void scheduleRefresh() {
+        if (this.refreshScheduled.compareAndSet(false, true)) {
+            Platform.runLater(this.refreshTimer::start);
         }
+    }
 
-        this.queueContainer.getChildren().add(waitingBox);
+    /**
+     * Draw the changes to every queue, then stop {@link GUIController#refreshTimer} until the next change.
+     */
+    private void refreshChangedViews() {
+        this.refreshScheduled.set(false); // Changes from now on schedule another pulse
+
+        for (QueueView queueView : this.queueViews) {
+            queueView.refresh();
+        }
+
+        this.refreshTimer.stop();
     }
 
     /**
@@ -100,55 +358,23 @@ public class GUIController {
     }
 
     /**
-     * Creates a clickable {@link Label} with the customer details added to it.
-     * @param customer The {@link Customer} to construct the {@link Label} for.
-     * @param queueNo The queue number of the {@link Customer}.
-     * @param customerNo The index of the {@link Customer}.
-     * @param eventHandler An event handler that will fire when the label is clicked.
-     * @return A {@link Label} object with customer styling.
+     * Creates a {@link Label} showing the wait a new customer can expect in a queue.
+     * @param estimatedWait The expected wait in nanoseconds, or a negative number if it is not known.
+     * @return A {@link Label} object with wait styling.
      */
-    protected Label createCustomerLabel(Customer customer, int queueNo, int customerNo, EventHandler<MouseEvent> eventHandler) {
-        Label customerLabel = new Label(String.format(
-                "%d. %s",
-                customerNo,
-                (customer == null ? "X" : customer.getFullName())
-        ));
-
-        // The object id is used to index the queues
-        customerLabel.setId(String.format("%d%s%d", queueNo, Customer.INFO_DELIMITER, customerNo));
-        // Set custom css classes
-        customerLabel.getStyleClass().addAll("customer-label", customer == null ? "vacant-label" : "");
-        customerLabel.setDisable(customer == null);
-        customerLabel.setTextAlignment(TextAlignment.CENTER);
-        customerLabel.setOnMouseClicked(eventHandler);
+    protected Label createWaitLabel(long estimatedWait) {
+        Label waitLabel = new Label(this.formatWait(estimatedWait));
+        waitLabel.getStyleClass().add("wait-label");
 
-        return customerLabel;
+        return waitLabel;
     }
 
     /**
-     * Handles click actions on customer {@link Label} objects.
-     * @param mouseEvent The event object.
+     * @param estimatedWait The expected wait in nanoseconds, or a negative number if it is not known.
+     * @return The text of a wait {@link Label}.
      */
-    protected void handleCustomerAction(MouseEvent mouseEvent) {
-        Label customerLabel = (Label) mouseEvent.getSource();
-        String[] idPayload = customerLabel.getId().split(Customer.INFO_DELIMITER);
-        int[] queueIndex = new int[idPayload.length];
-
-        for (int i = 0; i < queueIndex.length; i++) {
-            queueIndex[i] = Integer.parseInt(idPayload[i]);
-        }
-
-        // Get customer from appropriate queue
-        if (queueIndex[0] < 0) {
-            Customer customer = this.waitingQueue.getQueue()[queueIndex[1]];
-            this.showCustomerInfo(customer, queueIndex[0], queueIndex[1]);
-        } else {
-            try {
-                Customer customer = this.queues[queueIndex[0]].getCustomer(queueIndex[1]);
-                this.showCustomerInfo(customer, queueIndex[0], queueIndex[1]);
-            } catch (SelectionOutOfRangeException ignored) {
-            }
-        }
+    private String formatWait(long estimatedWait) {
+        return "Est. wait: " + QueueStatistics.formatDuration(estimatedWait);
     }
 
     /**
@@ -159,12 +385,17 @@ public class GUIController {
      */
     protected void showCustomerInfo(Customer customer, int queueNo, int positionNo) {
         String customerInfo = String.format(
-                "First Name: %s%nLast Name: %s%nBurgers Needed: %s%nQueue: %s%nPosition: %s",
+                "First Name: %s%nLast Name: %s%nBurgers Needed: %s%nQueue: %s%nPosition: %s%nWaiting For: %s",
                 customer.getFirstName(),
                 customer.getLastName(),
                 customer.getBurgersRequired(),
                 queueNo,
-                positionNo
+                positionNo,
+                QueueStatistics.formatDuration(
+                        customer.getArrivedAt() == Customer.NOT_STAMPED
+                                ? -1
+                                : System.nanoTime() - customer.getArrivedAt()
+                )
         );
         Alert infoAlert = new Alert(Alert.AlertType.INFORMATION, customerInfo);
         infoAlert.show();
@@ -172,35 +403,15 @@ public class GUIController {
 
     /**
      * Handle the search event.
-     * This method will search all {@link FoodQueue} objects as well as the {@link WaitingQueue} object for matches.
-     * The matches are then shown in the GUI via {@link GUIController#searchResultContainer}.
+     * This method will search all {@link FoodQueue} objects as well as the {@link WaitingQueue} object for matches
+     * through the {@link CustomerSearchIndex} of the {@link ShopEngine}.
+     * The matches are then shown in the GUI via {@link GUIController#searchResultList}.
      */
     @FXML
     protected void handleSearchAction() {
-        ObservableList<Node> resultContainerChildren = this.searchResultContainer.getChildren();
-        resultContainerChildren.clear();
-
         String searchTerm = this.searchField.getText();
         this.searchField.setText("");
 
-        for (int i = 0; i < this.queues.length; i++) { // Search FoodQueue objects
-            Customer[] foundCustomers = this.queues[i].searchCustomer(searchTerm);
-
-            for (int j = 0; j < foundCustomers.length; j++) {
-                if (foundCustomers[j] != null) {
-                    Label customerLabel = this.createCustomerLabel(foundCustomers[j], i, j, this::handleCustomerAction);
-                    resultContainerChildren.add(customerLabel);
-                }
-            }
-        }
-
-        Customer[] foundWaitingCustomers = this.waitingQueue.searchCustomer(searchTerm);
-
-        for (int i = 0; i < foundWaitingCustomers.length; i++) { // Search WaitingQueue
-            if (foundWaitingCustomers[i] != null) {
-                Label customerLabel = this.createCustomerLabel(foundWaitingCustomers[i], -1, i, this::handleCustomerAction);
-                resultContainerChildren.add(customerLabel);
-            }
-        }
+        this.searchResultList.setItems(FXCollections.observableList(TUIController.getEngine().search(searchTerm)));
     }
 }
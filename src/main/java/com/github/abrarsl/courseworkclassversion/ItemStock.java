@@ -0,0 +1,148 @@
+package com.github.abrarsl.courseworkclassversion;
+
+import com.github.abrarsl.courseworkclassversion.exceptions.StockOutOfRangeException;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntConsumer;
+
+/**
+ * A stock of items that is shared by a group of {@link FoodQueue}s.
+ * The stock is updated with compare-and-set, so it can be reserved from different threads without blocking.
+ * {@link FoodQueue}s use a single shared instance unless they are given their own, which lets independent shops,
+ * such as parallel simulations, keep separate stock.
+ */
+public class ItemStock {
+    public static final int MIN_STOCK = 0;
+    private final int maxStock;
+    private final int warnThreshold;
+    private final AtomicInteger itemStock = new AtomicInteger(MIN_STOCK);
+    private volatile IntConsumer lowStockListener;
+
+    /**
+     * @param maxStock The largest amount of stock that can be held.
+     * @param warnThreshold The stock level at or below which the stock is considered low.
+     */
+    public ItemStock(int maxStock, int warnThreshold) {
+        this.maxStock = maxStock;
+        this.warnThreshold = warnThreshold;
+    }
+
+    /**
+     * @return The largest amount of stock that can be held.
+     */
+    public int getMaxStock() {
+        return this.maxStock;
+    }
+
+    /**
+     * @return The stock level at or below which the stock is considered low.
+     */
+    public int getWarnThreshold() {
+        return this.warnThreshold;
+    }
+
+    /**
+     * @return The current stock level.
+     */
+    public int get() {
+        return this.itemStock.get();
+    }
+
+    /**
+     * @param amount The stock value to be checked.
+     * @throws StockOutOfRangeException Will be thrown if given stock is not between
+     * {@link ItemStock#MIN_STOCK} and {@link ItemStock#getMaxStock()}
+     */
+    private void validate(int amount) throws StockOutOfRangeException {
+        if (amount > this.maxStock || amount < MIN_STOCK) {
+            throw new StockOutOfRangeException(
+                    String.format(
+                            "Stock range is %d to %d.",
+                            MIN_STOCK,
+                            this.maxStock
+                    )
+            );
+        }
+    }
+
+    /**
+     * @param newItemStock The stock value to be set.
+     * @throws StockOutOfRangeException Will be thrown if given stock is not between
+     * {@link ItemStock#MIN_STOCK} and {@link ItemStock#getMaxStock()}
+     */
+    public void set(int newItemStock) throws StockOutOfRangeException {
+        this.validate(newItemStock);
+        this.onChanged(this.itemStock.getAndSet(newItemStock), newItemStock);
+    }
+
+    /**
+     * @param amount The number of items to add.
+     * @throws StockOutOfRangeException Will be thrown if the resulting stock is not between
+     * {@link ItemStock#MIN_STOCK} and {@link ItemStock#getMaxStock()}
+     */
+    public void add(int amount) throws StockOutOfRangeException {
+        int currentItemStock;
+        int newItemStock;
+
+        do { // Retry until no other thread has changed the stock in between
+            currentItemStock = this.itemStock.get();
+            newItemStock = currentItemStock + amount;
+            this.validate(newItemStock);
+        } while (!this.itemStock.compareAndSet(currentItemStock, newItemStock));
+
+        this.onChanged(currentItemStock, newItemStock);
+    }
+
+    /**
+     * Removes the given amount from the stock if enough stock is available.
+     * This never blocks, so queues can be served from different threads at the same time.
+     * @param amount The number of items to reserve.
+     * @return 'true' if the stock was reserved, 'false' if there was not enough stock.
+     */
+    public boolean reserve(int amount) {
+        int currentItemStock;
+        int newItemStock;
+
+        do { // Retry until no other thread has changed the stock in between
+            currentItemStock = this.itemStock.get();
+            newItemStock = currentItemStock - amount;
+
+            if (newItemStock < MIN_STOCK) {
+                return false;
+            }
+        } while (!this.itemStock.compareAndSet(currentItemStock, newItemStock));
+
+        this.onChanged(currentItemStock, newItemStock);
+        return true;
+    }
+
+    /**
+     * Sets the listener that is called with the remaining stock when the stock drops to
+     * {@link ItemStock#getWarnThreshold()} or below.
+     * The listener is called once per crossing, not on every change while the stock stays low.
+     * @param listener The listener to be called, or null to remove the current listener.
+     */
+    public void setLowStockListener(IntConsumer listener) {
+        this.lowStockListener = listener;
+    }
+
+    /**
+     * Fires {@link ItemStock#lowStockListener} if the change crossed {@link ItemStock#getWarnThreshold()}.
+     * @param oldItemStock The stock before the change.
+     * @param newItemStock The stock after the change.
+     */
+    private void onChanged(int oldItemStock, int newItemStock) {
+        IntConsumer listener = this.lowStockListener;
+
+        if (listener != null && oldItemStock > this.warnThreshold && newItemStock <= this.warnThreshold) {
+            listener.accept(newItemStock);
+        }
+    }
+
+    /**
+     * @return 'true' if the stock is lower than or equal to {@link ItemStock#getWarnThreshold()}.
+     */
+    public boolean isLow() {
+        return this.get() <= this.warnThreshold;
+    }
+}
@@ -0,0 +1,529 @@
+package com.github.abrarsl.courseworkclassversion;
+
+import com.github.abrarsl.courseworkclassversion.exceptions.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.CRC32;
+
+/**
+ * An append-only write-ahead journal of changes made to the {@link FoodQueue}s, the {@link WaitingQueue} and the stock.
+ * <p>
+ * The journal starts with a header that names the {@link BinarySnapshot} it applies to by that snapshot's checksum.
+ * Each change is then stored as a record framed by its length and a CRC32, so that a record that was only partly
+ * written before a crash is detected and ignored during replay.
+ * <p>
+ * Records are written by a background thread. Every record waiting when the thread wakes up is written and forced to
+ * disk together (group commit), and each caller returns once its record is durable.
+ * Callers that hold a lock while logging can instead stop waiting for each record, and call
+ * {@link Journal#awaitDurable()} once the lock is released, so that changes made by many threads share a commit.
+ * <p>
+ * If a write fails, every later record is dropped, as the journal could no longer be replayed past the gap, and
+ * waiting for it throws. {@link Journal#reset(long)} after writing a new snapshot starts a working journal again.
+ */
+public class Journal implements AutoCloseable {
+    private static final int MAGIC_NUMBER = 0x46514a4c; // "FQJL"
+    private static final int FORMAT_VERSION = 1;
+    private static final int HEADER_SIZE = 2 * Integer.BYTES + Long.BYTES;
+    private static final byte FOOD_ADD = 1;
+    private static final byte FOOD_REMOVE = 2;
+    private static final byte FOOD_SERVE = 3;
+    private static final byte WAITING_ENQUEUE = 4;
+    private static final byte WAITING_DEQUEUE = 5;
+    private static final byte STOCK_ADD = 6;
+
+    private final Path path;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition recordsPending = this.lock.newCondition();
+    private final Condition recordsFlushed = this.lock.newCondition();
+    private final ReentrantLock fileLock = new ReentrantLock();
+    private final Thread writerThread;
+    private FileChannel channel;
+    private List<ByteBuffer> pendingRecords = new ArrayList<>();
+    private long appendedCount = 0;
+    private long flushedCount = 0;
+    private int recordCount = 0;
+    private IOException writeFailure;
+    private long resetCount = 0; // Changed under both locks, so a batch taken before a reset is never written after it
+    private boolean closed = false;
+    private volatile boolean awaitEachRecord = true;
+
+    /**
+     * Creates a new, empty journal, replacing any journal at the given path.
+     * @param path The journal file.
+     * @param snapshotChecksum The checksum of the {@link BinarySnapshot} the journal applies to. 0 if there is none.
+     * @throws IOException If the journal could not be created.
+     */
+    public Journal(Path path, long snapshotChecksum) throws IOException {
+        this.path = path;
+        this.channel = createJournalFile(path, snapshotChecksum);
+        this.writerThread = new Thread(this::runWriter, "journal-writer");
+        this.writerThread.setDaemon(true);
+        this.writerThread.start();
+    }
+
+    /**
+     * @return The number of records written since the journal was created or last reset.
+     */
+    public int getRecordCount() {
+        this.lock.lock();
+
+        try {
+            return this.recordCount;
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    /**
+     * @return 'true' if a write failed since the journal was created or last reset, so records are being dropped.
+     */
+    public boolean hasFailed() {
+        this.lock.lock();
+
+        try {
+            return this.writeFailure != null;
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    /**
+     * @param awaitEachRecord 'true' to return from each log method once its record is durable, which is the default.
+     * 'false' to return as soon as the record is queued, leaving the caller to call {@link Journal#awaitDurable()}.
+     */
+    public void setAwaitEachRecord(boolean awaitEachRecord) {
+        this.awaitEachRecord = awaitEachRecord;
+    }
+
+    /**
+     * Block until every record logged so far, by any thread, is durable.
+     * @throws IOException If the writer thread failed to write the records.
+     */
+    public void awaitDurable() throws IOException {
+        this.awaitFlushed(this.appendedCountNow());
+    }
+
+    /**
+     * Record that a {@link Customer} was added to a {@link FoodQueue}.
+     * @param queueNumber The number of the {@link FoodQueue}.
+     * @param customer The {@link Customer} that was added.
+     * @throws IOException If the record could not be written.
+     */
+    public void logAddCustomer(int queueNumber, Customer customer) throws IOException {
+        this.append(FOOD_ADD, queueNumber, customer);
+    }
+
+    /**
+     * Record that a {@link Customer} was removed from a {@link FoodQueue}.
+     * @param queueNumber The number of the {@link FoodQueue}.
+     * @param position The position the {@link Customer} was removed from.
+     * @throws IOException If the record could not be written.
+     */
+    public void logRemoveCustomer(int queueNumber, int position) throws IOException {
+        this.append(FOOD_REMOVE, queueNumber, position);
+    }
+
+    /**
+     * Record that the front {@link Customer} of a {@link FoodQueue} was served.
+     * @param queueNumber The number of the {@link FoodQueue}.
+     * @throws IOException If the record could not be written.
+     */
+    public void logServeCustomer(int queueNumber) throws IOException {
+        this.append(FOOD_SERVE, queueNumber);
+    }
+
+    /**
+     * Record that a {@link Customer} was added to the {@link WaitingQueue}.
+     * @param customer The {@link Customer} that was added.
+     * @throws IOException If the record could not be written.
+     */
+    public void logEnqueue(Customer customer) throws IOException {
+        this.append(WAITING_ENQUEUE, customer);
+    }
+
+    /**
+     * Record that the front {@link Customer} of the {@link WaitingQueue} was removed.
+     * @throws IOException If the record could not be written.
+     */
+    public void logDequeue() throws IOException {
+        this.append(WAITING_DEQUEUE);
+    }
+
+    /**
+     * Record that items were added to the stock.
+     * @param amount The number of items added.
+     * @throws IOException If the record could not be written.
+     */
+    public void logAddItemStock(int amount) throws IOException {
+        this.append(STOCK_ADD, amount);
+    }
+
+    /**
+     * Start the journal again from empty, for use after a new {@link BinarySnapshot} was written.
+     * The new journal replaces the old one in a single step, so a crash never leaves both applied.
+     * Every record logged before this call must be part of the new snapshot, so records not yet written are dropped
+     * and count as durable, and a failed write is forgotten.
+     * @param snapshotChecksum The checksum of the {@link BinarySnapshot} the journal now applies to.
+     * @throws IOException If the new journal could not be created. The journal is left as it was.
+     */
+    public void reset(long snapshotChecksum) throws IOException {
+        this.fileLock.lock();
+
+        try {
+            FileChannel newChannel = createJournalFile(this.path, snapshotChecksum);
+
+            try {
+                this.channel.close();
+            } catch (IOException ignored) { // The old journal has already been replaced
+            }
+
+            this.channel = newChannel;
+            this.lock.lock();
+
+            try {
+                this.pendingRecords = new ArrayList<>();
+                this.flushedCount = this.appendedCount;
+                this.recordCount = 0;
+                this.writeFailure = null;
+                this.resetCount++;
+                this.recordsFlushed.signalAll();
+            } finally {
+                this.lock.unlock();
+            }
+        } finally {
+            this.fileLock.unlock();
+        }
+    }
+
+    /**
+     * Write any pending records and stop the writer thread.
+     * @throws IOException If the pending records could not be written.
+     */
+    @Override
+    public void close() throws IOException {
+        this.lock.lock();
+
+        try {
+            this.closed = true;
+            this.recordsPending.signalAll();
+        } finally {
+            this.lock.unlock();
+        }
+
+        try {
+            this.writerThread.join();
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+        }
+
+        this.channel.close();
+
+        if (this.writeFailure != null) {
+            throw this.writeFailure;
+        }
+    }
+
+    /**
+     * Apply the records of a journal to the given queues.
+     * Nothing is applied if the journal does not exist or belongs to a different {@link BinarySnapshot}.
+     * Replay stops at the first record that is incomplete or fails its checksum.
+     * @param path The journal file.
+     * @param snapshotChecksum The checksum of the {@link BinarySnapshot} the queues were loaded from. 0 if there is none.
+     * @param queues The {@link FoodQueue}s to apply the records to.
+     * @param waitingQueue The {@link WaitingQueue} to apply the records to.
+     * @param itemStock The {@link ItemStock} to apply stock records to.
+     * @return The number of records applied.
+     * @throws IOException If the journal could not be read.
+     * @throws InvalidFileDataException If a record could not be applied to the queues.
+     */
+    public static int replay(Path path, long snapshotChecksum, FoodQueue[] queues, WaitingQueue waitingQueue,
+                             ItemStock itemStock) throws IOException, InvalidFileDataException {
+        if (!Files.exists(path)) {
+            return 0;
+        }
+
+        try (DataInputStream input = new DataInputStream(Files.newInputStream(path))) {
+            try {
+                if (input.readInt() != MAGIC_NUMBER
+                        || input.readInt() != FORMAT_VERSION
+                        || input.readLong() != snapshotChecksum) {
+                    return 0; // Belongs to another snapshot, the changes are already part of the current one
+                }
+            } catch (EOFException exception) {
+                return 0;
+            }
+
+            int recordsApplied = 0;
+            byte[] record;
+
+            while ((record = readRecord(input)) != null) {
+                applyRecord(
+                        new DataInputStream(new ByteArrayInputStream(record)),
+                        queues,
+                        waitingQueue,
+                        itemStock,
+                        recordsApplied
+                );
+                recordsApplied++;
+            }
+
+            return recordsApplied;
+        }
+    }
+
+    /**
+     * @param input The stream to read from.
+     * @return The payload of the next record. null if there is no complete, valid record left.
+     * @throws IOException If the journal could not be read.
+     */
+    private static byte[] readRecord(DataInputStream input) throws IOException {
+        try {
+            int length = input.readInt();
+            long checksum = input.readLong();
+
+            if (length <= 0) {
+                return null;
+            }
+
+            byte[] record = input.readNBytes(length);
+            CRC32 crc = new CRC32();
+            crc.update(record);
+
+            return record.length == length && crc.getValue() == checksum ? record : null;
+        } catch (EOFException exception) {
+            return null;
+        }
+    }
+
+    /**
+     * @param record The record payload.
+     * @param queues The {@link FoodQueue}s to apply the record to.
+     * @param waitingQueue The {@link WaitingQueue} to apply the record to.
+     * @param itemStock The {@link ItemStock} to apply the record to.
+     * @param recordNumber The number of the record, used in error messages.
+     * @throws IOException If the record could not be read.
+     * @throws InvalidFileDataException If the record could not be applied.
+     */
+    private static void applyRecord(DataInputStream record, FoodQueue[] queues, WaitingQueue waitingQueue,
+                                    ItemStock itemStock, int recordNumber) throws IOException, InvalidFileDataException {
+        try {
+            switch (record.readByte()) {
+                case FOOD_ADD -> queues[record.readInt()].addCustomer(readCustomer(record));
+                case FOOD_REMOVE -> queues[record.readInt()].removeCustomer(record.readInt());
+                case FOOD_SERVE -> queues[record.readInt()].serveCustomer();
+                case WAITING_ENQUEUE -> waitingQueue.enqueue(readCustomer(record));
+                case WAITING_DEQUEUE -> waitingQueue.dequeue();
+                case STOCK_ADD -> itemStock.add(record.readInt());
+                default -> throw new InvalidFileDataException(
+                        String.format("Journal record %d has an unknown type!", recordNumber)
+                );
+            }
+        } catch (ArrayIndexOutOfBoundsException | FullQueueException | SelectionOutOfRangeException
+                 | CustomerNotFoundException | InsufficientStockException | StockOutOfRangeException exception) {
+            throw new InvalidFileDataException(
+                    String.format("Journal record %d could not be applied!", recordNumber),
+                    exception
+            );
+        }
+    }
+
+    /**
+     * @param input The stream to read from.
+     * @return The {@link Customer} stored at the current position.
+     * @throws IOException If the record could not be read.
+     */
+    private static Customer readCustomer(DataInputStream input) throws IOException {
+        String firstName = input.readUTF();
+        String lastName = input.readUTF();
+        return new Customer(firstName, lastName, input.readInt());
+    }
+
+    /**
+     * Encode a record and wait until it is durable, unless {@link Journal#setAwaitEachRecord(boolean)} turned that off.
+     * @param type The record type.
+     * @param values The record fields. Each is an {@link Integer} or a {@link Customer}.
+     * @throws IOException If the record could not be written.
+     */
+    private void append(byte type, Object... values) throws IOException {
+        ByteArrayOutputStream payloadBytes = new ByteArrayOutputStream();
+        DataOutputStream payload = new DataOutputStream(payloadBytes);
+        payload.writeByte(type);
+
+        for (Object value : values) {
+            if (value instanceof Customer customer) {
+                payload.writeUTF(customer.getFirstName());
+                payload.writeUTF(customer.getLastName());
+                payload.writeInt(customer.getBurgersRequired());
+            } else {
+                payload.writeInt((Integer) value);
+            }
+        }
+
+        byte[] record = payloadBytes.toByteArray();
+        CRC32 crc = new CRC32();
+        crc.update(record);
+
+        ByteBuffer frame = ByteBuffer.allocate(Integer.BYTES + Long.BYTES + record.length);
+        frame.putInt(record.length).putLong(crc.getValue()).put(record).flip();
+
+        long recordNumber;
+        this.lock.lock();
+
+        try {
+            if (this.closed) {
+                throw new IOException("Journal is closed!");
+            }
+
+            this.pendingRecords.add(frame);
+            recordNumber = ++this.appendedCount;
+            this.recordsPending.signal();
+        } finally {
+            this.lock.unlock();
+        }
+
+        if (this.awaitEachRecord) {
+            this.awaitFlushed(recordNumber);
+        }
+    }
+
+    /**
+     * @return The number of records appended so far.
+     */
+    private long appendedCountNow() {
+        this.lock.lock();
+
+        try {
+            return this.appendedCount;
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    /**
+     * Block until the given number of records is durable.
+     * @param recordNumber The number of records that must be durable.
+     * @throws IOException If the writer thread failed to write the records.
+     */
+    private void awaitFlushed(long recordNumber) throws IOException {
+        this.lock.lock();
+
+        try {
+            while (this.flushedCount < recordNumber && this.writeFailure == null) {
+                this.recordsFlushed.awaitUninterruptibly();
+            }
+
+            if (this.writeFailure != null) {
+                throw this.writeFailure;
+            }
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    /**
+     * The loop run by the writer thread. Each pass writes every pending record and forces them to disk once.
+     */
+    private void runWriter() {
+        while (true) {
+            List<ByteBuffer> batch;
+            long batchEnd;
+            long batchResetCount;
+            this.lock.lock();
+
+            try {
+                while (this.pendingRecords.isEmpty() && !this.closed) {
+                    this.recordsPending.awaitUninterruptibly();
+                }
+
+                if (this.pendingRecords.isEmpty()) { // Closed and nothing left to write
+                    return;
+                }
+
+                batch = this.pendingRecords;
+                batchEnd = this.appendedCount;
+                batchResetCount = this.resetCount;
+                this.pendingRecords = new ArrayList<>();
+
+                if (this.writeFailure != null) { // Dropped until the journal is reset
+                    continue;
+                }
+            } finally {
+                this.lock.unlock();
+            }
+
+            IOException failure = null;
+            this.fileLock.lock();
+
+            try {
+                if (this.resetCount == batchResetCount) { // Otherwise the batch is part of the new snapshot
+                    this.channel.write(batch.toArray(new ByteBuffer[0]));
+                    this.channel.force(false);
+                }
+            } catch (IOException exception) {
+                failure = exception;
+            } finally {
+                this.fileLock.unlock();
+            }
+
+            this.lock.lock();
+
+            try {
+                if (this.resetCount != batchResetCount) {
+                    continue; // The reset already counted the batch as durable
+                }
+
+                if (failure != null) {
+                    this.writeFailure = failure;
+                } else {
+                    this.flushedCount = batchEnd;
+                    this.recordCount += batch.size();
+                }
+
+                this.recordsFlushed.signalAll();
+            } finally {
+                this.lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Write an empty journal next to the given path and move it into place.
+     * @param path The journal file.
+     * @param snapshotChecksum The checksum of the {@link BinarySnapshot} the journal applies to.
+     * @return A channel that appends to the new journal.
+     * @throws IOException If the journal could not be created.
+     */
+    private static FileChannel createJournalFile(Path path, long snapshotChecksum) throws IOException {
+        Path tempPath = path.resolveSibling(path.getFileName() + ".tmp");
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        header.putInt(MAGIC_NUMBER).putInt(FORMAT_VERSION).putLong(snapshotChecksum).flip();
+
+        try (FileChannel tempChannel = FileChannel.open(
+                tempPath,
+                StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.WRITE
+        )) {
+            tempChannel.write(header);
+            tempChannel.force(true);
+        }
+
+        Files.move(tempPath, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return FileChannel.open(path, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+    }
+}
@@ -0,0 +1,138 @@
+package com.github.abrarsl.courseworkclassversion;
+
+import java.util.Arrays;
+
+/**
+ * A hash map from long keys to int values, kept in two primitive arrays with open addressing, so an entry costs a
+ * few bytes and no objects. Used to find index entries by {@link Customer} id.
+ * <p>
+ * Removal shifts the entries that follow back into the freed slot instead of leaving a marker, so lookups never
+ * slow down as entries come and go.
+ * This class is not thread-safe.
+ */
+final class LongIntMap {
+    public static final int NO_VALUE = -1;
+    private static final int INITIAL_CAPACITY = 16; // A power of two, so wrapping is a mask
+    private static final long EMPTY = Long.MIN_VALUE; // Customer ids are never negative
+    private long[] keys = newKeys(INITIAL_CAPACITY);
+    private int[] values = new int[INITIAL_CAPACITY];
+    private int size;
+
+    /**
+     * @return The number of entries in the map.
+     */
+    int size() {
+        return this.size;
+    }
+
+    /**
+     * @param key The key to look up. Must not be negative.
+     * @return The value of the key. {@link LongIntMap#NO_VALUE} if the key is not in the map.
+     */
+    int get(long key) {
+        int mask = this.keys.length - 1;
+
+        for (int slot = slotOf(key, mask); this.keys[slot] != EMPTY; slot = (slot + 1) & mask) {
+            if (this.keys[slot] == key) {
+                return this.values[slot];
+            }
+        }
+
+        return NO_VALUE;
+    }
+
+    /**
+     * @param key The key to set. Must not be negative.
+     * @param value The value of the key, replacing any previous value.
+     */
+    void put(long key, int value) {
+        if (2 * (this.size + 1) > this.keys.length) { // Keep at least half of the slots empty
+            this.grow();
+        }
+
+        int mask = this.keys.length - 1;
+        int slot = slotOf(key, mask);
+
+        while (this.keys[slot] != EMPTY && this.keys[slot] != key) {
+            slot = (slot + 1) & mask;
+        }
+
+        if (this.keys[slot] == EMPTY) {
+            this.keys[slot] = key;
+            this.size++;
+        }
+
+        this.values[slot] = value;
+    }
+
+    /**
+     * @param key The key to remove.
+     * @return The value the key had. {@link LongIntMap#NO_VALUE} if the key was not in the map.
+     */
+    int remove(long key) {
+        int mask = this.keys.length - 1;
+        int slot = slotOf(key, mask);
+
+        while (this.keys[slot] != key) {
+            if (this.keys[slot] == EMPTY) {
+                return NO_VALUE;
+            }
+
+            slot = (slot + 1) & mask;
+        }
+
+        int value = this.values[slot];
+        this.size--;
+
+        for (int next = (slot + 1) & mask; this.keys[next] != EMPTY; next = (next + 1) & mask) {
+            int home = slotOf(this.keys[next], mask);
+
+            if (((next - home) & mask) >= ((next - slot) & mask)) { // The entry may move back into the gap
+                this.keys[slot] = this.keys[next];
+                this.values[slot] = this.values[next];
+                slot = next;
+            }
+        }
+
+        this.keys[slot] = EMPTY;
+        return value;
+    }
+
+    /**
+     * Double the number of slots and put every entry again.
+     */
+    private void grow() {
+        long[] oldKeys = this.keys;
+        int[] oldValues = this.values;
+        this.keys = newKeys(oldKeys.length * 2);
+        this.values = new int[oldKeys.length * 2];
+        this.size = 0;
+
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != EMPTY) {
+                this.put(oldKeys[i], oldValues[i]);
+            }
+        }
+    }
+
+    /**
+     * @param capacity The number of slots.
+     * @return Empty key slots.
+     */
+    private static long[] newKeys(int capacity) {
+        long[] keys = new long[capacity];
+        Arrays.fill(keys, EMPTY);
+
+        return keys;
+    }
+
+    /**
+     * @param key A key.
+     * @param mask The number of slots minus one.
+     * @return The slot the key is looked for from.
+     */
+    private static int slotOf(long key, int mask) {
+        long hash = key * 0x9E3779B97F4A7C15L; // Spreads sequential ids over the slots
+        return (int) (hash ^ (hash >>> 32)) & mask;
+    }
+}
@@ -0,0 +1,39 @@
+package com.github.abrarsl.courseworkclassversion;
+
+import com.github.abrarsl.courseworkclassversion.exceptions.SelectionOutOfRangeException;
+
+/**
+ * A plain copy of the program data that is read from or written to a file.
+ * Each customer array has the length of its queue, with customers first and null holes at the end.
+ * @param itemStock The stock the {@link FoodQueue}s serve from.
+ * @param queueCustomers The customers of each {@link FoodQueue}.
+ * @param queueIncomes The income of each {@link FoodQueue}.
+ * @param waitingCustomers The customers of the {@link WaitingQueue}.
+ */
+public record ProgramState(int itemStock, Customer[][] queueCustomers, int[] queueIncomes, Customer[] waitingCustomers) {
+    /**
+     * Copies the current state of the given queues.
+     * @param queues The {@link FoodQueue}s to copy.
+     * @param waitingQueue The {@link WaitingQueue} to copy.
+     * @param itemStock The {@link ItemStock} the {@link FoodQueue}s serve from.
+     * @return A {@link ProgramState} holding the copied data.
+     */
+    public static ProgramState capture(FoodQueue[] queues, WaitingQueue waitingQueue, ItemStock itemStock) {
+        Customer[][] queueCustomers = new Customer[queues.length][];
+        int[] queueIncomes = new int[queues.length];
+
+        for (int i = 0; i < queues.length; i++) {
+            queueCustomers[i] = new Customer[queues[i].getQueueLength()];
+            queueIncomes[i] = queues[i].getQueueIncome();
+
+            for (int j = 0; j < queues[i].getCustomerCount(); j++) {
+                try {
+                    queueCustomers[i][j] = queues[i].getCustomer(j);
+                } catch (SelectionOutOfRangeException ignored) {
+                }
+            }
+        }
+
+        return new ProgramState(itemStock.get(), queueCustomers, queueIncomes, waitingQueue.getQueue());
+    }
+}
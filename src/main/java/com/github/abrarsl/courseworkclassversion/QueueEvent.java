@@ -0,0 +1,51 @@
+package com.github.abrarsl.courseworkclassversion;
+
+/**
+ * A change to a {@link FoodQueue} or {@link WaitingQueue}, published on a {@link QueueEventBus}.
+ * @param sequence The number of the event on its bus. Events are numbered from 0 in the order they were published.
+ * @param type What changed.
+ * @param queueNumber The number of the {@link FoodQueue}. {@link QueueEvent#WAITING_QUEUE} for the {@link WaitingQueue}.
+ * @param position The position of the {@link Customer} in the queue before it left, or after it joined.
+ * @param customer The {@link Customer} that joined or left. null for {@link Type#INCOME_ADDED} and
+ * {@link Type#QUEUES_REPLACED}.
+ * @param amount The income added, for {@link Type#INCOME_ADDED}. 0 otherwise.
+ */
+public record QueueEvent(long sequence, Type type, int queueNumber, int position, Customer customer, int amount) {
+    public static final int WAITING_QUEUE = -1;
+
+    /**
+     * What changed.
+     */
+    public enum Type {
+        CUSTOMER_ADDED,
+        CUSTOMER_SERVED,
+        CUSTOMER_REMOVED,
+        INCOME_ADDED,
+        CUSTOMER_ENQUEUED,
+        CUSTOMER_DEQUEUED,
+        QUEUES_REPLACED // Every queue was replaced, such as when data is loaded. Listeners must read them again
+    }
+
+    /**
+     * @return The first position of the queue whose {@link Customer} may have changed.
+     */
+    public int getFirstChangedPosition() {
+        return switch (this.type) {
+            case CUSTOMER_ADDED, CUSTOMER_ENQUEUED, CUSTOMER_REMOVED -> this.position;
+            default -> 0;
+        };
+    }
+
+    /**
+     * Positions are relative to the front of the queue, so a {@link Customer} leaving changes every position behind.
+     * @return The last position of the queue whose {@link Customer} may have changed, inclusive.
+     * {@link Integer#MAX_VALUE} if every position behind the first changed position may have changed.
+     */
+    public int getLastChangedPosition() {
+        return switch (this.type) {
+            case CUSTOMER_ADDED, CUSTOMER_ENQUEUED -> this.position;
+            case INCOME_ADDED -> -1; // No position changed
+            default -> Integer.MAX_VALUE;
+        };
+    }
+}
@@ -0,0 +1,220 @@
+package com.github.abrarsl.courseworkclassversion;
+
+import com.github.abrarsl.courseworkclassversion.metrics.Metrics;
+import com.github.abrarsl.courseworkclassversion.metrics.Operation;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+
+/**
+ * Carries {@link QueueEvent}s from the queues that publish them to {@link QueueEventListener}s on another thread.
+ * <p>
+ * Events are put in a ring of fixed size. A queue claims the next sequence number with one atomic increment and
+ * writes its event into the slot of that number, so queues never wait for each other, and publishing allocates
+ * nothing but the event. A single delivery thread takes every event that is ready at once and hands the whole batch
+ * to each listener, so listeners run once per burst of changes rather than once per change, and never run while a
+ * queue is locked.
+ * <p>
+ * The ring is bounded: a queue that gets a full ring ahead of the delivery thread waits for it to catch up, so a
+ * slow listener slows the queues down rather than using more memory. This class is thread-safe.
+ */
+public class QueueEventBus implements AutoCloseable {
+    public static final int DEFAULT_CAPACITY = 1024;
+    private static final int SPINS_BEFORE_PARKING = 100;
+    private static final long FULL_PARK_NANOS = 10_000;
+    private final AtomicReferenceArray<QueueEvent> ring;
+    private final int mask;
+    private final AtomicLong claimed = new AtomicLong(); // The next sequence number to publish
+    private volatile long delivered = 0; // Every event before this sequence number has been delivered
+    private final AtomicLong batchCount = new AtomicLong();
+    private final AtomicLong failureCount = new AtomicLong();
+    private final AtomicInteger publishing = new AtomicInteger();
+    private final List<QueueEventListener> listeners = new CopyOnWriteArrayList<>();
+    private final Consumer<String> warningListener;
+    private final Thread deliveryThread;
+    private volatile boolean deliveryParked = false;
+    private volatile boolean closed = false;
+
+    /**
+     * Start the delivery thread of a bus.
+     * @param capacity The number of events that can be published ahead of the delivery thread. Rounded up to a power
+     * of two.
+     * @param warningListener Called on the delivery thread with a message when a listener fails.
+     */
+    public QueueEventBus(int capacity, Consumer<String> warningListener) {
+        int ringSize = Integer.highestOneBit(Math.max(capacity, 2) - 1) << 1; // Power of two, so wrapping is a mask
+
+        this.ring = new AtomicReferenceArray<>(ringSize);
+        this.mask = ringSize - 1;
+        this.warningListener = warningListener;
+        this.deliveryThread = new Thread(this::runDelivery, "queue-event-bus");
+        this.deliveryThread.setDaemon(true); // Never hold the program open, close() delivers the remaining events
+        this.deliveryThread.start();
+    }
+
+    /**
+     * @param listener The listener to call with each batch of events published from now on.
+     */
+    public void addListener(QueueEventListener listener) {
+        this.listeners.add(listener);
+    }
+
+    /**
+     * @param listener The listener to stop calling.
+     */
+    public void removeListener(QueueEventListener listener) {
+        this.listeners.remove(listener);
+    }
+
+    /**
+     * Publish an event. Waits only while the ring is full. Events published after the bus is closed are dropped.
+     * @param type What changed.
+     * @param queueNumber The number of the {@link FoodQueue}. {@link QueueEvent#WAITING_QUEUE} for the
+     * {@link WaitingQueue}.
+     * @param position The position of the {@link Customer} in the queue before it left, or after it joined.
+     * @param customer The {@link Customer} that joined or left, or null.
+     * @param amount The income added, or 0.
+     */
+    public void publish(QueueEvent.Type type, int queueNumber, int position, Customer customer, int amount) {
+        this.publishing.incrementAndGet(); // Announce the event before checking, so close() waits for it
+
+        try {
+            if (this.closed) {
+                return;
+            }
+
+            long sequence = this.claimed.getAndIncrement();
+
+            for (int spins = 0; sequence - this.delivered >= this.ring.length(); spins++) { // Slot still in use
+                if (spins < SPINS_BEFORE_PARKING) {
+                    Thread.onSpinWait();
+                } else {
+                    LockSupport.parkNanos(this, FULL_PARK_NANOS);
+                }
+            }
+
+            this.ring.set(
+                    (int) sequence & this.mask,
+                    new QueueEvent(sequence, type, queueNumber, position, customer, amount)
+            );
+
+            if (this.deliveryParked) {
+                LockSupport.unpark(this.deliveryThread);
+            }
+        } finally {
+            this.publishing.decrementAndGet();
+        }
+    }
+
+    /**
+     * @param sequence A sequence number.
+     * @return The event with that sequence number, or null if it has not been written yet.
+     */
+    private QueueEvent readSlot(long sequence) {
+        QueueEvent event = this.ring.get((int) sequence & this.mask);
+        return event != null && event.sequence() == sequence ? event : null; // An older event may still be there
+    }
+
+    /**
+     * Deliver batches of events until the bus is closed and every event published before has been delivered.
+     */
+    private void runDelivery() {
+        List<QueueEvent> batch = new ArrayList<>(this.ring.length());
+        List<QueueEvent> events = Collections.unmodifiableList(batch); // Reused, listeners must not keep it
+        long next = 0;
+
+        while (true) {
+            QueueEvent event = this.readSlot(next);
+
+            if (event == null) {
+                if (this.closed && this.publishing.get() == 0 && this.claimed.get() == next) {
+                    break;
+                }
+
+                this.deliveryParked = true; // Queues check this after writing, so one of us sees the other
+
+                if (this.readSlot(next) == null && !this.closed) {
+                    LockSupport.park(this);
+                }
+
+                this.deliveryParked = false;
+                continue;
+            }
+
+            do { // Take every event that is ready, in order, stopping at the first gap
+                batch.add(event);
+                next++;
+            } while (batch.size() < this.ring.length() && (event = this.readSlot(next)) != null);
+
+            this.deliver(events);
+
+            for (long sequence = next - batch.size(); sequence < next; sequence++) { // Do not keep customers alive
+                this.ring.lazySet((int) sequence & this.mask, null);
+            }
+
+            batch.clear();
+            this.delivered = next; // Frees the slots for queues waiting on a full ring
+        }
+    }
+
+    /**
+     * Pass a batch to every listener. A listener that fails does not stop the others.
+     * @param events The events, in order.
+     */
+    private void deliver(List<QueueEvent> events) {
+        long startTime = Metrics.start();
+
+        try {
+            for (QueueEventListener listener : this.listeners) {
+                try {
+                    listener.queueEvents(events);
+                } catch (RuntimeException exception) {
+                    this.failureCount.incrementAndGet();
+                    this.warningListener.accept("Queue event listener failed! " + exception);
+                }
+            }
+
+            this.batchCount.incrementAndGet();
+        } finally {
+            Metrics.record(Operation.QUEUE_EVENT_DELIVERY, startTime);
+        }
+    }
+
+    /**
+     * Register the gauges of the bus with {@link Metrics}, named with the given prefix followed by "QueueEventBus.".
+     * @param prefix Put in front of the name of each gauge.
+     */
+    public void registerGauges(String prefix) {
+        Metrics.registerGauge(prefix + "QueueEventBus.published", this.claimed::get);
+        Metrics.registerGauge(prefix + "QueueEventBus.pending", () -> this.claimed.get() - this.delivered);
+        Metrics.registerGauge(prefix + "QueueEventBus.batches", this.batchCount::get);
+        Metrics.registerGauge(prefix + "QueueEventBus.failures", this.failureCount::get);
+    }
+
+    /**
+     * Stop taking events and deliver every event published before. Blocks until the delivery thread has finished.
+     */
+    @Override
+    public void close() {
+        this.closed = true;
+
+        while (this.publishing.get() > 0) { // An event may be about to be written, and must be delivered first
+            Thread.onSpinWait();
+        }
+
+        LockSupport.unpark(this.deliveryThread);
+
+        try {
+            this.deliveryThread.join();
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,17 @@
+package com.github.abrarsl.courseworkclassversion;
+
+import java.util.List;
+
+/**
+ * Listens for {@link QueueEvent}s on a {@link QueueEventBus}.
+ * Listeners are called on the delivery thread of the bus, with every event published since the last call.
+ * Queues wait for the listeners when the bus is full, so a listener must not wait for a queue, or for a lock that
+ * is held while changing one.
+ */
+@FunctionalInterface
+public interface QueueEventListener {
+    /**
+     * @param events The events, in the order they were published. The list must not be kept after the call.
+     */
+    void queueEvents(List<QueueEvent> events);
+}
@@ -0,0 +1,144 @@
+package com.github.abrarsl.courseworkclassversion;
+
+/**
+ * An index over an array of {@link FoodQueue} objects that tracks which non-full queue should receive the next
+ * {@link Customer}.
+ * This is implemented as an indexed binary min-heap ordered by a {@link QueuePlacementPolicy}. Full queues are kept
+ * out of the heap, so the best queue is found in constant time and an update costs O(log q).
+ * {@link QueuePlacementIndex#update(int)} must be called after every change to the number of customers in a queue.
+ * This class is not thread-safe.
+ */
+public class QueuePlacementIndex {
+    private final FoodQueue[] queues;
+    private final QueuePlacementPolicy policy;
+    private final int[] heap;
+    private final int[] heapPositions;
+    private int heapSize;
+
+    /**
+     * @param queues The queues to index. The array is not copied.
+     * @param policy The policy used to order the queues.
+     */
+    public QueuePlacementIndex(FoodQueue[] queues, QueuePlacementPolicy policy) {
+        this.queues = queues;
+        this.policy = policy;
+        this.heap = new int[queues.length];
+        this.heapPositions = new int[queues.length];
+        this.heapSize = 0;
+
+        for (int i = 0; i < queues.length; i++) {
+            this.heapPositions[i] = -1; // Indicate the queue is not in the heap
+            this.update(i);
+        }
+    }
+
+    /**
+     * @param queues The queues to index. The array is not copied.
+     */
+    public QueuePlacementIndex(FoodQueue[] queues) {
+        this(queues, QueuePlacementPolicy.SHORTEST_QUEUE_FIRST);
+    }
+
+    /**
+     * @return The number of the best {@link FoodQueue} that is not full. -1 if all queues are full.
+     */
+    public int findQueue() {
+        return this.heapSize == 0 ? -1 : this.heap[0];
+    }
+
+    /**
+     * Reposition a queue after a {@link Customer} was added to or removed from it.
+     * @param queueNumber The number of the {@link FoodQueue} that changed.
+     */
+    public void update(int queueNumber) {
+        int position = this.heapPositions[queueNumber];
+        boolean isFull = this.queues[queueNumber].isQueueFull();
+
+        if (position < 0) {
+            if (!isFull) { // Queue has space again, add it to the heap
+                this.heap[this.heapSize] = queueNumber;
+                this.heapPositions[queueNumber] = this.heapSize;
+                this.siftUp(this.heapSize++);
+            }
+        } else if (isFull) { // Replace the queue with the last heap element
+            this.heapPositions[queueNumber] = -1;
+            int lastQueueNumber = this.heap[--this.heapSize];
+
+            if (position < this.heapSize) {
+                this.heap[position] = lastQueueNumber;
+                this.heapPositions[lastQueueNumber] = position;
+                this.siftDown(this.siftUp(position));
+            }
+        } else {
+            this.siftDown(this.siftUp(position));
+        }
+    }
+
+    /**
+     * @param first The number of the first queue.
+     * @param second The number of the second queue.
+     * @return 'true' if the first queue should be preferred over the second.
+     */
+    private boolean isPreferred(int first, int second) {
+        int result = this.policy.compare(this.queues[first], this.queues[second]);
+        return result < 0 || (result == 0 && first < second);
+    }
+
+    /**
+     * Swap two heap elements and update their recorded positions.
+     * @param first The first heap position.
+     * @param second The second heap position.
+     */
+    private void swap(int first, int second) {
+        int temp = this.heap[first];
+        this.heap[first] = this.heap[second];
+        this.heap[second] = temp;
+        this.heapPositions[this.heap[first]] = first;
+        this.heapPositions[this.heap[second]] = second;
+    }
+
+    /**
+     * @param position The heap position to move towards the root.
+     * @return The final heap position of the element.
+     */
+    private int siftUp(int position) {
+        while (position > 0) {
+            int parent = (position - 1) / 2;
+
+            if (!this.isPreferred(this.heap[position], this.heap[parent])) {
+                break;
+            }
+
+            this.swap(position, parent);
+            position = parent;
+        }
+
+        return position;
+    }
+
+    /**
+     * @param position The heap position to move towards the leaves.
+     */
+    private void siftDown(int position) {
+        while (true) {
+            int best = position;
+            int left = 2 * position + 1;
+            int right = left + 1;
+
+            if (left < this.heapSize && this.isPreferred(this.heap[left], this.heap[best])) {
+                best = left;
+            }
+
+            if (right < this.heapSize && this.isPreferred(this.heap[right], this.heap[best])) {
+                best = right;
+            }
+
+            if (best == position) {
+                return;
+            }
+
+            this.swap(position, best);
+            position = best;
+        }
+    }
+}
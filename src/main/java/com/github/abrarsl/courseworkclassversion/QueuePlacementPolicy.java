@@ -0,0 +1,23 @@
+package com.github.abrarsl.courseworkclassversion;
+
+import java.util.Comparator;
+
+/**
+ * Decides which {@link FoodQueue} a new {@link Customer} should be placed in.
+ * The {@link FoodQueue} that compares lowest is preferred. Ties are broken by the queue number.
+ */
+public interface QueuePlacementPolicy extends Comparator<FoodQueue> {
+    /**
+     * Prefer the {@link FoodQueue} with the smallest length, regardless of how many customers it holds.
+     */
+    QueuePlacementPolicy SHORTEST_QUEUE_FIRST = (first, second) ->
+            Integer.compare(first.getQueueLength(), second.getQueueLength());
+
+    /**
+     * Prefer the {@link FoodQueue} holding the fewest customers, then the one with the smallest length.
+     */
+    QueuePlacementPolicy LEAST_LOADED = (first, second) -> {
+        int result = Integer.compare(first.getCustomerCount(), second.getCustomerCount());
+        return result != 0 ? result : SHORTEST_QUEUE_FIRST.compare(first, second);
+    };
+}
@@ -0,0 +1,185 @@
+package com.github.abrarsl.courseworkclassversion;
+
+import com.github.abrarsl.courseworkclassversion.exceptions.SelectionOutOfRangeException;
+import javafx.collections.ObservableListBase;
+
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A read-only observable list over the slots of a {@link FoodQueue} or {@link WaitingQueue} of a {@link ShopEngine},
+ * for use as the items of a virtualized {@link javafx.scene.control.ListView}. Vacant slots are null.
+ * <p>
+ * The list never reads the queue itself, as the engine may be changing it on another thread. Slots are copied
+ * under the lock of the engine with {@link ShopEngine#copySlots(int, int, int)}, in blocks of
+ * {@link QueueSlotList#BLOCK_SIZE}, and only those copies are shown. Blocks are copied when they are first asked
+ * for, and only the most recently used are kept, so the memory used does not depend on the length of the queue.
+ * <p>
+ * Changes passed to {@link QueueSlotList#markChanged(int, int)}, usually from the {@link QueueEvent}s of the queue,
+ * are collected into a range of positions on any thread. {@link QueueSlotList#refresh()} copies the kept blocks in
+ * that range again and turns it into list changes, on the FX application thread.
+ * The size of the list only changes in {@link QueueSlotList#refresh()}, so it is stable while the list is drawn.
+ */
+public class QueueSlotList extends ObservableListBase<Customer> {
+    public static final int BLOCK_SIZE = 64;
+    private static final int MAX_KEPT_BLOCKS = 32; // More than the cells of a tall window
+    private final ShopEngine engine;
+    private final int queueNumber;
+    private final Map<Integer, Customer[]> blocks = new LinkedHashMap<>(16, 0.75f, true) { // In order of use
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Integer, Customer[]> eldest) {
+            return this.size() > MAX_KEPT_BLOCKS;
+        }
+    };
+    private int size;
+    private int firstChanged = Integer.MAX_VALUE; // Guarded by this
+    private int lastChanged = -1; // Guarded by this
+
+    /**
+     * @param engine The {@link ShopEngine} that holds the queue.
+     * @param queueNumber The number of the {@link FoodQueue} to show. {@link QueueEvent#WAITING_QUEUE} for the
+     * {@link WaitingQueue}.
+     */
+    public QueueSlotList(ShopEngine engine, int queueNumber) {
+        this.engine = engine;
+        this.queueNumber = queueNumber;
+        this.size = this.readQueueLength();
+    }
+
+    /**
+     * @param index The position in the queue.
+     * @return A copy of the {@link Customer} at the position, or null if the slot is empty.
+     */
+    @Override
+    public Customer get(int index) {
+        if (index < 0 || index >= this.size) {
+            throw new IndexOutOfBoundsException(index);
+        }
+
+        int blockNumber = index / BLOCK_SIZE;
+        Customer[] block = this.blocks.get(blockNumber);
+
+        if (block == null) {
+            block = this.copyBlock(blockNumber);
+            this.blocks.put(blockNumber, block);
+        }
+
+        int offset = index % BLOCK_SIZE;
+        return offset < block.length ? block[offset] : null; // The queue shrank and the list has not caught up yet
+    }
+
+    /**
+     * @return The number of slots shown.
+     */
+    @Override
+    public int size() {
+        return this.size;
+    }
+
+    /**
+     * Widen the changed range, to be reported by the next {@link QueueSlotList#refresh()}. Can be called from any
+     * thread.
+     * @param firstPosition The first position that may have changed.
+     * @param lastPosition The last position that may have changed. Inclusive. Clipped to the size of the list.
+     */
+    public synchronized void markChanged(int firstPosition, int lastPosition) {
+        this.firstChanged = Math.min(this.firstChanged, firstPosition);
+        this.lastChanged = Math.max(this.lastChanged, lastPosition);
+    }
+
+    /**
+     * Copy the changed slots again, and report every change since the last refresh to the listeners of the list, as
+     * a single list change. Must be called on the FX application thread.
+     */
+    public void refresh() {
+        int firstPosition;
+        int lastPosition;
+
+        synchronized (this) {
+            firstPosition = this.firstChanged;
+            lastPosition = this.lastChanged;
+            this.firstChanged = Integer.MAX_VALUE;
+            this.lastChanged = -1;
+        }
+
+        int oldSize = this.size;
+        int newSize = this.readQueueLength();
+
+        if (oldSize == newSize) {
+            this.copyBlocksAgain(firstPosition, lastPosition, newSize);
+        } else { // Slots added or removed at the rear also changed
+            this.copyBlocksAgain(
+                    Math.min(firstPosition, Math.min(oldSize, newSize)),
+                    Math.max(lastPosition, Math.max(oldSize, newSize) - 1),
+                    newSize
+            );
+        }
+
+        lastPosition = Math.min(lastPosition, Math.min(oldSize, newSize) - 1);
+
+        if (firstPosition > lastPosition && oldSize == newSize) {
+            return;
+        }
+
+        this.size = newSize;
+        this.beginChange();
+
+        for (int i = firstPosition; i <= lastPosition; i++) { // Slots that stayed are updated in place
+            this.nextUpdate(i);
+        }
+
+        if (newSize > oldSize) { // Unbounded waiting queues grow and shrink at the rear
+            this.nextAdd(oldSize, newSize);
+        } else if (newSize < oldSize) {
+            this.nextRemove(newSize, Collections.nCopies(oldSize - newSize, null));
+        }
+
+        this.endChange();
+    }
+
+    /**
+     * Copy the kept blocks overlapping a range of positions again, and drop the blocks past the end of the queue.
+     * @param firstPosition The first position that changed.
+     * @param lastPosition The last position that changed. Inclusive.
+     * @param queueLength The number of slots in the queue.
+     */
+    private void copyBlocksAgain(int firstPosition, int lastPosition, int queueLength) {
+        Iterator<Map.Entry<Integer, Customer[]>> iterator = this.blocks.entrySet().iterator();
+
+        while (iterator.hasNext()) {
+            Map.Entry<Integer, Customer[]> block = iterator.next();
+            int blockStart = block.getKey() * BLOCK_SIZE;
+
+            if (blockStart >= queueLength) {
+                iterator.remove();
+            } else if (blockStart <= lastPosition && blockStart + BLOCK_SIZE > firstPosition) {
+                block.setValue(this.copyBlock(block.getKey())); // Does not count as a use, so the order is kept
+            }
+        }
+    }
+
+    /**
+     * @param blockNumber The number of the block, counted from the front of the queue.
+     * @return Copies of the slots in the block. Empty if the queue no longer exists.
+     */
+    private Customer[] copyBlock(int blockNumber) {
+        try {
+            return this.engine.copySlots(this.queueNumber, blockNumber * BLOCK_SIZE, BLOCK_SIZE);
+        } catch (SelectionOutOfRangeException exception) { // The queues were replaced, the list will be rebuilt
+            return new Customer[0];
+        }
+    }
+
+    /**
+     * @return The number of slots in the queue. 0 if the queue no longer exists.
+     */
+    private int readQueueLength() {
+        try {
+            return this.engine.getQueueLength(this.queueNumber);
+        } catch (SelectionOutOfRangeException exception) { // The queues were replaced, the list will be rebuilt
+            return 0;
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package com.github.abrarsl.courseworkclassversion;
+
+import com.github.abrarsl.courseworkclassversion.metrics.LatencyHistogram;
+
+/**
+ * Streaming wait time and service rate statistics for one queue. Every update is O(1) and the memory used is fixed.
+ * <p>
+ * Wait times are kept in a {@link LatencyHistogram}, which gives percentiles to within 1%.
+ * The service rate is the inverse of an exponentially weighted moving average of the time between departures.
+ * A departure is only timed from the moment the {@link Customer} could have left, which is the later of the previous
+ * departure and the time the {@link Customer} joined the queue, so time spent with an empty queue does not count.
+ * <p>
+ * Updates must not run at the same time, which the queue that owns the statistics ensures. Reads may happen on any thread.
+ */
+public class QueueStatistics {
+    private static final double SMOOTHING = 0.2; // Weight of the newest interval in the moving average
+    private final LatencyHistogram waitTimes = new LatencyHistogram();
+    private volatile long lastDepartureAt = Customer.NOT_STAMPED;
+    private volatile double meanInterval = Double.NaN; // Nanoseconds between departures, NaN until the first one
+
+    /**
+     * Record a {@link Customer} leaving the queue.
+     * @param joinedAt The time the {@link Customer} joined this queue. {@link Customer#NOT_STAMPED} if not known.
+     * @param departedAt The time the {@link Customer} left the queue.
+     */
+    public void recordDeparture(long joinedAt, long departedAt) {
+        if (joinedAt != Customer.NOT_STAMPED) { // Customers restored from disk have no stamps
+            this.waitTimes.record(departedAt - joinedAt);
+        }
+
+        long lastDepartureAt = this.lastDepartureAt;
+        long startedAt;
+
+        if (joinedAt == Customer.NOT_STAMPED || lastDepartureAt == Customer.NOT_STAMPED) {
+            startedAt = joinedAt == Customer.NOT_STAMPED ? lastDepartureAt : joinedAt;
+        } else { // Compare by difference, since nanoTime may wrap
+            startedAt = joinedAt - lastDepartureAt > 0 ? joinedAt : lastDepartureAt;
+        }
+
+        this.lastDepartureAt = departedAt;
+
+        if (startedAt == Customer.NOT_STAMPED) { // Nothing to time the first departure after a restore from
+            return;
+        }
+
+        double interval = departedAt - startedAt;
+        this.meanInterval = Double.isNaN(this.meanInterval)
+                ? interval
+                : SMOOTHING * interval + (1 - SMOOTHING) * this.meanInterval;
+    }
+
+    /**
+     * @return The number of waits that have been recorded.
+     */
+    public long getDepartureCount() {
+        return this.waitTimes.getCount();
+    }
+
+    /**
+     * @return The smoothed number of departures per minute. 0 if nothing has been recorded.
+     */
+    public double getServiceRate() {
+        double interval = this.meanInterval;
+        return Double.isNaN(interval) ? 0 : 60e9 / Math.max(interval, 1);
+    }
+
+    /**
+     * @param percentile The percentile to find, from 0 to 100.
+     * @return The wait time in nanoseconds that the given percentage of recorded waits are at or below.
+     */
+    public long getWaitPercentile(double percentile) {
+        return this.waitTimes.getPercentile(percentile);
+    }
+
+    /**
+     * @param customersAhead The number of {@link Customer}s that will leave before the new {@link Customer}.
+     * @return The expected wait in nanoseconds before a new {@link Customer} leaves the queue.
+     * -1 if not enough has been recorded to estimate.
+     */
+    public long estimateWait(int customersAhead) {
+        double interval = this.meanInterval;
+        return Double.isNaN(interval) ? -1 : Math.round(interval * (customersAhead + 1));
+    }
+
+    /**
+     * @param nanos A duration in nanoseconds, or a negative number if it is not known.
+     * @return The duration as minutes and seconds, such as "2m 05s", or "unknown".
+     */
+    public static String formatDuration(long nanos) {
+        if (nanos < 0) {
+            return "unknown";
+        }
+
+        long seconds = Math.round(nanos / 1e9);
+        return seconds < 60
+                ? String.format("%ds", seconds)
+                : String.format("%dm %02ds", seconds / 60, seconds % 60);
+    }
+}
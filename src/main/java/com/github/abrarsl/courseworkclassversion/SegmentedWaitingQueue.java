@@ -0,0 +1,559 @@
+package com.github.abrarsl.courseworkclassversion;
+
+import com.github.abrarsl.courseworkclassversion.exceptions.CustomerNotFoundException;
+import com.github.abrarsl.courseworkclassversion.exceptions.SelectionOutOfRangeException;
+import com.github.abrarsl.courseworkclassversion.metrics.Metrics;
+import com.github.abrarsl.courseworkclassversion.metrics.Operation;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.ObjIntConsumer;
+
+/**
+ * An unbounded {@link WaitingQueue} that grows in fixed size segments, so existing {@link Customer}s are never
+ * copied when it grows.
+ * <p>
+ * Only a limited number of segments are kept in memory. Once that budget is exceeded, full segments at the rear of
+ * the queue, which will be served last, are written to a memory-mapped spill file. They are read back in when they
+ * reach the front of the queue. {@link Customer}s read back from the spill file are copies that keep their id and
+ * arrival time, so they are equal to the originals and their wait is still measured.
+ * <p>
+ * This class is not thread-safe.
+ */
+public class SegmentedWaitingQueue extends WaitingQueue implements AutoCloseable {
+    public static final int SEGMENT_SIZE = 256;
+    private final ArrayDeque<Segment> segments = new ArrayDeque<>();
+    private final int maxResidentSegments;
+    private final Path spillPath;
+    private final FileChannel spillChannel;
+    private long spillEnd; // End of the used part of the spill file
+    private int residentSegments;
+    private int spilledSegments;
+    private int customerCount;
+    private Segment decodedSegment; // The spilled segment read last, so reading it again needs no decoding
+    private Customer[] decodedCustomers;
+
+    /**
+     * A run of up to {@link SegmentedWaitingQueue#SEGMENT_SIZE} {@link Customer}s.
+     * The customers are null while the segment is spilled to disk.
+     */
+    private static final class Segment {
+        private Customer[] customers = new Customer[SEGMENT_SIZE];
+        private int start; // Index of the first customer still in the segment
+        private int end; // Index after the last customer in the segment
+        private long spillOffset;
+        private int spillLength;
+
+        /**
+         * @return 'true' if the segment is only stored in the spill file.
+         */
+        private boolean isSpilled() {
+            return this.customers == null;
+        }
+    }
+
+    /**
+     * @param memoryBudget The number of {@link Customer}s to keep in memory before segments are spilled to disk.
+     * @throws IOException If the spill file cannot be created.
+     */
+    public SegmentedWaitingQueue(int memoryBudget) throws IOException {
+        super(0);
+
+        // The front and rear segments always stay in memory
+        this.maxResidentSegments = Math.max(2, memoryBudget / SEGMENT_SIZE);
+        this.spillPath = Files.createTempFile("waitingQueue", ".spill");
+        this.spillPath.toFile().deleteOnExit();
+        this.spillChannel = FileChannel.open(
+                this.spillPath,
+                StandardOpenOption.READ,
+                StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING
+        );
+    }
+
+    /**
+     * @param queue An array of {@link Customer}s to add to the {@link SegmentedWaitingQueue} in order. Null entries are skipped.
+     * @param memoryBudget The number of {@link Customer}s to keep in memory before segments are spilled to disk.
+     * @throws IOException If the spill file cannot be created.
+     */
+    public SegmentedWaitingQueue(Customer[] queue, int memoryBudget) throws IOException {
+        this(memoryBudget);
+
+        for (Customer customer : queue) {
+            if (customer != null) {
+                this.enqueue(customer);
+            }
+        }
+    }
+
+    /**
+     * Adds {@link Customer} to the rear of the {@link SegmentedWaitingQueue}.
+     * A new segment is started when the rear segment is full.
+     * @param customer The customer to be added onto the {@link SegmentedWaitingQueue} instance.
+     */
+    @Override
+    public void enqueue(Customer customer) {
+        long startTime = Metrics.start();
+
+        try {
+            Segment rear = this.segments.peekLast();
+
+            if (rear == null || rear.end == SEGMENT_SIZE) {
+                rear = new Segment();
+                this.segments.addLast(rear);
+                this.residentSegments++;
+                this.spillOverBudget();
+            }
+
+            customer.markArrived(System.nanoTime());
+            rear.customers[rear.end] = customer;
+            rear.end++;
+            this.customerCount++;
+            this.publish(QueueEvent.Type.CUSTOMER_ENQUEUED, this.customerCount - 1, customer);
+        } finally {
+            Metrics.record(Operation.WAITING_QUEUE_ENQUEUE, startTime);
+        }
+    }
+
+    /**
+     * Remove {@link Customer} from the front of the {@link SegmentedWaitingQueue}.
+     * The next segment is read back from the spill file if needed.
+     * @return The {@link Customer} that was removed.
+     * @throws CustomerNotFoundException If {@link Customer} cannot be found (queue is empty).
+     */
+    @Override
+    public Customer dequeue() throws CustomerNotFoundException {
+        long startTime = Metrics.start();
+
+        try {
+            if (this.isQueueEmpty()) {
+                throw new CustomerNotFoundException();
+            }
+
+            Segment front = this.segments.getFirst();
+            this.pageIn(front);
+
+            Customer customer = front.customers[front.start];
+            front.customers[front.start] = null;
+            front.start++;
+            this.customerCount--;
+            this.getStatistics().recordDeparture(customer.getArrivedAt(), System.nanoTime());
+
+            if (front.start == front.end) { // Drop the drained segment
+                this.segments.removeFirst();
+                this.residentSegments--;
+            }
+
+            if (this.spilledSegments == 0) { // Reuse the spill file from the start once nothing is left in it
+                this.spillEnd = 0;
+            }
+
+            this.publish(QueueEvent.Type.CUSTOMER_DEQUEUED, 0, customer);
+            return customer;
+        } finally {
+            Metrics.record(Operation.WAITING_QUEUE_DEQUEUE, startTime);
+        }
+    }
+
+    /**
+     * @param customer The {@link Customer} to look for. Customers are compared by id, not by name.
+     * @return The position of the {@link Customer} in the {@link SegmentedWaitingQueue}. -1 if the {@link Customer} is not found.
+     */
+    @Override
+    public int getCustomerPosition(Customer customer) {
+        long startTime = Metrics.start();
+
+        try {
+            int position = 0;
+
+            for (Segment segment : this.segments) {
+                Customer[] customers = this.readCustomers(segment);
+
+                for (int i = segment.start; i < segment.end; i++) {
+                    if (customer.equals(customers[i])) {
+                        return position;
+                    }
+
+                    position++;
+                }
+            }
+
+            return -1;
+        } finally {
+            Metrics.record(Operation.WAITING_QUEUE_POSITION, startTime);
+        }
+    }
+
+    /**
+     * Find many {@link Customer}s in one pass over the {@link SegmentedWaitingQueue}. Spilled segments are read one
+     * at a time without being kept in memory.
+     * @param ids The ids of the {@link Customer}s to look for.
+     * @param action Called with each {@link Customer} found and its position, in queue order.
+     */
+    @Override
+    public void findCustomers(Set<Long> ids, ObjIntConsumer<Customer> action) {
+        long startTime = Metrics.start();
+
+        try {
+            int[] position = {0};
+
+            this.forEach(customer -> {
+                if (ids.contains(customer.getId())) {
+                    action.accept(customer, position[0]);
+                }
+
+                position[0]++;
+            });
+        } finally {
+            Metrics.record(Operation.WAITING_QUEUE_POSITION, startTime);
+        }
+    }
+
+    /**
+     * @return 'true' if {@link SegmentedWaitingQueue} is empty.
+     */
+    @Override
+    public boolean isQueueEmpty() {
+        return this.customerCount == 0;
+    }
+
+    /**
+     * A {@link SegmentedWaitingQueue} is never full, so this is always one more than the number of {@link Customer}s.
+     * @return Length of the {@link SegmentedWaitingQueue}.
+     */
+    @Override
+    public int getQueueLength() {
+        return this.customerCount + 1;
+    }
+
+    /**
+     * @return The number of {@link Customer}s currently in the {@link SegmentedWaitingQueue}.
+     */
+    @Override
+    public int getCustomerCount() {
+        return this.customerCount;
+    }
+
+    /**
+     * Read a {@link Customer} in place. A spilled segment is read from disk, and only the segment read last is kept
+     * in memory, so reading positions in order decodes each segment once.
+     * @param position The position of the {@link Customer}, counted from the front of the {@link SegmentedWaitingQueue}.
+     * @return Reference to the {@link Customer}. null if there is no {@link Customer} at that position.
+     * @throws SelectionOutOfRangeException If the given position is out of bounds for the queue.
+     */
+    @Override
+    public Customer getCustomer(int position) throws SelectionOutOfRangeException {
+        long startTime = Metrics.start();
+
+        try {
+            if (position < 0 || position >= this.getQueueLength()) {
+                throw new SelectionOutOfRangeException(
+                        String.format(
+                                "Range is %d to %d.",
+                                0,
+                                this.getQueueLength() - 1
+                        )
+                );
+            }
+
+            for (Segment segment : this.segments) {
+                int size = segment.end - segment.start;
+
+                if (position < size) {
+                    return this.readCustomers(segment)[segment.start + position];
+                }
+
+                position -= size;
+            }
+
+            return null;
+        } finally {
+            Metrics.record(Operation.WAITING_QUEUE_GET, startTime);
+        }
+    }
+
+    /**
+     * Pass each {@link Customer} to the given action in queue order.
+     * Spilled segments are read from disk without being kept in memory.
+     * @param action The action to run for each {@link Customer}.
+     */
+    @Override
+    public void forEach(Consumer<Customer> action) {
+        for (Segment segment : this.segments) {
+            Customer[] customers = this.readCustomers(segment);
+
+            for (int i = segment.start; i < segment.end; i++) {
+                action.accept(customers[i]);
+            }
+        }
+    }
+
+    /**
+     * This method will construct a new array and read every spilled segment.
+     * This may be an expensive operation.
+     * @return An array of {@link Customer} objects representing the {@link SegmentedWaitingQueue} state.
+     */
+    @Override
+    public Customer[] getQueue() {
+        long startTime = Metrics.start();
+
+        try {
+            Customer[] tempQueue = new Customer[this.getQueueLength()];
+            int[] queueIndex = {0};
+
+            this.forEach(customer -> tempQueue[queueIndex[0]++] = customer);
+
+            return tempQueue;
+        } finally {
+            Metrics.record(Operation.WAITING_QUEUE_COPY, startTime);
+        }
+    }
+
+    /**
+     * Search for {@link Customer}s with the given search term within their name.
+     * Searches are case-insensitive.
+     * The returned array has null holes in it, and is as long as the whole queue.
+     * Prefer {@link WaitingQueue#searchCustomers(String, ObjIntConsumer)}, which only passes on the matches.
+     * @param searchTerm The search term that is checked.
+     * @return An array of {@link Customer}s who match the criteria.
+     */
+    @Override
+    public Customer[] searchCustomer(String searchTerm) {
+        long startTime = Metrics.start();
+
+        try {
+            Customer[] tempQueue = new Customer[this.getQueueLength()];
+            String searchKey = Customer.toSearchKey(searchTerm);
+            int[] queueIndex = {0};
+
+            this.forEach(customer -> {
+                if (customer.getSearchKey().contains(searchKey)) {
+                    tempQueue[queueIndex[0]] = customer;
+                }
+
+                queueIndex[0]++;
+            });
+
+            return tempQueue;
+        } finally {
+            Metrics.record(Operation.WAITING_QUEUE_SEARCH, startTime);
+        }
+    }
+
+    /**
+     * @return The number of segments that are currently spilled to disk.
+     */
+    public int getSpilledSegmentCount() {
+        return this.spilledSegments;
+    }
+
+    /**
+     * Close and delete the spill file.
+     * @throws IOException If the spill file cannot be closed or deleted.
+     */
+    @Override
+    public void close() throws IOException {
+        this.spillChannel.close();
+        Files.deleteIfExists(this.spillPath);
+    }
+
+    /**
+     * Spill full segments, starting from the one just before the rear, until the memory budget is met.
+     * The front and rear segments are never spilled.
+     * If the spill file cannot be written the segments stay in memory.
+     */
+    private void spillOverBudget() {
+        if (this.residentSegments <= this.maxResidentSegments) {
+            return;
+        }
+
+        Iterator<Segment> iterator = this.segments.descendingIterator();
+        iterator.next(); // Skip the rear segment
+
+        while (this.residentSegments > this.maxResidentSegments && iterator.hasNext()) {
+            Segment segment = iterator.next();
+
+            if (segment == this.segments.peekFirst()) {
+                return;
+            }
+
+            if (segment.isSpilled()) {
+                continue;
+            }
+
+            try {
+                this.spill(segment);
+            } catch (IOException exception) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Write a segment to the end of the spill file and release its {@link Customer}s.
+     * @param segment The segment to spill.
+     * @throws IOException If the spill file cannot be written.
+     */
+    private void spill(Segment segment) throws IOException {
+        this.compactSpillFile();
+
+        int size = Integer.BYTES;
+
+        for (int i = segment.start; i < segment.end; i++) {
+            Customer customer = segment.customers[i];
+            size += 2 * Long.BYTES + Integer.BYTES
+                    + sizeOfString(customer.getFirstName()) + sizeOfString(customer.getLastName());
+        }
+
+        MappedByteBuffer buffer = this.spillChannel.map(FileChannel.MapMode.READ_WRITE, this.spillEnd, size);
+        buffer.putInt(segment.end - segment.start);
+
+        for (int i = segment.start; i < segment.end; i++) {
+            Customer customer = segment.customers[i];
+            buffer.putLong(customer.getId());
+            putString(buffer, customer.getFirstName());
+            putString(buffer, customer.getLastName());
+            buffer.putInt(customer.getBurgersRequired());
+            buffer.putLong(customer.getArrivedAt()); // Waiting customers have not joined a FoodQueue yet
+        }
+
+        segment.spillOffset = this.spillEnd;
+        segment.spillLength = size;
+        segment.customers = null;
+        this.spillEnd += size;
+        this.residentSegments--;
+        this.spilledSegments++;
+    }
+
+    /**
+     * Segments are read back from the front of the queue, which leaves unused space at the start of the spill file.
+     * Once that space is larger than the part still in use, the spilled segments are moved to the start of the file.
+     * @throws IOException If the spill file cannot be compacted.
+     */
+    private void compactSpillFile() throws IOException {
+        long liveStart = this.spillEnd;
+
+        for (Segment segment : this.segments) {
+            if (segment.isSpilled()) {
+                liveStart = Math.min(liveStart, segment.spillOffset);
+            }
+        }
+
+        if (liveStart == 0 || liveStart < this.spillEnd - liveStart) {
+            return;
+        }
+
+        long liveLength = this.spillEnd - liveStart;
+
+        if (liveLength > 0) { // Copy through a mapping, the live part never overlaps the start of the file
+            MappedByteBuffer source = this.spillChannel.map(FileChannel.MapMode.READ_ONLY, liveStart, liveLength);
+            this.spillChannel.map(FileChannel.MapMode.READ_WRITE, 0, liveLength).put(source);
+        }
+
+        for (Segment segment : this.segments) {
+            if (segment.isSpilled()) {
+                segment.spillOffset -= liveStart;
+            }
+        }
+
+        this.spillEnd = liveLength;
+        this.spillChannel.truncate(this.spillEnd);
+    }
+
+    /**
+     * Read a spilled segment back into memory. Does nothing if the segment is already in memory.
+     * @param segment The segment to read back.
+     */
+    private void pageIn(Segment segment) {
+        if (!segment.isSpilled()) {
+            return;
+        }
+
+        segment.customers = this.readCustomers(segment);
+        this.decodedSegment = null; // The segment now holds the decoded customers itself
+        this.decodedCustomers = null;
+        this.residentSegments++;
+        this.spilledSegments--;
+    }
+
+    /**
+     * @param segment The segment to read.
+     * @return The {@link Customer}s of the segment, read from the spill file if the segment is spilled.
+     * @throws UncheckedIOException If the spill file cannot be read.
+     */
+    private Customer[] readCustomers(Segment segment) {
+        if (!segment.isSpilled()) {
+            return segment.customers;
+        }
+
+        if (segment == this.decodedSegment) { // A spilled segment never changes until it is read back in
+            return this.decodedCustomers;
+        }
+
+        try {
+            MappedByteBuffer buffer = this.spillChannel.map(
+                    FileChannel.MapMode.READ_ONLY,
+                    segment.spillOffset,
+                    segment.spillLength
+            );
+            Customer[] customers = new Customer[SEGMENT_SIZE];
+            int count = buffer.getInt();
+
+            for (int i = segment.start; i < segment.start + count; i++) {
+                long id = buffer.getLong();
+                String firstName = getString(buffer);
+                String lastName = getString(buffer);
+                customers[i] = new Customer(id, firstName, lastName, buffer.getInt());
+                customers[i].setArrivedAt(buffer.getLong());
+            }
+
+            this.decodedSegment = segment;
+            this.decodedCustomers = customers;
+            return customers;
+        } catch (IOException exception) {
+            throw new UncheckedIOException("Could not read the waiting queue spill file.", exception);
+        }
+    }
+
+    /**
+     * @param text The text to measure.
+     * @return The number of bytes needed to store the text.
+     */
+    private static int sizeOfString(String text) {
+        return Integer.BYTES + text.getBytes(StandardCharsets.UTF_8).length;
+    }
+
+    /**
+     * Write a length prefixed UTF-8 string.
+     * @param buffer The buffer to write to.
+     * @param text The text to write.
+     */
+    private static void putString(ByteBuffer buffer, String text) {
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        buffer.putInt(bytes.length);
+        buffer.put(bytes);
+    }
+
+    /**
+     * Read a length prefixed UTF-8 string.
+     * @param buffer The buffer to read from.
+     * @return The text that was read.
+     */
+    private static String getString(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.getInt()];
+        buffer.get(bytes);
+
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,1512 @@
+package com.github.abrarsl.courseworkclassversion;
+
+import com.github.abrarsl.courseworkclassversion.exceptions.*;
+import com.github.abrarsl.courseworkclassversion.metrics.Metrics;
+import com.github.abrarsl.courseworkclassversion.metrics.Operation;
+import com.github.abrarsl.courseworkclassversion.server.ShopOperations;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.function.ObjIntConsumer;
+
+/**
+ * One shop: its {@link FoodQueue}s, {@link WaitingQueue}, {@link ItemStock} and income, the indices kept over them,
+ * and the {@link Journal} that makes its changes durable.
+ * Nothing is static, so any number of independent shops can run in one process.
+ * <p>
+ * Each queue has its own lock, so operations on different {@link FoodQueue}s run in parallel. The engine lock is only
+ * held briefly, to choose a queue and to update the indices and the journal, so records are logged in the order the
+ * queues changed. Locks are always taken in the same order: {@link FoodQueue} locks by queue number, then the
+ * {@link WaitingQueue} lock, then the engine lock. All locks are {@link ReentrantLock}s, so that virtual threads
+ * waiting for them are not pinned to their carriers.
+ * Changes are logged to the {@link Journal} under the locks but waited on after they are released, so that changes
+ * made by different threads share a commit. Each operation still returns only once its change is durable.
+ * <p>
+ * The queues returned by {@link ShopEngine#getQueues()} and {@link ShopEngine#getWaitingQueue()} must only be read.
+ * Create the engine with {@link Options#concurrent()} set if they are read from a thread that does not own the engine.
+ */
+public class ShopEngine implements ShopOperations, AutoCloseable {
+    public static final int JOURNAL_COMPACTION_THRESHOLD = 1000;
+    public static final int NOT_PLACED = -2;
+    public static final String CORRUPT_SUFFIX = ".corrupt";
+    private final Options options;
+    private final ItemStock itemStock = new ItemStock(FoodQueue.MAX_STOCK, FoodQueue.STOCK_WARN_THRESHOLD);
+    private final ReentrantLock lock = new ReentrantLock(); // Guards the indices and the order of journal records
+    private volatile QueueSet queueSet;
+    private QueuePlacementIndex placementIndex;
+    private SortedCustomerIndex sortedCustomers;
+    private CustomerSearchIndex searchIndex;
+    private volatile Journal journal; // null until a journal is opened, changes are then only kept in memory
+    private Path snapshotPath;
+    private long snapshotChecksum = 0;
+    private String gaugePrefix; // null while the gauges are not registered
+    private QueueEventBus eventBus; // null until a listener is added
+    private volatile Consumer<String> warningListener = System.out::println;
+    private volatile ObjIntConsumer<Customer> promotionListener = (customer, queueNumber) -> {
+    };
+
+    /**
+     * How the queues of a {@link ShopEngine} are built.
+     * @param concurrent 'true' to use {@link ConcurrentFoodQueue}s and {@link ConcurrentWaitingQueue}s, so the queues
+     * can be read from other threads while the engine changes them. Cannot be combined with a waiting memory budget.
+     * @param compact 'true' to keep the {@link Customer}s of each queue in its own {@link CustomerStore}.
+     * @param waitingMemoryBudget The number of waiting {@link Customer}s kept in memory by an unbounded
+     * {@link SegmentedWaitingQueue}. 0 keeps a fixed size {@link WaitingQueue}.
+     * @throws IllegalArgumentException If concurrent mode is combined with a {@link SegmentedWaitingQueue}, which is
+     * not thread-safe.
+     */
+    public record Options(boolean concurrent, boolean compact, int waitingMemoryBudget) {
+        public static final Options DEFAULT = new Options(false, false, 0);
+
+        public Options {
+            if (concurrent && waitingMemoryBudget > 0) {
+                throw new IllegalArgumentException("An unbounded waiting queue cannot be shared between threads.");
+            }
+        }
+    }
+
+    /**
+     * The queues of the shop and the lock of each. Replaced as a whole when data is loaded, while every lock is held,
+     * so an operation that locked a queue checks that the queues are still current before using it.
+     * @param queues The {@link FoodQueue}s.
+     * @param locks The lock of each {@link FoodQueue}, at the same index. A {@link ConcurrentFoodQueue} uses its own.
+     * @param waitingQueue The {@link WaitingQueue}.
+     * @param waitingLock The lock of the {@link WaitingQueue}.
+     */
+    private record QueueSet(FoodQueue[] queues, ReentrantLock[] locks, WaitingQueue waitingQueue,
+                            ReentrantLock waitingLock) {
+        /**
+         * @param queueNumber The number of a {@link FoodQueue}, or {@link QueueEvent#WAITING_QUEUE}.
+         * @return The lock of that queue.
+         */
+        private ReentrantLock lockOf(int queueNumber) {
+            return queueNumber == QueueEvent.WAITING_QUEUE ? this.waitingLock : this.locks[queueNumber];
+        }
+    }
+
+    /**
+     * A write to {@link ShopEngine#journal}.
+     */
+    private interface JournalWrite {
+        void write() throws IOException;
+    }
+
+    /**
+     * A write of a {@link BinarySnapshot} to the given file, returning its checksum.
+     */
+    private interface SnapshotWrite {
+        long write(Path path) throws IOException;
+    }
+
+    /**
+     * Create an empty shop with no stock and no income.
+     * @param queueLayout The length of each {@link FoodQueue}.
+     * @param waitingQueueLength The length of the {@link WaitingQueue}, if it has a fixed size.
+     * @param options How the queues are built.
+     */
+    public ShopEngine(int[] queueLayout, int waitingQueueLength, Options options) {
+        this.options = options;
+        FoodQueue[] queues = new FoodQueue[queueLayout.length];
+
+        for (int i = 0; i < queueLayout.length; i++) {
+            queues[i] = this.newFoodQueue(new Customer[queueLayout[i]], 0);
+        }
+
+        this.installQueues(queues, this.newWaitingQueue(new Customer[waitingQueueLength]));
+    }
+
+    /**
+     * @param listener Called with a message when a problem does not stop an operation, such as a journal write
+     * failing. Messages are printed to standard output by default.
+     */
+    public void setWarningListener(Consumer<String> listener) {
+        this.warningListener = listener;
+    }
+
+    /**
+     * @param listener Called with each {@link Customer} moved from the {@link WaitingQueue} into a {@link FoodQueue},
+     * and the number of that queue. It is called while both queues are locked, so it must not wait for other threads.
+     */
+    public void setPromotionListener(ObjIntConsumer<Customer> listener) {
+        this.promotionListener = listener;
+    }
+
+    /**
+     * Call a listener with every change to the queues from now on, in batches, on the thread of a
+     * {@link QueueEventBus} that is started with the first listener. Events number queues as in
+     * {@link ShopEngine#getQueues()}.
+     * @param listener The listener to add.
+     */
+    public void addEventListener(QueueEventListener listener) {
+        QueueSet set = this.lockAll();
+
+        try {
+            if (this.eventBus == null) {
+                this.eventBus = new QueueEventBus(QueueEventBus.DEFAULT_CAPACITY, this::warn);
+                this.attachEventBus(set);
+                this.registerGaugesAgain();
+            }
+
+            this.eventBus.addListener(listener);
+        } finally {
+            this.unlockAll(set);
+        }
+    }
+
+    /**
+     * @param listener The listener to stop calling.
+     */
+    public void removeEventListener(QueueEventListener listener) {
+        this.lock.lock();
+
+        try {
+            if (this.eventBus != null) {
+                this.eventBus.removeListener(listener);
+            }
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    /**
+     * Make a set of queues publish on {@link ShopEngine#eventBus}. Must be called under every lock of the set, or
+     * before the set is installed.
+     * @param set The queues.
+     */
+    private void attachEventBus(QueueSet set) {
+        for (int i = 0; i < set.queues().length; i++) {
+            set.queues()[i].setEventBus(this.eventBus, i);
+        }
+
+        set.waitingQueue().setEventBus(this.eventBus);
+    }
+
+    /**
+     * @param warning The message to pass to {@link ShopEngine#warningListener}.
+     */
+    private void warn(String warning) {
+        this.warningListener.accept(warning);
+    }
+
+    /**
+     * @return The {@link ItemStock} every {@link FoodQueue} of the shop serves from.
+     */
+    public ItemStock getStock() {
+        return this.itemStock;
+    }
+
+    /**
+     * @return The {@link FoodQueue}s of the shop. The array is replaced, not changed, when data is loaded.
+     */
+    public FoodQueue[] getQueues() {
+        return this.queueSet.queues();
+    }
+
+    /**
+     * @return The {@link WaitingQueue} of the shop. It is replaced when data is loaded.
+     */
+    public WaitingQueue getWaitingQueue() {
+        return this.queueSet.waitingQueue();
+    }
+
+    /**
+     * The order is read from the index first, then each {@link FoodQueue} is read under its own lock, so a
+     * {@link Customer} that leaves meanwhile is left out.
+     * @return Copies of the {@link Customer}s in the {@link FoodQueue}s, sorted alphabetically.
+     */
+    public List<Customer> getSortedCustomers() {
+        QueueSet set;
+        long[] ids;
+        this.lock.lock();
+
+        try {
+            set = this.queueSet;
+            ids = this.sortedCustomers.ids().toArray();
+        } finally {
+            this.lock.unlock();
+        }
+
+        Map<Long, Customer> customersById = new HashMap<>(2 * ids.length);
+
+        for (int i = 0; i < set.queues().length; i++) { // The index holds ids, so each customer is read from its queue
+            FoodQueue queue = set.queues()[i];
+            set.locks()[i].lock();
+
+            try {
+                for (int j = 0; j < queue.getCustomerCount(); j++) {
+                    Customer customer = detach(queue.getCustomer(j)); // Views are only valid under the lock
+                    customersById.put(customer.getId(), customer);
+                }
+            } catch (SelectionOutOfRangeException exception) { // Positions below the customer count are in range
+                throw new IllegalStateException(exception);
+            } finally {
+                set.locks()[i].unlock();
+            }
+        }
+
+        return Arrays.stream(ids).mapToObj(customersById::get).filter(Objects::nonNull).toList();
+    }
+
+    /**
+     * @param queueNumber The number of the {@link FoodQueue}. {@link QueueEvent#WAITING_QUEUE} for the
+     * {@link WaitingQueue}.
+     * @return The number of slots in the queue.
+     * @throws SelectionOutOfRangeException If there is no queue with that number.
+     */
+    public int getQueueLength(int queueNumber) throws SelectionOutOfRangeException {
+        QueueSet set = this.lockQueue(queueNumber);
+
+        try {
+            return queueNumber == QueueEvent.WAITING_QUEUE
+                    ? set.waitingQueue().getQueueLength()
+                    : set.queues()[queueNumber].getQueueLength();
+        } finally {
+            set.lockOf(queueNumber).unlock();
+        }
+    }
+
+    /**
+     * Copy a run of slots of a queue, so they can be read on another thread while the engine changes the queue.
+     * @param queueNumber The number of the {@link FoodQueue}. {@link QueueEvent#WAITING_QUEUE} for the
+     * {@link WaitingQueue}.
+     * @param firstPosition The position of the first slot to copy.
+     * @param count The largest number of slots to copy.
+     * @return Copies of the {@link Customer}s in the slots, null for vacant slots. Shorter than the count if the queue
+     * ends first.
+     * @throws SelectionOutOfRangeException If there is no queue with that number.
+     */
+    public Customer[] copySlots(int queueNumber, int firstPosition, int count) throws SelectionOutOfRangeException {
+        QueueSet set = this.lockQueue(queueNumber);
+
+        try {
+            int queueLength = queueNumber == QueueEvent.WAITING_QUEUE
+                    ? set.waitingQueue().getQueueLength()
+                    : set.queues()[queueNumber].getQueueLength();
+            Customer[] customers = new Customer[Math.max(0, Math.min(count, queueLength - firstPosition))];
+
+            for (int i = 0; i < customers.length; i++) {
+                Customer customer = queueNumber == QueueEvent.WAITING_QUEUE
+                        ? set.waitingQueue().getCustomer(firstPosition + i)
+                        : set.queues()[queueNumber].getCustomer(firstPosition + i);
+
+                customers[i] = customer == null ? null : detach(customer); // Views are only valid under the lock
+            }
+
+            return customers;
+        } finally {
+            set.lockOf(queueNumber).unlock();
+        }
+    }
+
+    /**
+     * Each {@link FoodQueue} is read under its own lock, so income earned while the total is added up may be left out.
+     * @return The income of every {@link FoodQueue} of the shop added together.
+     */
+    public long getTotalIncome() {
+        QueueSet set = this.queueSet;
+        long totalIncome = 0;
+
+        for (int i = 0; i < set.queues().length; i++) {
+            set.locks()[i].lock();
+
+            try {
+                totalIncome += set.queues()[i].getQueueIncome();
+            } finally {
+                set.locks()[i].unlock();
+            }
+        }
+
+        return totalIncome;
+    }
+
+    /**
+     * @return The number of records in the {@link Journal}. 0 if no journal is open.
+     */
+    public int getJournalRecordCount() {
+        Journal currentJournal = this.journal;
+        return currentJournal == null ? 0 : currentJournal.getRecordCount();
+    }
+
+    @Override
+    public int getQueueCount() {
+        return this.queueSet.queues().length;
+    }
+
+    @Override
+    public int getItemStock() {
+        return this.itemStock.get();
+    }
+
+    /**
+     * Every queue is locked while the stock is added, so that no serve is logged before the stock it relied on.
+     */
+    @Override
+    public int addItemStock(int amount) throws StockOutOfRangeException {
+        int newItemStock;
+        QueueSet set = this.lockAll();
+
+        try {
+            this.itemStock.add(amount);
+            this.journalChange(() -> this.journal.logAddItemStock(amount));
+            newItemStock = this.itemStock.get();
+        } finally {
+            this.unlockAll(set);
+        }
+
+        this.finishChange();
+        return newItemStock;
+    }
+
+    @Override
+    public int getQueueIncome(int queueNumber) throws SelectionOutOfRangeException {
+        checkQueueNumber(this.queueSet, queueNumber);
+        QueueSet set = this.lockQueue(queueNumber);
+
+        try {
+            return set.queues()[queueNumber].getQueueIncome();
+        } finally {
+            set.locks()[queueNumber].unlock();
+        }
+    }
+
+    /**
+     * @param queueNumber The number of the {@link FoodQueue}. {@link QueueEvent#WAITING_QUEUE} for the
+     * {@link WaitingQueue}.
+     * @return The expected wait in nanoseconds for a {@link Customer} joining the queue now, as shown by
+     * {@link FoodQueue#estimateWait()}. -1 if it cannot be estimated yet.
+     * @throws SelectionOutOfRangeException If there is no queue with that number.
+     */
+    @Override
+    public long estimateWait(int queueNumber) throws SelectionOutOfRangeException {
+        QueueSet set = this.lockQueue(queueNumber);
+
+        try {
+            return queueNumber == QueueEvent.WAITING_QUEUE
+                    ? set.waitingQueue().estimateWait()
+                    : set.queues()[queueNumber].estimateWait();
+        } finally {
+            set.lockOf(queueNumber).unlock();
+        }
+    }
+
+    @Override
+    public int addCustomer(String firstName, String lastName, int burgersRequired)
+            throws InputValidationException, FullQueueException {
+        if (burgersRequired < 0 || burgersRequired > FoodQueue.MAX_STOCK) { // Ensure customer order can be met
+            throw new InputValidationException(
+                    String.format("Burgers required must be a number from %d to %d!", 0, FoodQueue.MAX_STOCK)
+            );
+        }
+
+        return this.addCustomer(new Customer(validateName(firstName), validateName(lastName), burgersRequired));
+    }
+
+    /**
+     * Add a customer to the {@link FoodQueue} chosen by {@link ShopEngine#placementIndex}.
+     * By default this is the shortest queue that is not full.
+     * If all queues are full the customer is added to the {@link WaitingQueue}.
+     * @param customer The customer to add to a queue.
+     * @return The number of the queue that the customer was added to. -1 if the {@link WaitingQueue} was used.
+     * @throws FullQueueException Is thrown only if all queues and the {@link WaitingQueue} are full.
+     */
+    public int addCustomer(Customer customer) throws FullQueueException {
+        prepareKeys(customer);
+        int queueNumber = this.placeCustomer(customer);
+
+        this.finishChange();
+        return queueNumber;
+    }
+
+    /**
+     * Place a batch of customers in the queues.
+     * Each queue chosen by {@link ShopEngine#placementIndex} is filled in one step with
+     * {@link FoodQueue#addCustomers(Customer[])} before the next queue is chosen.
+     * Customers that do not fit in any queue are added to the {@link WaitingQueue}.
+     * @param customers The customers to add, in order.
+     * @return The number of the queue each customer was added to, at the same index. -1 for the {@link WaitingQueue}
+     * and {@link ShopEngine#NOT_PLACED} for customers that did not fit anywhere.
+     */
+    public int[] addCustomers(Customer[] customers) {
+        int[] placements = new int[customers.length];
+        Arrays.fill(placements, NOT_PLACED);
+
+        for (Customer customer : customers) {
+            prepareKeys(customer);
+        }
+
+        int placedCount = 0;
+
+        while (placedCount < customers.length) {
+            QueueSet set;
+            int queueNumber;
+            this.lock.lock();
+
+            try {
+                set = this.queueSet;
+                queueNumber = this.placementIndex.findQueue();
+            } finally {
+                this.lock.unlock();
+            }
+
+            if (queueNumber >= 0) {
+                int addedCount = this.addChunk(set, queueNumber, customers, placedCount);
+                Arrays.fill(placements, placedCount, placedCount + addedCount, queueNumber);
+                placedCount += addedCount;
+                continue;
+            }
+
+            try {
+                if (!this.enqueueIfAllFull(customers[placedCount])) { // A place was freed meanwhile
+                    continue;
+                }
+            } catch (FullQueueException exception) {
+                break;
+            }
+
+            placements[placedCount] = -1;
+            placedCount++;
+        }
+
+        this.finishChange();
+        return placements;
+    }
+
+    @Override
+    public Customer serveCustomer(int queueNumber)
+            throws SelectionOutOfRangeException, CustomerNotFoundException, InsufficientStockException {
+        checkQueueNumber(this.queueSet, queueNumber);
+        QueueSet set = this.lockQueue(queueNumber);
+        Customer customer;
+
+        try {
+            customer = set.queues()[queueNumber].serveCustomer();
+            prepareKeys(customer);
+            this.lock.lock();
+
+            try {
+                this.journalChange(() -> this.journal.logServeCustomer(queueNumber));
+                this.forgetCustomer(customer);
+            } finally {
+                this.lock.unlock();
+            }
+
+            this.refillQueue(set, queueNumber, 1);
+        } finally {
+            set.locks()[queueNumber].unlock();
+        }
+
+        this.finishChange();
+        return customer;
+    }
+
+    /**
+     * Serve a number of customers from the front of a queue at once, using {@link FoodQueue#serveUpTo(int)}.
+     * Customers from the {@link WaitingQueue} fill the freed places.
+     * @param queueNumber The number of the queue.
+     * @param count The largest number of customers to serve.
+     * @return A {@link BatchReport} where each customer is either {@link BatchReport.Outcome#SERVED} or
+     * {@link BatchReport.Outcome#INSUFFICIENT_STOCK}.
+     * @throws SelectionOutOfRangeException If there is no queue with that number.
+     */
+    public BatchReport serveUpTo(int queueNumber, int count) throws SelectionOutOfRangeException {
+        checkQueueNumber(this.queueSet, queueNumber);
+        QueueSet set = this.lockQueue(queueNumber);
+        BatchReport report;
+
+        try {
+            report = set.queues()[queueNumber].serveUpTo(count);
+            Customer[] servedCustomers = report.getCustomers(BatchReport.Outcome.SERVED);
+
+            for (Customer customer : servedCustomers) {
+                prepareKeys(customer);
+            }
+
+            this.lock.lock();
+
+            try {
+                for (Customer customer : servedCustomers) {
+                    this.journalChange(() -> this.journal.logServeCustomer(queueNumber));
+                    this.forgetCustomer(customer);
+                }
+            } finally {
+                this.lock.unlock();
+            }
+
+            this.refillQueue(set, queueNumber, servedCustomers.length);
+        } finally {
+            set.locks()[queueNumber].unlock();
+        }
+
+        this.finishChange();
+        return report;
+    }
+
+    @Override
+    public Customer removeCustomer(int queueNumber, int position)
+            throws SelectionOutOfRangeException, CustomerNotFoundException {
+        checkQueueNumber(this.queueSet, queueNumber);
+        QueueSet set = this.lockQueue(queueNumber);
+        Customer customer;
+
+        try {
+            customer = set.queues()[queueNumber].removeCustomer(position);
+            prepareKeys(customer);
+            this.lock.lock();
+
+            try {
+                this.journalChange(() -> this.journal.logRemoveCustomer(queueNumber, position));
+                this.forgetCustomer(customer);
+            } finally {
+                this.lock.unlock();
+            }
+
+            this.refillQueue(set, queueNumber, 1);
+        } finally {
+            set.locks()[queueNumber].unlock();
+        }
+
+        this.finishChange();
+        return customer;
+    }
+
+    /**
+     * The matches are found in the index first, then each queue with matches is read under its own lock, so a
+     * {@link Customer} that moves to another queue meanwhile may be left out.
+     */
+    @Override
+    public List<CustomerSearchIndex.Hit> search(String searchTerm) {
+        while (true) {
+            QueueSet set;
+            Map<Integer, Set<Long>> matches;
+            this.lock.lock();
+
+            try {
+                set = this.queueSet;
+                matches = this.searchIndex.findMatches(searchTerm);
+            } finally {
+                this.lock.unlock();
+            }
+
+            List<CustomerSearchIndex.Hit> hits = this.findHits(set, matches, searchTerm);
+
+            if (hits != null) {
+                return hits;
+            }
+        }
+    }
+
+    /**
+     * Find the positions of the matches of a search, one queue at a time.
+     * @param set The queues the matches were found in.
+     * @param matches The ids of the matches by queue number, from {@link CustomerSearchIndex#findMatches(String)}.
+     * @param searchTerm The search term, used to scan a {@link SegmentedWaitingQueue}, which is not indexed.
+     * @return Copies of the matches ordered by queue number and position, with {@link WaitingQueue} matches last.
+     * null if the queues were replaced meanwhile.
+     */
+    private List<CustomerSearchIndex.Hit> findHits(QueueSet set, Map<Integer, Set<Long>> matches, String searchTerm) {
+        List<CustomerSearchIndex.Hit> hits = new ArrayList<>();
+        boolean scanWaitingQueue = set.waitingQueue() instanceof SegmentedWaitingQueue;
+
+        for (int i = 0; i <= set.queues().length; i++) {
+            int queueNumber = i < set.queues().length ? i : QueueEvent.WAITING_QUEUE; // The waiting queue comes last
+            Set<Long> ids = matches.get(queueNumber);
+
+            if (ids == null && !(queueNumber == QueueEvent.WAITING_QUEUE && scanWaitingQueue)) {
+                continue;
+            }
+
+            // Views are only valid under the lock, so each hit holds a copy
+            ObjIntConsumer<Customer> addHit = (customer, position) ->
+                    hits.add(new CustomerSearchIndex.Hit(queueNumber, position, detach(customer)));
+            set.lockOf(queueNumber).lock();
+
+            try {
+                if (set != this.queueSet) {
+                    return null;
+                }
+
+                if (queueNumber != QueueEvent.WAITING_QUEUE) {
+                    set.queues()[queueNumber].findCustomers(ids, addHit);
+                } else if (scanWaitingQueue) {
+                    set.waitingQueue().searchCustomers(searchTerm, addHit);
+                } else {
+                    set.waitingQueue().findCustomers(ids, addHit);
+                }
+            } finally {
+                set.lockOf(queueNumber).unlock();
+            }
+        }
+
+        return hits;
+    }
+
+    /**
+     * @param customer A {@link Customer}, which may be a view into a {@link CustomerStore}.
+     * @return A copy of the {@link Customer} and its stamps that does not depend on any store.
+     */
+    private static Customer detach(Customer customer) {
+        Customer copy = new Customer(
+                customer.getId(),
+                customer.getFirstName(),
+                customer.getLastName(),
+                customer.getBurgersRequired()
+        );
+        copy.setArrivedAt(customer.getArrivedAt());
+        copy.setQueuedAt(customer.getQueuedAt());
+
+        return copy;
+    }
+
+    /**
+     * Build the keys the indices read from a customer, so that they are not built while the engine lock is held.
+     * @param customer A customer that is about to be added to or removed from the indices.
+     */
+    private static void prepareKeys(Customer customer) {
+        customer.getSearchKey();
+        customer.getCollationKey();
+    }
+
+    /**
+     * Add a customer to a queue and the indices, without waiting for the journal. Must be called without any lock.
+     * @param customer The customer to add to a queue.
+     * @return The number of the queue that the customer was added to. -1 if the {@link WaitingQueue} was used.
+     * @throws FullQueueException Is thrown only if all queues and the {@link WaitingQueue} are full.
+     */
+    private int placeCustomer(Customer customer) throws FullQueueException {
+        while (true) { // Choosing a queue and locking it are separate steps, so the queue may fill up in between
+            QueueSet set;
+            int queueNumber;
+            this.lock.lock();
+
+            try {
+                set = this.queueSet;
+                queueNumber = this.placementIndex.findQueue();
+            } finally {
+                this.lock.unlock();
+            }
+
+            if (queueNumber < 0) { // All queues are full
+                if (this.enqueueIfAllFull(customer)) {
+                    return -1;
+                }
+            } else if (this.addIfRoom(set, queueNumber, customer)) {
+                return queueNumber;
+            }
+        }
+    }
+
+    /**
+     * Add a customer to a {@link FoodQueue} if it still has room once it is locked.
+     * @param set The queues the {@link FoodQueue} was chosen from.
+     * @param queueNumber The number of the {@link FoodQueue}.
+     * @param customer The customer to add.
+     * @return 'true' if the customer was added. 'false' if the queue filled up or the queues were replaced meanwhile.
+     */
+    private boolean addIfRoom(QueueSet set, int queueNumber, Customer customer) {
+        FoodQueue queue = set.queues()[queueNumber];
+        set.locks()[queueNumber].lock();
+
+        try {
+            if (set != this.queueSet || queue.isQueueFull()) {
+                return false;
+            }
+
+            queue.addCustomer(customer);
+            this.lock.lock();
+
+            try {
+                this.journalChange(() -> this.journal.logAddCustomer(queueNumber, customer));
+                this.placementIndex.update(queueNumber);
+                this.indexCustomer(customer, queueNumber);
+            } finally {
+                this.lock.unlock();
+            }
+
+            return true;
+        } catch (FullQueueException exception) { // The queue was checked under its lock
+            throw new IllegalStateException(exception);
+        } finally {
+            set.locks()[queueNumber].unlock();
+        }
+    }
+
+    /**
+     * Add as many customers as fit to a {@link FoodQueue} in one step with {@link FoodQueue#addCustomers(Customer[])}.
+     * @param set The queues the {@link FoodQueue} was chosen from.
+     * @param queueNumber The number of the {@link FoodQueue}.
+     * @param customers The customers to add.
+     * @param firstIndex The index of the first customer to add.
+     * @return The number of customers added. 0 if the queue filled up or the queues were replaced meanwhile.
+     */
+    private int addChunk(QueueSet set, int queueNumber, Customer[] customers, int firstIndex) {
+        FoodQueue queue = set.queues()[queueNumber];
+        set.locks()[queueNumber].lock();
+
+        try {
+            int chunkEnd = Math.min(customers.length, firstIndex + queue.getQueueLength() - queue.getCustomerCount());
+
+            if (set != this.queueSet || chunkEnd <= firstIndex) {
+                return 0;
+            }
+
+            BatchReport report = queue.addCustomers(Arrays.copyOfRange(customers, firstIndex, chunkEnd));
+            this.lock.lock();
+
+            try {
+                for (Customer customer : report.getCustomers(BatchReport.Outcome.ADDED)) {
+                    this.journalChange(() -> this.journal.logAddCustomer(queueNumber, customer));
+                    this.indexCustomer(customer, queueNumber);
+                }
+
+                this.placementIndex.update(queueNumber);
+            } finally {
+                this.lock.unlock();
+            }
+
+            return report.count(BatchReport.Outcome.ADDED);
+        } finally {
+            set.locks()[queueNumber].unlock();
+        }
+    }
+
+    /**
+     * Add a customer to the {@link WaitingQueue}, unless a {@link FoodQueue} has room again.
+     * The {@link WaitingQueue} stays locked from the check until the customer is added, and a freed place is only
+     * offered to new customers after it was refilled under the same lock, so no customer waits while a place is free.
+     * @param customer The customer to add.
+     * @return 'true' if the customer was added. 'false' if a {@link FoodQueue} has room, so it must be placed again.
+     * @throws FullQueueException If the {@link WaitingQueue} is full.
+     */
+    private boolean enqueueIfAllFull(Customer customer) throws FullQueueException {
+        QueueSet set = this.lockWaitingQueue();
+
+        try {
+            this.lock.lock();
+
+            try {
+                if (this.placementIndex.findQueue() >= 0) {
+                    return false;
+                }
+            } finally {
+                this.lock.unlock();
+            }
+
+            set.waitingQueue().enqueue(customer);
+            this.lock.lock();
+
+            try {
+                this.journalChange(() -> this.journal.logEnqueue(customer));
+                this.searchIndex.add(customer, -1);
+            } finally {
+                this.lock.unlock();
+            }
+
+            return true;
+        } finally {
+            set.waitingLock().unlock();
+        }
+    }
+
+    /**
+     * Add a customer that joined a {@link FoodQueue} to the sorted customer and search indices. Must be called under
+     * the engine lock.
+     * @param customer The customer. Only its id and name are kept, so in compact mode the copy in the queue's
+     * {@link CustomerStore} is the only one that stays alive.
+     * @param queueNumber The number of the queue.
+     */
+    private void indexCustomer(Customer customer, int queueNumber) {
+        this.sortedCustomers.add(customer);
+        this.searchIndex.add(customer, queueNumber); // Moves the customer if it came from the waiting queue
+    }
+
+    /**
+     * Remove a customer that left a {@link FoodQueue} from the sorted customer and search indices. Must be called
+     * under the engine lock.
+     * @param customer The customer that left.
+     */
+    private void forgetCustomer(Customer customer) {
+        this.sortedCustomers.remove(customer);
+        this.searchIndex.remove(customer);
+    }
+
+    /**
+     * Move customers from the front of the {@link WaitingQueue} into a {@link FoodQueue} that places were just freed
+     * in, and tell {@link ShopEngine#promotionListener}, then update the placement of the {@link FoodQueue}.
+     * Stops early once the {@link WaitingQueue} is empty.
+     * Must be called with the lock of the {@link FoodQueue} held. The {@link WaitingQueue} is locked until the
+     * placement is updated, so no customer starts waiting while the freed places are offered to new customers.
+     * @param set The queues.
+     * @param queueNumber The number of the {@link FoodQueue}.
+     * @param count The number of places freed.
+     */
+    private void refillQueue(QueueSet set, int queueNumber, int count) {
+        FoodQueue queue = set.queues()[queueNumber];
+        set.waitingLock().lock();
+
+        try {
+            for (int i = 0; i < count; i++) {
+                Customer waitingCustomer;
+
+                try {
+                    waitingCustomer = set.waitingQueue().dequeue();
+                    prepareKeys(waitingCustomer);
+                    queue.addCustomer(waitingCustomer);
+                } catch (CustomerNotFoundException exception) {
+                    break;
+                } catch (FullQueueException exception) { // A place was just freed, so this cannot happen
+                    throw new IllegalStateException(exception);
+                }
+
+                this.lock.lock();
+
+                try {
+                    this.journalChange(() -> this.journal.logDequeue());
+                    this.journalChange(() -> this.journal.logAddCustomer(queueNumber, waitingCustomer));
+                    this.indexCustomer(waitingCustomer, queueNumber);
+                } finally {
+                    this.lock.unlock();
+                }
+
+                this.promotionListener.accept(waitingCustomer, queueNumber);
+            }
+
+            this.lock.lock();
+
+            try {
+                this.placementIndex.update(queueNumber);
+            } finally {
+                this.lock.unlock();
+            }
+        } finally {
+            set.waitingLock().unlock();
+        }
+    }
+
+    /**
+     * @param set The queues.
+     * @param queueNumber A queue number from a caller.
+     * @throws SelectionOutOfRangeException If there is no {@link FoodQueue} with that number.
+     */
+    private static void checkQueueNumber(QueueSet set, int queueNumber) throws SelectionOutOfRangeException {
+        if (queueNumber < 0 || queueNumber >= set.queues().length) {
+            throw new SelectionOutOfRangeException(String.format("Range is %d to %d.", 0, set.queues().length - 1));
+        }
+    }
+
+    /**
+     * Lock one queue of the current {@link QueueSet}, locking again if the queues are replaced while waiting.
+     * @param queueNumber The number of the {@link FoodQueue}. {@link QueueEvent#WAITING_QUEUE} for the
+     * {@link WaitingQueue}.
+     * @return The queues the locked queue belongs to. Unlock it with {@link QueueSet#lockOf(int)}.
+     * @throws SelectionOutOfRangeException If there is no queue with that number.
+     */
+    private QueueSet lockQueue(int queueNumber) throws SelectionOutOfRangeException {
+        while (true) {
+            QueueSet set = this.queueSet;
+
+            if (queueNumber != QueueEvent.WAITING_QUEUE) {
+                checkQueueNumber(set, queueNumber);
+            }
+
+            set.lockOf(queueNumber).lock();
+
+            if (set == this.queueSet) {
+                return set;
+            }
+
+            set.lockOf(queueNumber).unlock();
+        }
+    }
+
+    /**
+     * @return The current queues, with the {@link WaitingQueue} locked.
+     * @see ShopEngine#lockQueue(int)
+     */
+    private QueueSet lockWaitingQueue() {
+        try {
+            return this.lockQueue(QueueEvent.WAITING_QUEUE);
+        } catch (SelectionOutOfRangeException exception) { // The waiting queue always exists
+            throw new IllegalStateException(exception);
+        }
+    }
+
+    /**
+     * Lock every queue and then the engine, so that nothing changes until {@link ShopEngine#unlockAll} is called.
+     * @return The queues that were locked.
+     */
+    private QueueSet lockAll() {
+        while (true) {
+            QueueSet set = this.queueSet;
+
+            for (ReentrantLock queueLock : set.locks()) {
+                queueLock.lock();
+            }
+
+            set.waitingLock().lock();
+            this.lock.lock();
+
+            if (set == this.queueSet) {
+                return set;
+            }
+
+            this.unlockAll(set);
+        }
+    }
+
+    /**
+     * @param set The queues returned by {@link ShopEngine#lockAll()}, even if they have been replaced since.
+     */
+    private void unlockAll(QueueSet set) {
+        this.lock.unlock();
+        set.waitingLock().unlock();
+
+        for (ReentrantLock queueLock : set.locks()) {
+            queueLock.unlock();
+        }
+    }
+
+    /**
+     * A number of hardcoded validation cases are checked by this method.
+     * @param input A name that needs to be validated.
+     * @return The validated name.
+     * @throws InputValidationException The reason for the failure is passed in the exception message.
+     */
+    public static String validateName(String input) throws InputValidationException {
+        if (input.contains(Customer.INFO_DELIMITER)) {
+            throw new InputValidationException(String.format(
+                    "'%s' delimiter character detected!",
+                    Customer.INFO_DELIMITER
+            ));
+        }
+
+        if (input.isEmpty()) {
+            throw new InputValidationException("Empty string detected!");
+        }
+
+        if (input.equals("null")) {
+            throw new InputValidationException("'null' detected!");
+        }
+
+        if (input.contains(String.format("%n"))) { // String.format() is used to get the platform specific character
+            throw new InputValidationException("Newline character detected!");
+        }
+
+        return input;
+    }
+
+    /**
+     * @return A copy of the data of the shop.
+     */
+    public ProgramState capture() {
+        QueueSet set = this.lockAll();
+
+        try {
+            return ProgramState.capture(set.queues(), set.waitingQueue(), this.itemStock);
+        } finally {
+            this.unlockAll(set);
+        }
+    }
+
+    /**
+     * Replace the data of the shop, then start the {@link Journal} again against a snapshot of the new data.
+     * @param state The data to load.
+     * @throws StockOutOfRangeException If the stock in the data is out of range. Nothing is changed in that case.
+     */
+    public void load(ProgramState state) throws StockOutOfRangeException {
+        QueueSet set = this.lockAll();
+
+        try {
+            this.replaceState(state);
+
+            if (this.journal != null) { // Further changes are recorded against the loaded data
+                this.compactJournalOrWarn(path -> BinarySnapshot.write(path, state));
+            }
+        } finally {
+            this.unlockAll(set);
+        }
+    }
+
+    /**
+     * Rebuild the data of the shop from a {@link BinarySnapshot} and the changes recorded in a {@link Journal}.
+     * The changes are replayed into new queues, which only replace the queues of the shop once both files were used.
+     * If either file cannot be used, the data of the shop is left as it was.
+     * Call {@link ShopEngine#openJournal} afterwards to record new changes.
+     * @param snapshotPath The snapshot file. If it does not exist, the journal is replayed over the current data.
+     * @param journalPath The journal file. It is fine if it does not exist.
+     * @return The number of changes replayed from the journal.
+     * @throws IOException If a file could not be read.
+     * @throws InvalidFileDataException If a file is not valid.
+     * @throws StockOutOfRangeException If the stock in the snapshot is out of range.
+     */
+    public int restore(Path snapshotPath, Path journalPath)
+            throws IOException, InvalidFileDataException, StockOutOfRangeException {
+        QueueSet set = this.lockAll();
+
+        try {
+            boolean snapshotExists = Files.exists(snapshotPath);
+            ProgramState state = snapshotExists
+                    ? BinarySnapshot.read(snapshotPath)
+                    : ProgramState.capture(set.queues(), set.waitingQueue(), this.itemStock);
+            long checksum = snapshotExists ? BinarySnapshot.readChecksum(snapshotPath) : 0;
+            int previousItemStock = this.itemStock.get();
+            this.itemStock.set(state.itemStock());
+            FoodQueue[] restoredQueues = this.newFoodQueues(state);
+            WaitingQueue restoredWaitingQueue = this.newWaitingQueue(state.waitingCustomers());
+
+            try {
+                int changesReplayed = Journal.replay(
+                        journalPath,
+                        checksum,
+                        restoredQueues,
+                        restoredWaitingQueue,
+                        this.itemStock
+                );
+                this.installQueues(restoredQueues, restoredWaitingQueue);
+                this.snapshotChecksum = checksum;
+
+                return changesReplayed;
+            } catch (IOException | InvalidFileDataException exception) {
+                this.closeWaitingQueue(restoredWaitingQueue);
+
+                try {
+                    this.itemStock.set(previousItemStock);
+                } catch (StockOutOfRangeException ignored) { // The stock was in range before
+                }
+
+                throw exception;
+            }
+        } finally {
+            this.unlockAll(set);
+        }
+    }
+
+    /**
+     * Move files that could not be restored out of the way, so that new files can be created without losing them.
+     * Each file is renamed to its name followed by ".corrupt", or ".corrupt.1", ".corrupt.2" and so on if that name
+     * is taken. Files that do not exist are skipped.
+     * @param paths The files to move, such as the snapshot and the journal passed to {@link ShopEngine#restore}.
+     * @return The new path of each file that was moved.
+     * @throws IOException If a file could not be moved. Files moved before are left where they were moved to.
+     */
+    public static List<Path> moveAside(Path... paths) throws IOException {
+        List<Path> movedPaths = new ArrayList<>(paths.length);
+
+        for (Path path : paths) {
+            if (!Files.exists(path)) {
+                continue;
+            }
+
+            Path target = path.resolveSibling(path.getFileName() + CORRUPT_SUFFIX);
+
+            for (int i = 1; Files.exists(target); i++) { // Never replace a file moved aside before
+                target = path.resolveSibling(String.format("%s%s.%d", path.getFileName(), CORRUPT_SUFFIX, i));
+            }
+
+            movedPaths.add(Files.move(path, target, StandardCopyOption.ATOMIC_MOVE));
+        }
+
+        return movedPaths;
+    }
+
+    /**
+     * Start recording changes in a new {@link Journal}, which applies to the last snapshot that was restored.
+     * @param snapshotPath The file that snapshots are written to when the journal is compacted.
+     * @param journalPath The journal file. Any journal there is replaced, so if {@link ShopEngine#restore} failed,
+     * move the files it could not use out of the way with {@link ShopEngine#moveAside} first.
+     * @param snapshotFirst 'true' to write a snapshot of the current data first, such as after replaying changes.
+     * @throws IOException If the snapshot or the journal could not be written.
+     */
+    public void openJournal(Path snapshotPath, Path journalPath, boolean snapshotFirst) throws IOException {
+        QueueSet set = this.lockAll();
+
+        try {
+            this.snapshotPath = snapshotPath;
+
+            if (snapshotFirst) {
+                this.snapshotChecksum = this.snapshotOf(set).write(snapshotPath);
+            }
+
+            this.journal = new Journal(journalPath, this.snapshotChecksum);
+            this.journal.setAwaitEachRecord(false); // Operations wait once the locks are released
+        } finally {
+            this.unlockAll(set);
+        }
+    }
+
+    /**
+     * Write a new snapshot and empty the {@link Journal}.
+     * @throws IOException If the snapshot could not be written.
+     * @throws IllegalStateException If no journal is open.
+     */
+    public void compactJournal() throws IOException {
+        QueueSet set = this.lockAll();
+
+        try {
+            if (this.journal == null) {
+                throw new IllegalStateException("No journal is open!");
+            }
+
+            this.writeSnapshot(this.snapshotOf(set));
+        } finally {
+            this.unlockAll(set);
+        }
+    }
+
+    /**
+     * @param set The queues of the shop.
+     * @return A write of a snapshot read straight from the queues, so nothing is copied onto the heap first.
+     */
+    private SnapshotWrite snapshotOf(QueueSet set) {
+        return path -> BinarySnapshot.write(path, set.queues(), set.waitingQueue(), this.itemStock);
+    }
+
+    /**
+     * Write a snapshot of the data of the shop and empty the {@link Journal}. Must be called under every lock.
+     * @param snapshotWrite The write of the snapshot, which must hold the current data of the shop.
+     * @throws IOException If the snapshot could not be written.
+     */
+    private void writeSnapshot(SnapshotWrite snapshotWrite) throws IOException {
+        long checksum = snapshotWrite.write(this.snapshotPath);
+        this.journal.reset(checksum);
+        this.snapshotChecksum = checksum;
+    }
+
+    /**
+     * Run {@link ShopEngine#writeSnapshot(SnapshotWrite)}, reporting any failure. Must be called under every lock.
+     * @param snapshotWrite The write of the snapshot, which must hold the current data of the shop.
+     */
+    private void compactJournalOrWarn(SnapshotWrite snapshotWrite) {
+        try {
+            this.writeSnapshot(snapshotWrite);
+        } catch (IOException exception) {
+            this.warn("Snapshot could not be written! " + exception.getMessage());
+        }
+    }
+
+    /**
+     * Compact the {@link Journal} once it has {@link ShopEngine#JOURNAL_COMPACTION_THRESHOLD} records, to keep
+     * replay at startup short. Must be called without any lock, as every lock is taken to write the snapshot.
+     */
+    private void compactJournalIfLong() {
+        if (this.getJournalRecordCount() < JOURNAL_COMPACTION_THRESHOLD) { // Checked first to avoid taking every lock
+            return;
+        }
+
+        QueueSet set = this.lockAll();
+
+        try {
+            if (this.getJournalRecordCount() >= JOURNAL_COMPACTION_THRESHOLD) { // Another thread may have compacted it
+                this.compactJournalOrWarn(this.snapshotOf(set));
+            }
+        } finally {
+            this.unlockAll(set);
+        }
+    }
+
+    /**
+     * Run a write to {@link ShopEngine#journal}, reporting any failure. Does nothing if no journal is open.
+     * Must be called under the engine lock, and under the lock of every queue the change was made to.
+     * @param journalWrite The write to run.
+     */
+    private void journalChange(JournalWrite journalWrite) {
+        if (this.journal == null) {
+            return;
+        }
+
+        try {
+            journalWrite.write();
+        } catch (IOException exception) {
+            this.warn("Change could not be written to the journal! " + exception.getMessage());
+        }
+    }
+
+    /**
+     * Finish an operation once every lock is released: compact the {@link Journal} if it is long, then wait for the
+     * changes logged so far to be durable, so that changes made by other threads meanwhile are forced to disk together.
+     */
+    private void finishChange() {
+        this.compactJournalIfLong();
+        this.awaitJournal();
+    }
+
+    /**
+     * Wait for the changes logged so far to be durable. If the {@link Journal} failed, a snapshot is written instead,
+     * which holds the changes it lost and starts it again.
+     */
+    private void awaitJournal() {
+        Journal currentJournal = this.journal;
+
+        if (currentJournal == null) {
+            return;
+        }
+
+        try {
+            currentJournal.awaitDurable();
+        } catch (IOException exception) {
+            this.warn("Change could not be written to the journal! " + exception.getMessage());
+            this.recoverJournal(currentJournal);
+        }
+    }
+
+    /**
+     * Write a snapshot and reset the given {@link Journal}, unless another thread already did. Must be called without
+     * any lock, as every lock is taken to write the snapshot.
+     * @param failedJournal The journal that failed.
+     */
+    private void recoverJournal(Journal failedJournal) {
+        QueueSet set = this.lockAll();
+
+        try {
+            if (this.journal == failedJournal && failedJournal.hasFailed()) {
+                this.compactJournalOrWarn(this.snapshotOf(set));
+            }
+        } finally {
+            this.unlockAll(set);
+        }
+    }
+
+    /**
+     * Replace the queues and the stock with the given data. Must be called under every lock.
+     * @param state The data to load into memory.
+     * @throws StockOutOfRangeException If the stock in the data is out of range. Nothing is changed in that case.
+     */
+    private void replaceState(ProgramState state) throws StockOutOfRangeException {
+        FoodQueue[] loadedQueues = this.newFoodQueues(state);
+
+        this.itemStock.set(state.itemStock());
+        this.installQueues(loadedQueues, this.newWaitingQueue(state.waitingCustomers()));
+    }
+
+    /**
+     * Make a new set of queues the queues of the shop, closing the old {@link WaitingQueue}. The indices are built
+     * before the queues are published, as other threads may change the queues as soon as they are. Must be called
+     * under every lock, or from the constructor.
+     * @param queues The new {@link FoodQueue}s.
+     * @param waitingQueue The new {@link WaitingQueue}.
+     */
+    private void installQueues(FoodQueue[] queues, WaitingQueue waitingQueue) {
+        ReentrantLock[] locks = new ReentrantLock[queues.length];
+
+        for (int i = 0; i < queues.length; i++) { // A concurrent queue already has a lock that its readers take
+            locks[i] = queues[i] instanceof ConcurrentFoodQueue concurrentQueue
+                    ? concurrentQueue.getLock()
+                    : new ReentrantLock();
+        }
+
+        ReentrantLock waitingLock = waitingQueue instanceof ConcurrentWaitingQueue concurrentWaitingQueue
+                ? concurrentWaitingQueue.getLock()
+                : new ReentrantLock();
+        QueueSet set = new QueueSet(queues, locks, waitingQueue, waitingLock);
+        QueueSet previousSet = this.queueSet;
+        this.rebuildIndices(set);
+
+        if (this.eventBus != null) {
+            this.attachEventBus(set);
+        }
+
+        this.queueSet = set;
+        this.registerGaugesAgain();
+
+        if (previousSet != null) {
+            this.closeWaitingQueue(previousSet.waitingQueue());
+        }
+
+        if (this.eventBus != null) { // The old queues are dropped, so only the new ones publish
+            this.eventBus.publish(QueueEvent.Type.QUEUES_REPLACED, QueueEvent.WAITING_QUEUE, 0, null, 0);
+        }
+    }
+
+    /**
+     * Rebuild the placement, sorted customer and search indices for a set of queues.
+     * @param set The queues, which no other thread may change yet.
+     */
+    private void rebuildIndices(QueueSet set) {
+        this.placementIndex = new QueuePlacementIndex(set.queues());
+        this.sortedCustomers = genSortedCustomerIndex(set.queues());
+        this.searchIndex = new CustomerSearchIndex(set.queues(), set.waitingQueue());
+    }
+
+    /**
+     * @param queues The {@link FoodQueue}s to index.
+     * @return A {@link SortedCustomerIndex} holding all customers in the {@link FoodQueue}s.
+     */
+    private static SortedCustomerIndex genSortedCustomerIndex(FoodQueue[] queues) {
+        long startTime = Metrics.start();
+
+        try {
+            SortedCustomerIndex customerIndex = new SortedCustomerIndex();
+
+            for (FoodQueue queue : queues) {
+                for (int i = 0; i < queue.getQueueLength(); i++) {
+                    try {
+                        if (queue.getCustomer(i) == null) {
+                            break;
+                            // FoodQueues will keep the internal queue free of internal null holes allowing an early break
+                        }
+
+                        customerIndex.add(queue.getCustomer(i));
+                    } catch (Exception ignored) {
+                    }
+                }
+            }
+
+            return customerIndex;
+        } finally {
+            Metrics.record(Operation.SORT, startTime);
+        }
+    }
+
+    /**
+     * @param state The data to build the queues from.
+     * @return A new {@link FoodQueue} for each queue in the data, built by {@link ShopEngine#newFoodQueue}.
+     */
+    private FoodQueue[] newFoodQueues(ProgramState state) {
+        FoodQueue[] queues = new FoodQueue[state.queueCustomers().length];
+
+        for (int i = 0; i < queues.length; i++) {
+            queues[i] = this.newFoodQueue(state.queueCustomers()[i], state.queueIncomes()[i]);
+        }
+
+        return queues;
+    }
+
+    /**
+     * Creates a {@link FoodQueue} that serves from {@link ShopEngine#itemStock}, built as set in
+     * {@link ShopEngine#options}.
+     * @param customers The internal array. Ensure there are no holes in this array.
+     * @param income The queue income value.
+     * @return A reference to the newly created {@link FoodQueue}.
+     */
+    private FoodQueue newFoodQueue(Customer[] customers, int income) {
+        if (this.options.compact()) {
+            return this.options.concurrent()
+                    ? new ConcurrentFoodQueue(customers, income, new CustomerStore(), this.itemStock)
+                    : new FoodQueue(customers, income, new CustomerStore(), this.itemStock);
+        }
+
+        return this.options.concurrent()
+                ? new ConcurrentFoodQueue(customers, income, this.itemStock)
+                : new FoodQueue(customers, income, this.itemStock);
+    }
+
+    /**
+     * Creates a {@link SegmentedWaitingQueue} if {@link Options#waitingMemoryBudget()} is set, otherwise a
+     * {@link WaitingQueue}, or a {@link ConcurrentWaitingQueue} if {@link Options#concurrent()} is set.
+     * If {@link Options#compact()} is set, a fixed size queue keeps its customers in its own {@link CustomerStore}.
+     * @param customers An array that will be used to construct the queue. Ensure that the array has no holes.
+     * @return A reference to the newly created {@link WaitingQueue}.
+     */
+    private WaitingQueue newWaitingQueue(Customer[] customers) {
+        if (this.options.waitingMemoryBudget() > 0) {
+            try {
+                return new SegmentedWaitingQueue(customers, this.options.waitingMemoryBudget());
+            } catch (IOException exception) {
+                this.warn("Waiting queue spill file could not be created! " + exception.getMessage());
+                this.warn("Using a fixed size waiting queue instead.");
+            }
+        }
+
+        if (this.options.compact()) {
+            return this.options.concurrent()
+                    ? new ConcurrentWaitingQueue(customers, new CustomerStore())
+                    : new WaitingQueue(customers, new CustomerStore());
+        }
+
+        return this.options.concurrent() ? new ConcurrentWaitingQueue(customers) : new WaitingQueue(customers);
+    }
+
+    /**
+     * Close a {@link WaitingQueue} if it is a {@link SegmentedWaitingQueue}, deleting its spill file.
+     * @param waitingQueue A {@link WaitingQueue} that is no longer used.
+     */
+    private void closeWaitingQueue(WaitingQueue waitingQueue) {
+        if (waitingQueue instanceof SegmentedWaitingQueue segmentedWaitingQueue) {
+            try {
+                segmentedWaitingQueue.close();
+            } catch (IOException exception) {
+                this.warn("Waiting queue spill file could not be closed! " + exception.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Register the queue depth and stock gauges with {@link Metrics}. The gauges follow the queues when data is loaded.
+     * @param prefix Put before the name of each gauge, so that the gauges of different shops do not collide.
+     */
+    public void registerGauges(String prefix) {
+        this.lock.lock();
+
+        try {
+            this.gaugePrefix = prefix;
+            this.registerGaugesAgain();
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    /**
+     * Register the gauges for the current queues, replacing the gauges of any previous queues.
+     * Does nothing if {@link ShopEngine#registerGauges(String)} was not called.
+     */
+    private void registerGaugesAgain() {
+        if (this.gaugePrefix == null) {
+            return;
+        }
+
+        QueueSet set = this.queueSet;
+        Metrics.removeGauges(this.gaugePrefix + "FoodQueue.");
+
+        for (int i = 0; i < set.queues().length; i++) { // Gauges hold the queues themselves, not the field
+            Metrics.registerGauge(
+                    String.format("%sFoodQueue.%d.depth", this.gaugePrefix, i + 1),
+                    set.queues()[i]::getCustomerCount
+            );
+        }
+
+        Metrics.registerGauge(this.gaugePrefix + "WaitingQueue.depth", set.waitingQueue()::getCustomerCount);
+        Metrics.registerGauge(this.gaugePrefix + "ItemStock.level", this.itemStock::get);
+        Metrics.registerGauge(this.gaugePrefix + "Journal.records", this::getJournalRecordCount);
+
+        if (this.eventBus != null) {
+            this.eventBus.registerGauges(this.gaugePrefix);
+        }
+    }
+
+    /**
+     * Write any pending changes and close the {@link Journal}, then close the {@link WaitingQueue}, then deliver any
+     * pending {@link QueueEvent}s and close the {@link QueueEventBus}.
+     */
+    @Override
+    public void close() {
+        QueueSet set = this.lockAll();
+
+        try {
+            if (this.journal != null) {
+                try {
+                    this.journal.close();
+                } catch (IOException exception) {
+                    this.warn("Journal could not be closed! " + exception.getMessage());
+                }
+            }
+
+            this.closeWaitingQueue(set.waitingQueue());
+
+            if (this.eventBus != null) {
+                this.eventBus.close();
+            }
+        } finally {
+            this.unlockAll(set);
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package com.github.abrarsl.courseworkclassversion;
+
+import java.text.CollationKey;
+import java.util.Arrays;
+import java.util.TreeMap;
+import java.util.stream.LongStream;
+
+/**
+ * Keeps the ids of {@link Customer}s sorted alphabetically by their full name as they are added and removed.
+ * Names are ordered by {@link Customer#getCollationKey()}, so the order does not depend on the default locale.
+ * This is backed by a red-black tree, so adding and removing a {@link Customer} is O(log n) and
+ * the sorted order is always available without sorting.
+ * <p>
+ * Each distinct full name has one node holding its key and the ids of every {@link Customer} with that name, in the
+ * order they were added. No {@link Customer} objects are held, so the {@link Customer}s may be short-lived views, and
+ * a name shared by many {@link Customer}s costs one long per {@link Customer}.
+ * This class is not thread-safe.
+ */
+public class SortedCustomerIndex {
+    private final TreeMap<CollationKey, Ids> idsByName = new TreeMap<>();
+    private int customerCount = 0;
+
+    /**
+     * The ids of the {@link Customer}s with one name, in a growable long array.
+     */
+    private static final class Ids {
+        private long[] ids = new long[1];
+        private int size;
+
+        /**
+         * @return The ids in the order they were added.
+         */
+        private LongStream stream() {
+            return Arrays.stream(this.ids, 0, this.size);
+        }
+    }
+
+    /**
+     * @return The number of {@link Customer}s in the index.
+     */
+    public int getCustomerCount() {
+        return this.customerCount;
+    }
+
+    /**
+     * @return The number of distinct full names in the index.
+     */
+    public int getNameCount() {
+        return this.idsByName.size();
+    }
+
+    /**
+     * @param customer The {@link Customer} to add to the index. Only its key and id are kept.
+     */
+    public void add(Customer customer) {
+        Ids ids = this.idsByName.computeIfAbsent(customer.getCollationKey(), key -> new Ids());
+
+        if (ids.size == ids.ids.length) {
+            ids.ids = Arrays.copyOf(ids.ids, ids.size * 2);
+        }
+
+        ids.ids[ids.size] = customer.getId();
+        ids.size++;
+        this.customerCount++;
+    }
+
+    /**
+     * @param customer The {@link Customer} to remove from the index.
+     * @return 'true' if the {@link Customer} was found and removed.
+     */
+    public boolean remove(Customer customer) {
+        CollationKey key = customer.getCollationKey();
+        Ids ids = this.idsByName.get(key);
+
+        if (ids == null) {
+            return false;
+        }
+
+        for (int i = 0; i < ids.size; i++) {
+            if (ids.ids[i] == customer.getId()) { // Match by id, customers may share a name
+                System.arraycopy(ids.ids, i + 1, ids.ids, i, ids.size - i - 1);
+                ids.size--;
+
+                if (ids.size == 0) {
+                    this.idsByName.remove(key);
+                }
+
+                this.customerCount--;
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Removes all {@link Customer}s from the index.
+     */
+    public void clear() {
+        this.idsByName.clear();
+        this.customerCount = 0;
+    }
+
+    /**
+     * @return The ids of the {@link Customer}s in alphabetical order.
+     */
+    public LongStream ids() {
+        return this.idsByName.values().stream().flatMapToLong(Ids::stream);
+    }
+}
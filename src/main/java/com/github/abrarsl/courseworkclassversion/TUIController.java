@@ -1,15 +1,23 @@
 package com.github.abrarsl.courseworkclassversion;
 
+import com.github.abrarsl.courseworkclassversion.branch.BranchNetwork;
 import com.github.abrarsl.courseworkclassversion.exceptions.*;
+import com.github.abrarsl.courseworkclassversion.metrics.Metrics;
+import com.github.abrarsl.courseworkclassversion.server.OrderServer;
 import javafx.application.Platform;
 import javafx.fxml.FXMLLoader;
 import javafx.scene.Scene;
 import javafx.stage.Stage;
 
-import java.io.File;
-import java.io.FileNotFoundException;
-import java.io.FileWriter;
+import javax.management.JMException;
 import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Scanner;
 
 public class TUIController {
@@ -17,21 +25,96 @@ public class TUIController {
     private static final String DECOR_CHARACTER = "*";
     private static final int HORIZONTAL_PADDING = 10;
     private static final String FILE_PATH = "./programState.txt";
-    private static FoodQueue[] queues;
-    private static int[] queuesInsertionOrder;
-    private static WaitingQueue waitingQueue;
-    private static Customer[] sortedCustomerList;
-    private static boolean shouldSortCustomerList = true;
+    private static final String SNAPSHOT_FILE_PATH = "./programState.bin";
+    private static final String JOURNAL_FILE_PATH = "./programState.journal";
+    private static final String CONCURRENT_FLAG = "--concurrent";
+    private static final String COMPACT_FLAG = "--compact";
+    private static final String UNBOUNDED_WAITING_FLAG = "--unbounded-waiting";
+    private static final String METRICS_FLAG = "--metrics";
+    private static final String SERVE_FLAG = "--serve";
+    private static final String BRANCHES_FLAG = "--branches";
+    private static final int DEFAULT_WAITING_MEMORY_BUDGET = 4096;
+    private static final int MAX_PORT = 65535;
+    private static ShopEngine engine;
+    private static boolean concurrentMode = false;
+    private static boolean compactMode = false;
+    private static int waitingMemoryBudget = 0; // 0 keeps the fixed size waiting queue
+    private static int servePort = -1; // -1 runs the interactive menu instead of the order server
+    private static int branchCount = 0; // 0 serves the single shop that is saved to file
 
     public static void main(String[] args) {
-        queues = genQueues(new int[]{2, 3, 5}); // MUST be called before running program
-        queuesInsertionOrder = genQueuesInsertionOrder(queues); // MUST be called before running the program
-        waitingQueue = new WaitingQueue(5); // MUST be set before running program
+        for (String arg : args) {
+            try {
+                if (arg.equals(CONCURRENT_FLAG)) { // Queues may be shared with other threads
+                    concurrentMode = true;
+                } else if (arg.equals(COMPACT_FLAG)) { // Queues keep customers in a CustomerStore
+                    compactMode = true;
+                } else if (arg.equals(UNBOUNDED_WAITING_FLAG)) { // Waiting queue grows and spills to disk
+                    waitingMemoryBudget = DEFAULT_WAITING_MEMORY_BUDGET;
+                } else if (arg.startsWith(UNBOUNDED_WAITING_FLAG + "=")) { // Customers kept in memory before spilling
+                    waitingMemoryBudget = intFlagValue(arg, UNBOUNDED_WAITING_FLAG, 1, Integer.MAX_VALUE);
+                } else if (arg.equals(METRICS_FLAG)) { // Time operations from startup instead of waiting for MET
+                    Metrics.setEnabled(true);
+                } else if (arg.equals(SERVE_FLAG)) { // Take orders over the network instead of the menu
+                    servePort = OrderServer.DEFAULT_PORT;
+                } else if (arg.startsWith(SERVE_FLAG + "=")) { // Port 0 picks a free port
+                    servePort = intFlagValue(arg, SERVE_FLAG, 0, MAX_PORT + 1);
+                } else if (arg.startsWith(BRANCHES_FLAG + "=")) { // Serve independent branches on consecutive ports
+                    branchCount = intFlagValue(arg, BRANCHES_FLAG, 1, MAX_PORT + 1);
+                }
+            } catch (NumberFormatException exception) {
+                System.out.printf("Invalid Input! Enter a number in %s!%n", arg);
+                return;
+            } catch (SelectionOutOfRangeException exception) {
+                System.out.printf("Invalid Input! %s is out of range! %s%n", arg, exception.getMessage());
+                return;
+            }
+        }
+
+        if (concurrentMode && waitingMemoryBudget > 0) { // The segmented waiting queue is not thread-safe
+            System.out.printf("%s cannot be used with %s!%n", CONCURRENT_FLAG, UNBOUNDED_WAITING_FLAG);
+            return;
+        }
+
+        if (branchCount > 0 && servePort < 0) { // Branches are only reachable over the network
+            System.out.printf("%s cannot be used without %s!%n", BRANCHES_FLAG, SERVE_FLAG);
+            return;
+        }
+
+        if (servePort >= 0 && branchCount > 0) {
+            runBranchServers();
+            return;
+        }
+
+        engine = new ShopEngine( // MUST be created before running program
+                new int[]{2, 3, 5},
+                5,
+                new ShopEngine.Options(concurrentMode, compactMode, waitingMemoryBudget)
+        );
+        restoreProgramData(); // MUST be called before running the program
+        engine.registerGauges("");
+        registerMetricsMBean();
+        engine.getStock().setLowStockListener(TUIController::displayStockWarning);
+
+        if (servePort >= 0) {
+            runOrderServer();
+            return;
+        }
+
+        engine.setPromotionListener((customer, queueNumber) -> System.out.printf(
+                "Customer %s from waiting queue added to queue %d!%n",
+                customer.getFullName(),
+                queueNumber
+        ));
+
         initGui(); // MUST be called before launching GUI
         displayCommands();
 
+        if (engine.getStock().isLow()) { // The listener only fires when the threshold is crossed
+            displayStockWarning(engine.getItemStock());
+        }
+
         while (true) {
-            displayStockWarning();
             // All commands are converted to uppercase for easier parsing
             String command = inputPrompt("Enter a command (\"H\" or 000 for Help Menu): ").strip().toUpperCase();
 
@@ -41,7 +124,7 @@ public class TUIController {
                     displayCommands();
                     break;
                 case "VFQ", "100":
-                    displayQueues(queues);
+                    displayQueues(engine.getQueues());
                     break;
                 case "VEQ", "101":
                     viewEmptyQueues();
@@ -76,8 +159,21 @@ public class TUIController {
                 case "GUI", "112":
                     startGui();
                     break;
+                case "IMP", "113":
+                    importCustomerBatch();
+                    break;
+                case "BSC", "114":
+                    serveCustomerBatch();
+                    break;
+                case "MET", "115":
+                    viewMetrics();
+                    break;
+                case "WTS", "116":
+                    viewWaitStatistics();
+                    break;
                 case "EXT", "999":
                     System.out.println("Exiting...");
+                    engine.close();
                     deInitGui(); // Must be called, otherwise FX thread will block exit
                     return;
                 default:
@@ -87,70 +183,12 @@ public class TUIController {
     }
 
     /**
-     * Expose internal data structure {@link TUIController#queues}.
-     *
-     * @return A {@link FoodQueue}[] reference that can be used to populate a GUI.
-     */
-    public static FoodQueue[] getQueues() {
-        return queues;
-    }
-
-    /**
-     * Expose internal data structure {@link TUIController#waitingQueue}.
-     *
-     * @return A {@link WaitingQueue} reference that can be used to populate a GUI.
-     */
-    public static WaitingQueue getWaitingQueue() {
-        return waitingQueue;
-    }
-
-    /**
-     * Creates a {@link FoodQueue}[] object according to the given layout.
-     *
-     * @param queueLayout An array of lengths of each queue.
-     * @return A reference to the newly created {@link FoodQueue}[] instance.
-     */
-    private static FoodQueue[] genQueues(int[] queueLayout) {
-        FoodQueue[] tempQueue = new FoodQueue[queueLayout.length];
-
-        for (int i = 0; i < tempQueue.length; i++) {
-            tempQueue[i] = new FoodQueue(queueLayout[i]);
-        }
-
-        return tempQueue;
-    }
-
-    /**
-     * Generate an array of indices that reflects the ascending order of the {@link FoodQueue}[]
-     * object that is passed in.
+     * Expose the {@link ShopEngine} that holds the queues, stock and income.
      *
-     * @param foodQueues The array that will have it's order generated.
-     * @return An array of indices indicating the ascending order.
+     * @return A {@link ShopEngine} reference that can be used to populate a GUI.
      */
-    private static int[] genQueuesInsertionOrder(FoodQueue[] foodQueues) {
-        int[] insertionOrder = new int[foodQueues.length];
-
-        for (int i = 0; i < foodQueues.length; i++) {
-            insertionOrder[i] = i;
-        }
-
-        boolean swapped = true;
-
-        while (swapped) { // Bubble sort
-            swapped = false;
-
-            for (int i = 0; i < insertionOrder.length - 1; i++) {
-                if (foodQueues[insertionOrder[i]].getQueueLength() >
-                        foodQueues[insertionOrder[i + 1]].getQueueLength()) { // Compare length of the FoodQueues
-                    int temp = insertionOrder[i];
-                    insertionOrder[i] = insertionOrder[i + 1];
-                    insertionOrder[i + 1] = temp;
-                    swapped = true;
-                }
-            }
-        }
-
-        return insertionOrder;
+    public static ShopEngine getEngine() {
+        return engine;
     }
 
     /**
@@ -186,98 +224,25 @@ public class TUIController {
     }
 
     /**
-     * A number of hardcoded validation cases are checked by this method.
+     * Get the integer value of a command line flag. If any of the checks fails an exception may be thrown.
      *
-     * @param input A string that needs to be validated.
-     * @return The validated string.
-     * @throws InputValidationException The reason for the failure is passed in the exception message.
-     */
-    private static String validateString(String input) throws InputValidationException {
-        if (input.contains(Customer.INFO_DELIMITER)) {
-            throw new InputValidationException(String.format(
-                    "'%s' delimiter character detected!",
-                    Customer.INFO_DELIMITER
-            ));
-        }
-
-        if (input.isEmpty()) {
-            throw new InputValidationException("Empty string detected!");
-        }
-
-        if (input.equals("null")) {
-            throw new InputValidationException("'null' detected!");
-        }
-
-        if (input.contains(String.format("%n"))) { // String.format() is used to get the platform specific character
-            throw new InputValidationException("Newline character detected!");
-        }
-
-        return input;
-    }
-
-    /**
-     * Sorts all customers in food queues using bubble sort and sets the result in
-     * {@link TUIController#sortedCustomerList}, {@link TUIController#shouldSortCustomerList} is set to
-     * false after running this method.
+     * @param arg   The command line argument, in the form flag=value.
+     * @param flag  The flag the value belongs to.
+     * @param start The start of the number range that will be accepted. Inclusive.
+     * @param end   The end of the number range that will be accepted. Exclusive.
+     * @return An int that is within the given range.
+     * @throws SelectionOutOfRangeException Thrown when the value is out of the acceptable range.
+     * @throws NumberFormatException        Thrown if the value is not numeric.
      */
-    private static void sortCustomers() {
-        int totalCustomersLength = 0;
-
-        for (FoodQueue queue : queues) {
-            totalCustomersLength += queue.getQueueLength(); // Total length of all FoodQueues
-        }
-
-        Customer[] tempList = new Customer[totalCustomersLength];
-        int customersAdded = 0; // Track total valid customers added
-
-        for (FoodQueue queue : queues) {
-            for (int i = 0; i < queue.getQueueLength(); i++) {
-                try {
-                    if (queue.getCustomer(i) == null) {
-                        break;
-                        // FoodQueues will keep the internal queue free of internal null holes allowing an early break
-                    }
-
-                    tempList[customersAdded++] = queue.getCustomer(i);
-                } catch (Exception ignored) {
-                }
-            }
-        }
-
-        if (customersAdded < totalCustomersLength) { // Optimization to avoid a copy if all the customers were valid
-            sortedCustomerList = new Customer[customersAdded];
+    private static int intFlagValue(String arg, String flag, int start, int end)
+            throws SelectionOutOfRangeException, NumberFormatException {
+        final int result = Integer.parseInt(arg.substring(flag.length() + 1));
 
-            for (int i = 0; i < sortedCustomerList.length; i++) { // Copy array data
-                sortedCustomerList[i] = tempList[i];
-            }
-        } else {
-            sortedCustomerList = tempList;
+        if (result < start || result >= end) {
+            throw new SelectionOutOfRangeException(String.format("Range is %d to %d.", start, end - 1));
         }
 
-        bubbleSortCustomers(sortedCustomerList); // Sort the assembled array
-        shouldSortCustomerList = false;
-    }
-
-    /**
-     * An implementation of the bubble sort algorithm for {@link Customer} arrays.
-     *
-     * @param array The array that will be sorted in-place.
-     */
-    private static void bubbleSortCustomers(Customer[] array) {
-        boolean swapped = true;
-
-        while (swapped) {
-            swapped = false;
-
-            for (int i = 0; i < array.length - 1; i++) {
-                if (array[i].getFullName().compareTo(array[i + 1].getFullName()) > 0) {
-                    Customer temp = array[i];
-                    array[i] = array[i + 1];
-                    array[i + 1] = temp;
-                    swapped = true;
-                }
-            }
-        }
+        return result;
     }
 
     /**
@@ -300,6 +265,10 @@ public class TUIController {
                 109 or AFS: Add burgers to stock.
                 110 or IFQ: View queue income information.
                 112 or GUI: Start GUI.
+                113 or IMP: Import a batch of customers from a CSV file.
+                114 or BSC: Serve a batch of customers from a queue.
+                115 or MET: View operation metrics.
+                116 or WTS: View wait times and estimated waits.
                 999 or EXT: Exit the program.
                 """;
 
@@ -333,6 +302,8 @@ public class TUIController {
      */
     private static void displayQueueMenu() {
         displayHeader("Queue Selection");
+        FoodQueue[] queues = engine.getQueues();
+
         for (int i = 0; i < queues.length; i++) {
             System.out.printf(String.format("%d - Size %d.%n", i, queues[i].getQueueLength()));
         }
@@ -340,18 +311,23 @@ public class TUIController {
 
     /**
      * Displays the state of all the {@link FoodQueue} objects in the given array as well as
-     * the state of the {@link TUIController#waitingQueue}.
+     * the state of the {@link WaitingQueue} of the {@link TUIController#engine}.
      *
      * @param queues
      */
     private static void displayQueues(FoodQueue[] queues) {
         final String headerText = "Cashiers (Queue View)";
-        final int longestQueueLength = queues[queuesInsertionOrder[queuesInsertionOrder.length - 1]].getQueueLength();
         final int headerLength = headerText.length() + HORIZONTAL_PADDING;
         final int paddingLength = ((headerLength / queues.length) - 1) / 2;
 
         displayHeader(headerText);
 
+        int longestQueueLength = 0;
+
+        for (FoodQueue queue : queues) {
+            longestQueueLength = Math.max(longestQueueLength, queue.getQueueLength());
+        }
+
         for (int i = 0; i < longestQueueLength; i++) {
 
             for (FoodQueue queue : queues) {
@@ -374,35 +350,36 @@ public class TUIController {
             System.out.println();
         }
 
-        StringBuilder waitingQueueString = new StringBuilder("Waiting Queue:");
-
-        for (Customer customer : waitingQueue.getQueue()) { // Fairly expensive operation. Disable?
-            waitingQueueString.append(customer == null ? " O" : " X");
-        }
+        final WaitingQueue waitingQueue = engine.getWaitingQueue();
+        final int waitingCustomers = waitingQueue.getCustomerCount();
 
-        System.out.println(waitingQueueString.toString());
+        System.out.println(
+                "Waiting Queue:" + " X".repeat(waitingCustomers) + " O".repeat(waitingQueue.getQueueLength() - waitingCustomers)
+        );
 
         System.out.println("X - Occupied, 0 - Not Occupied");
     }
 
     /**
-     * Display a warning if the {@link FoodQueue#isStockLow} indicates that stock is low.
+     * Display a low stock warning.
+     * This is registered with {@link ItemStock#setLowStockListener} so that it runs once when stock becomes low.
+     *
+     * @param itemStock The stock level that remains.
      */
-    private static void displayStockWarning() {
-        if (FoodQueue.isStockLow()) {
-            System.out.printf("Low stock level! %d items left!%n", FoodQueue.getItemStock());
-        }
+    private static void displayStockWarning(int itemStock) {
+        System.out.printf("Low stock level! %d items left!%n", itemStock);
     }
 
     /**
      * Uses {@link TUIController#displayQueues} to display {@link FoodQueue} that are not full.
      */
     private static void viewEmptyQueues() {
+        FoodQueue[] queues = engine.getQueues();
         FoodQueue[] availableQueues = new FoodQueue[queues.length];
 
         for (int i = 0; i < queues.length; i++) { // Replace full queues with zero-sized queues
             if (queues[i].isQueueFull()) {
-                availableQueues[i] = new FoodQueue(0);
+                availableQueues[i] = new FoodQueue(0, engine.getStock());
             } else {
                 availableQueues[i] = queues[i];
             }
@@ -411,59 +388,15 @@ public class TUIController {
         displayQueues(availableQueues);
     }
 
-    /**
-     * Try adding a customer to each {@link FoodQueue} object in {@link TUIController#queues}.
-     * The {@link TUIController#queuesInsertionOrder} array is used to get the indexing order.
-     * This method therefore always tries to add from the shortest to the longest queue.
-     *
-     * @param customer The customer to add to a queue.
-     * @return The number of the queue that the customer was added to. -1 if {@link TUIController#waitingQueue} was used.
-     * @throws FullQueueException Is thrown only if all queues and the {@link TUIController#waitingQueue} are full.
-     */
-    private static int tryAddCustomer(Customer customer) throws FullQueueException {
-        for (int i : queuesInsertionOrder) { // Use the generated insertion order
-            try {
-                queues[i].addCustomer(customer);
-                return i;
-            } catch (FullQueueException exception) {
-                System.out.printf("Queue %d full.%n", i);
-            }
-        }
-
-        waitingQueue.enqueue(customer);
-        return -1;
-    }
-
-    /**
-     * Attempts to add a customer from the {@link TUIController#waitingQueue} into a {@link FoodQueue}.
-     * Only call this method after removing a customer from any {@link FoodQueue} that is held in {@link TUIController#queues}.
-     *
-     * @throws FullQueueException
-     */
-    private static void tryAddCustomerFromWaiting() throws FullQueueException {
-        try {
-            Customer waitingCustomer = waitingQueue.dequeue();
-            int queueNumber = tryAddCustomer(waitingCustomer);
-            System.out.printf(
-                    "Customer %s from waiting queue added to queue %d!%n",
-                    waitingCustomer.getFullName(),
-                    queueNumber
-            );
-        } catch (CustomerNotFoundException exception) {
-            System.out.println("Waiting queue is empty!");
-        }
-    }
-
     /**
      * Prompt the user for customer info and attempt to add the customer to the queue.
-     * This method will set {@link TUIController#shouldSortCustomerList} to true.
      */
     private static void addCustomerToQueue() {
         displayHeader("Add Customer");
 
         try {
-            String customerFirstName = validateString(inputPrompt("Enter the customer's first name: "));
-            String customerLastName = validateString(inputPrompt("Enter the customer's last name: "));
+            String customerFirstName = ShopEngine.validateName(inputPrompt("Enter the customer's first name: "));
+            String customerLastName = ShopEngine.validateName(inputPrompt("Enter the customer's last name: "));
             int customerBurgerNumber = Integer.parseInt(inputPrompt("Enter the number of burgers needed: "));
 
             // Ensure customer order can be met
@@ -473,8 +406,7 @@ public class TUIController {
 
             Customer customer = new Customer(customerFirstName, customerLastName, customerBurgerNumber);
 
-            int queueNumber = tryAddCustomer(customer);
-            shouldSortCustomerList = true;
+            int queueNumber = engine.addCustomer(customer);
 
             String queueName = "queue " + queueNumber;
 
@@ -483,11 +415,18 @@ public class TUIController {
             }
 
             System.out.printf("Customer %s, added to %s!%n", customer.getFullName(), queueName);
+            System.out.printf(
+                    "Estimated wait for the next customer in the %s: %s%n",
+                    queueName,
+                    QueueStatistics.formatDuration(engine.estimateWait(queueNumber))
+            );
         } catch (NumberFormatException exception) {
             System.out.println("Invalid Input! Enter a positive number!");
             System.out.printf("Range is %d to %d.%n", 0, FoodQueue.MAX_STOCK);
         } catch (FullQueueException exception) {
             System.out.println("All queues full! Customer could not be added!");
+        } catch (SelectionOutOfRangeException exception) {
+            System.out.println("Incorrect queue number! " + exception.getMessage());
         } catch (InputValidationException exception) {
             System.out.println("Input validation failed!");
             System.out.println("Reason: " + exception.getMessage());
@@ -496,8 +435,7 @@ public class TUIController {
 
     /**
      * Prompts the user for a position and removes a customer.
-     * This method will set {@link TUIController#shouldSortCustomerList} to true.
-     * This method also calls {@link TUIController#tryAddCustomerFromWaiting()}.
+     * A customer from the waiting queue fills the freed place.
      */
     private static void removeCustomerFromQueue() {
         displayHeader("Remove Customer");
@@ -507,22 +445,21 @@ public class TUIController {
             int queuePosition = intInputPrompt(
                     "Enter the queue number to remove customer from: ",
                     0,
-                    queues.length
+                    engine.getQueueCount()
             );
 
             int customerPosition = intInputPrompt(
                     "Enter the customer position: ",
                     0,
-                    queues[queuePosition].getQueueLength()
+                    engine.getQueues()[queuePosition].getQueueLength()
             );
 
             try {
-                Customer customer = queues[queuePosition].removeCustomer(customerPosition);
-                shouldSortCustomerList = true;
+                boolean waitingQueueEmpty = engine.getWaitingQueue().isQueueEmpty();
+                Customer customer = engine.removeCustomer(queuePosition, customerPosition);
 
                 System.out.printf("Removed customer %s!%n", customer.getFirstName());
-
-                tryAddCustomerFromWaiting();
+                displayWaitingQueueEmpty(waitingQueueEmpty);
             } catch (SelectionOutOfRangeException exception) {
                 System.out.println("Incorrect customer position! " + exception.getMessage());
             }
@@ -532,15 +469,13 @@ public class TUIController {
             System.out.println("Incorrect queue number! " + exception.getMessage());
         } catch (CustomerNotFoundException exception) {
             System.out.println(exception.getMessage());
-        } catch (FullQueueException ignored) {
         }
     }
 
     /**
      * Removes a customer from the selected queue if there is enough stock to serve them.
-     * This method will call {@link FoodQueue#setItemStock(int)}.
-     * This method will set {@link TUIController#shouldSortCustomerList} to true.
-     * This method also calls {@link TUIController#tryAddCustomerFromWaiting()}.
+     * This method will reserve stock through {@link FoodQueue#serveCustomer()}.
+     * A customer from the waiting queue fills the freed place.
      */
     private static void removeServedCustomer() {
         displayHeader("Remove Served Customer");
@@ -550,11 +485,11 @@ public class TUIController {
             int queuePosition = intInputPrompt(
                     "Enter the queue number to remove customer from: ",
                     0,
-                    queues.length
+                    engine.getQueueCount()
             );
 
-            Customer customer = queues[queuePosition].serveCustomer();
-            shouldSortCustomerList = true;
+            boolean waitingQueueEmpty = engine.getWaitingQueue().isQueueEmpty();
+            Customer customer = engine.serveCustomer(queuePosition);
 
             System.out.printf(
                     "Customer %s was served %d items!%n",
@@ -562,7 +497,7 @@ public class TUIController {
                     customer.getBurgersRequired()
             );
 
-            tryAddCustomerFromWaiting();
+            displayWaitingQueueEmpty(waitingQueueEmpty);
         } catch (NumberFormatException exception) {
             System.out.println("Invalid Input! Enter a number!");
         } catch (SelectionOutOfRangeException exception) {
@@ -571,24 +506,30 @@ public class TUIController {
             System.out.printf("Insufficient stock level! Customer requires %s items!%n", exception.getMessage());
         } catch (CustomerNotFoundException exception) {
             System.out.println(exception.getMessage());
-        } catch (FullQueueException ignored) {
         }
     }
 
     /**
-     * Show all the customers stored in {@link TUIController#sortedCustomerList}.
-     * if {@link TUIController#shouldSortCustomerList} is true this method will call {@link TUIController#sortCustomers()}
-     * before displaying anything.
+     * Report that no customer could be moved into a freed place.
+     * Customers that are moved are reported by the promotion listener of the {@link TUIController#engine}.
+     *
+     * @param waitingQueueEmpty 'true' if the waiting queue was empty before the place was freed.
      */
-    private static void viewSortedCustomers() {
-        if (shouldSortCustomerList) { // Check if sorting is needed
-            sortCustomers();
+    private static void displayWaitingQueueEmpty(boolean waitingQueueEmpty) {
+        if (waitingQueueEmpty) {
+            System.out.println("Waiting queue is empty!");
         }
+    }
 
+    /**
+     * Show all the customers in the queues of the {@link TUIController#engine}, in alphabetical order.
+     * The engine keeps them sorted as customers are added and removed, so no sorting is done here.
+     */
+    private static void viewSortedCustomers() {
         String headerText = "Customers (Sorted Alphabetically)";
         displayHeader(headerText);
 
-        for (Customer customer : sortedCustomerList) {
+        for (Customer customer : engine.getSortedCustomers()) {
             System.out.println("First Name: " + customer.getFirstName());
             System.out.println("Last Name: " + customer.getLastName());
             System.out.println("Burgers Required: " + customer.getBurgersRequired());
@@ -597,178 +538,353 @@ public class TUIController {
     }
 
     /**
-     * Stores program data as text at {@link TUIController#FILE_PATH}.
+     * Stores program data as a binary snapshot at {@link TUIController#SNAPSHOT_FILE_PATH}.
+     * The journal is started again from empty for the new snapshot.
      */
     private static void storeProgramData() {
         displayHeader("Store Program Data");
 
-        System.out.printf("Saving data to file: %s%n", FILE_PATH);
+        System.out.printf("Saving data to file: %s%n", SNAPSHOT_FILE_PATH);
 
-        try (FileWriter fileWriter = new FileWriter(FILE_PATH)) {
-            // Store stock info
-            fileWriter.write(String.format(
-                    "%d%n%d%n",
-                    FoodQueue.getItemStock(),
-                    queues.length
-            ));
+        try {
+            engine.compactJournal();
+            System.out.println("Data successfully written to file!");
+        } catch (IOException exception) {
+            System.out.println("File could not be created! " + exception.getMessage());
+        }
+    }
 
-            // Store FoodQueues
-            for (FoodQueue queue : queues) {
-                fileWriter.write(queue.toString());
-            }
+    /**
+     * Rebuild program data from the snapshot at {@link TUIController#SNAPSHOT_FILE_PATH} and the changes recorded in
+     * the journal at {@link TUIController#JOURNAL_FILE_PATH}, then open a journal for new changes.
+     * If either file cannot be used, both are moved aside with a ".corrupt" suffix and the program starts with the
+     * current, empty queues. If they cannot be moved aside, the program exits rather than overwrite them.
+     */
+    private static void restoreProgramData() {
+        int changesReplayed = 0;
 
-            // Store WaitingQueue
-            fileWriter.write(waitingQueue.toString());
+        try {
+            changesReplayed = engine.restore(Path.of(SNAPSHOT_FILE_PATH), Path.of(JOURNAL_FILE_PATH));
+        } catch (IOException | InvalidFileDataException | StockOutOfRangeException exception) {
+            System.out.println("Saved data could not be restored! " + exception.getMessage());
 
-            fileWriter.flush();
+            try { // The new journal and snapshots would otherwise overwrite the saved data
+                for (Path movedPath : ShopEngine.moveAside(Path.of(SNAPSHOT_FILE_PATH), Path.of(JOURNAL_FILE_PATH))) {
+                    System.out.printf("Saved data was kept in: %s%n", movedPath);
+                }
+            } catch (IOException moveException) {
+                System.out.println("Saved data could not be moved aside! " + moveException.getMessage());
+                System.out.println("Refusing to start, so that the saved data is not overwritten.");
+                System.exit(1);
+            }
+        }
 
-            System.out.println("Data successfully written to file!");
+        if (changesReplayed > 0) { // The replayed changes are folded into a new snapshot
+            System.out.printf("Restored %d changes from the journal.%n", changesReplayed);
+        }
+
+        try {
+            engine.openJournal(Path.of(SNAPSHOT_FILE_PATH), Path.of(JOURNAL_FILE_PATH), changesReplayed > 0);
         } catch (IOException exception) {
-            System.out.println("File could not be created!");
+            System.out.println("Journal could not be created! " + exception.getMessage());
+            System.exit(1);
         }
     }
 
     /**
-     * Load data from a file at {@link TUIController#FILE_PATH}.
-     * May mutate {@link TUIController#queues} and {@link TUIController#waitingQueue}.
+     * Load data from the binary snapshot at {@link TUIController#SNAPSHOT_FILE_PATH}.
+     * If no snapshot exists, the text file at {@link TUIController#FILE_PATH} is loaded instead.
+     * The queues of the {@link TUIController#engine} are replaced by the loaded queues.
      */
     private static void loadProgramData() {
         displayHeader("Load Program Data");
 
-        System.out.printf("Loading data from file: %s%n", FILE_PATH);
-
-        try (Scanner fileReader = new Scanner(new File(FILE_PATH))) {
-            // Check for stock data
-            if (!fileReader.hasNextInt()) {
-                throw new InvalidFileDataException("Stock data not found!");
+        try {
+            ProgramState state;
+
+            if (Files.exists(Path.of(SNAPSHOT_FILE_PATH))) {
+                System.out.printf("Loading data from file: %s%n", SNAPSHOT_FILE_PATH);
+                state = BinarySnapshot.read(Path.of(SNAPSHOT_FILE_PATH));
+            } else { // Fall back to the older text format
+                System.out.printf("Loading data from file: %s%n", FILE_PATH);
+                state = TextStateReader.read(Path.of(FILE_PATH));
             }
 
-            final int newFoodStock = Integer.parseInt(fileReader.nextLine());
-
-            // Check for queue length
-            if (!fileReader.hasNextInt()) {
-                throw new InvalidFileDataException("Number of queues not found!");
-            }
+            engine.load(state); // Further changes are recorded against the loaded data
 
-            final int numberOfQueues = Integer.parseInt(fileReader.nextLine());
+            System.out.println("Data loaded successfully!");
+        } catch (NoSuchFileException exception) {
+            System.out.println("File was not found!");
+        } catch (IOException exception) {
+            System.out.println("File could not be read!");
+        } catch (InvalidFileDataException exception) {
+            System.out.println(exception.getMessage());
+            System.out.println("Data was not loaded!");
+        } catch (StockOutOfRangeException exception) {
+            System.out.println("Loaded stock data is out of range!");
+            System.out.println(exception.getMessage());
+            System.out.println("Data was not loaded!");
+        }
+    }
 
-            final FoodQueue[] loadedQueues = new FoodQueue[numberOfQueues];
+    /**
+     * Register the {@link Metrics} MBean so the metrics can also be read over JMX.
+     */
+    private static void registerMetricsMBean() {
+        try {
+            Metrics.registerMBean();
+        } catch (JMException exception) {
+            System.out.println("Metrics will not be available over JMX!");
+        }
+    }
 
-            // Load FoodQueue data
-            for (int i = 0; i < loadedQueues.length; i++) {
-                if (!fileReader.hasNextLine()) {
-                    throw new InvalidFileDataException("FoodQueue information not found!");
-                }
+    /**
+     * Display the operation metrics and let the user switch them on or off, or clear them.
+     */
+    private static void viewMetrics() {
+        displayHeader("Operation Metrics");
+
+        System.out.printf("Metrics are %s.%n%n", Metrics.isEnabled() ? "enabled" : "disabled");
+        System.out.print(Metrics.report());
+
+        String choice = inputPrompt(
+                "Enter E to enable, D to disable, R to reset, or nothing to return: "
+        ).strip().toUpperCase();
+
+        switch (choice) {
+            case "E":
+                Metrics.setEnabled(true);
+                System.out.println("Metrics enabled!");
+                break;
+            case "D":
+                Metrics.setEnabled(false);
+                System.out.println("Metrics disabled!");
+                break;
+            case "R":
+                Metrics.reset();
+                System.out.println("Metrics reset!");
+                break;
+            case "":
+                break;
+            default:
+                System.out.println("Unknown option!");
+        }
+    }
 
-                String fileLine = fileReader.nextLine();
+    /**
+     * Parse one line of a customer batch file.
+     *
+     * @param line A first name, last name and number of burgers, separated by {@link Customer#INFO_DELIMITER}.
+     * @return The parsed {@link Customer}.
+     * @throws InputValidationException If the line is not a valid customer. The reason is passed in the message.
+     */
+    private static Customer parseCustomerLine(String line) throws InputValidationException {
+        String[] fields = line.split(Customer.INFO_DELIMITER, -1);
 
-                if (!fileLine.equals(FoodQueue.FOODQUEUE_START_MARK)) {
-                    throw new InvalidFileDataException("FoodQueue data marker not found!");
-                }
+        if (fields.length != 3) {
+            throw new InputValidationException(String.format("Expected 3 fields but found %d!", fields.length));
+        }
 
-                if (!fileReader.hasNextInt()) {
-                    throw new InvalidFileDataException("FoodQueue length information not found!");
-                }
+        String firstName = ShopEngine.validateName(fields[0].strip());
+        String lastName = ShopEngine.validateName(fields[1].strip());
+        int burgersRequired;
 
-                final int queueLength = Integer.parseInt(fileReader.nextLine());
+        try {
+            burgersRequired = Integer.parseInt(fields[2].strip());
+        } catch (NumberFormatException exception) {
+            burgersRequired = -1;
+        }
 
-                if (!fileReader.hasNextInt()) {
-                    throw new InvalidFileDataException("FoodQueue income information not found!");
-                }
+        if (burgersRequired < 0 || burgersRequired > FoodQueue.MAX_STOCK) { // Ensure customer order can be met
+            throw new InputValidationException(
+                    String.format("Burgers required must be a number from %d to %d!", 0, FoodQueue.MAX_STOCK)
+            );
+        }
 
-                final int queueIncome = Integer.parseInt(fileReader.nextLine());
+        return new Customer(firstName, lastName, burgersRequired);
+    }
 
-                final Customer[] customers = new Customer[queueLength];
+    /**
+     * Import a batch of customers from a CSV file and place them in the queues.
+     * Invalid lines are reported and skipped.
+     * The customers are placed with {@link ShopEngine#addCustomers(Customer[])}, which fills each queue in one step.
+     * Customers that do not fit in any queue are added to the waiting queue.
+     */
+    private static void importCustomerBatch() {
+        displayHeader("Import Customer Batch");
 
-                // Load Customer data
-                for (int j = 0; j < customers.length; j++) {
-                    if (!fileReader.hasNextLine()) {
-                        throw new InvalidFileDataException("FoodQueue data ended unexpectedly!");
-                    }
+        List<String> lines;
 
-                    String customerData = fileReader.nextLine();
+        try {
+            lines = Files.readAllLines(Path.of(inputPrompt("Enter the path of the CSV file: ")));
+        } catch (NoSuchFileException | InvalidPathException exception) {
+            System.out.println("File was not found!");
+            return;
+        } catch (IOException exception) {
+            System.out.println("File could not be read!");
+            return;
+        }
 
-                    if (customerData.equals("null")) {
-                        customers[j] = null;
-                    } else {
-                        String[] parsedInfo = customerData.split(Customer.INFO_DELIMITER);
+        List<Customer> customers = new ArrayList<>();
+        List<Integer> lineNumbers = new ArrayList<>();
+        int orderCount = 0;
 
-                        Customer customer = new Customer(
-                                parsedInfo[0],
-                                parsedInfo[1],
-                                Integer.parseInt(parsedInfo[2])
-                        );
+        for (int i = 0; i < lines.size(); i++) {
+            if (lines.get(i).isBlank()) {
+                continue;
+            }
 
-                        customers[j] = customer;
-                    }
-                }
+            orderCount++;
 
-                loadedQueues[i] = new FoodQueue(customers, queueIncome);
+            try {
+                customers.add(parseCustomerLine(lines.get(i)));
+                lineNumbers.add(i + 1);
+            } catch (InputValidationException exception) {
+                System.out.printf("Line %d: %s%n", i + 1, exception.getMessage());
             }
+        }
 
-            String fileLine = fileReader.nextLine();
+        Customer[] batch = customers.toArray(new Customer[0]);
+        int[] placements = engine.addCustomers(batch);
+        int[] addedCounts = new int[engine.getQueueCount()];
+        int waitingCount = 0;
+        int placedCount = 0;
 
-            if (!fileLine.equals(WaitingQueue.WAITINGQUEUE_START_MARK)) {
-                throw new InvalidFileDataException("Waiting queue marker not found!");
+        for (int placement : placements) {
+            if (placement == ShopEngine.NOT_PLACED) {
+                continue;
             }
 
-            if (!fileReader.hasNextInt()) {
-                throw new InvalidFileDataException("Waiting queue length info not found!");
+            if (placement < 0) {
+                waitingCount++;
+            } else {
+                addedCounts[placement]++;
             }
 
-            int waitingQueueLength = Integer.parseInt(fileReader.nextLine());
+            placedCount++;
+        }
 
-            Customer[] loadedWaitingQueue = new Customer[waitingQueueLength];
+        for (int i = 0; i < addedCounts.length; i++) {
+            if (addedCounts[i] > 0) {
+                System.out.printf("%d customers added to queue %d!%n", addedCounts[i], i);
+            }
+        }
 
-            // Load WaitingQueue data
-            for (int j = 0; j < loadedWaitingQueue.length; j++) {
-                if (!fileReader.hasNextLine()) {
-                    throw new InvalidFileDataException("Waiting queue data ended unexpectedly!");
-                }
+        if (waitingCount > 0) {
+            System.out.printf("%d customers added to waiting queue!%n", waitingCount);
+        }
 
-                String customerData = fileReader.nextLine();
+        for (int i = placedCount; i < batch.length; i++) { // Customers are placed in order, so the rest did not fit
+            System.out.printf(
+                    "Line %d: All queues full! Customer %s could not be added!%n",
+                    lineNumbers.get(i),
+                    batch[i].getFullName()
+            );
+        }
 
-                // Parse Customer data
-                if (customerData.equals("null")) {
-                    loadedWaitingQueue[j] = null;
-                } else {
-                    String[] parsedInfo = customerData.split(Customer.INFO_DELIMITER);
+        System.out.printf("Imported %d of %d customers.%n", placedCount, orderCount);
+    }
 
-                    Customer customer = new Customer(
-                            parsedInfo[0],
-                            parsedInfo[1],
-                            Integer.parseInt(parsedInfo[2])
-                    );
+    /**
+     * Serve a number of customers from the front of a queue at once, using {@link ShopEngine#serveUpTo(int, int)}.
+     * Customers from the waiting queue fill the freed places.
+     */
+    private static void serveCustomerBatch() {
+        displayHeader("Serve Customer Batch");
+        displayQueueMenu();
 
-                    loadedWaitingQueue[j] = customer;
+        try {
+            int queuePosition = intInputPrompt(
+                    "Enter the queue number to serve customers from: ",
+                    0,
+                    engine.getQueueCount()
+            );
+
+            int count = intInputPrompt(
+                    "Enter the number of customers to serve: ",
+                    1,
+                    engine.getQueues()[queuePosition].getQueueLength() + 1
+            );
+
+            BatchReport report = engine.serveUpTo(queuePosition, count);
+
+            for (int i = 0; i < report.size(); i++) {
+                Customer customer = report.customers()[i];
+
+                if (report.outcomes()[i] == BatchReport.Outcome.INSUFFICIENT_STOCK) {
+                    System.out.printf(
+                            "Insufficient stock level! Customer %s requires %d items!%n",
+                            customer.getFullName(),
+                            customer.getBurgersRequired()
+                    );
+                    continue;
                 }
+
+                System.out.printf(
+                        "Customer %s was served %d items!%n",
+                        customer.getFullName(),
+                        customer.getBurgersRequired()
+                );
             }
 
-            // Load data into memory
-            FoodQueue.setItemStock(newFoodStock);
-            queues = loadedQueues;
-            queuesInsertionOrder = genQueuesInsertionOrder(queues);
-            waitingQueue = new WaitingQueue(loadedWaitingQueue);
+            if (report.size() == 0) {
+                System.out.println("No customer found in that position!");
+            }
+        } catch (NumberFormatException exception) {
+            System.out.println("Invalid Input! Enter a number!");
+        } catch (SelectionOutOfRangeException exception) {
+            System.out.println("Incorrect selection! " + exception.getMessage());
+        }
+    }
 
-            System.out.println("Data loaded successfully!");
-        } catch (FileNotFoundException exception) {
-            System.out.println("File was not found!");
-        } catch (InvalidFileDataException exception) {
-            System.out.println(exception.getMessage());
-            System.out.println("Data was not loaded!");
-        } catch (StockOutOfRangeException exception) {
-            System.out.println("Loaded stock data is out of range!");
-            System.out.println(exception.getMessage());
-            System.out.println("Data was not loaded!");
+    /**
+     * Display the wait time statistics of every queue and the wait a new customer can expect in each.
+     * Only customers who joined a queue during this run are measured.
+     */
+    private static void viewWaitStatistics() {
+        displayHeader("Wait Times");
+
+        String rowFormat = "%-14s %9s %8s %9s %9s %9s %9s %10s%n";
+        System.out.printf(rowFormat, "Queue", "Customers", "Served", "Rate/min", "P50", "P95", "P99", "Est. wait");
+
+        FoodQueue[] queues = engine.getQueues();
+        WaitingQueue waitingQueue = engine.getWaitingQueue();
+
+        for (int i = 0; i < queues.length; i++) {
+            displayWaitStatistics(rowFormat, "Queue " + i, queues[i].getCustomerCount(), queues[i].getStatistics());
         }
+
+        displayWaitStatistics(rowFormat, "Waiting Queue", waitingQueue.getCustomerCount(), waitingQueue.getStatistics());
+    }
+
+    /**
+     * Display one row of {@link TUIController#viewWaitStatistics()}.
+     *
+     * @param rowFormat The format of the row.
+     * @param queueName The name of the queue.
+     * @param customerCount The number of customers in the queue.
+     * @param statistics The statistics of the queue.
+     */
+    private static void displayWaitStatistics(String rowFormat, String queueName, int customerCount, QueueStatistics statistics) {
+        System.out.printf(
+                rowFormat,
+                queueName,
+                customerCount,
+                statistics.getDepartureCount(),
+                String.format("%.2f", statistics.getServiceRate()),
+                QueueStatistics.formatDuration(statistics.getWaitPercentile(50)),
+                QueueStatistics.formatDuration(statistics.getWaitPercentile(95)),
+                QueueStatistics.formatDuration(statistics.getWaitPercentile(99)),
+                QueueStatistics.formatDuration(statistics.estimateWait(customerCount))
+        );
     }
 
     /**
-     * View the burger stock that remains in the {@link FoodQueue} class.
+     * View the burger stock that remains in the {@link TUIController#engine}.
      */
     private static void viewBurgerStock() {
         displayHeader("Burger Stock");
-        System.out.printf("Items: %d%n", FoodQueue.getItemStock());
+        System.out.printf("Items: %d%n", engine.getItemStock());
     }
 
     /**
@@ -777,14 +893,12 @@ public class TUIController {
     private static void addToBurgerStock() {
         displayHeader("Add Burger Stock");
 
-        System.out.printf("Current Stock: %d%n", FoodQueue.getItemStock());
+        System.out.printf("Current Stock: %d%n", engine.getItemStock());
 
         try {
-            int newBurgerStock = FoodQueue.getItemStock() + Integer.parseInt(
-                    inputPrompt("Enter the amount of burgers to add: ")
-            );
+            int amount = Integer.parseInt(inputPrompt("Enter the amount of burgers to add: "));
 
-            FoodQueue.setItemStock(newBurgerStock);
+            engine.addItemStock(amount);
         } catch (NumberFormatException exception) {
             System.out.println("Invalid Input! Enter a positive number!");
         } catch (StockOutOfRangeException exception) {
@@ -793,17 +907,17 @@ public class TUIController {
     }
 
     /**
-     * View income for any selected {@link FoodQueue} in {@link TUIController#queues}.
+     * View income for any selected {@link FoodQueue} in the {@link TUIController#engine}.
      */
     private static void viewQueueIncome() {
         displayHeader("View Queue Income");
         displayQueueMenu();
 
         try {
-            int queueSelection = intInputPrompt("Enter the queue number: ", 0, queues.length);
+            int queueSelection = intInputPrompt("Enter the queue number: ", 0, engine.getQueueCount());
 
             displayHeader(String.format("Queue %d Income", queueSelection));
-            System.out.println(queues[queueSelection].getQueueIncome());
+            System.out.println(engine.getQueueIncome(queueSelection));
         } catch (NumberFormatException exception) {
             System.out.println("Please enter a number!");
         } catch (SelectionOutOfRangeException exception) {
@@ -812,6 +926,112 @@ public class TUIController {
         }
     }
 
+    /**
+     * Take orders over the network with an {@link OrderServer} on {@link TUIController#servePort} until the program
+     * is stopped. The menu and the GUI are not started, so the order server is the only user of the queues.
+     * The {@link TUIController#engine} is closed by a shutdown hook.
+     */
+    private static void runOrderServer() {
+        OrderServer orderServer;
+
+        try {
+            orderServer = new OrderServer(engine, new InetSocketAddress(servePort));
+            System.out.printf("Taking orders on port %d. Press Ctrl+C to stop.%n", orderServer.getPort());
+        } catch (IOException exception) {
+            System.out.println("Order server could not be started! " + exception.getMessage());
+            engine.close();
+            return;
+        }
+
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            try {
+                orderServer.close();
+            } catch (IOException exception) {
+                System.out.println("Order server could not be closed! " + exception.getMessage());
+            }
+
+            engine.close();
+        }));
+
+        try {
+            orderServer.awaitClose();
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Take orders for {@link TUIController#branchCount} independent branches until the program is stopped.
+     * Each branch runs on its own thread in a {@link BranchNetwork}, and is served by its own {@link OrderServer}
+     * on port {@link TUIController#servePort} plus its branch id. Branches are kept in memory only.
+     * The servers and the branches are closed by a shutdown hook.
+     */
+    private static void runBranchServers() {
+        BranchNetwork branches = new BranchNetwork(
+                branchCount,
+                new int[]{2, 3, 5},
+                5,
+                new ShopEngine.Options(concurrentMode, compactMode, waitingMemoryBudget)
+        );
+        OrderServer[] orderServers = new OrderServer[branchCount];
+
+        branches.registerGauges();
+        registerMetricsMBean();
+
+        try {
+            for (int i = 0; i < branchCount; i++) {
+                orderServers[i] = new OrderServer(branches.getBranch(i), new InetSocketAddress(servePort + i));
+            }
+        } catch (IOException | SelectionOutOfRangeException exception) {
+            System.out.println("Order server could not be started! " + exception.getMessage());
+            closeOrderServers(orderServers);
+            branches.close();
+            return;
+        }
+
+        System.out.printf(
+                "Taking orders for %d branches on ports %d to %d. Branch data is not saved. Press Ctrl+C to stop.%n",
+                branchCount,
+                servePort,
+                servePort + branchCount - 1
+        );
+
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            closeOrderServers(orderServers);
+            System.out.printf(
+                    "Total income: %d, total stock: %d%n",
+                    branches.getTotalIncome(),
+                    branches.getTotalItemStock()
+            );
+            branches.close();
+        }));
+
+        try {
+            for (OrderServer orderServer : orderServers) {
+                orderServer.awaitClose();
+            }
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * @param orderServers The servers to close. Servers that were not started are null and skipped.
+     */
+    private static void closeOrderServers(OrderServer[] orderServers) {
+        for (OrderServer orderServer : orderServers) {
+            if (orderServer == null) {
+                continue;
+            }
+
+            try {
+                orderServer.close();
+            } catch (IOException exception) {
+                System.out.println("Order server could not be closed! " + exception.getMessage());
+            }
+        }
+    }
+
     /**
      * Initialize the JavaFX platform.
      * This needs to be called before any other GUI code is run.
@@ -842,6 +1062,7 @@ public class TUIController {
 
                 primaryStage.setScene(primaryScene);
                 primaryStage.setTitle("Queue Viewer");
+                primaryStage.setOnHidden(event -> fxmlLoader.<GUIController>getController().close());
                 primaryStage.show();
             } catch (IOException ignored) {
             }
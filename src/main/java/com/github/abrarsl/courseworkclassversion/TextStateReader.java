@@ -0,0 +1,324 @@
+package com.github.abrarsl.courseworkclassversion;
+
+import com.github.abrarsl.courseworkclassversion.exceptions.InvalidFileDataException;
+import com.github.abrarsl.courseworkclassversion.metrics.Metrics;
+import com.github.abrarsl.courseworkclassversion.metrics.Operation;
+
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.CharBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Reads a {@link ProgramState} from the text format written by {@link FoodQueue#toString()} and
+ * {@link WaitingQueue#toString()}, preceded by the stock and the number of queues.
+ * The file is read once through a reused {@link CharBuffer}. Numbers and markers are parsed in place, so the only
+ * objects created per line are the customer names. Errors are reported with the line number they were found on.
+ */
+public class TextStateReader implements AutoCloseable {
+    private static final int BUFFER_SIZE = 8192;
+    private static final String NULL_CUSTOMER = "null";
+    private final Reader reader;
+    private final CharBuffer buffer = CharBuffer.allocate(BUFFER_SIZE);
+    private final StringBuilder field = new StringBuilder();
+    private int lineNumber = 1;
+
+    /**
+     * @param reader The source of the text. It is closed when this reader is closed.
+     */
+    public TextStateReader(Reader reader) {
+        this.reader = reader;
+        this.buffer.flip(); // Start empty
+    }
+
+    /**
+     * Read a {@link ProgramState} from a text file.
+     * @param path The file to read.
+     * @return The state held in the file.
+     * @throws IOException If the file could not be read.
+     * @throws InvalidFileDataException If the file data is not valid.
+     */
+    public static ProgramState read(Path path) throws IOException, InvalidFileDataException {
+        long startTime = Metrics.start();
+
+        try {
+            try (TextStateReader stateReader = new TextStateReader(
+                    new InputStreamReader(Files.newInputStream(path), StandardCharsets.UTF_8)
+            )) {
+                return stateReader.readProgramState();
+            }
+        } finally {
+            Metrics.record(Operation.LOAD, startTime);
+        }
+    }
+
+    /**
+     * @return The state held in the text.
+     * @throws IOException If the text could not be read.
+     * @throws InvalidFileDataException If the text is not valid.
+     */
+    public ProgramState readProgramState() throws IOException, InvalidFileDataException {
+        final int itemStock = this.readInt("Stock data not found!");
+        final int numberOfQueues = this.readLength("Number of queues not found!");
+        final Customer[][] queueCustomers = new Customer[numberOfQueues][];
+        final int[] queueIncomes = new int[numberOfQueues];
+
+        for (int i = 0; i < numberOfQueues; i++) {
+            this.readMarker(FoodQueue.FOODQUEUE_START_MARK, "FoodQueue data marker not found!");
+            final int queueLength = this.readLength("FoodQueue length information not found!");
+            queueIncomes[i] = this.readInt("FoodQueue income information not found!");
+            queueCustomers[i] = this.readCustomers(queueLength, "FoodQueue data ended unexpectedly!");
+        }
+
+        this.readMarker(WaitingQueue.WAITINGQUEUE_START_MARK, "Waiting queue marker not found!");
+        final int waitingQueueLength = this.readLength("Waiting queue length info not found!");
+        final Customer[] waitingCustomers = this.readCustomers(waitingQueueLength, "Waiting queue data ended unexpectedly!");
+
+        return new ProgramState(itemStock, queueCustomers, queueIncomes, waitingCustomers);
+    }
+
+    /**
+     * Close the underlying reader.
+     * @throws IOException If the reader could not be closed.
+     */
+    @Override
+    public void close() throws IOException {
+        this.reader.close();
+    }
+
+    /**
+     * @param queueLength The number of customer lines to read.
+     * @param message The error message used if the text ends early.
+     * @return An array of the given length. Customers are at the front and null holes at the end.
+     * @throws IOException If the text could not be read.
+     * @throws InvalidFileDataException If a line is not a valid customer or a customer follows an empty slot.
+     */
+    private Customer[] readCustomers(int queueLength, String message) throws IOException, InvalidFileDataException {
+        Customer[] customers = new Customer[queueLength];
+        boolean emptySlotFound = false;
+
+        for (int i = 0; i < queueLength; i++) {
+            if (this.peek() < 0) {
+                throw this.error(message);
+            }
+
+            final int customerLine = this.lineNumber;
+            customers[i] = this.readCustomer(customerLine);
+
+            if (customers[i] == null) {
+                emptySlotFound = true;
+            } else if (emptySlotFound) { // Queues are stored without holes
+                throw this.error(customerLine, "Customer found after an empty slot!");
+            }
+        }
+
+        return customers;
+    }
+
+    /**
+     * @param customerLine The number of the line being read, used in error messages.
+     * @return The {@link Customer} on the current line. null if the line holds an empty slot.
+     * @throws IOException If the text could not be read.
+     * @throws InvalidFileDataException If the line is not a valid customer.
+     */
+    private Customer readCustomer(int customerLine) throws IOException, InvalidFileDataException {
+        boolean lineEnded = this.readField();
+
+        if (lineEnded && NULL_CUSTOMER.contentEquals(this.field)) {
+            return null;
+        }
+
+        if (lineEnded) {
+            throw this.error(customerLine, "Customer data is incomplete!");
+        }
+
+        String firstName = this.field.toString();
+
+        if (this.readField()) {
+            throw this.error(customerLine, "Customer data is incomplete!");
+        }
+
+        String lastName = this.field.toString();
+        int burgersRequired = this.readInt("Customer burger count not found!");
+
+        return new Customer(firstName, lastName, burgersRequired);
+    }
+
+    /**
+     * Read characters into {@link TextStateReader#field} up to the next delimiter or the end of the line.
+     * @return 'true' if the field ended at the end of a line, 'false' if it ended at a delimiter.
+     * @throws IOException If the text could not be read.
+     */
+    private boolean readField() throws IOException {
+        this.field.setLength(0);
+
+        while (true) {
+            int character = this.next();
+
+            if (character == Customer.INFO_DELIMITER.charAt(0)) {
+                return false;
+            }
+
+            if (character < 0 || this.isLineEnd(character)) {
+                return true;
+            }
+
+            this.field.append((char) character);
+        }
+    }
+
+    /**
+     * Read an int that is the only value on its line.
+     * @param message The error message used if the line does not hold an int.
+     * @return The parsed int.
+     * @throws IOException If the text could not be read.
+     * @throws InvalidFileDataException If the line does not hold an int.
+     */
+    private int readInt(String message) throws IOException, InvalidFileDataException {
+        boolean negative = false;
+        long value = 0;
+        int digits = 0;
+
+        if (this.peek() == '-') {
+            negative = true;
+            this.next();
+        }
+
+        while (this.peek() >= '0' && this.peek() <= '9') {
+            value = value * 10 + (this.next() - '0');
+            digits++;
+
+            if (value > (long) Integer.MAX_VALUE + 1) {
+                throw this.error(message);
+            }
+        }
+
+        value = negative ? -value : value;
+
+        if (digits == 0 || value > Integer.MAX_VALUE || !this.readLineEnd()) {
+            throw this.error(message);
+        }
+
+        return (int) value;
+    }
+
+    /**
+     * Read a non-negative int that is the only value on its line.
+     * @param message The error message used if the line does not hold a non-negative int.
+     * @return The parsed int.
+     * @throws IOException If the text could not be read.
+     * @throws InvalidFileDataException If the line does not hold a non-negative int.
+     */
+    private int readLength(String message) throws IOException, InvalidFileDataException {
+        int length = this.readInt(message);
+
+        if (length < 0) {
+            throw this.error(message);
+        }
+
+        return length;
+    }
+
+    /**
+     * Read a line that must match the given marker exactly.
+     * @param marker The expected line.
+     * @param message The error message used if the line does not match.
+     * @throws IOException If the text could not be read.
+     * @throws InvalidFileDataException If the line does not match.
+     */
+    private void readMarker(String marker, String message) throws IOException, InvalidFileDataException {
+        for (int i = 0; i < marker.length(); i++) {
+            if (this.next() != marker.charAt(i)) {
+                throw this.error(message);
+            }
+        }
+
+        if (!this.readLineEnd()) {
+            throw this.error(message);
+        }
+    }
+
+    /**
+     * Consume the end of the current line.
+     * @return 'true' if the current position was at the end of a line or the end of the text.
+     * @throws IOException If the text could not be read.
+     */
+    private boolean readLineEnd() throws IOException {
+        int character = this.next();
+        return character < 0 || this.isLineEnd(character);
+    }
+
+    /**
+     * Check for a line ending, consuming the '\n' of a "\r\n" pair and counting the line.
+     * @param character A character that was just read.
+     * @return 'true' if the character ended a line.
+     * @throws IOException If the text could not be read.
+     */
+    private boolean isLineEnd(int character) throws IOException {
+        if (character == '\r' && this.peek() == '\n') {
+            this.next();
+        } else if (character != '\n' && character != '\r') {
+            return false;
+        }
+
+        this.lineNumber++;
+        return true;
+    }
+
+    /**
+     * @return The next character without consuming it. -1 at the end of the text.
+     * @throws IOException If the text could not be read.
+     */
+    private int peek() throws IOException {
+        if (!this.buffer.hasRemaining()) {
+            int charsRead;
+            this.buffer.clear();
+
+            do {
+                charsRead = this.reader.read(this.buffer);
+            } while (charsRead == 0);
+
+            this.buffer.flip();
+
+            if (charsRead < 0) {
+                return -1;
+            }
+        }
+
+        return this.buffer.get(this.buffer.position());
+    }
+
+    /**
+     * @return The next character. -1 at the end of the text.
+     * @throws IOException If the text could not be read.
+     */
+    private int next() throws IOException {
+        int character = this.peek();
+
+        if (character >= 0) {
+            this.buffer.position(this.buffer.position() + 1);
+        }
+
+        return character;
+    }
+
+    /**
+     * @param message The reason for the error.
+     * @return An exception with the current line number added to the message.
+     */
+    private InvalidFileDataException error(String message) {
+        return this.error(this.lineNumber, message);
+    }
+
+    /**
+     * @param line The line the error was found on.
+     * @param message The reason for the error.
+     * @return An exception with the line number added to the message.
+     */
+    private InvalidFileDataException error(int line, String message) {
+        return new InvalidFileDataException(String.format("Line %d: %s", line, message));
+    }
+}
@@ -2,22 +2,32 @@ package com.github.abrarsl.courseworkclassversion;
 
 import com.github.abrarsl.courseworkclassversion.exceptions.CustomerNotFoundException;
 import com.github.abrarsl.courseworkclassversion.exceptions.FullQueueException;
+import com.github.abrarsl.courseworkclassversion.exceptions.SelectionOutOfRangeException;
+import com.github.abrarsl.courseworkclassversion.metrics.Metrics;
+import com.github.abrarsl.courseworkclassversion.metrics.Operation;
+
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.ObjIntConsumer;
 
 /**
  * A class that can be used as a waiting queue for customers.
  * This is implemented as a circular queue data structure.
+ * Customers can optionally be kept in a compact {@link CustomerStore} instead of as object references.
  */
 public class WaitingQueue {
     public static final String WAITINGQUEUE_START_MARK = "WAITINGQUEUE_START";
-    private final Customer[] queue;
+    private final CustomerSlots queue;
     private int frontIndex;
     private int rearIndex;
+    private final QueueStatistics statistics = new QueueStatistics();
+    private volatile QueueEventBus eventBus;
 
     /**
      * @param length The maximum length of the {@link WaitingQueue}.
      */
     public WaitingQueue(int length) {
-        this.queue = new Customer[length];
+        this.queue = new CustomerSlots.References(new Customer[length]);
 
         // Indicate empty queue with index trackers
         this.frontIndex = -1;
@@ -28,39 +38,103 @@ public class WaitingQueue {
      * @param queue An array that will be used to construct a {@link WaitingQueue}. Ensure that the array has no holes.
      */
     public WaitingQueue(Customer[] queue) {
+        this(new CustomerSlots.References(queue));
+    }
+
+    /**
+     * Create a {@link WaitingQueue} that keeps its {@link Customer}s in a {@link CustomerStore}.
+     * {@link Customer}s read from the queue are views that stay valid while the {@link Customer} is in the queue.
+     * {@link Customer}s that are dequeued are returned as detached copies.
+     * @param queue The {@link Customer}s to copy into the store. Ensure that the array has no holes.
+     * @param store The {@link CustomerStore} to keep the {@link Customer}s in.
+     */
+    public WaitingQueue(Customer[] queue, CustomerStore store) {
+        this(new CustomerSlots.Handles(queue, store));
+    }
+
+    /**
+     * @param queue The internal slots. Ensure that the slots have no holes.
+     */
+    private WaitingQueue(CustomerSlots queue) {
         this.queue = queue;
 
-        if (this.queue[0] == null) { // Set index trackers if empty
+        if (this.queue.get(0) == null) { // Set index trackers if empty
             this.frontIndex = -1;
             this.rearIndex = -1;
         } else {
             this.frontIndex = 0;
-            this.rearIndex = this.queue.length - 1;
+            this.rearIndex = this.queue.length() - 1;
 
-            for (int i = 0; i < this.queue.length; i++) { // Search for the last valid customer
-                if (this.queue[i] == null) {
+            for (int i = 0; i < this.queue.length(); i++) { // Search for the last valid customer
+                if (this.queue.get(i) == null) {
                     this.rearIndex = i - 1;
+                    break;
                 }
             }
         }
     }
 
+    /**
+     * @return The wait time and promotion rate statistics of the {@link WaitingQueue}.
+     */
+    public QueueStatistics getStatistics() {
+        return this.statistics;
+    }
+
+    /**
+     * @return The expected wait in nanoseconds before a {@link Customer} joining now leaves the {@link WaitingQueue}.
+     * -1 if not enough {@link Customer}s have left to estimate.
+     */
+    public long estimateWait() {
+        return this.statistics.estimateWait(this.getCustomerCount());
+    }
+
+    /**
+     * Publish every change to the {@link WaitingQueue} from now on, as {@link QueueEvent#WAITING_QUEUE}.
+     * @param eventBus The {@link QueueEventBus} to publish on, or null to stop publishing.
+     */
+    public void setEventBus(QueueEventBus eventBus) {
+        this.eventBus = eventBus;
+    }
+
+    /**
+     * Publish a change to the {@link WaitingQueue}, if it has a {@link QueueEventBus}.
+     * @param type What changed.
+     * @param position The position of the {@link Customer} before it left, or after it joined.
+     * @param customer The {@link Customer} that joined or left.
+     */
+    protected void publish(QueueEvent.Type type, int position, Customer customer) {
+        QueueEventBus eventBus = this.eventBus;
+
+        if (eventBus != null) {
+            eventBus.publish(type, QueueEvent.WAITING_QUEUE, position, customer, 0);
+        }
+    }
+
     /**
      * Adds {@link Customer} to the rear of the {@link WaitingQueue}.
      * @param customer The customer to be added onto the {@link WaitingQueue} instance.
      * @throws FullQueueException If the {@link WaitingQueue} instance is full.
      */
     public void enqueue(Customer customer) throws FullQueueException {
-        if (this.isQueueFull()) {
-            throw new FullQueueException();
-        }
+        long startTime = Metrics.start();
 
-        if (this.isQueueEmpty()) { // Set frontIndex if queue was previously empty
-            this.frontIndex = 0;
-        }
+        try {
+            if (this.isQueueFull()) {
+                throw new FullQueueException();
+            }
 
-        this.rearIndex = (this.rearIndex + 1) % this.queue.length; // Increment with overflow
-        this.queue[this.rearIndex] = customer;
+            if (this.isQueueEmpty()) { // Set frontIndex if queue was previously empty
+                this.frontIndex = 0;
+            }
+
+            this.rearIndex = (this.rearIndex + 1) % this.queue.length(); // Increment with overflow
+            customer.markArrived(System.nanoTime()); // Stamp before the slots copy it into a store
+            this.queue.set(this.rearIndex, customer);
+            this.publish(QueueEvent.Type.CUSTOMER_ENQUEUED, this.getCustomerCount() - 1, customer);
+        } finally {
+            Metrics.record(Operation.WAITING_QUEUE_ENQUEUE, startTime);
+        }
     }
 
     /**
@@ -69,22 +143,85 @@ public class WaitingQueue {
      * @throws CustomerNotFoundException If {@link Customer} cannot be found (queue is empty).
      */
     public Customer dequeue() throws CustomerNotFoundException {
-        if (this.isQueueEmpty()) {
-            throw new CustomerNotFoundException();
+        long startTime = Metrics.start();
+
+        try {
+            if (this.isQueueEmpty()) {
+                throw new CustomerNotFoundException();
+            }
+
+            // Remove customer from queue
+            Customer customer = this.queue.take(this.frontIndex);
+            this.statistics.recordDeparture(customer.getArrivedAt(), System.nanoTime());
+
+            if (this.frontIndex == this.rearIndex) { // If removed element is last element, indicate queue is empty
+                this.frontIndex = -1;
+                this.rearIndex = -1;
+            } else {
+                this.frontIndex = (this.frontIndex + 1) % this.queue.length(); // Increment with overflow
+            }
+
+            this.publish(QueueEvent.Type.CUSTOMER_DEQUEUED, 0, customer);
+            return customer;
+        } finally {
+            Metrics.record(Operation.WAITING_QUEUE_DEQUEUE, startTime);
         }
+    }
 
-        // Remove customer from queue
-        Customer customer = this.queue[this.frontIndex];
-        this.queue[this.frontIndex] = null;
+    /**
+     * @param customer The {@link Customer} to look for. Customers are compared by id, not by name.
+     * @return The position of the {@link Customer} in the {@link WaitingQueue}. -1 if the {@link Customer} is not found.
+     */
+    public int getCustomerPosition(Customer customer) {
+        long startTime = Metrics.start();
 
-        if (this.frontIndex == this.rearIndex) { // If removed element is last element, indicate queue is empty
-            this.frontIndex = -1;
-            this.rearIndex = -1;
-        } else {
-            this.frontIndex = (this.frontIndex + 1) % this.queue.length; // Increment with overflow
+        try {
+            if (this.isQueueEmpty()) {
+                return -1;
+            }
+
+            int position = 0;
+
+            for (int i = this.frontIndex; ; i = (i + 1) % this.queue.length()) { // Increment with overflow
+                if (customer.equals(this.queue.get(i))) {
+                    return position;
+                }
+
+                if (i == this.rearIndex) {
+                    return -1;
+                }
+
+                position++;
+            }
+        } finally {
+            Metrics.record(Operation.WAITING_QUEUE_POSITION, startTime);
         }
+    }
+
+    /**
+     * Find many {@link Customer}s in one pass over the {@link WaitingQueue}, such as the matches of a search.
+     * Only the ids of the slots are read until a {@link Customer} is found, so no views are built for the others.
+     * @param ids The ids of the {@link Customer}s to look for.
+     * @param action Called with each {@link Customer} found and its position, in queue order.
+     */
+    public void findCustomers(Set<Long> ids, ObjIntConsumer<Customer> action) {
+        long startTime = Metrics.start();
+
+        try {
+            int customerCount = this.getCustomerCount();
+            int remaining = ids.size();
+
+            for (int i = 0; i < customerCount && remaining > 0; i++) { // Stop once every id is found
+                int index = (this.frontIndex + i) % this.queue.length(); // Increment with overflow
 
-        return customer;
+                if (ids.contains(this.queue.getId(index))) {
+                    action.accept(this.queue.get(index), i);
+                    remaining--;
+                }
+            }
+        } finally {
+            Metrics.record(Operation.WAITING_QUEUE_POSITION, startTime);
+        }
     }
 
     /**
@@ -99,42 +236,102 @@ public class WaitingQueue {
      */
     private boolean isQueueFull() {
         // Check if incrementing rear index will make it match the front index
-        return this.frontIndex == (this.rearIndex + 1) % this.queue.length;
+        return this.frontIndex == (this.rearIndex + 1) % this.queue.length();
     }
 
     /**
      * @return Length of the {@link WaitingQueue}.
      */
     public int getQueueLength() {
-        return this.queue.length;
+        return this.queue.length();
+    }
+
+    /**
+     * @return The number of {@link Customer}s currently in the {@link WaitingQueue}.
+     */
+    public int getCustomerCount() {
+        if (this.isQueueEmpty()) {
+            return 0;
+        }
+
+        return (this.rearIndex - this.frontIndex + this.queue.length()) % this.queue.length() + 1;
+    }
+
+    /**
+     * Read a {@link Customer} in place, without copying the {@link WaitingQueue}.
+     * @param position The position of the {@link Customer}, counted from the front of the {@link WaitingQueue}.
+     * @return Reference to the {@link Customer}. null if there is no {@link Customer} at that position.
+     * @throws SelectionOutOfRangeException If the given position is out of bounds for the internal queue.
+     */
+    public Customer getCustomer(int position) throws SelectionOutOfRangeException {
+        long startTime = Metrics.start();
+
+        try {
+            if (position < 0 || position >= this.getQueueLength()) {
+                throw new SelectionOutOfRangeException(
+                        String.format(
+                                "Range is %d to %d.",
+                                0,
+                                this.getQueueLength() - 1
+                        )
+                );
+            }
+
+            if (position >= this.getCustomerCount()) {
+                return null;
+            }
+
+            return this.queue.get((this.frontIndex + position) % this.queue.length()); // Increment with overflow
+        } finally {
+            Metrics.record(Operation.WAITING_QUEUE_GET, startTime);
+        }
+    }
+
+    /**
+     * Pass each {@link Customer} to the given action in queue order, without copying the {@link WaitingQueue}.
+     * @param action The action to run for each {@link Customer}.
+     */
+    public void forEach(Consumer<Customer> action) {
+        int customerCount = this.getCustomerCount();
+
+        for (int i = 0; i < customerCount; i++) {
+            action.accept(this.queue.get((this.frontIndex + i) % this.queue.length())); // Increment with overflow
+        }
     }
 
     /**
      * This method will construct a new array.
      * This may be an expensive operation.
+     * Prefer {@link WaitingQueue#getCustomer(int)} or {@link WaitingQueue#forEach(Consumer)} when a copy is not needed.
      * @return An array of {@link Customer} objects representing the {@link WaitingQueue} state.
      */
     public Customer[] getQueue() {
-        // Copy the indices
-        int front = this.frontIndex;
-        int rear = this.rearIndex;
+        long startTime = Metrics.start();
 
-        Customer[] tempQueue = new Customer[this.getQueueLength()];
-        int queueIndex = 0;
+        try {
+            // Copy the indices
+            int front = this.frontIndex;
+            int rear = this.rearIndex;
 
-        while (front != -1) { // While not empty
-            tempQueue[queueIndex] = this.queue[front];
-            queueIndex++;
+            Customer[] tempQueue = new Customer[this.getQueueLength()];
+            int queueIndex = 0;
 
-            if (front == rear) { // If queue is empty
-                front = -1;
-                rear = -1;
-            } else {
-                front = (front + 1) % this.getQueueLength(); // Increment with overflow
+            while (front != -1) { // While not empty
+                tempQueue[queueIndex] = this.queue.get(front);
+                queueIndex++;
+
+                if (front == rear) { // If queue is empty
+                    front = -1;
+                    rear = -1;
+                } else {
+                    front = (front + 1) % this.getQueueLength(); // Increment with overflow
+                }
             }
-        }
 
-        return tempQueue;
+            return tempQueue;
+        } finally {
+            Metrics.record(Operation.WAITING_QUEUE_COPY, startTime);
+        }
     }
 
     /**
@@ -146,16 +343,50 @@ public class WaitingQueue {
      * @return An array of {@link Customer}s who match the criteria.
      */
     public Customer[] searchCustomer(String searchTerm) {
-        Customer[] localQueue = this.getQueue();
-        Customer[] tempQueue = new Customer[localQueue.length];
+        long startTime = Metrics.start();
+
+        try {
+            Customer[] tempQueue = new Customer[this.getQueueLength()];
+            int customerCount = this.getCustomerCount();
+            String searchKey = Customer.toSearchKey(searchTerm);
 
-        for (int i = 0; i < tempQueue.length; i++) {
-            if (localQueue[i] != null && localQueue[i].getFullName().toUpperCase().contains(searchTerm.toUpperCase())) {
-                tempQueue[i] = localQueue[i];
+            for (int i = 0; i < customerCount; i++) {
+                Customer customer = this.queue.get((this.frontIndex + i) % this.queue.length()); // Increment with overflow
+
+                if (customer.getSearchKey().contains(searchKey)) {
+                    tempQueue[i] = customer;
+                }
             }
+
+            return tempQueue;
+        } finally {
+            Metrics.record(Operation.WAITING_QUEUE_SEARCH, startTime);
         }
+    }
 
-        return tempQueue;
+    /**
+     * Search for {@link Customer}s with the given search term within their name, passing only the matches on.
+     * Searches are case-insensitive. Nothing is copied, so the memory used does not grow with the queue.
+     * @param searchTerm The search term that is checked.
+     * @param action Called with each matching {@link Customer} and its position, in queue order.
+     */
+    public void searchCustomers(String searchTerm, ObjIntConsumer<Customer> action) {
+        long startTime = Metrics.start();
+
+        try {
+            String searchKey = Customer.toSearchKey(searchTerm);
+            int[] position = {0};
+
+            this.forEach(customer -> {
+                if (customer.getSearchKey().contains(searchKey)) {
+                    action.accept(customer, position[0]);
+                }
+
+                position[0]++;
+            });
+        } finally {
+            Metrics.record(Operation.WAITING_QUEUE_SEARCH, startTime);
+        }
     }
 
     /**
@@ -165,16 +396,8 @@ public class WaitingQueue {
     public String toString() {
         StringBuilder state = new StringBuilder(String.format("%s%n%d%n", WAITINGQUEUE_START_MARK, this.getQueueLength()));
 
-        int customersSaved = 0;
-
-        for (Customer customer : this.getQueue()) {
-            if (customer != null) {
-                state.append(customer);
-                customersSaved++;
-            }
-        }
-
-        state.append(String.format("null%n".repeat(this.getQueueLength() - customersSaved)));
+        this.forEach(state::append);
+        state.append(String.format("null%n".repeat(this.getQueueLength() - this.getCustomerCount())));
 
         return state.toString();
     }
@@ -0,0 +1,11 @@
+package com.github.abrarsl.courseworkclassversion.branch;
+
+import com.github.abrarsl.courseworkclassversion.Customer;
+
+/**
+ * A {@link Customer} in a {@link com.github.abrarsl.courseworkclassversion.FoodQueue} of a branch.
+ * @param branchId The id of the branch.
+ * @param customer A copy of the {@link Customer}.
+ */
+public record BranchCustomer(int branchId, Customer customer) {
+}
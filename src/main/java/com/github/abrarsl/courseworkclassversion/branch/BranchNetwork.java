@@ -0,0 +1,343 @@
+package com.github.abrarsl.courseworkclassversion.branch;
+
+import com.github.abrarsl.courseworkclassversion.Customer;
+import com.github.abrarsl.courseworkclassversion.CustomerSearchIndex;
+import com.github.abrarsl.courseworkclassversion.ShopEngine;
+import com.github.abrarsl.courseworkclassversion.exceptions.*;
+import com.github.abrarsl.courseworkclassversion.metrics.Metrics;
+import com.github.abrarsl.courseworkclassversion.metrics.Operation;
+import com.github.abrarsl.courseworkclassversion.server.ShopOperations;
+
+import java.text.CollationKey;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * A number of independent branches, each with its own {@link ShopEngine} (queues, stock and income) run by its own
+ * thread.
+ * <p>
+ * Work for a branch is routed by branch id to the inbox of that branch, and run by the branch thread, so branches
+ * never share state or locks and run on different cores. Reports across every branch are fanned out: each branch
+ * computes its part on its own thread at the same time, and the parts are then merged by the calling thread.
+ * <p>
+ * Branches are kept in memory only. This class is thread-safe.
+ */
+public class BranchNetwork implements AutoCloseable {
+    private final BranchShard[] shards;
+
+    /**
+     * Start a number of empty branches, all with the same layout.
+     * @param branchCount The number of branches. Branch ids go from 0 to branchCount - 1.
+     * @param queueLayout The length of each {@link com.github.abrarsl.courseworkclassversion.FoodQueue} of a branch.
+     * @param waitingQueueLength The length of the waiting queue of a branch, if it has a fixed size.
+     * @param options How the queues of a branch are built.
+     */
+    public BranchNetwork(int branchCount, int[] queueLayout, int waitingQueueLength, ShopEngine.Options options) {
+        this.shards = new BranchShard[branchCount];
+
+        for (int i = 0; i < branchCount; i++) {
+            this.shards[i] = new BranchShard(i, new ShopEngine(queueLayout, waitingQueueLength, options));
+        }
+    }
+
+    /**
+     * @return The number of branches.
+     */
+    public int getBranchCount() {
+        return this.shards.length;
+    }
+
+    /**
+     * @param branchId The id of a branch.
+     * @return The branch.
+     * @throws SelectionOutOfRangeException If there is no branch with that id.
+     */
+    private BranchShard getShard(int branchId) throws SelectionOutOfRangeException {
+        if (branchId < 0 || branchId >= this.shards.length) {
+            throw new SelectionOutOfRangeException(String.format("Range is %d to %d.", 0, this.shards.length - 1));
+        }
+
+        return this.shards[branchId];
+    }
+
+    /**
+     * Queue a task to run on the thread of one branch. Never blocks.
+     * @param branchId The id of the branch.
+     * @param task The task to run.
+     * @param <T> The type of the result.
+     * @return A future completed with the result of the task, or with its exception.
+     * @throws SelectionOutOfRangeException If there is no branch with that id.
+     */
+    public <T> CompletableFuture<T> submit(int branchId, BranchTask<T> task) throws SelectionOutOfRangeException {
+        return this.getShard(branchId).submit(task);
+    }
+
+    /**
+     * @param branchId The id of the branch.
+     * @return The operations of one branch, for example to serve it with an
+     * {@link com.github.abrarsl.courseworkclassversion.server.OrderServer}. Each operation waits for the branch thread.
+     * @throws SelectionOutOfRangeException If there is no branch with that id.
+     */
+    public ShopOperations getBranch(int branchId) throws SelectionOutOfRangeException {
+        return new BranchOperations(this.getShard(branchId));
+    }
+
+    /**
+     * Run a task on every branch at the same time and wait for all of them.
+     * @param task The task to run. It is run once by each branch thread.
+     * @param <T> The type of the result.
+     * @return The result of each branch, indexed by branch id.
+     * @throws CompletionException If the task failed on any branch. The cause is the exception of the task.
+     */
+    public <T> List<T> queryAll(BranchTask<T> task) {
+        List<CompletableFuture<T>> parts = new ArrayList<>(this.shards.length);
+
+        for (BranchShard shard : this.shards) { // Every branch starts before any result is waited for
+            parts.add(shard.submit(task));
+        }
+
+        List<T> results = new ArrayList<>(parts.size());
+
+        for (CompletableFuture<T> part : parts) {
+            results.add(part.join());
+        }
+
+        return results;
+    }
+
+    /**
+     * @return The income of every queue of every branch added together.
+     */
+    public long getTotalIncome() {
+        long startTime = Metrics.start();
+
+        try {
+            long totalIncome = 0;
+
+            for (long income : this.queryAll(ShopEngine::getTotalIncome)) {
+                totalIncome += income;
+            }
+
+            return totalIncome;
+        } finally {
+            Metrics.record(Operation.BRANCH_REPORT, startTime);
+        }
+    }
+
+    /**
+     * @return The stock of every branch added together.
+     */
+    public long getTotalItemStock() {
+        long startTime = Metrics.start();
+
+        try {
+            long totalItemStock = 0;
+
+            for (int itemStock : this.queryAll(ShopEngine::getItemStock)) {
+                totalItemStock += itemStock;
+            }
+
+            return totalItemStock;
+        } finally {
+            Metrics.record(Operation.BRANCH_REPORT, startTime);
+        }
+    }
+
+    /**
+     * Every branch sorts its own {@link Customer}s at the same time, then the sorted lists are merged, taking the
+     * alphabetically first {@link Customer} at the front of any list each time. Merging n customers from k branches
+     * is O(n log k).
+     * @return Copies of the {@link Customer}s in the queues of every branch, sorted alphabetically by full name.
+     * Customers with the same full name are ordered by branch id.
+     */
+    public List<BranchCustomer> getSortedCustomers() {
+        long startTime = Metrics.start();
+
+        try {
+            List<List<Customer>> branchCustomers = this.queryAll(ShopEngine::getSortedCustomers);
+            int[] positions = new int[branchCustomers.size()];
+            int customerCount = 0;
+
+            PriorityQueue<Integer> nextBranches = new PriorityQueue<>(
+                    Math.max(1, branchCustomers.size()),
+                    Comparator.<Integer, CollationKey>comparing(
+                            branchId -> branchCustomers.get(branchId).get(positions[branchId]).getCollationKey()
+                    ).thenComparing(Comparator.naturalOrder())
+            );
+
+            for (int i = 0; i < branchCustomers.size(); i++) {
+                customerCount += branchCustomers.get(i).size();
+
+                if (!branchCustomers.get(i).isEmpty()) {
+                    nextBranches.add(i);
+                }
+            }
+
+            List<BranchCustomer> customers = new ArrayList<>(customerCount);
+
+            while (!nextBranches.isEmpty()) {
+                int branchId = nextBranches.poll();
+                customers.add(new BranchCustomer(branchId, branchCustomers.get(branchId).get(positions[branchId]++)));
+
+                if (positions[branchId] < branchCustomers.get(branchId).size()) { // Compared again by its next customer
+                    nextBranches.add(branchId);
+                }
+            }
+
+            return customers;
+        } finally {
+            Metrics.record(Operation.BRANCH_REPORT, startTime);
+        }
+    }
+
+    /**
+     * Register the gauges of every branch with {@link Metrics}, named "Branch.id." followed by the gauge name.
+     */
+    public void registerGauges() {
+        for (BranchShard shard : this.shards) {
+            shard.submit(engine -> {
+                engine.registerGauges(String.format("Branch.%d.", shard.getBranchId()));
+                return null;
+            }).join();
+        }
+    }
+
+    /**
+     * Close every branch. Tasks submitted before are run first.
+     */
+    @Override
+    public void close() {
+        for (BranchShard shard : this.shards) {
+            shard.close();
+        }
+    }
+
+    /**
+     * The {@link ShopOperations} of one branch. Each operation is run by the branch thread while the caller waits.
+     */
+    private static final class BranchOperations implements ShopOperations {
+        private final BranchShard shard;
+
+        /**
+         * @param shard The branch to run operations on.
+         */
+        private BranchOperations(BranchShard shard) {
+            this.shard = shard;
+        }
+
+        @Override
+        public int addCustomer(String firstName, String lastName, int burgersRequired)
+                throws InputValidationException, FullQueueException {
+            try {
+                return this.shard.call(engine -> engine.addCustomer(firstName, lastName, burgersRequired));
+            } catch (InputValidationException | FullQueueException | RuntimeException exception) {
+                throw exception;
+            } catch (Exception exception) {
+                throw unexpected(exception);
+            }
+        }
+
+        @Override
+        public long estimateWait(int queueNumber) throws SelectionOutOfRangeException {
+            try {
+                return this.shard.call(engine -> engine.estimateWait(queueNumber));
+            } catch (SelectionOutOfRangeException | RuntimeException exception) {
+                throw exception;
+            } catch (Exception exception) {
+                throw unexpected(exception);
+            }
+        }
+
+        @Override
+        public Customer serveCustomer(int queueNumber)
+                throws SelectionOutOfRangeException, CustomerNotFoundException, InsufficientStockException {
+            try {
+                return this.shard.call(engine -> engine.serveCustomer(queueNumber));
+            } catch (SelectionOutOfRangeException | CustomerNotFoundException | InsufficientStockException
+                     | RuntimeException exception) {
+                throw exception;
+            } catch (Exception exception) {
+                throw unexpected(exception);
+            }
+        }
+
+        @Override
+        public Customer removeCustomer(int queueNumber, int position)
+                throws SelectionOutOfRangeException, CustomerNotFoundException {
+            try {
+                return this.shard.call(engine -> engine.removeCustomer(queueNumber, position));
+            } catch (SelectionOutOfRangeException | CustomerNotFoundException | RuntimeException exception) {
+                throw exception;
+            } catch (Exception exception) {
+                throw unexpected(exception);
+            }
+        }
+
+        @Override
+        public List<CustomerSearchIndex.Hit> search(String searchTerm) {
+            try {
+                return this.shard.call(engine -> engine.search(searchTerm));
+            } catch (RuntimeException exception) {
+                throw exception;
+            } catch (Exception exception) {
+                throw unexpected(exception);
+            }
+        }
+
+        @Override
+        public int getItemStock() {
+            try {
+                return this.shard.call(ShopEngine::getItemStock);
+            } catch (RuntimeException exception) {
+                throw exception;
+            } catch (Exception exception) {
+                throw unexpected(exception);
+            }
+        }
+
+        @Override
+        public int addItemStock(int amount) throws StockOutOfRangeException {
+            try {
+                return this.shard.call(engine -> engine.addItemStock(amount));
+            } catch (StockOutOfRangeException | RuntimeException exception) {
+                throw exception;
+            } catch (Exception exception) {
+                throw unexpected(exception);
+            }
+        }
+
+        @Override
+        public int getQueueCount() {
+            try {
+                return this.shard.call(ShopEngine::getQueueCount);
+            } catch (RuntimeException exception) {
+                throw exception;
+            } catch (Exception exception) {
+                throw unexpected(exception);
+            }
+        }
+
+        @Override
+        public int getQueueIncome(int queueNumber) throws SelectionOutOfRangeException {
+            try {
+                return this.shard.call(engine -> engine.getQueueIncome(queueNumber));
+            } catch (SelectionOutOfRangeException | RuntimeException exception) {
+                throw exception;
+            } catch (Exception exception) {
+                throw unexpected(exception);
+            }
+        }
+
+        /**
+         * @param exception A checked exception that the operation cannot throw.
+         * @return An exception to throw in its place.
+         */
+        private static IllegalStateException unexpected(Exception exception) {
+            return new IllegalStateException("Branch operation failed unexpectedly!", exception);
+        }
+    }
+}
@@ -0,0 +1,162 @@
+package com.github.abrarsl.courseworkclassversion.branch;
+
+import com.github.abrarsl.courseworkclassversion.ShopEngine;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * One branch of a {@link BranchNetwork}: a {@link ShopEngine} that is only ever used by the thread of the branch.
+ * <p>
+ * Tasks from any thread are put in a {@link MpscInbox} and run one at a time, in order, by the branch thread.
+ * The branch thread is the only thread that changes or reads the queues of the branch, so branches never contend
+ * with each other, and the lock of the engine is never contended either.
+ */
+final class BranchShard implements AutoCloseable {
+    private final int branchId;
+    private final ShopEngine engine;
+    private final MpscInbox<Call<?>> inbox = new MpscInbox<>();
+    private final AtomicInteger submitting = new AtomicInteger();
+    private final Call<Void> stop = new Call<>(engine -> null);
+    private final Thread thread;
+    private volatile boolean closed = false;
+
+    /**
+     * A task and the future that receives its result.
+     * @param <T> The type of the result.
+     */
+    private static final class Call<T> {
+        private final BranchTask<T> task;
+        private final CompletableFuture<T> result = new CompletableFuture<>();
+
+        /**
+         * @param task The task to run.
+         */
+        private Call(BranchTask<T> task) {
+            this.task = task;
+        }
+
+        /**
+         * Run the task and complete the future with its result or its exception.
+         * @param engine The {@link ShopEngine} of the branch.
+         */
+        private void run(ShopEngine engine) {
+            try {
+                this.result.complete(this.task.run(engine));
+            } catch (Throwable throwable) {
+                this.result.completeExceptionally(throwable);
+            }
+        }
+    }
+
+    /**
+     * Start the thread of a branch.
+     * @param branchId The id of the branch, used to name its thread.
+     * @param engine The {@link ShopEngine} of the branch. It must not be used by any other thread from now on.
+     */
+    BranchShard(int branchId, ShopEngine engine) {
+        this.branchId = branchId;
+        this.engine = engine;
+        this.thread = new Thread(this::runTasks, String.format("branch-%d", branchId));
+        this.thread.setDaemon(true); // Never hold the program open, close() runs the remaining tasks
+        this.thread.start();
+    }
+
+    /**
+     * @return The id of the branch.
+     */
+    int getBranchId() {
+        return this.branchId;
+    }
+
+    /**
+     * Queue a task to run on the branch thread. Never blocks.
+     * @param task The task to run.
+     * @param <T> The type of the result.
+     * @return A future completed with the result of the task, or with its exception.
+     * It fails with a {@link RejectedExecutionException} if the branch is closed.
+     */
+    <T> CompletableFuture<T> submit(BranchTask<T> task) {
+        Call<T> call = new Call<>(task);
+        this.submitting.incrementAndGet(); // Announce the task before checking, so close() waits for it
+
+        try {
+            if (this.closed) {
+                call.result.completeExceptionally(
+                        new RejectedExecutionException(String.format("Branch %d is closed!", this.branchId))
+                );
+            } else {
+                this.inbox.offer(call);
+            }
+        } finally {
+            this.submitting.decrementAndGet();
+        }
+
+        return call.result;
+    }
+
+    /**
+     * Run a task on the branch thread and wait for it.
+     * @param task The task to run.
+     * @param <T> The type of the result.
+     * @return The result of the task.
+     * @throws Exception The exception thrown by the task, unwrapped.
+     */
+    <T> T call(BranchTask<T> task) throws Exception {
+        try {
+            return this.submit(task).join();
+        } catch (CompletionException exception) {
+            if (exception.getCause() instanceof Exception cause) {
+                throw cause;
+            }
+
+            throw exception;
+        }
+    }
+
+    /**
+     * Run tasks in the order they were submitted until the branch is closed, then close the engine.
+     */
+    private void runTasks() {
+        while (true) {
+            Call<?> call;
+
+            try {
+                call = this.inbox.take();
+            } catch (InterruptedException exception) { // Only close() stops the branch
+                continue;
+            }
+
+            if (call == this.stop) {
+                break;
+            }
+
+            call.run(this.engine);
+        }
+
+        this.engine.close();
+    }
+
+    /**
+     * Stop taking tasks, run every task submitted before, then close the {@link ShopEngine} of the branch.
+     * Blocks until the branch thread has finished.
+     */
+    @Override
+    public void close() {
+        this.closed = true;
+
+        while (this.submitting.get() > 0) { // A task may be about to be added, and must run before the stop
+            Thread.onSpinWait();
+        }
+
+        this.inbox.offer(this.stop);
+
+        try {
+            this.thread.join();
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
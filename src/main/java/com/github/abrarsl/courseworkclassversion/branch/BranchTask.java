@@ -0,0 +1,17 @@
+package com.github.abrarsl.courseworkclassversion.branch;
+
+import com.github.abrarsl.courseworkclassversion.ShopEngine;
+
+/**
+ * Work run on the thread of one branch, with the {@link ShopEngine} of that branch.
+ * @param <T> The type of the result.
+ */
+@FunctionalInterface
+public interface BranchTask<T> {
+    /**
+     * @param engine The {@link ShopEngine} of the branch. It must not be kept after the task returns.
+     * @return The result of the task, which must not refer to the queues of the branch.
+     * @throws Exception If the task fails. The exception is passed to the caller.
+     */
+    T run(ShopEngine engine) throws Exception;
+}
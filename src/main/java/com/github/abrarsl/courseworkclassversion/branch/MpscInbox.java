@@ -0,0 +1,116 @@
+package com.github.abrarsl.courseworkclassversion.branch;
+
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * An unbounded, lock-free queue that many threads put items into and a single thread takes them out of.
+ * <p>
+ * Items are kept in a linked list. A producer links its item by swapping it in as the new tail, which is one atomic
+ * operation whatever the number of producers, so producers never wait for each other or for the consumer.
+ * Only the consumer moves the head, so taking an item needs no atomic operation at all.
+ * <p>
+ * The consumer parks when the inbox is empty and is unparked by the next producer.
+ * Only one thread may call {@link MpscInbox#poll()} and {@link MpscInbox#take()}.
+ * @param <T> The type of the items.
+ */
+final class MpscInbox<T> {
+    private final AtomicReference<Node<T>> tail;
+    private Node<T> head; // Only touched by the consumer. Its item has already been taken
+    private volatile Thread consumer;
+    private volatile boolean consumerParked = false;
+
+    /**
+     * A link in the list.
+     * @param <T> The type of the item.
+     */
+    private static final class Node<T> {
+        private T item;
+        private volatile Node<T> next;
+
+        /**
+         * @param item The item held by the node. null for the first node.
+         */
+        private Node(T item) {
+            this.item = item;
+        }
+    }
+
+    MpscInbox() {
+        Node<T> first = new Node<>(null);
+        this.head = first;
+        this.tail = new AtomicReference<>(first);
+    }
+
+    /**
+     * Add an item at the end of the inbox. May be called from any thread.
+     * @param item The item to add. Must not be null.
+     */
+    void offer(T item) {
+        Node<T> node = new Node<>(item);
+        this.tail.getAndSet(node).next = node; // Until this link is set, the consumer spins in poll()
+
+        if (this.consumerParked) {
+            LockSupport.unpark(this.consumer);
+        }
+    }
+
+    /**
+     * Take the item at the front of the inbox without waiting. Only called by the consumer.
+     * @return The item. null if the inbox is empty.
+     */
+    T poll() {
+        Node<T> next = this.head.next;
+
+        if (next == null) {
+            if (this.head == this.tail.get()) {
+                return null;
+            }
+
+            while ((next = this.head.next) == null) { // A producer has swapped the tail but not linked it yet
+                Thread.onSpinWait();
+            }
+        }
+
+        T item = next.item;
+        next.item = null; // The node becomes the new head, so it must not keep the item alive
+        this.head = next;
+
+        return item;
+    }
+
+    /**
+     * Take the item at the front of the inbox, parking until one is added if it is empty. Only called by the consumer.
+     * @return The item.
+     * @throws InterruptedException If the consumer is interrupted while parked.
+     */
+    T take() throws InterruptedException {
+        this.consumer = Thread.currentThread();
+
+        while (true) {
+            T item = this.poll();
+
+            if (item != null) {
+                return item;
+            }
+
+            this.consumerParked = true; // Producers check this after linking, so one of us sees the other
+
+            try {
+                item = this.poll();
+
+                if (item != null) {
+                    return item;
+                }
+
+                LockSupport.park(this);
+            } finally {
+                this.consumerParked = false;
+            }
+
+            if (Thread.interrupted()) {
+                throw new InterruptedException();
+            }
+        }
+    }
+}
@@ -0,0 +1,125 @@
+package com.github.abrarsl.courseworkclassversion.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A histogram of latencies in nanoseconds with a fixed relative precision, in the style of HdrHistogram.
+ * Each power of two is split into {@link LatencyHistogram#SUB_BUCKET_COUNT} equal buckets,
+ * so every recorded value is accurate to within 1% no matter how large it is.
+ * Recording is a few atomic increments and never allocates, so it can be called from any thread.
+ */
+public class LatencyHistogram {
+    private static final int SUB_BUCKET_BITS = 7;
+    private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+    private static final int MAX_MAGNITUDE = 42; // About 73 minutes, far beyond any single operation
+    private static final int BUCKET_COUNT = SUB_BUCKET_COUNT + (MAX_MAGNITUDE - SUB_BUCKET_BITS + 1) * SUB_BUCKET_COUNT;
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKET_COUNT);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder total = new LongAdder();
+    private final AtomicLong max = new AtomicLong();
+
+    /**
+     * @param value A latency in nanoseconds.
+     * @return The index of the bucket that holds the value.
+     */
+    private static int bucketIndex(long value) {
+        if (value < SUB_BUCKET_COUNT) {
+            return (int) Math.max(value, 0);
+        }
+
+        int magnitude = Math.min(63 - Long.numberOfLeadingZeros(value), MAX_MAGNITUDE);
+        int subBucket = (int) Math.min(value >>> (magnitude - SUB_BUCKET_BITS), 2 * SUB_BUCKET_COUNT - 1);
+
+        return (magnitude - SUB_BUCKET_BITS + 1) * SUB_BUCKET_COUNT + subBucket - SUB_BUCKET_COUNT;
+    }
+
+    /**
+     * @param index The index of a bucket.
+     * @return The smallest value that falls into the bucket.
+     */
+    private static long lowestValue(int index) {
+        if (index < SUB_BUCKET_COUNT) {
+            return index;
+        }
+
+        int magnitude = index / SUB_BUCKET_COUNT - 1 + SUB_BUCKET_BITS;
+        long subBucket = index % SUB_BUCKET_COUNT + SUB_BUCKET_COUNT;
+
+        return subBucket << (magnitude - SUB_BUCKET_BITS);
+    }
+
+    /**
+     * @param nanos The latency to record, in nanoseconds.
+     */
+    public void record(long nanos) {
+        this.buckets.incrementAndGet(bucketIndex(nanos));
+        this.count.increment();
+        this.total.add(nanos);
+        this.max.accumulateAndGet(nanos, Math::max);
+    }
+
+    /**
+     * @return The number of recorded values.
+     */
+    public long getCount() {
+        return this.count.sum();
+    }
+
+    /**
+     * @return The largest recorded value in nanoseconds. 0 if nothing has been recorded.
+     */
+    public long getMax() {
+        return this.max.get();
+    }
+
+    /**
+     * @return The mean of the recorded values in nanoseconds. 0 if nothing has been recorded.
+     */
+    public double getMean() {
+        long count = this.getCount();
+        return count == 0 ? 0 : (double) this.total.sum() / count;
+    }
+
+    /**
+     * @param percentile The percentile to find, from 0 to 100.
+     * @return The value in nanoseconds that the given percentage of recorded values are at or below,
+     * accurate to the precision of the histogram. 0 if nothing has been recorded.
+     */
+    public long getPercentile(double percentile) {
+        long count = this.getCount();
+
+        if (count == 0) {
+            return 0;
+        }
+
+        long target = Math.max(1, (long) Math.ceil(Math.min(percentile, 100) / 100 * count));
+        long seen = 0;
+
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            seen += this.buckets.get(i);
+
+            if (seen >= target && i == BUCKET_COUNT - 1) { // The last bucket also holds every larger value
+                return this.getMax();
+            } else if (seen >= target) { // Report the top of the bucket so the percentile is never understated
+                return Math.min(lowestValue(i + 1) - 1, this.getMax());
+            }
+        }
+
+        return this.getMax(); // Values recorded while reading may leave the sum short of the count
+    }
+
+    /**
+     * Clear every recorded value. Values recorded at the same time may be partly kept.
+     */
+    public void reset() {
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            this.buckets.set(i, 0);
+        }
+
+        this.count.reset();
+        this.total.reset();
+        this.max.set(0);
+    }
+}
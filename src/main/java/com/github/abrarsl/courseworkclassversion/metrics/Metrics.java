@@ -0,0 +1,166 @@
+package com.github.abrarsl.courseworkclassversion.metrics;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.LongSupplier;
+
+/**
+ * The registry of operation timings and gauges for the whole program.
+ * Metrics are off by default. While they are off, {@link Metrics#start()} only reads a flag and
+ * {@link Metrics#record(Operation, long)} only compares a number, so instrumented code pays close to nothing.
+ * <p>
+ * Instrumented methods follow the same pattern:
+ * <pre>{@code
+ * long startTime = Metrics.start();
+ *
+ * try {
+ *     ...
+ * } finally {
+ *     Metrics.record(Operation.SEARCH, startTime);
+ * }
+ * }</pre>
+ */
+public final class Metrics {
+    public static final String OBJECT_NAME = "com.github.abrarsl.courseworkclassversion:type=Metrics";
+    private static final long DISABLED = Long.MIN_VALUE;
+    private static final Map<String, LongSupplier> gauges = new ConcurrentHashMap<>();
+    private static volatile boolean enabled = false;
+
+    /**
+     * Only static members.
+     */
+    private Metrics() {
+    }
+
+    /**
+     * @return 'true' if operations are being timed.
+     */
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * @param enabled 'true' to start timing operations, 'false' to stop. Recorded values are kept either way.
+     */
+    public static void setEnabled(boolean enabled) {
+        Metrics.enabled = enabled;
+    }
+
+    /**
+     * @return The start time to pass to {@link Metrics#record(Operation, long)}.
+     */
+    public static long start() {
+        return enabled ? System.nanoTime() : DISABLED;
+    }
+
+    /**
+     * Count a call to the operation and record how long it took.
+     * @param operation The operation that was called.
+     * @param startTime The value returned by {@link Metrics#start()} before the call.
+     */
+    public static void record(Operation operation, long startTime) {
+        if (startTime != DISABLED) {
+            operation.getHistogram().record(System.nanoTime() - startTime);
+        }
+    }
+
+    /**
+     * Add a gauge, replacing any gauge with the same name. Gauges are only read when a report is made.
+     * @param name The name of the gauge.
+     * @param gauge Supplies the current value of the gauge.
+     */
+    public static void registerGauge(String name, LongSupplier gauge) {
+        gauges.put(name, gauge);
+    }
+
+    /**
+     * Remove every gauge whose name starts with the given prefix.
+     * @param prefix The prefix of the gauges to remove.
+     */
+    public static void removeGauges(String prefix) {
+        gauges.keySet().removeIf(name -> name.startsWith(prefix));
+    }
+
+    /**
+     * @return The current value of every gauge, sorted by name.
+     */
+    public static Map<String, Long> readGauges() {
+        Map<String, Long> values = new TreeMap<>();
+        gauges.forEach((name, gauge) -> values.put(name, gauge.getAsLong()));
+
+        return values;
+    }
+
+    /**
+     * Clear the recorded values of every operation. Gauges are not affected.
+     */
+    public static void reset() {
+        for (Operation operation : Operation.values()) {
+            operation.getHistogram().reset();
+        }
+    }
+
+    /**
+     * @return A table of the count and latency percentiles of every operation that has been called,
+     * followed by the value of every gauge.
+     */
+    public static String report() {
+        StringBuilder builder = new StringBuilder(
+                String.format(
+                        "%-34s %10s %10s %10s %10s %10s %10s%n",
+                        "Operation",
+                        "Count",
+                        "Mean (us)",
+                        "P50 (us)",
+                        "P90 (us)",
+                        "P99 (us)",
+                        "Max (us)"
+                )
+        );
+
+        for (Operation operation : Operation.values()) {
+            LatencyHistogram histogram = operation.getHistogram();
+
+            if (histogram.getCount() == 0) {
+                continue;
+            }
+
+            builder.append(
+                    String.format(
+                            "%-34s %10d %10.2f %10.2f %10.2f %10.2f %10.2f%n",
+                            operation.getLabel(),
+                            histogram.getCount(),
+                            histogram.getMean() / 1e3,
+                            histogram.getPercentile(50) / 1e3,
+                            histogram.getPercentile(90) / 1e3,
+                            histogram.getPercentile(99) / 1e3,
+                            histogram.getMax() / 1e3
+                    )
+            );
+        }
+
+        readGauges().forEach((name, value) -> builder.append(String.format("%-34s %10d%n", name, value)));
+
+        return builder.toString();
+    }
+
+    /**
+     * Register a {@link MetricsMXBean} with the platform MBean server under {@link Metrics#OBJECT_NAME},
+     * so the metrics can be read and switched on from JConsole or any other JMX client.
+     * Does nothing if it is already registered.
+     * @throws JMException If the MBean could not be registered.
+     */
+    public static void registerMBean() throws JMException {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ObjectName name = new ObjectName(OBJECT_NAME);
+
+        if (!server.isRegistered(name)) {
+            server.registerMBean(new MetricsView(), name);
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package com.github.abrarsl.courseworkclassversion.metrics;
+
+import java.util.Map;
+
+/**
+ * The JMX view of {@link Metrics}. Maps are keyed by operation or gauge name.
+ */
+public interface MetricsMXBean {
+    /**
+     * @return 'true' if operations are being timed.
+     */
+    boolean isEnabled();
+
+    /**
+     * @param enabled 'true' to start timing operations, 'false' to stop.
+     */
+    void setEnabled(boolean enabled);
+
+    /**
+     * @return The number of calls to each operation.
+     */
+    Map<String, Long> getCounts();
+
+    /**
+     * @return The mean latency of each operation in microseconds.
+     */
+    Map<String, Double> getMeanLatencies();
+
+    /**
+     * @return The median latency of each operation in microseconds.
+     */
+    Map<String, Double> getP50Latencies();
+
+    /**
+     * @return The 99th percentile latency of each operation in microseconds.
+     */
+    Map<String, Double> getP99Latencies();
+
+    /**
+     * @return The largest latency of each operation in microseconds.
+     */
+    Map<String, Double> getMaxLatencies();
+
+    /**
+     * @return The current value of every gauge.
+     */
+    Map<String, Long> getGauges();
+
+    /**
+     * @return The same table that is shown in the TUI.
+     */
+    String getReport();
+
+    /**
+     * Clear the recorded values of every operation.
+     */
+    void reset();
+}
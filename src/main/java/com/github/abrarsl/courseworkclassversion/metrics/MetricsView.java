@@ -0,0 +1,112 @@
+package com.github.abrarsl.courseworkclassversion.metrics;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * The {@link MetricsMXBean} registered by {@link Metrics#registerMBean()}. Every value is read when it is asked for.
+ */
+class MetricsView implements MetricsMXBean {
+    /**
+     * @param latency Reads a latency in nanoseconds from a histogram.
+     * @return The latency of each operation that has been called, in microseconds.
+     */
+    private static Map<String, Double> latencies(ToDoubleFunction<LatencyHistogram> latency) {
+        Map<String, Double> values = new TreeMap<>();
+
+        for (Operation operation : Operation.values()) {
+            if (operation.getHistogram().getCount() > 0) {
+                values.put(operation.getLabel(), latency.applyAsDouble(operation.getHistogram()) / 1e3);
+            }
+        }
+
+        return values;
+    }
+
+    /**
+     * @return 'true' if operations are being timed.
+     */
+    @Override
+    public boolean isEnabled() {
+        return Metrics.isEnabled();
+    }
+
+    /**
+     * @param enabled 'true' to start timing operations, 'false' to stop.
+     */
+    @Override
+    public void setEnabled(boolean enabled) {
+        Metrics.setEnabled(enabled);
+    }
+
+    /**
+     * @return The number of calls to each operation.
+     */
+    @Override
+    public Map<String, Long> getCounts() {
+        Map<String, Long> values = new TreeMap<>();
+
+        for (Operation operation : Operation.values()) {
+            values.put(operation.getLabel(), operation.getHistogram().getCount());
+        }
+
+        return values;
+    }
+
+    /**
+     * @return The mean latency of each operation in microseconds.
+     */
+    @Override
+    public Map<String, Double> getMeanLatencies() {
+        return latencies(LatencyHistogram::getMean);
+    }
+
+    /**
+     * @return The median latency of each operation in microseconds.
+     */
+    @Override
+    public Map<String, Double> getP50Latencies() {
+        return latencies(histogram -> histogram.getPercentile(50));
+    }
+
+    /**
+     * @return The 99th percentile latency of each operation in microseconds.
+     */
+    @Override
+    public Map<String, Double> getP99Latencies() {
+        return latencies(histogram -> histogram.getPercentile(99));
+    }
+
+    /**
+     * @return The largest latency of each operation in microseconds.
+     */
+    @Override
+    public Map<String, Double> getMaxLatencies() {
+        return latencies(LatencyHistogram::getMax);
+    }
+
+    /**
+     * @return The current value of every gauge.
+     */
+    @Override
+    public Map<String, Long> getGauges() {
+        return Metrics.readGauges();
+    }
+
+    /**
+     * @return The same table that is shown in the TUI.
+     */
+    @Override
+    public String getReport() {
+        return Metrics.report();
+    }
+
+    /**
+     * Clear the recorded values of every operation.
+     */
+    @Override
+    public void reset() {
+        Metrics.reset();
+    }
+}
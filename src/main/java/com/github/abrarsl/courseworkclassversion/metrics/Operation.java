@@ -0,0 +1,53 @@
+package com.github.abrarsl.courseworkclassversion.metrics;
+
+/**
+ * An operation whose calls are counted and timed by {@link Metrics}.
+ */
+public enum Operation {
+    FOOD_QUEUE_ADD("FoodQueue.addCustomer"),
+    FOOD_QUEUE_ADD_BATCH("FoodQueue.addCustomers"),
+    FOOD_QUEUE_REMOVE("FoodQueue.removeCustomer"),
+    FOOD_QUEUE_SERVE("FoodQueue.serveCustomer"),
+    FOOD_QUEUE_SERVE_BATCH("FoodQueue.serveUpTo"),
+    FOOD_QUEUE_GET("FoodQueue.getCustomer"),
+    FOOD_QUEUE_POSITION("FoodQueue.getCustomerPosition"),
+    FOOD_QUEUE_SEARCH("FoodQueue.searchCustomer"),
+    FOOD_QUEUE_COPY("FoodQueue.getQueue"),
+    WAITING_QUEUE_ENQUEUE("WaitingQueue.enqueue"),
+    WAITING_QUEUE_DEQUEUE("WaitingQueue.dequeue"),
+    WAITING_QUEUE_GET("WaitingQueue.getCustomer"),
+    WAITING_QUEUE_POSITION("WaitingQueue.getCustomerPosition"),
+    WAITING_QUEUE_SEARCH("WaitingQueue.searchCustomer"),
+    WAITING_QUEUE_COPY("WaitingQueue.getQueue"),
+    SEARCH("CustomerSearchIndex.search"),
+    SORT("SortedCustomerIndex.build"),
+    SAVE("ProgramState.save"),
+    LOAD("ProgramState.load"),
+    ORDER_REQUEST("OrderServer.request"),
+    BRANCH_REPORT("BranchNetwork.report"),
+    QUEUE_EVENT_DELIVERY("QueueEventBus.deliver");
+
+    private final String label;
+    private final LatencyHistogram histogram = new LatencyHistogram();
+
+    /**
+     * @param label The name of the operation as shown in reports.
+     */
+    Operation(String label) {
+        this.label = label;
+    }
+
+    /**
+     * @return The name of the operation as shown in reports.
+     */
+    public String getLabel() {
+        return this.label;
+    }
+
+    /**
+     * @return The latencies recorded for the operation. The count of the histogram is the call counter.
+     */
+    public LatencyHistogram getHistogram() {
+        return this.histogram;
+    }
+}
@@ -0,0 +1,107 @@
+package com.github.abrarsl.courseworkclassversion.server;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Reads and writes newline terminated UTF-8 lines over a blocking {@link SocketChannel}.
+ * A {@link LineChannel} is used by one thread at a time, which blocks on the channel. This is cheap on a virtual thread.
+ */
+class LineChannel implements Closeable {
+    static final int MAX_LINE_LENGTH = 4096;
+    private static final int BUFFER_SIZE = 8192;
+    private final SocketChannel channel;
+    private final ByteBuffer readBuffer = ByteBuffer.allocate(BUFFER_SIZE);
+    private byte[] line = new byte[256];
+    private int lineLength;
+
+    /**
+     * @param channel A connected channel in blocking mode.
+     */
+    LineChannel(SocketChannel channel) {
+        this.channel = channel;
+        this.readBuffer.flip(); // Start with nothing to read
+    }
+
+    /**
+     * Read the next line, blocking until it has fully arrived. Requests that were sent together are read
+     * from the buffer without touching the channel again.
+     * @return The line without its terminator, or null if the other side closed the connection between lines.
+     * @throws IOException If the channel fails, the connection closes part way through a line,
+     * or the line is longer than {@link LineChannel#MAX_LINE_LENGTH}.
+     */
+    String readLine() throws IOException {
+        this.lineLength = 0;
+
+        while (true) {
+            while (this.readBuffer.hasRemaining()) {
+                byte next = this.readBuffer.get();
+
+                if (next == '\n') {
+                    int end = this.lineLength > 0 && this.line[this.lineLength - 1] == '\r'
+                            ? this.lineLength - 1 // Accept CRLF from telnet style clients
+                            : this.lineLength;
+
+                    return new String(this.line, 0, end, StandardCharsets.UTF_8);
+                }
+
+                this.append(next);
+            }
+
+            this.readBuffer.clear();
+            int read = this.channel.read(this.readBuffer);
+            this.readBuffer.flip();
+
+            if (read < 0) {
+                if (this.lineLength == 0) {
+                    return null;
+                }
+
+                throw new EOFException("Connection closed part way through a line!");
+            }
+        }
+    }
+
+    /**
+     * @param next The byte to add to the line being read.
+     * @throws IOException If the line is longer than {@link LineChannel#MAX_LINE_LENGTH}.
+     */
+    private void append(byte next) throws IOException {
+        if (this.lineLength == MAX_LINE_LENGTH) {
+            throw new IOException(String.format("Line is longer than %d bytes!", MAX_LINE_LENGTH));
+        }
+
+        if (this.lineLength == this.line.length) {
+            this.line = Arrays.copyOf(this.line, Math.min(this.line.length * 2, MAX_LINE_LENGTH));
+        }
+
+        this.line[this.lineLength++] = next;
+    }
+
+    /**
+     * Write the given text, blocking until all of it is written.
+     * @param text One or more lines, each ending with a newline.
+     * @throws IOException If the channel fails.
+     */
+    void write(String text) throws IOException {
+        ByteBuffer writeBuffer = ByteBuffer.wrap(text.getBytes(StandardCharsets.UTF_8));
+
+        while (writeBuffer.hasRemaining()) {
+            this.channel.write(writeBuffer);
+        }
+    }
+
+    /**
+     * Close the underlying channel. A thread blocked in {@link LineChannel#readLine()} fails with an exception.
+     * @throws IOException If the channel cannot be closed.
+     */
+    @Override
+    public void close() throws IOException {
+        this.channel.close();
+    }
+}
@@ -0,0 +1,192 @@
+package com.github.abrarsl.courseworkclassversion.server;
+
+import com.github.abrarsl.courseworkclassversion.metrics.LatencyHistogram;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * A load test client for an {@link OrderServer}.
+ * Each simulated kiosk opens its own connection and sends a mix of orders, serves, searches and stock requests,
+ * waiting for each response before sending the next request. The latency of every request is recorded.
+ * Kiosks can be spread over several servers, such as the branches of a
+ * {@link com.github.abrarsl.courseworkclassversion.branch.BranchNetwork}, in turn.
+ */
+public class OrderLoadTest {
+    private static final String[] FIRST_NAMES = {"Ada", "Alan", "Grace", "Linus", "Barbara", "Dennis", "Edsger", "Frances"};
+    private static final String[] LAST_NAMES = {"Lovelace", "Turing", "Hopper", "Torvalds", "Liskov", "Ritchie", "Dijkstra", "Allen"};
+    private final InetSocketAddress[] addresses;
+    private final LatencyHistogram latencies = new LatencyHistogram();
+
+    /**
+     * The outcome of one kiosk.
+     * @param okCount The number of requests answered with OK.
+     * @param errorCount The number of requests answered with ERR.
+     */
+    private record KioskResult(long okCount, long errorCount) {
+    }
+
+    /**
+     * @param addresses The address of each {@link OrderServer}. Kiosk i connects to address i modulo their number.
+     */
+    public OrderLoadTest(InetSocketAddress... addresses) {
+        this.addresses = addresses;
+    }
+
+    /**
+     * @return The latencies of every request sent so far, in nanoseconds.
+     */
+    public LatencyHistogram getLatencies() {
+        return this.latencies;
+    }
+
+    /**
+     * Run one kiosk over its own connection.
+     * @param address The address of the {@link OrderServer} to connect to.
+     * @param requestCount The number of requests to send, not counting the final QUIT.
+     * @return The number of requests that succeeded and failed.
+     * @throws IOException If the connection fails.
+     */
+    private KioskResult runKiosk(InetSocketAddress address, int requestCount) throws IOException {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        long okCount = 0;
+        long errorCount = 0;
+
+        try (LineChannel connection = new LineChannel(SocketChannel.open(address))) {
+            for (int i = 0; i < requestCount; i++) {
+                String request = nextRequest(random);
+
+                long startTime = System.nanoTime();
+                connection.write(request);
+                String response = connection.readLine();
+
+                if (response == null) {
+                    throw new IOException("Server closed the connection!");
+                }
+
+                if (request.startsWith(OrderProtocol.SEARCH) && response.startsWith(OrderProtocol.OK)) {
+                    int hitCount = Integer.parseInt(response.substring(OrderProtocol.OK.length() + 1));
+
+                    for (int j = 0; j < hitCount; j++) { // Matches follow on their own lines
+                        connection.readLine();
+                    }
+                }
+
+                this.latencies.record(System.nanoTime() - startTime);
+
+                if (response.startsWith(OrderProtocol.OK)) {
+                    okCount++;
+                } else {
+                    errorCount++;
+                }
+            }
+
+            connection.write(OrderProtocol.line(OrderProtocol.QUIT));
+            connection.readLine();
+        }
+
+        return new KioskResult(okCount, errorCount);
+    }
+
+    /**
+     * Pick the next request of a kiosk. Adds and serves are the most common, as at a real counter.
+     * @param random The random source of the kiosk.
+     * @return The request, terminated by a newline.
+     */
+    private static String nextRequest(ThreadLocalRandom random) {
+        int roll = random.nextInt(100);
+
+        if (roll < 40) {
+            return OrderProtocol.line(
+                    OrderProtocol.ADD,
+                    FIRST_NAMES[random.nextInt(FIRST_NAMES.length)],
+                    LAST_NAMES[random.nextInt(LAST_NAMES.length)],
+                    String.valueOf(random.nextInt(1, 6))
+            );
+        } else if (roll < 70) {
+            return OrderProtocol.line(OrderProtocol.SERVE, String.valueOf(random.nextInt(3)));
+        } else if (roll < 80) {
+            return OrderProtocol.line(OrderProtocol.SEARCH, FIRST_NAMES[random.nextInt(FIRST_NAMES.length)].substring(0, 2));
+        } else if (roll < 90) {
+            return OrderProtocol.line(OrderProtocol.RESTOCK, String.valueOf(random.nextInt(1, 11)));
+        } else if (roll < 95) {
+            return OrderProtocol.line(OrderProtocol.STOCK);
+        }
+
+        return OrderProtocol.line(OrderProtocol.INCOME);
+    }
+
+    /**
+     * Run kiosks at once, each on its own thread, and print a summary.
+     * @param kioskCount The number of kiosks, and so the number of connections.
+     * @param requestsPerKiosk The number of requests each kiosk sends.
+     * @throws IOException If any connection fails.
+     * @throws InterruptedException If the calling thread is interrupted while waiting for the kiosks.
+     */
+    public void run(int kioskCount, int requestsPerKiosk) throws IOException, InterruptedException {
+        List<Future<KioskResult>> kiosks = new ArrayList<>();
+        long okCount = 0;
+        long errorCount = 0;
+        long startTime = System.nanoTime();
+
+        ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor(); // One thread per kiosk
+
+        try {
+            for (int i = 0; i < kioskCount; i++) {
+                InetSocketAddress address = this.addresses[i % this.addresses.length];
+                kiosks.add(executor.submit(() -> this.runKiosk(address, requestsPerKiosk)));
+            }
+
+            for (Future<KioskResult> kiosk : kiosks) {
+                KioskResult result = kiosk.get();
+                okCount += result.okCount();
+                errorCount += result.errorCount();
+            }
+        } catch (ExecutionException exception) {
+            throw new IOException("A kiosk failed! " + exception.getCause().getMessage(), exception.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+
+        double seconds = (System.nanoTime() - startTime) / 1e9;
+        long requestCount = okCount + errorCount;
+
+        System.out.printf("%d kiosks, %d requests in %.2f s (%.0f requests/s)%n", kioskCount, requestCount, seconds, requestCount / seconds);
+        System.out.printf("OK: %d, ERR: %d%n", okCount, errorCount);
+        System.out.printf(
+                "Latency: mean %.1f us, p50 %.1f us, p99 %.1f us, max %.1f us%n",
+                this.latencies.getMean() / 1e3,
+                this.latencies.getPercentile(50) / 1e3,
+                this.latencies.getPercentile(99) / 1e3,
+                this.latencies.getMax() / 1e3
+        );
+    }
+
+    /**
+     * Load test an {@link OrderServer} on this machine.
+     * Optional arguments: port, number of kiosks, requests per kiosk, number of servers on consecutive ports.
+     * @param args The command line arguments.
+     * @throws IOException If the server cannot be reached.
+     * @throws InterruptedException If the test is interrupted.
+     */
+    public static void main(String[] args) throws IOException, InterruptedException {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : OrderServer.DEFAULT_PORT;
+        int kioskCount = args.length > 1 ? Integer.parseInt(args[1]) : 64;
+        int requestsPerKiosk = args.length > 2 ? Integer.parseInt(args[2]) : 1000;
+        InetSocketAddress[] addresses = new InetSocketAddress[args.length > 3 ? Integer.parseInt(args[3]) : 1];
+
+        for (int i = 0; i < addresses.length; i++) {
+            addresses[i] = new InetSocketAddress("localhost", port + i);
+        }
+
+        new OrderLoadTest(addresses).run(kioskCount, requestsPerKiosk);
+    }
+}
@@ -0,0 +1,187 @@
+package com.github.abrarsl.courseworkclassversion.server;
+
+import com.github.abrarsl.courseworkclassversion.Customer;
+import com.github.abrarsl.courseworkclassversion.CustomerSearchIndex;
+import com.github.abrarsl.courseworkclassversion.exceptions.CustomerNotFoundException;
+import com.github.abrarsl.courseworkclassversion.exceptions.FullQueueException;
+import com.github.abrarsl.courseworkclassversion.exceptions.InputValidationException;
+import com.github.abrarsl.courseworkclassversion.exceptions.InsufficientStockException;
+import com.github.abrarsl.courseworkclassversion.exceptions.SelectionOutOfRangeException;
+import com.github.abrarsl.courseworkclassversion.exceptions.StockOutOfRangeException;
+
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * The line protocol of the {@link OrderServer}.
+ * <p>
+ * Every request is one line of fields separated by {@link Customer#INFO_DELIMITER}, starting with a command:
+ * <pre>
+ * ADD,first name,last name,burgers  -> OK,queue number (-1 for the waiting queue),estimated wait in nanoseconds
+ * SERVE,queue number                -> OK,first name,last name,burgers
+ * REMOVE,queue number,position      -> OK,first name,last name,burgers
+ * SEARCH,search term                -> OK,match count, then one line per match: queue number,position,first name,last name,burgers
+ * STOCK                             -> OK,items in stock
+ * RESTOCK,amount                    -> OK,items in stock
+ * INCOME                            -> OK,income of queue 0,income of queue 1,...
+ * INCOME,queue number               -> OK,income
+ * QUIT                              -> OK, then the connection is closed
+ * </pre>
+ * The estimated wait of ADD is {@link ShopOperations#estimateWait(int)} once the {@link Customer} has joined, so it
+ * is the wait of whoever joins that queue next.
+ * Failed requests are answered with ERR and a message, and leave the shop unchanged.
+ * Responses are sent in the order the requests arrived, so clients may send several requests before reading.
+ */
+final class OrderProtocol {
+    static final String OK = "OK";
+    static final String ERR = "ERR";
+    static final String ADD = "ADD";
+    static final String SERVE = "SERVE";
+    static final String REMOVE = "REMOVE";
+    static final String SEARCH = "SEARCH";
+    static final String STOCK = "STOCK";
+    static final String RESTOCK = "RESTOCK";
+    static final String INCOME = "INCOME";
+    static final String QUIT = "QUIT";
+
+    private OrderProtocol() {
+    }
+
+    /**
+     * Run one request against the shop.
+     * @param shop The shop to run the request against.
+     * @param request The request line, without its terminator.
+     * @return The response, with every line terminated by a newline.
+     */
+    static String handle(ShopOperations shop, String request) {
+        String[] fields = request.split(Customer.INFO_DELIMITER, -1);
+        String command = fields[0].strip().toUpperCase(Locale.ROOT);
+
+        try {
+            return switch (command) {
+                case ADD -> add(shop, fields);
+                case SERVE -> customerLine(shop.serveCustomer(parseInt(fields, 1, 2)));
+                case REMOVE -> customerLine(shop.removeCustomer(parseInt(fields, 1, 3), parseInt(fields, 2, 3)));
+                case SEARCH -> search(shop, request);
+                case STOCK -> line(OK, String.valueOf(shop.getItemStock()));
+                case RESTOCK -> line(OK, String.valueOf(shop.addItemStock(parseInt(fields, 1, 2))));
+                case INCOME -> income(shop, fields);
+                case QUIT -> line(OK);
+                default -> line(ERR, String.format("Unknown command '%s'!", command));
+            };
+        } catch (InputValidationException | SelectionOutOfRangeException | StockOutOfRangeException exception) {
+            return line(ERR, exception.getMessage());
+        } catch (FullQueueException exception) {
+            return line(ERR, "All queues full! Customer could not be added!");
+        } catch (CustomerNotFoundException exception) {
+            return line(ERR, "No customer found in that position!");
+        } catch (InsufficientStockException exception) {
+            return line(ERR, String.format("Insufficient stock level! Customer requires %s items!", exception.getMessage()));
+        }
+    }
+
+    /**
+     * @param shop The shop to add the {@link Customer} to.
+     * @param fields The fields of an ADD request.
+     * @return The response.
+     * @throws InputValidationException If the request is not a valid order.
+     * @throws FullQueueException If every queue is full.
+     * @throws SelectionOutOfRangeException If the queue the {@link Customer} joined no longer exists.
+     */
+    private static String add(ShopOperations shop, String[] fields)
+            throws InputValidationException, FullQueueException, SelectionOutOfRangeException {
+        int burgersRequired = parseInt(fields, 3, 4);
+        int queueNumber = shop.addCustomer(fields[1].strip(), fields[2].strip(), burgersRequired);
+
+        return line(OK, String.valueOf(queueNumber), String.valueOf(shop.estimateWait(queueNumber)));
+    }
+
+    /**
+     * @param shop The shop to search.
+     * @param request The SEARCH request line. Everything after the command is the search term, delimiters included.
+     * @return The response.
+     * @throws InputValidationException If there is no search term.
+     */
+    private static String search(ShopOperations shop, String request) throws InputValidationException {
+        int termStart = request.indexOf(Customer.INFO_DELIMITER);
+
+        if (termStart < 0) {
+            throw new InputValidationException("Expected a search term!");
+        }
+
+        List<CustomerSearchIndex.Hit> hits = shop.search(request.substring(termStart + 1));
+        StringBuilder response = new StringBuilder(line(OK, String.valueOf(hits.size())));
+
+        for (CustomerSearchIndex.Hit hit : hits) {
+            response.append(line(
+                    String.valueOf(hit.queueNumber()),
+                    String.valueOf(hit.position()),
+                    hit.customer().getFirstName(),
+                    hit.customer().getLastName(),
+                    String.valueOf(hit.customer().getBurgersRequired())
+            ));
+        }
+
+        return response.toString();
+    }
+
+    /**
+     * @param shop The shop whose income is read.
+     * @param fields The fields of an INCOME request.
+     * @return The response.
+     * @throws InputValidationException If the queue number is not a number.
+     * @throws SelectionOutOfRangeException If there is no queue with the given number.
+     */
+    private static String income(ShopOperations shop, String[] fields)
+            throws InputValidationException, SelectionOutOfRangeException {
+        if (fields.length > 1) {
+            return line(OK, String.valueOf(shop.getQueueIncome(parseInt(fields, 1, 2))));
+        }
+
+        String[] incomes = new String[shop.getQueueCount() + 1];
+        incomes[0] = OK;
+
+        for (int i = 0; i < shop.getQueueCount(); i++) {
+            incomes[i + 1] = String.valueOf(shop.getQueueIncome(i));
+        }
+
+        return line(incomes);
+    }
+
+    /**
+     * @param customer The {@link Customer} that was served or removed.
+     * @return The response.
+     */
+    private static String customerLine(Customer customer) {
+        return line(OK, customer.getFirstName(), customer.getLastName(), String.valueOf(customer.getBurgersRequired()));
+    }
+
+    /**
+     * @param fields The fields of a request.
+     * @param index The index of the field to parse.
+     * @param fieldCount The number of fields the request must have.
+     * @return The parsed field.
+     * @throws InputValidationException If the request has the wrong number of fields, or the field is not a number.
+     */
+    private static int parseInt(String[] fields, int index, int fieldCount) throws InputValidationException {
+        if (fields.length != fieldCount) {
+            throw new InputValidationException(
+                    String.format("Expected %d fields but found %d!", fieldCount, fields.length)
+            );
+        }
+
+        try {
+            return Integer.parseInt(fields[index].strip());
+        } catch (NumberFormatException exception) {
+            throw new InputValidationException(String.format("'%s' is not a number!", fields[index].strip()));
+        }
+    }
+
+    /**
+     * @param fields The fields of the line.
+     * @return The fields joined by {@link Customer#INFO_DELIMITER}, terminated by a newline.
+     */
+    static String line(String... fields) {
+        return String.join(Customer.INFO_DELIMITER, fields) + "\n";
+    }
+}
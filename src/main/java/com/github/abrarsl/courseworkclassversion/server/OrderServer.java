@@ -0,0 +1,168 @@
+package com.github.abrarsl.courseworkclassversion.server;
+
+import com.github.abrarsl.courseworkclassversion.metrics.Metrics;
+import com.github.abrarsl.courseworkclassversion.metrics.Operation;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A TCP service that takes orders from kiosks and tablets using the {@link OrderProtocol} line protocol.
+ * <p>
+ * Connections are accepted on a {@link ServerSocketChannel} and each one is handled by its own thread, which blocks
+ * on its {@link SocketChannel}. Virtual threads are used when the runtime supports them, so thousands of idle
+ * connections cost little more than their buffers. Otherwise each connection gets a platform thread.
+ */
+public class OrderServer implements Closeable {
+    public static final int DEFAULT_PORT = 7070;
+    private static final int BACKLOG = 1024;
+    private final ShopOperations shop;
+    private final ServerSocketChannel serverChannel;
+    private final ExecutorService connectionExecutor;
+    private final Set<LineChannel> connections = ConcurrentHashMap.newKeySet();
+    private final Thread acceptThread;
+
+    /**
+     * Bind to the given address and start accepting connections.
+     * @param shop The shop that requests are run against.
+     * @param address The address to listen on. Port 0 picks a free port.
+     * @throws IOException If the address cannot be bound.
+     */
+    public OrderServer(ShopOperations shop, InetSocketAddress address) throws IOException {
+        this.shop = shop;
+        this.serverChannel = ServerSocketChannel.open();
+        this.serverChannel.setOption(StandardSocketOptions.SO_REUSEADDR, true);
+        this.serverChannel.bind(address, BACKLOG);
+        this.connectionExecutor = Executors.newVirtualThreadPerTaskExecutor(); // A cheap thread per connection
+        this.acceptThread = new Thread(this::acceptConnections, "order-server-accept");
+        this.acceptThread.start();
+    }
+
+    /**
+     * @return The port the server is listening on.
+     * @throws IOException If the server has been closed.
+     */
+    public int getPort() throws IOException {
+        return ((InetSocketAddress) this.serverChannel.getLocalAddress()).getPort();
+    }
+
+    /**
+     * @return The number of connections that are open.
+     */
+    public int getConnectionCount() {
+        return this.connections.size();
+    }
+
+    /**
+     * Accept connections until the server is closed, starting a handler for each one.
+     */
+    private void acceptConnections() {
+        while (true) {
+            SocketChannel channel;
+
+            try {
+                channel = this.serverChannel.accept();
+                channel.setOption(StandardSocketOptions.TCP_NODELAY, true); // Responses are small and sent at once
+            } catch (ClosedChannelException exception) { // The server was closed
+                return;
+            } catch (IOException exception) {
+                System.out.println("Order connection could not be accepted! " + exception.getMessage());
+                continue;
+            }
+
+            LineChannel connection = new LineChannel(channel);
+            this.connections.add(connection);
+
+            try {
+                this.connectionExecutor.execute(() -> this.serve(connection));
+            } catch (RejectedExecutionException exception) { // The server is being closed
+                this.closeConnection(connection);
+                return;
+            }
+        }
+    }
+
+    /**
+     * Answer the requests of one connection in order until it sends QUIT, closes, or fails.
+     * @param connection The connection to serve.
+     */
+    private void serve(LineChannel connection) {
+        try {
+            String request;
+
+            while ((request = connection.readLine()) != null) {
+                long startTime = Metrics.start();
+                String response;
+
+                try {
+                    response = OrderProtocol.handle(this.shop, request);
+                } finally {
+                    Metrics.record(Operation.ORDER_REQUEST, startTime);
+                }
+
+                connection.write(response);
+
+                if (request.strip().equalsIgnoreCase(OrderProtocol.QUIT)) {
+                    break;
+                }
+            }
+        } catch (IOException ignored) { // The client went away, or the server was closed
+        } finally {
+            this.closeConnection(connection);
+        }
+    }
+
+    /**
+     * @param connection The connection to close and forget.
+     */
+    private void closeConnection(LineChannel connection) {
+        this.connections.remove(connection);
+
+        try {
+            connection.close();
+        } catch (IOException ignored) {
+        }
+    }
+
+    /**
+     * Stop accepting connections, close every open connection and wait for the handlers to finish.
+     * Requests that are being run are finished, but their responses may not be sent.
+     * @throws IOException If the server channel cannot be closed.
+     */
+    @Override
+    public void close() throws IOException {
+        this.serverChannel.close();
+
+        try {
+            this.acceptThread.join(); // No connection can be added after this
+            this.connectionExecutor.shutdown();
+
+            for (LineChannel connection : this.connections) {
+                this.closeConnection(connection);
+            }
+
+            this.connectionExecutor.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Block until the server is closed by another thread, such as a shutdown hook.
+     * @throws InterruptedException If the waiting thread is interrupted.
+     */
+    public void awaitClose() throws InterruptedException {
+        this.acceptThread.join();
+    }
+}
@@ -0,0 +1,94 @@
+package com.github.abrarsl.courseworkclassversion.server;
+
+import com.github.abrarsl.courseworkclassversion.Customer;
+import com.github.abrarsl.courseworkclassversion.CustomerSearchIndex;
+import com.github.abrarsl.courseworkclassversion.FoodQueue;
+import com.github.abrarsl.courseworkclassversion.WaitingQueue;
+import com.github.abrarsl.courseworkclassversion.exceptions.CustomerNotFoundException;
+import com.github.abrarsl.courseworkclassversion.exceptions.FullQueueException;
+import com.github.abrarsl.courseworkclassversion.exceptions.InputValidationException;
+import com.github.abrarsl.courseworkclassversion.exceptions.InsufficientStockException;
+import com.github.abrarsl.courseworkclassversion.exceptions.SelectionOutOfRangeException;
+import com.github.abrarsl.courseworkclassversion.exceptions.StockOutOfRangeException;
+
+import java.util.List;
+
+/**
+ * The shop operations that the {@link OrderServer} exposes.
+ * Each operation is a complete change, including any {@link Customer} moved out of the {@link WaitingQueue} to fill
+ * a freed place, and is called from many connection threads at once, so implementations must be thread-safe.
+ */
+public interface ShopOperations {
+    /**
+     * Place a new {@link Customer} in a {@link FoodQueue}, or the {@link WaitingQueue} if every queue is full.
+     * @param firstName The first name of the {@link Customer}.
+     * @param lastName The last name of the {@link Customer}.
+     * @param burgersRequired The number of burgers the {@link Customer} ordered.
+     * @return The number of the queue that the {@link Customer} was added to. -1 for the {@link WaitingQueue}.
+     * @throws InputValidationException If the order is not valid. The reason is passed in the message.
+     * @throws FullQueueException If every queue and the {@link WaitingQueue} are full.
+     */
+    int addCustomer(String firstName, String lastName, int burgersRequired)
+            throws InputValidationException, FullQueueException;
+
+    /**
+     * @param queueNumber The number of a queue, as returned by {@link ShopOperations#addCustomer}.
+     * -1 for the {@link WaitingQueue}.
+     * @return The expected wait in nanoseconds for a {@link Customer} joining the queue now.
+     * -1 if it cannot be estimated yet.
+     * @throws SelectionOutOfRangeException If there is no queue with that number.
+     */
+    long estimateWait(int queueNumber) throws SelectionOutOfRangeException;
+
+    /**
+     * Serve the {@link Customer} at the front of a {@link FoodQueue}.
+     * @param queueNumber The number of the queue.
+     * @return The served {@link Customer}.
+     * @throws SelectionOutOfRangeException If there is no queue with that number.
+     * @throws CustomerNotFoundException If the queue is empty.
+     * @throws InsufficientStockException If there is not enough stock. The message is the number of items required.
+     */
+    Customer serveCustomer(int queueNumber)
+            throws SelectionOutOfRangeException, CustomerNotFoundException, InsufficientStockException;
+
+    /**
+     * Remove a {@link Customer} from a {@link FoodQueue} without serving them.
+     * @param queueNumber The number of the queue.
+     * @param position The position of the {@link Customer} in the queue.
+     * @return The removed {@link Customer}.
+     * @throws SelectionOutOfRangeException If there is no queue with that number, or the position is out of range.
+     * @throws CustomerNotFoundException If there is no {@link Customer} at the position.
+     */
+    Customer removeCustomer(int queueNumber, int position)
+            throws SelectionOutOfRangeException, CustomerNotFoundException;
+
+    /**
+     * @param searchTerm The text to look for in the names of the {@link Customer}s. Case-insensitive.
+     * @return Every matching {@link Customer} in the queues and the {@link WaitingQueue}, with their positions.
+     */
+    List<CustomerSearchIndex.Hit> search(String searchTerm);
+
+    /**
+     * @return The number of items in stock.
+     */
+    int getItemStock();
+
+    /**
+     * @param amount The number of items to add to the stock.
+     * @return The number of items in stock after adding.
+     * @throws StockOutOfRangeException If the stock would go out of range. Nothing is changed in that case.
+     */
+    int addItemStock(int amount) throws StockOutOfRangeException;
+
+    /**
+     * @return The number of {@link FoodQueue}s.
+     */
+    int getQueueCount();
+
+    /**
+     * @param queueNumber The number of the queue.
+     * @return The income of the queue.
+     * @throws SelectionOutOfRangeException If there is no queue with that number.
+     */
+    int getQueueIncome(int queueNumber) throws SelectionOutOfRangeException;
+}
@@ -0,0 +1,437 @@
+package com.github.abrarsl.courseworkclassversion.simulation;
+
+import com.github.abrarsl.courseworkclassversion.Customer;
+import com.github.abrarsl.courseworkclassversion.FoodQueue;
+import com.github.abrarsl.courseworkclassversion.ItemStock;
+import com.github.abrarsl.courseworkclassversion.QueuePlacementIndex;
+import com.github.abrarsl.courseworkclassversion.WaitingQueue;
+import com.github.abrarsl.courseworkclassversion.exceptions.CustomerNotFoundException;
+import com.github.abrarsl.courseworkclassversion.exceptions.FullQueueException;
+import com.github.abrarsl.courseworkclassversion.exceptions.InsufficientStockException;
+import com.github.abrarsl.courseworkclassversion.exceptions.StockOutOfRangeException;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+
+/**
+ * A headless discrete-event simulation of a shop, driving real {@link FoodQueue}s and a {@link WaitingQueue} with
+ * synthetic load.
+ * <p>
+ * Customers arrive as a Poisson process and are placed the same way as in the TUI: into the best non-full
+ * {@link FoodQueue} chosen by a {@link QueuePlacementIndex}, otherwise into the {@link WaitingQueue}, otherwise they
+ * are rejected. Each {@link FoodQueue} serves one customer at a time with exponentially distributed service times.
+ * When a customer is served, the next customer from the {@link WaitingQueue} is moved into a {@link FoodQueue}.
+ * Customers in the {@link WaitingQueue} whose patience has run out by then leave instead.
+ * When the stock drops to the warning threshold, or a customer cannot be served, a restock is ordered and arrives
+ * after the lead time. A queue that could not serve its customer stops until the restock arrives.
+ * <p>
+ * There are at most a few pending events at a time (the next arrival, the next restock and one service per queue),
+ * so the next event is found by a linear scan over primitive fields and no event objects are allocated.
+ * <p>
+ * Each simulation has its own {@link ItemStock}, so simulations can run in parallel on different threads.
+ * A single {@link LoadSimulator} is not thread-safe.
+ */
+public class LoadSimulator {
+    private static final double NEVER = Double.POSITIVE_INFINITY;
+    private static final String FIRST_NAME = "Simulated";
+    private static final String LAST_NAME = "Customer";
+    private final SimulationConfig config;
+    private final SplittableRandom random;
+    private final ItemStock itemStock;
+    private final FoodQueue[] queues;
+    private final QueuePlacementIndex placementIndex;
+    private final WaitingQueue waitingQueue;
+    private final TimeQueue[] arrivalTimes; // Arrival time of each customer in each food queue, in queue order
+    private final TimeQueue waitingArrivalTimes;
+    private final TimeQueue waitingDeadlines; // Time at which each waiting customer gives up
+    private final double[] serviceEnds; // NEVER while a queue is idle or out of stock
+    private final boolean[] stockedOut;
+    private double nextRestock = NEVER; // NEVER while no restock is on order
+    private double[] waits = new double[1024];
+    private int waitCount;
+    private double now;
+    private long customersInShop;
+    private long eventCount;
+    private long arrivals;
+    private long served;
+    private long rejected;
+    private long abandoned;
+    private long stockOuts;
+    private long burgersSold;
+
+    /**
+     * A fixed capacity FIFO of times, kept in step with the customers of a queue.
+     */
+    private static final class TimeQueue {
+        private final double[] times;
+        private int front;
+        private int count;
+
+        /**
+         * @param capacity The maximum number of times held.
+         */
+        private TimeQueue(int capacity) {
+            this.times = new double[capacity];
+        }
+
+        /**
+         * @param time The time to add at the rear.
+         */
+        private void add(double time) {
+            this.times[(this.front + this.count) % this.times.length] = time; // Increment with overflow
+            this.count++;
+        }
+
+        /**
+         * @return The time at the front.
+         */
+        private double peek() {
+            return this.times[this.front];
+        }
+
+        /**
+         * @return The time that was removed from the front.
+         */
+        private double remove() {
+            double time = this.times[this.front];
+            this.front = (this.front + 1) % this.times.length; // Increment with overflow
+            this.count--;
+
+            return time;
+        }
+    }
+
+    /**
+     * @param config The layout and load to simulate.
+     */
+    public LoadSimulator(SimulationConfig config) {
+        int[] queueLayout = config.queueLayout();
+
+        this.config = config;
+        this.random = new SplittableRandom(config.seed());
+        this.itemStock = new ItemStock(config.maxStock(), config.warnThreshold());
+        this.queues = new FoodQueue[queueLayout.length];
+        this.arrivalTimes = new TimeQueue[queueLayout.length];
+
+        for (int i = 0; i < queueLayout.length; i++) {
+            this.queues[i] = new FoodQueue(queueLayout[i], this.itemStock);
+            this.arrivalTimes[i] = new TimeQueue(queueLayout[i]);
+        }
+
+        this.placementIndex = new QueuePlacementIndex(this.queues);
+        this.waitingQueue = new WaitingQueue(config.waitingQueueLength());
+        this.waitingArrivalTimes = new TimeQueue(config.waitingQueueLength());
+        this.waitingDeadlines = new TimeQueue(config.waitingQueueLength());
+        this.serviceEnds = new double[queueLayout.length];
+        this.stockedOut = new boolean[queueLayout.length];
+        Arrays.fill(this.serviceEnds, NEVER);
+    }
+
+    /**
+     * Run the simulation until arrivals have stopped and every customer has left the shop.
+     * The stock starts full. A {@link LoadSimulator} can only be run once.
+     * @return The measured results.
+     */
+    public SimulationResult run() {
+        try {
+            this.itemStock.set(this.config.maxStock());
+        } catch (StockOutOfRangeException exception) {
+            throw new IllegalStateException("Initial stock is out of range.", exception);
+        }
+
+        this.itemStock.setLowStockListener(remainingStock -> this.orderRestock());
+        this.simulate();
+
+        Arrays.sort(this.waits, 0, this.waitCount);
+
+        return new SimulationResult(
+                this.config,
+                this.eventCount,
+                this.arrivals,
+                this.served,
+                this.rejected,
+                this.abandoned,
+                this.stockOuts,
+                this.burgersSold,
+                this.now,
+                this.waitPercentile(0.50),
+                this.waitPercentile(0.90),
+                this.waitPercentile(0.99),
+                this.waitPercentile(1.0)
+        );
+    }
+
+    /**
+     * The event loop. Each iteration handles the earliest pending event.
+     */
+    private void simulate() {
+        double nextArrival = this.exponential(1 / this.config.arrivalRate());
+
+        while (nextArrival != NEVER || this.customersInShop > 0) {
+            double nextEvent = Math.min(nextArrival, this.nextRestock);
+            int servingQueue = -1;
+
+            for (int i = 0; i < this.serviceEnds.length; i++) {
+                if (this.serviceEnds[i] < nextEvent) {
+                    nextEvent = this.serviceEnds[i];
+                    servingQueue = i;
+                }
+            }
+
+            if (nextEvent == NEVER) { // Customers are stuck without stock and no restock will come
+                break;
+            }
+
+            this.now = nextEvent;
+            this.eventCount++;
+
+            if (servingQueue >= 0) {
+                this.finishService(servingQueue);
+            } else if (nextArrival <= this.nextRestock) {
+                this.arrive();
+                nextArrival = this.now + this.exponential(1 / this.config.arrivalRate());
+
+                if (nextArrival > this.config.duration()) { // Stop arrivals, let the shop empty
+                    nextArrival = NEVER;
+                }
+            } else {
+                this.restock();
+            }
+        }
+    }
+
+    /**
+     * Place a new customer, or reject them if every queue is full.
+     */
+    private void arrive() {
+        this.arrivals++;
+
+        Customer customer = new Customer(
+                FIRST_NAME,
+                LAST_NAME,
+                1 + this.random.nextInt(this.config.maxBurgersPerCustomer())
+        );
+        int queueNumber = this.placementIndex.findQueue();
+
+        if (queueNumber >= 0) {
+            this.customersInShop++;
+            this.addToFoodQueue(queueNumber, customer, this.now);
+        } else if (this.waitingQueue.getCustomerCount() < this.waitingQueue.getQueueLength()) {
+            this.customersInShop++;
+            this.enqueueWaiting(customer);
+        } else {
+            this.rejected++;
+        }
+    }
+
+    /**
+     * Serve the customer at the front of a queue, then fill the freed place from the waiting queue.
+     * @param queueNumber The queue whose service has finished.
+     */
+    private void finishService(int queueNumber) {
+        Customer customer;
+        this.serviceEnds[queueNumber] = NEVER;
+
+        try {
+            customer = this.queues[queueNumber].serveCustomer();
+        } catch (InsufficientStockException exception) { // Wait for the next restock
+            this.stockOuts++;
+            this.stockedOut[queueNumber] = true;
+            this.orderRestock();
+            return;
+        } catch (CustomerNotFoundException exception) {
+            throw new IllegalStateException("Service finished on an empty queue.", exception);
+        }
+
+        this.served++;
+        this.burgersSold += customer.getBurgersRequired();
+        this.customersInShop--;
+        this.arrivalTimes[queueNumber].remove();
+        this.placementIndex.update(queueNumber);
+        this.promoteWaiting();
+
+        if (this.serviceEnds[queueNumber] == NEVER && this.queues[queueNumber].getCustomerCount() > 0) {
+            this.startService(queueNumber);
+        }
+    }
+
+    /**
+     * Order a restock, unless one is already on its way or restocks are turned off.
+     */
+    private void orderRestock() {
+        if (this.nextRestock == NEVER && this.config.restockAmount() > 0) {
+            this.nextRestock = this.now + this.config.restockLeadTime();
+        }
+    }
+
+    /**
+     * Refill the stock and restart any queue that ran out.
+     * Another restock is ordered straight away if the stock is still low.
+     */
+    private void restock() {
+        int amount = Math.min(this.config.restockAmount(), this.itemStock.getMaxStock() - this.itemStock.get());
+        this.nextRestock = NEVER;
+
+        try {
+            this.itemStock.add(amount);
+        } catch (StockOutOfRangeException exception) {
+            throw new IllegalStateException("Restock went out of range.", exception);
+        }
+
+        if (this.itemStock.isLow()) {
+            this.orderRestock();
+        }
+
+        for (int i = 0; i < this.stockedOut.length; i++) {
+            if (this.stockedOut[i]) { // Try serving the same customer again straight away
+                this.stockedOut[i] = false;
+                this.serviceEnds[i] = this.now;
+            }
+        }
+    }
+
+    /**
+     * Move the next patient customer from the waiting queue into the best food queue, if there is space.
+     * Customers whose patience has run out leave the shop instead.
+     */
+    private void promoteWaiting() {
+        int queueNumber = this.placementIndex.findQueue();
+
+        while (queueNumber >= 0 && !this.waitingQueue.isQueueEmpty()) {
+            Customer customer;
+
+            try {
+                customer = this.waitingQueue.dequeue();
+            } catch (CustomerNotFoundException exception) {
+                throw new IllegalStateException("Waiting queue was empty.", exception);
+            }
+
+            double arrivalTime = this.waitingArrivalTimes.remove();
+
+            if (this.waitingDeadlines.remove() < this.now) { // Gave up while waiting
+                this.abandoned++;
+                this.customersInShop--;
+                continue;
+            }
+
+            this.addToFoodQueue(queueNumber, customer, arrivalTime);
+            return;
+        }
+    }
+
+    /**
+     * @param queueNumber The queue to add the customer to. It must not be full.
+     * @param customer The customer to add.
+     * @param arrivalTime The time the customer arrived at the shop.
+     */
+    private void addToFoodQueue(int queueNumber, Customer customer, double arrivalTime) {
+        try {
+            this.queues[queueNumber].addCustomer(customer);
+        } catch (FullQueueException exception) {
+            throw new IllegalStateException("Placement index chose a full queue.", exception);
+        }
+
+        this.arrivalTimes[queueNumber].add(arrivalTime);
+        this.placementIndex.update(queueNumber);
+
+        if (this.serviceEnds[queueNumber] == NEVER && !this.stockedOut[queueNumber]) { // Queue was idle
+            this.startService(queueNumber);
+        }
+    }
+
+    /**
+     * @param customer The customer to add to the waiting queue. The waiting queue must not be full.
+     */
+    private void enqueueWaiting(Customer customer) {
+        try {
+            this.waitingQueue.enqueue(customer);
+        } catch (FullQueueException exception) {
+            throw new IllegalStateException("Waiting queue was full.", exception);
+        }
+
+        this.waitingArrivalTimes.add(this.now);
+        this.waitingDeadlines.add(
+                this.config.meanPatience() > 0 ? this.now + this.exponential(this.config.meanPatience()) : NEVER
+        );
+    }
+
+    /**
+     * Start serving the customer at the front of a queue and record how long they waited.
+     * @param queueNumber The queue to start serving.
+     */
+    private void startService(int queueNumber) {
+        if (this.waitCount == this.waits.length) {
+            this.waits = Arrays.copyOf(this.waits, this.waits.length * 2);
+        }
+
+        this.waits[this.waitCount] = this.now - this.arrivalTimes[queueNumber].peek();
+        this.waitCount++;
+        this.serviceEnds[queueNumber] = this.now + this.exponential(this.config.meanServiceTime());
+    }
+
+    /**
+     * @param mean The mean of the distribution.
+     * @return A sample from an exponential distribution.
+     */
+    private double exponential(double mean) {
+        return -Math.log(1 - this.random.nextDouble()) * mean;
+    }
+
+    /**
+     * @param fraction The percentile as a fraction from 0 to 1.
+     * @return The wait time at the percentile. 0 if nobody was served.
+     */
+    private double waitPercentile(double fraction) {
+        if (this.waitCount == 0) {
+            return 0;
+        }
+
+        return this.waits[(int) Math.ceil(fraction * this.waitCount) - (fraction > 0 ? 1 : 0)];
+    }
+
+    /**
+     * Compare a set of candidate layouts under the same load and print a table of results.
+     * Optional arguments: arrivals per minute, mean service time in minutes, simulated minutes.
+     * @param args The command line arguments.
+     */
+    public static void main(String[] args) {
+        SimulationConfig base = new SimulationConfig(
+                new int[]{2, 3, 5},
+                5,
+                args.length > 0 ? Double.parseDouble(args[0]) : 1.5,
+                args.length > 1 ? Double.parseDouble(args[1]) : 2.0,
+                10,
+                5,
+                FoodQueue.MAX_STOCK,
+                10,
+                FoodQueue.MAX_STOCK,
+                5,
+                args.length > 2 ? Double.parseDouble(args[2]) : 1_000_000,
+                42
+        );
+
+        List<SimulationConfig> candidates = new ArrayList<>();
+        candidates.add(base);
+        candidates.add(base.withLayout(new int[]{2, 3, 5}, 10));
+        candidates.add(base.withLayout(new int[]{3, 3, 4}, 5));
+        candidates.add(base.withLayout(new int[]{5, 5}, 5));
+        candidates.add(base.withLayout(new int[]{2, 2, 2, 2, 2}, 5));
+        candidates.add(base.withLayout(new int[]{4, 4, 4}, 3));
+
+        System.out.println(SimulationResult.TABLE_HEADER);
+
+        long eventCount = 0;
+        long startTime = System.nanoTime();
+
+        for (SimulationConfig candidate : candidates) {
+            SimulationResult result = new LoadSimulator(candidate).run();
+            eventCount += result.eventCount();
+            System.out.println(result.toTableRow());
+        }
+
+        double seconds = (System.nanoTime() - startTime) / 1e9;
+        System.out.printf("%d events in %.2f s (%.0f events/s)%n", eventCount, seconds, eventCount / seconds);
+    }
+}
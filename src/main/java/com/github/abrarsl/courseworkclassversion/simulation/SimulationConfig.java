@@ -0,0 +1,146 @@
+package com.github.abrarsl.courseworkclassversion.simulation;
+
+import com.github.abrarsl.courseworkclassversion.FoodQueue;
+import com.github.abrarsl.courseworkclassversion.ItemStock;
+
+import java.util.Arrays;
+
+/**
+ * A candidate shop layout and the synthetic load to run it under. All times are in minutes.
+ * @param queueLayout The length of each {@link FoodQueue}, as passed to the queue generator of the TUI.
+ * @param waitingQueueLength The length of the waiting queue.
+ * @param arrivalRate The mean number of customers arriving per minute. Arrivals follow a Poisson process.
+ * @param meanServiceTime The mean time to serve one customer. Service times are exponentially distributed.
+ * @param meanPatience The mean time a customer will stay in the waiting queue before leaving.
+ *                     Patience is exponentially distributed. 0 or less means customers never leave.
+ * @param maxBurgersPerCustomer Each customer orders between 1 and this many burgers, uniformly.
+ * @param maxStock The largest amount of stock the shop can hold. The shop opens with full stock.
+ * @param warnThreshold The stock level at which a restock is ordered.
+ * @param restockAmount The number of burgers added at each restock, capped at the maximum stock.
+ * @param restockLeadTime The time between ordering a restock and it arriving.
+ * @param duration The simulated time to run for. Arrivals stop after this time.
+ * @param seed The seed for the random number generator, so runs can be repeated.
+ */
+public record SimulationConfig(
+        int[] queueLayout,
+        int waitingQueueLength,
+        double arrivalRate,
+        double meanServiceTime,
+        double meanPatience,
+        int maxBurgersPerCustomer,
+        int maxStock,
+        int warnThreshold,
+        int restockAmount,
+        double restockLeadTime,
+        double duration,
+        long seed
+) {
+    /**
+     * @throws IllegalArgumentException If a value is out of range.
+     */
+    public SimulationConfig {
+        if (queueLayout.length == 0 || Arrays.stream(queueLayout).anyMatch(length -> length <= 0)) {
+            throw new IllegalArgumentException("Every queue must have a positive length.");
+        }
+
+        if (waitingQueueLength <= 0) {
+            throw new IllegalArgumentException("Waiting queue must have a positive length.");
+        }
+
+        if (arrivalRate <= 0 || meanServiceTime <= 0 || duration <= 0) {
+            throw new IllegalArgumentException("Rates, service times and durations must be positive.");
+        }
+
+        if (maxStock <= ItemStock.MIN_STOCK) {
+            throw new IllegalArgumentException("Maximum stock must be positive.");
+        }
+
+        if (maxBurgersPerCustomer < 1 || maxBurgersPerCustomer > maxStock) {
+            throw new IllegalArgumentException(
+                    String.format("Burgers per customer must be from %d to %d.", 1, maxStock)
+            );
+        }
+
+        if (warnThreshold < ItemStock.MIN_STOCK || warnThreshold >= maxStock) {
+            throw new IllegalArgumentException(
+                    String.format("Warning threshold must be from %d to %d.", ItemStock.MIN_STOCK, maxStock - 1)
+            );
+        }
+
+        if (restockAmount < 0 || restockLeadTime < 0) {
+            throw new IllegalArgumentException("Restock amount and lead time must not be negative.");
+        }
+
+        queueLayout = queueLayout.clone();
+    }
+
+    /**
+     * @return A copy of the length of each {@link FoodQueue}.
+     */
+    @Override
+    public int[] queueLayout() {
+        return this.queueLayout.clone();
+    }
+
+    /**
+     * @param queueLayout The length of each {@link FoodQueue}.
+     * @param waitingQueueLength The length of the waiting queue.
+     * @return A copy of this {@link SimulationConfig} with a different layout.
+     */
+    public SimulationConfig withLayout(int[] queueLayout, int waitingQueueLength) {
+        return new SimulationConfig(
+                queueLayout,
+                waitingQueueLength,
+                this.arrivalRate,
+                this.meanServiceTime,
+                this.meanPatience,
+                this.maxBurgersPerCustomer,
+                this.maxStock,
+                this.warnThreshold,
+                this.restockAmount,
+                this.restockLeadTime,
+                this.duration,
+                this.seed
+        );
+    }
+
+    /**
+     * @param maxStock The largest amount of stock the shop can hold.
+     * @param warnThreshold The stock level at which a restock is ordered.
+     * @return A copy of this {@link SimulationConfig} with different stock settings.
+     */
+    public SimulationConfig withStock(int maxStock, int warnThreshold) {
+        return new SimulationConfig(
+                this.queueLayout,
+                this.waitingQueueLength,
+                this.arrivalRate,
+                this.meanServiceTime,
+                this.meanPatience,
+                this.maxBurgersPerCustomer,
+                maxStock,
+                warnThreshold,
+                this.restockAmount,
+                this.restockLeadTime,
+                this.duration,
+                this.seed
+        );
+    }
+
+    /**
+     * @return A short description of the layout, such as "{2, 3, 5} + 5".
+     */
+    public String describeLayout() {
+        return String.format(
+                "{%s} + %d",
+                String.join(", ", Arrays.stream(this.queueLayout).mapToObj(String::valueOf).toArray(String[]::new)),
+                this.waitingQueueLength
+        );
+    }
+
+    /**
+     * @return A short description of the stock settings, such as "50/10" for the maximum and warning threshold.
+     */
+    public String describeStock() {
+        return String.format("%d/%d", this.maxStock, this.warnThreshold);
+    }
+}
@@ -0,0 +1,93 @@
+package com.github.abrarsl.courseworkclassversion.simulation;
+
+import java.util.Comparator;
+
+/**
+ * The outcome of running one {@link SimulationConfig}. All times are in minutes.
+ * @param config The configuration that was run.
+ * @param eventCount The number of events that were processed.
+ * @param arrivals The number of customers that arrived.
+ * @param served The number of customers that were served.
+ * @param rejected The number of customers turned away because every queue was full.
+ * @param abandoned The number of customers that left the waiting queue before reaching a food queue.
+ * @param stockOuts The number of times a customer could not be served because there was not enough stock.
+ * @param burgersSold The number of burgers sold to served customers.
+ * @param elapsedTime The simulated time until the last customer was served.
+ * @param waitP50 The median time from arrival until service started.
+ * @param waitP90 The 90th percentile time from arrival until service started.
+ * @param waitP99 The 99th percentile time from arrival until service started.
+ * @param waitMax The longest time from arrival until service started.
+ */
+public record SimulationResult(
+        SimulationConfig config,
+        long eventCount,
+        long arrivals,
+        long served,
+        long rejected,
+        long abandoned,
+        long stockOuts,
+        long burgersSold,
+        double elapsedTime,
+        double waitP50,
+        double waitP90,
+        double waitP99,
+        double waitMax
+) {
+    public static final String TABLE_HEADER = String.format(
+            "%-24s %-7s %10s %8s %8s %8s %8s %8s %8s %8s %8s",
+            "Layout",
+            "Stock",
+            "Served/min",
+            "Served",
+            "Rejected",
+            "Left",
+            "StockOut",
+            "Wait p50",
+            "p90",
+            "p99",
+            "max"
+    );
+
+    /**
+     * Orders results from best to worst: fewest customers lost, then shortest 90th percentile wait,
+     * then fewest stock-outs.
+     */
+    public static final Comparator<SimulationResult> BEST_FIRST = Comparator
+            .comparingDouble(SimulationResult::lossRate)
+            .thenComparingDouble(SimulationResult::waitP90)
+            .thenComparingLong(SimulationResult::stockOuts);
+
+    /**
+     * @return The number of customers served per simulated minute.
+     */
+    public double throughput() {
+        return this.elapsedTime > 0 ? this.served / this.elapsedTime : 0;
+    }
+
+    /**
+     * @return The share of arriving customers that were rejected or left, from 0 to 1.
+     */
+    public double lossRate() {
+        return this.arrivals > 0 ? (double) (this.rejected + this.abandoned) / this.arrivals : 0;
+    }
+
+    /**
+     * @return A single row of a table, matching {@link SimulationResult#TABLE_HEADER}.
+     */
+    public String toTableRow() {
+        return String.format(
+                "%-24s %-7s %10.2f %8d %8d %8d %8d %8.2f %8.2f %8.2f %8.2f",
+                this.config.describeLayout(),
+                this.config.describeStock(),
+                this.throughput(),
+                this.served,
+                this.rejected,
+                this.abandoned,
+                this.stockOuts,
+                this.waitP50,
+                this.waitP90,
+                this.waitP99,
+                this.waitMax
+        );
+    }
+}
@@ -0,0 +1,184 @@
+package com.github.abrarsl.courseworkclassversion.simulation;
+
+import com.github.abrarsl.courseworkclassversion.FoodQueue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Runs a grid of {@link SimulationConfig}s in parallel on a fork/join pool and ranks the results.
+ * Every scenario runs in its own {@link LoadSimulator} with its own stock, so scenarios never share state.
+ */
+public class SimulationSweep {
+    private final ForkJoinPool pool;
+
+    /**
+     * A task that runs a range of scenarios, splitting it in half until a single scenario is left.
+     */
+    private static final class SweepTask extends RecursiveTask<SimulationResult[]> {
+        private final SimulationConfig[] configs;
+        private final int start;
+        private final int end;
+
+        /**
+         * @param configs All scenarios of the sweep.
+         * @param start The first scenario to run. Inclusive.
+         * @param end The last scenario to run. Exclusive.
+         */
+        private SweepTask(SimulationConfig[] configs, int start, int end) {
+            this.configs = configs;
+            this.start = start;
+            this.end = end;
+        }
+
+        /**
+         * @return The results of the scenarios in the range, in order.
+         */
+        @Override
+        protected SimulationResult[] compute() {
+            if (this.end - this.start == 1) { // A single scenario is long enough to be worth a task of its own
+                return new SimulationResult[]{new LoadSimulator(this.configs[this.start]).run()};
+            }
+
+            int middle = (this.start + this.end) >>> 1;
+            SweepTask left = new SweepTask(this.configs, this.start, middle);
+            SweepTask right = new SweepTask(this.configs, middle, this.end);
+
+            left.fork();
+            SimulationResult[] rightResults = right.compute();
+            SimulationResult[] leftResults = left.join();
+
+            SimulationResult[] results = Arrays.copyOf(leftResults, leftResults.length + rightResults.length);
+            System.arraycopy(rightResults, 0, results, leftResults.length, rightResults.length);
+
+            return results;
+        }
+    }
+
+    /**
+     * @param pool The pool to run scenarios on.
+     */
+    public SimulationSweep(ForkJoinPool pool) {
+        this.pool = pool;
+    }
+
+    /**
+     * Create a {@link SimulationSweep} that uses the common pool, which has a thread for each core.
+     */
+    public SimulationSweep() {
+        this(ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Build every combination of the given layouts and stock settings, keeping the load of the base scenario.
+     * @param base The scenario whose load settings are used.
+     * @param queueLayouts The layouts of the food queues to try.
+     * @param waitingQueueLengths The waiting queue lengths to try.
+     * @param warnThresholds The restock thresholds to try.
+     * @param maxStocks The maximum stock levels to try.
+     * @return The scenarios of the grid. Combinations where the threshold is not below the maximum stock are skipped.
+     */
+    public static List<SimulationConfig> grid(
+            SimulationConfig base,
+            List<int[]> queueLayouts,
+            int[] waitingQueueLengths,
+            int[] warnThresholds,
+            int[] maxStocks
+    ) {
+        List<SimulationConfig> configs = new ArrayList<>();
+
+        for (int[] queueLayout : queueLayouts) {
+            for (int waitingQueueLength : waitingQueueLengths) {
+                for (int maxStock : maxStocks) {
+                    for (int warnThreshold : warnThresholds) {
+                        if (warnThreshold < maxStock && base.maxBurgersPerCustomer() <= maxStock) {
+                            configs.add(
+                                    base.withLayout(queueLayout, waitingQueueLength).withStock(maxStock, warnThreshold)
+                            );
+                        }
+                    }
+                }
+            }
+        }
+
+        return configs;
+    }
+
+    /**
+     * Run every scenario in parallel.
+     * @param configs The scenarios to run.
+     * @return The results, ranked with {@link SimulationResult#BEST_FIRST}.
+     */
+    public List<SimulationResult> run(List<SimulationConfig> configs) {
+        if (configs.isEmpty()) {
+            return List.of();
+        }
+
+        SimulationConfig[] configArray = configs.toArray(new SimulationConfig[0]);
+        List<SimulationResult> results = new ArrayList<>(
+                Arrays.asList(this.pool.invoke(new SweepTask(configArray, 0, configArray.length)))
+        );
+        results.sort(SimulationResult.BEST_FIRST);
+
+        return results;
+    }
+
+    /**
+     * Sweep a grid of layouts and stock settings and print the ranked results.
+     * Optional arguments: arrivals per minute, mean service time in minutes, simulated minutes.
+     * @param args The command line arguments.
+     */
+    public static void main(String[] args) {
+        SimulationConfig base = new SimulationConfig(
+                new int[]{2, 3, 5},
+                5,
+                args.length > 0 ? Double.parseDouble(args[0]) : 1.5,
+                args.length > 1 ? Double.parseDouble(args[1]) : 2.0,
+                10,
+                5,
+                FoodQueue.MAX_STOCK,
+                10,
+                FoodQueue.MAX_STOCK,
+                5,
+                args.length > 2 ? Double.parseDouble(args[2]) : 100_000,
+                42
+        );
+
+        List<SimulationConfig> configs = grid(
+                base,
+                List.of(
+                        new int[]{2, 3, 5},
+                        new int[]{3, 3, 4},
+                        new int[]{5, 5},
+                        new int[]{2, 2, 2, 2, 2},
+                        new int[]{4, 4, 4}
+                ),
+                new int[]{3, 5, 10},
+                new int[]{5, 10, 20},
+                new int[]{25, 50, 100}
+        );
+
+        long startTime = System.nanoTime();
+        List<SimulationResult> results = new SimulationSweep().run(configs);
+        double seconds = (System.nanoTime() - startTime) / 1e9;
+        long eventCount = results.stream().mapToLong(SimulationResult::eventCount).sum();
+
+        System.out.printf("%-4s %s%n", "Rank", SimulationResult.TABLE_HEADER);
+
+        for (int i = 0; i < results.size(); i++) {
+            System.out.printf("%-4d %s%n", i + 1, results.get(i).toTableRow());
+        }
+
+        System.out.printf(
+                "%d scenarios, %d events in %.2f s on %d threads (%.0f events/s)%n",
+                results.size(),
+                eventCount,
+                seconds,
+                ForkJoinPool.commonPool().getParallelism(),
+                eventCount / seconds
+        );
+    }
+}
@@ -1,9 +1,14 @@
 module com.github.abrarsl.courseworkclassversion {
     requires javafx.controls;
     requires javafx.fxml;
+    requires java.management;
             
                             
     opens com.github.abrarsl.courseworkclassversion to javafx.fxml;
     exports com.github.abrarsl.courseworkclassversion;
+    exports com.github.abrarsl.courseworkclassversion.branch;
     exports com.github.abrarsl.courseworkclassversion.exceptions;
+    exports com.github.abrarsl.courseworkclassversion.metrics;
+    exports com.github.abrarsl.courseworkclassversion.server;
+    exports com.github.abrarsl.courseworkclassversion.simulation;
 }
\ No newline at end of file
@@ -0,0 +1,67 @@
+package com.github.abrarsl.courseworkclassversion;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * A {@link ShopEngine} in compact mode must hold the same {@link Customer}s in clearly less heap than one built with
+ * the default options, counting the queues and every index kept over them.
+ */
+class CompactHeapTest {
+    private static final int CUSTOMER_COUNT = 50_000;
+    private static final String[] FIRST_NAMES = {"Ada", "Alan", "Grace", "Linus", "Barbara", "Ken", "Dennis", "Edsger"};
+    private static final String[] LAST_NAMES = {"Lovelace", "Turing", "Hopper", "Torvalds", "Liskov", "Thompson",
+            "Ritchie", "Dijkstra"};
+
+    @Test
+    void compactEngineUsesLessHeap() throws Exception {
+        long referenceBytes = measureEngine(ShopEngine.Options.DEFAULT);
+        long compactBytes = measureEngine(new ShopEngine.Options(false, true, 0));
+
+        assertTrue(
+                compactBytes * 2 < referenceBytes,
+                String.format("Compact used %d bytes, the default used %d bytes", compactBytes, referenceBytes)
+        );
+    }
+
+    /**
+     * @param options How the queues of the engine are built.
+     * @return The heap held by an engine filled with {@link CompactHeapTest#CUSTOMER_COUNT} customers.
+     * @throws Exception If a customer could not be added.
+     */
+    private static long measureEngine(ShopEngine.Options options) throws Exception {
+        Random random = new Random(1); // Same names in both modes
+        long before = usedHeap();
+        ShopEngine engine = new ShopEngine(new int[]{CUSTOMER_COUNT / 2, CUSTOMER_COUNT / 2}, 1, options);
+
+        for (int i = 0; i < CUSTOMER_COUNT; i++) {
+            engine.addCustomer(
+                    FIRST_NAMES[random.nextInt(FIRST_NAMES.length)],
+                    LAST_NAMES[random.nextInt(LAST_NAMES.length)],
+                    1
+            );
+        }
+
+        long usedBytes = usedHeap() - before;
+        engine.close(); // Keeps the engine reachable until it is measured
+
+        return usedBytes;
+    }
+
+    /**
+     * @return The heap in use once garbage has been collected.
+     */
+    private static long usedHeap() throws InterruptedException {
+        Runtime runtime = Runtime.getRuntime();
+
+        for (int i = 0; i < 5; i++) {
+            System.gc();
+            Thread.sleep(20);
+        }
+
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
@@ -0,0 +1,374 @@
+package com.github.abrarsl.courseworkclassversion;
+
+import com.github.abrarsl.courseworkclassversion.exceptions.CustomerNotFoundException;
+import com.github.abrarsl.courseworkclassversion.exceptions.FullQueueException;
+import com.github.abrarsl.courseworkclassversion.exceptions.InsufficientStockException;
+import com.github.abrarsl.courseworkclassversion.exceptions.StockOutOfRangeException;
+import org.junit.jupiter.api.Timeout;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Producers and consumers on virtual threads hammer one short {@link ConcurrentFoodQueue} or
+ * {@link ConcurrentWaitingQueue}, or a whole {@link ShopEngine}, at once, so the queues are full and empty over and
+ * over. Every {@link Customer} added must be taken out exactly once.
+ */
+class ConcurrentQueueStressTest {
+    private static final int PRODUCER_COUNT = 4;
+    private static final int CONSUMER_COUNT = 4;
+    private static final int CUSTOMERS_PER_PRODUCER = 10_000;
+    private static final int CUSTOMER_COUNT = PRODUCER_COUNT * CUSTOMERS_PER_PRODUCER;
+    private static final int QUEUE_LENGTH = 8; // Short, so threads contend on a full and on an empty queue
+    private static final int[] QUEUE_LAYOUT = {2, 3, 3};
+    private static final int ENGINE_CUSTOMERS_PER_PRODUCER = 1_000; // Each change is journaled, so fewer
+
+    @TempDir
+    Path directory;
+
+    /**
+     * The {@link Customer}s taken out of a queue by every consumer.
+     */
+    private static final class Taken {
+        private final int expectedCount;
+        private final Set<Customer> customers = ConcurrentHashMap.newKeySet();
+        private final AtomicInteger count = new AtomicInteger();
+        private final AtomicInteger duplicates = new AtomicInteger();
+        private final AtomicInteger served = new AtomicInteger();
+
+        /**
+         * @param expectedCount The number of {@link Customer}s that will be added.
+         */
+        private Taken(int expectedCount) {
+            this.expectedCount = expectedCount;
+        }
+
+        /**
+         * @param customer A {@link Customer} taken out of the queue.
+         */
+        private void add(Customer customer) {
+            if (!this.customers.add(customer)) { // Customers are compared by id
+                this.duplicates.incrementAndGet();
+            }
+
+            this.count.incrementAndGet();
+        }
+
+        /**
+         * @return 'true' while customers remain to be taken.
+         */
+        private boolean remaining() {
+            return this.count.get() < this.expectedCount;
+        }
+    }
+
+    /**
+     * An action that may fail because the queue is momentarily full or empty, and is then retried.
+     */
+    @FunctionalInterface
+    private interface Attempt {
+        void run() throws Exception;
+    }
+
+    @ParameterizedTest(name = "compact = {0}")
+    @ValueSource(booleans = {false, true})
+    @Timeout(120)
+    void foodQueueLosesAndDuplicatesNoCustomer(boolean compact) throws Exception {
+        ItemStock itemStock = new ItemStock(CUSTOMER_COUNT, 0);
+        itemStock.set(CUSTOMER_COUNT); // Each customer needs one burger
+        ConcurrentFoodQueue queue = compact
+                ? new ConcurrentFoodQueue(new Customer[QUEUE_LENGTH], 0, new CustomerStore(), itemStock)
+                : new ConcurrentFoodQueue(QUEUE_LENGTH, itemStock);
+        List<Customer> added = newCustomers(CUSTOMER_COUNT);
+        Taken taken = new Taken(CUSTOMER_COUNT);
+
+        List<Callable<Void>> consumers = new ArrayList<>();
+
+        for (int i = 0; i < CONSUMER_COUNT; i++) {
+            int kind = i % 3; // Serve one, remove from anywhere, and serve in batches
+
+            consumers.add(() -> {
+                while (taken.remaining()) {
+                    retry(() -> {
+                        switch (kind) {
+                            case 0 -> {
+                                taken.add(queue.serveCustomer());
+                                taken.served.incrementAndGet();
+                            }
+                            case 1 -> taken.add(queue.removeCustomer(ThreadLocalRandom.current().nextInt(QUEUE_LENGTH)));
+                            default -> {
+                                Customer[] served = queue.serveUpTo(3).getCustomers(BatchReport.Outcome.SERVED);
+
+                                for (Customer customer : served) {
+                                    taken.add(customer);
+                                    taken.served.incrementAndGet();
+                                }
+
+                                if (served.length == 0) {
+                                    throw new CustomerNotFoundException();
+                                }
+                            }
+                        }
+                    }, taken);
+                }
+
+                return null;
+            });
+        }
+
+        runAll(producers(added, CUSTOMERS_PER_PRODUCER, customer -> queue.addCustomer(customer)), consumers);
+
+        assertTaken(added, taken);
+        assertEquals(0, queue.getCustomerCount());
+        assertEquals(CUSTOMER_COUNT - taken.served.get(), itemStock.get(), "Stock must be taken once per serve");
+    }
+
+    @ParameterizedTest(name = "compact = {0}")
+    @ValueSource(booleans = {false, true})
+    @Timeout(120)
+    void waitingQueueLosesAndDuplicatesNoCustomer(boolean compact) throws Exception {
+        ConcurrentWaitingQueue queue = compact
+                ? new ConcurrentWaitingQueue(new Customer[QUEUE_LENGTH], new CustomerStore())
+                : new ConcurrentWaitingQueue(QUEUE_LENGTH);
+        List<Customer> added = newCustomers(CUSTOMER_COUNT);
+        Taken taken = new Taken(CUSTOMER_COUNT);
+
+        List<Callable<Void>> consumers = new ArrayList<>();
+
+        for (int i = 0; i < CONSUMER_COUNT; i++) {
+            consumers.add(() -> {
+                while (taken.remaining()) {
+                    retry(() -> taken.add(queue.dequeue()), taken);
+                }
+
+                return null;
+            });
+        }
+
+        runAll(producers(added, CUSTOMERS_PER_PRODUCER, queue::enqueue), consumers);
+
+        assertTaken(added, taken);
+        assertTrue(queue.isQueueEmpty());
+    }
+
+    @ParameterizedTest(name = "compact = {0}")
+    @ValueSource(booleans = {false, true})
+    @Timeout(120)
+    void engineLosesAndDuplicatesNoCustomer(boolean compact) throws Exception {
+        Path snapshotPath = this.directory.resolve("programState.bin");
+        Path journalPath = this.directory.resolve("programState.journal");
+        int customerCount = PRODUCER_COUNT * ENGINE_CUSTOMERS_PER_PRODUCER;
+        List<Customer> added = newCustomers(customerCount);
+        Taken taken = new Taken(customerCount);
+        AtomicInteger restocked = new AtomicInteger();
+
+        try (ShopEngine engine = new ShopEngine(QUEUE_LAYOUT, QUEUE_LENGTH, new ShopEngine.Options(true, compact, 0))) {
+            engine.openJournal(snapshotPath, journalPath, true);
+            List<Callable<Void>> consumers = new ArrayList<>();
+
+            for (int i = 0; i < CONSUMER_COUNT; i++) {
+                int kind = i % 3; // Serve one, remove from anywhere, and serve in batches
+
+                consumers.add(() -> {
+                    while (taken.remaining()) {
+                        int queueNumber = ThreadLocalRandom.current().nextInt(QUEUE_LAYOUT.length);
+
+                        retry(() -> {
+                            switch (kind) {
+                                case 0 -> {
+                                    try {
+                                        taken.add(engine.serveCustomer(queueNumber));
+                                        taken.served.incrementAndGet();
+                                    } catch (InsufficientStockException exception) {
+                                        restock(engine, restocked);
+                                        throw exception;
+                                    }
+                                }
+                                case 1 -> taken.add(engine.removeCustomer(
+                                        queueNumber,
+                                        ThreadLocalRandom.current().nextInt(QUEUE_LAYOUT[queueNumber])
+                                ));
+                                default -> {
+                                    BatchReport report = engine.serveUpTo(queueNumber, 3);
+
+                                    for (Customer customer : report.getCustomers(BatchReport.Outcome.SERVED)) {
+                                        taken.add(customer);
+                                        taken.served.incrementAndGet();
+                                    }
+
+                                    if (report.getCustomers(BatchReport.Outcome.INSUFFICIENT_STOCK).length > 0) {
+                                        restock(engine, restocked);
+                                    }
+                                }
+                            }
+                        }, taken);
+                    }
+
+                    return null;
+                });
+            }
+
+            runAll(producers(added, ENGINE_CUSTOMERS_PER_PRODUCER, engine::addCustomer), consumers);
+
+            assertTaken(added, taken);
+            assertTrue(engine.getSortedCustomers().isEmpty(), "Every customer taken must leave the sorted index");
+            assertTrue(engine.search("First").isEmpty(), "Every customer taken must leave the search index");
+            assertEquals(restocked.get() - taken.served.get(), engine.getItemStock(),
+                    "Stock must be taken once per serve");
+
+            engine.addCustomer("Ada", "Lovelace", 1); // Something left over to restore
+            engine.addCustomer("Alan", "Turing", 2);
+
+            try (ShopEngine restored = new ShopEngine(QUEUE_LAYOUT, QUEUE_LENGTH, ShopEngine.Options.DEFAULT)) {
+                restored.restore(snapshotPath, journalPath);
+
+                assertEquals(engine.getItemStock(), restored.getItemStock());
+                assertEquals(engine.getTotalIncome(), restored.getTotalIncome());
+                assertEquals(fullNames(engine.getSortedCustomers()), fullNames(restored.getSortedCustomers()),
+                        "The journal must replay to the same queues");
+            }
+        }
+    }
+
+    /**
+     * Adds a {@link Customer} to the queue under test.
+     */
+    @FunctionalInterface
+    private interface Producer {
+        void add(Customer customer) throws FullQueueException;
+    }
+
+    /**
+     * Add one item to the stock of the shop, unless another consumer has already filled it.
+     * @param engine The shop.
+     * @param restocked The number of items added so far.
+     */
+    private static void restock(ShopEngine engine, AtomicInteger restocked) {
+        try {
+            engine.addItemStock(1);
+            restocked.incrementAndGet();
+        } catch (StockOutOfRangeException ignored) { // The stock is full
+        }
+    }
+
+    /**
+     * @param customers Some {@link Customer}s.
+     * @return Their full names, in order.
+     */
+    private static List<String> fullNames(List<Customer> customers) {
+        return customers.stream().map(Customer::getFullName).toList();
+    }
+
+    /**
+     * @param count The number of {@link Customer}s.
+     * @return Every {@link Customer} the producers will add, split evenly between them in order.
+     */
+    private static List<Customer> newCustomers(int count) {
+        List<Customer> customers = new ArrayList<>(count);
+
+        for (int i = 0; i < count; i++) {
+            customers.add(new Customer("First" + i, "Last" + i, 1));
+        }
+
+        return customers;
+    }
+
+    /**
+     * @param customers The {@link Customer}s to add.
+     * @param share The number of {@link Customer}s each producer adds.
+     * @param producer Adds one {@link Customer} to the queue.
+     * @return One task per producer, each adding its share of the {@link Customer}s.
+     */
+    private static List<Callable<Void>> producers(List<Customer> customers, int share, Producer producer) {
+        List<Callable<Void>> producers = new ArrayList<>();
+
+        for (int i = 0; i < PRODUCER_COUNT; i++) {
+            List<Customer> ownShare = customers.subList(i * share, (i + 1) * share);
+
+            producers.add(() -> {
+                for (Customer customer : ownShare) {
+                    retry(() -> producer.add(customer), null);
+                }
+
+                return null;
+            });
+        }
+
+        return producers;
+    }
+
+    /**
+     * Run an attempt until it succeeds, or until nothing is left to take.
+     * @param attempt The attempt.
+     * @param taken The customers taken so far, or null to retry until the attempt succeeds.
+     * @throws Exception If the attempt failed for any other reason than a full or empty queue.
+     */
+    private static void retry(Attempt attempt, Taken taken) throws Exception {
+        while (taken == null || taken.remaining()) {
+            try {
+                attempt.run();
+                return;
+            } catch (FullQueueException | CustomerNotFoundException | InsufficientStockException exception) {
+                Thread.yield(); // The queue was full or empty at that moment, let the other side run
+            }
+        }
+    }
+
+    /**
+     * Start every task at once, each on its own virtual thread, and wait for all of them. Rethrows the first failure.
+     * @param producers The producer tasks.
+     * @param consumers The consumer tasks.
+     * @throws Exception If a task failed.
+     */
+    private static void runAll(List<Callable<Void>> producers, List<Callable<Void>> consumers) throws Exception {
+        List<Callable<Void>> tasks = new ArrayList<>(producers);
+        tasks.addAll(consumers);
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+
+        try {
+            List<Future<Void>> futures = new ArrayList<>();
+
+            for (Callable<Void> task : tasks) {
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    return task.call();
+                }));
+            }
+
+            start.countDown();
+
+            for (Future<Void> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * @param added Every {@link Customer} added.
+     * @param taken Every {@link Customer} taken.
+     */
+    private static void assertTaken(List<Customer> added, Taken taken) {
+        assertEquals(0, taken.duplicates.get(), "No customer may be taken twice");
+        assertEquals(added.size(), taken.count.get());
+        assertTrue(taken.customers.containsAll(added), "No customer may be lost");
+    }
+}
@@ -0,0 +1,72 @@
+package com.github.abrarsl.courseworkclassversion;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * A {@link CustomerStore} builds a view of a stored {@link Customer} on each read, and indices find the stored copy by
+ * id rather than holding any {@link Customer}.
+ */
+class CustomerStoreTest {
+    @Test
+    void viewsOfAHandleStayValidUntilItIsRemoved() {
+        CustomerStore store = new CustomerStore();
+        int handle = store.add(new Customer("Ada", "Lovelace", 2));
+        Customer view = store.view(handle);
+
+        assertEquals(view, store.view(handle));
+        assertEquals("Ada Lovelace", view.getFullName());
+
+        store.remove(handle);
+        int reusedHandle = store.add(new Customer("Alan", "Turing", 1));
+        Customer reusedView = store.view(reusedHandle);
+
+        assertEquals(handle, reusedHandle);
+        assertNotSame(view, reusedView);
+        assertEquals("Alan Turing", reusedView.getFullName());
+        assertThrows(IllegalStateException.class, view::getFullName, "The old view must stay invalid");
+    }
+
+    @Test
+    void keysOfAViewMatchTheOriginal() {
+        CustomerStore store = new CustomerStore();
+        Customer original = new Customer("Straße", "İnce", 1);
+        int handle = store.add(original);
+        Customer view = store.view(handle);
+
+        assertEquals(original.getSearchKey(), view.getSearchKey());
+        assertEquals(0, original.getCollationKey().compareTo(view.getCollationKey()));
+
+        store.remove(handle);
+        Customer reusedView = store.view(store.add(new Customer("Alan", "Turing", 1)));
+
+        assertEquals("alan turing", reusedView.getSearchKey(), "Keys of a reused handle must be built again");
+        assertEquals("Alan Turing", reusedView.getCollationKey().getSourceString());
+    }
+
+    @Test
+    void searchFindsTheLatestCopyOfAMovedCustomer() throws Exception {
+        FoodQueue queue = new FoodQueue(new Customer[2], 0, new CustomerStore(), new ItemStock(50, 10));
+        WaitingQueue waitingQueue = new WaitingQueue(new Customer[2], new CustomerStore());
+        CustomerSearchIndex searchIndex = new CustomerSearchIndex(new FoodQueue[]{queue}, waitingQueue);
+        Customer original = new Customer("Grace", "Hopper", 3);
+
+        waitingQueue.enqueue(original);
+        searchIndex.add(waitingQueue.getCustomer(0), -1);
+        queue.addCustomer(waitingQueue.dequeue());
+        searchIndex.add(original, 0);
+
+        List<CustomerSearchIndex.Hit> hits = searchIndex.search("hopper");
+
+        assertEquals(1, hits.size());
+        assertEquals(0, hits.get(0).queueNumber());
+        assertEquals(original, hits.get(0).customer());
+        assertEquals(1, searchIndex.getCustomerCount(), "A moved customer must be indexed once");
+        assertEquals(0, waitingQueue.getCustomerCount());
+    }
+}
@@ -0,0 +1,113 @@
+package com.github.abrarsl.courseworkclassversion;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+/**
+ * A batch must leave a {@link FoodQueue} exactly as the same {@link Customer}s added or served one at a time would,
+ * and report what happened to each of them in order.
+ */
+class FoodQueueBatchTest {
+    @Test
+    void addCustomersFillsTheQueueAndReportsTheRestAsFull() throws Exception {
+        FoodQueue queue = new FoodQueue(3, new ItemStock(50, 10));
+        Customer first = new Customer("Ada", "Lovelace", 1);
+        queue.addCustomer(first);
+        Customer[] batch = newCustomers(4);
+
+        BatchReport report = queue.addCustomers(batch);
+
+        assertArrayEquals(batch, report.customers());
+        assertArrayEquals(new BatchReport.Outcome[]{
+                BatchReport.Outcome.ADDED,
+                BatchReport.Outcome.ADDED,
+                BatchReport.Outcome.QUEUE_FULL,
+                BatchReport.Outcome.QUEUE_FULL
+        }, report.outcomes());
+        assertEquals(3, queue.getCustomerCount());
+        assertSame(first, queue.getCustomer(0));
+        assertSame(batch[0], queue.getCustomer(1));
+        assertSame(batch[1], queue.getCustomer(2));
+    }
+
+    @Test
+    void serveUpToStopsAtTheFirstCustomerTheStockCannotCover() throws Exception {
+        ItemStock itemStock = new ItemStock(50, 0);
+        itemStock.set(5);
+        FoodQueue queue = new FoodQueue(5, itemStock);
+        Customer[] customers = {
+                new Customer("Ada", "Lovelace", 2),
+                new Customer("Alan", "Turing", 2),
+                new Customer("Grace", "Hopper", 3),
+                new Customer("Edsger", "Dijkstra", 1)
+        };
+        queue.addCustomers(customers);
+
+        BatchReport report = queue.serveUpTo(4);
+
+        assertArrayEquals(new Customer[]{customers[0], customers[1]}, report.getCustomers(BatchReport.Outcome.SERVED));
+        assertArrayEquals(
+                new Customer[]{customers[2]},
+                report.getCustomers(BatchReport.Outcome.INSUFFICIENT_STOCK),
+                "The customer that could not be served must be reported last"
+        );
+        assertEquals(3, report.size());
+        assertEquals(1, itemStock.get());
+        assertEquals(2, queue.getCustomerCount());
+        assertSame(customers[2], queue.getCustomer(0), "A customer that could not be served must stay at the front");
+        assertEquals(incomeServedOneByOne(customers[0], customers[1]), queue.getQueueIncome());
+    }
+
+    @Test
+    void serveUpToServesEveryoneWhenTheCountIsLargerThanTheQueue() throws Exception {
+        ItemStock itemStock = new ItemStock(50, 0);
+        itemStock.set(50);
+        FoodQueue queue = new FoodQueue(5, itemStock);
+        Customer[] customers = newCustomers(3);
+        queue.addCustomers(customers);
+
+        BatchReport report = queue.serveUpTo(10);
+
+        assertArrayEquals(customers, report.getCustomers(BatchReport.Outcome.SERVED));
+        assertEquals(0, report.count(BatchReport.Outcome.INSUFFICIENT_STOCK));
+        assertEquals(0, queue.getCustomerCount());
+        assertEquals(47, itemStock.get());
+        assertEquals(0, queue.serveUpTo(1).size(), "Serving an empty queue must report nothing");
+    }
+
+    /**
+     * @param count The number of {@link Customer}s.
+     * @return {@link Customer}s who each want one burger.
+     */
+    private static Customer[] newCustomers(int count) {
+        Customer[] customers = new Customer[count];
+
+        for (int i = 0; i < count; i++) {
+            customers[i] = new Customer("First" + i, "Last" + i, 1);
+        }
+
+        return customers;
+    }
+
+    /**
+     * @param customers The {@link Customer}s to serve.
+     * @return The income of a {@link FoodQueue} after serving copies of the {@link Customer}s one at a time.
+     */
+    private static int incomeServedOneByOne(Customer... customers) throws Exception {
+        ItemStock itemStock = new ItemStock(50, 0);
+        itemStock.set(50);
+        FoodQueue queue = new FoodQueue(customers.length, itemStock);
+
+        for (Customer customer : customers) {
+            queue.addCustomer(
+                    new Customer(customer.getFirstName(), customer.getLastName(), customer.getBurgersRequired())
+            );
+            queue.serveCustomer();
+        }
+
+        return queue.getQueueIncome();
+    }
+}
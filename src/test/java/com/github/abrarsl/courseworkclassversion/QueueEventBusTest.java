@@ -0,0 +1,124 @@
+package com.github.abrarsl.courseworkclassversion;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Events go round a ring much shorter than the number published, so queues wait on a full ring over and over. Every
+ * event must still be delivered once, in the order it was published, including those still in the ring at close.
+ */
+@Timeout(30)
+class QueueEventBusTest {
+    private static final int CAPACITY = 4;
+    private static final int PUBLISHER_COUNT = 4;
+    private static final int EVENTS_PER_PUBLISHER = 5_000;
+
+    /**
+     * Copies every event it is given, since the batch must not be kept. Only read after the bus is closed.
+     */
+    private static final class Recorder implements QueueEventListener {
+        private final List<QueueEvent> events = new ArrayList<>();
+        private int batchCount = 0;
+
+        @Override
+        public void queueEvents(List<QueueEvent> events) {
+            this.events.addAll(events);
+            this.batchCount++;
+        }
+    }
+
+    @Test
+    void eventsWrapTheRingInOrderWithoutLoss() throws Exception {
+        Recorder recorder = new Recorder();
+        QueueEventBus bus = new QueueEventBus(CAPACITY, message -> {});
+        bus.addListener(recorder);
+
+        ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+        List<Future<?>> publishers = new ArrayList<>();
+
+        try {
+            for (int queueNumber = 0; queueNumber < PUBLISHER_COUNT; queueNumber++) {
+                int publisher = queueNumber;
+                publishers.add(executor.submit(() -> {
+                    for (int position = 0; position < EVENTS_PER_PUBLISHER; position++) {
+                        bus.publish(QueueEvent.Type.CUSTOMER_ADDED, publisher, position, null, 0);
+                    }
+                }));
+            }
+
+            for (Future<?> publisher : publishers) {
+                publisher.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        bus.close();
+        int[] nextPosition = new int[PUBLISHER_COUNT];
+
+        assertEquals(PUBLISHER_COUNT * EVENTS_PER_PUBLISHER, recorder.events.size());
+
+        for (int i = 0; i < recorder.events.size(); i++) {
+            QueueEvent event = recorder.events.get(i);
+
+            assertEquals(i, event.sequence(), "Events must be delivered in sequence order");
+            assertEquals(nextPosition[event.queueNumber()]++, event.position(), "A publisher's events must keep order");
+        }
+
+        assertTrue(recorder.batchCount * CAPACITY >= recorder.events.size(), "A batch can never exceed the ring");
+    }
+
+    @Test
+    void closeDeliversEveryEventStillInTheRing() {
+        CountDownLatch release = new CountDownLatch(1);
+        Recorder recorder = new Recorder();
+        QueueEventBus bus = new QueueEventBus(CAPACITY, message -> {});
+        bus.addListener(events -> {
+            try {
+                release.await(); // Hold the first batch, so the rest pile up in the ring
+            } catch (InterruptedException exception) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        bus.addListener(recorder);
+
+        for (int position = 0; position < CAPACITY; position++) {
+            bus.publish(QueueEvent.Type.CUSTOMER_ENQUEUED, QueueEvent.WAITING_QUEUE, position, null, 0);
+        }
+
+        release.countDown();
+        bus.close();
+        bus.publish(QueueEvent.Type.INCOME_ADDED, 0, 0, null, 650); // Dropped, the bus is closed
+
+        assertEquals(CAPACITY, recorder.events.size());
+        assertEquals(CAPACITY - 1, recorder.events.get(CAPACITY - 1).position());
+    }
+
+    @Test
+    void aFailingListenerDoesNotStopTheOthers() {
+        List<String> warnings = new ArrayList<>();
+        Recorder recorder = new Recorder();
+        QueueEventBus bus = new QueueEventBus(CAPACITY, warnings::add);
+        bus.addListener(events -> {
+            throw new IllegalStateException("Failed on purpose");
+        });
+        bus.addListener(recorder);
+
+        bus.publish(QueueEvent.Type.CUSTOMER_SERVED, 1, 0, null, 0);
+        bus.close();
+
+        assertEquals(1, recorder.events.size());
+        assertEquals(recorder.batchCount, warnings.size());
+        assertTrue(warnings.get(0).startsWith("Queue event listener failed!"));
+    }
+}
@@ -0,0 +1,73 @@
+package com.github.abrarsl.courseworkclassversion;
+
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * A {@link QueueSlotList} shows copies of the slots taken under the lock of the {@link ShopEngine}, which stay
+ * readable after the engine has changed the queue, and are only replaced by {@link QueueSlotList#refresh()}.
+ */
+class QueueSlotListTest {
+    private static final int[] QUEUE_LAYOUT = {2, 3, 5};
+    private static final int WAITING_QUEUE_LENGTH = 5;
+
+    @ParameterizedTest(name = "compact = {0}")
+    @ValueSource(booleans = {false, true})
+    void slotsAreCopiesUntilRefreshed(boolean compact) throws Exception {
+        try (ShopEngine engine = newEngine(compact)) {
+            engine.addItemStock(20);
+            engine.addCustomer("Ada", "Lovelace", 1);
+            QueueSlotList slots = new QueueSlotList(engine, 0);
+            Customer shown = slots.get(0);
+
+            assertEquals(2, slots.size());
+            assertEquals("Ada Lovelace", shown.getFullName());
+            assertNotSame(engine.getQueues()[0].getCustomer(0), shown);
+
+            engine.serveCustomer(0);
+            slots.markChanged(0, 0);
+
+            assertEquals("Ada Lovelace", slots.get(0).getFullName(), "Copies stay valid after the customer left");
+
+            slots.refresh();
+
+            assertNull(slots.get(0));
+        }
+    }
+
+    @ParameterizedTest(name = "compact = {0}")
+    @ValueSource(booleans = {false, true})
+    void waitingQueueSlotsFollowTheQueue(boolean compact) throws Exception {
+        try (ShopEngine engine = newEngine(compact)) {
+            engine.addItemStock(20);
+
+            for (int i = 0; i < 12; i++) { // Ten places in the food queues, so two customers wait
+                engine.addCustomer("First" + i, "Last" + i, 1);
+            }
+
+            QueueSlotList slots = new QueueSlotList(engine, QueueEvent.WAITING_QUEUE);
+
+            assertEquals(WAITING_QUEUE_LENGTH, slots.size());
+            assertEquals("First10", slots.get(0).getFirstName());
+
+            engine.serveCustomer(0); // Promotes the first waiting customer
+            slots.markChanged(0, 1);
+            slots.refresh();
+
+            assertEquals("First11", slots.get(0).getFirstName());
+            assertNull(slots.get(1));
+        }
+    }
+
+    /**
+     * @param compact 'true' to keep the customers of each queue in a {@link CustomerStore}.
+     * @return An empty shop.
+     */
+    private static ShopEngine newEngine(boolean compact) {
+        return new ShopEngine(QUEUE_LAYOUT, WAITING_QUEUE_LENGTH, new ShopEngine.Options(false, compact, 0));
+    }
+}
@@ -0,0 +1,59 @@
+package com.github.abrarsl.courseworkclassversion;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Estimates come from the smoothed time between departures, timed only from when a {@link Customer} could have
+ * left, so time spent with an empty queue does not slow the estimate down.
+ */
+class QueueStatisticsTest {
+    private static final long SECOND = 1_000_000_000L;
+
+    @Test
+    void estimateIsUnknownUntilADepartureIsTimed() {
+        QueueStatistics statistics = new QueueStatistics();
+
+        assertEquals(-1, statistics.estimateWait(3));
+
+        statistics.recordDeparture(Customer.NOT_STAMPED, 10 * SECOND); // Restored from disk, nothing to time from
+
+        assertEquals(-1, statistics.estimateWait(3));
+        assertEquals(0, statistics.getDepartureCount());
+        assertEquals(0, statistics.getServiceRate(), 0);
+    }
+
+    @Test
+    void estimateScalesTheSmoothedIntervalByTheCustomersAhead() {
+        QueueStatistics statistics = new QueueStatistics();
+
+        statistics.recordDeparture(0, 10 * SECOND);
+
+        assertEquals(30 * SECOND, statistics.estimateWait(2));
+        assertEquals(6, statistics.getServiceRate(), 1e-9);
+
+        statistics.recordDeparture(5 * SECOND, 14 * SECOND); // Could only leave once the previous customer had
+
+        assertEquals(Math.round(0.2 * 4 * SECOND + 0.8 * 10 * SECOND), statistics.estimateWait(0));
+        assertEquals(2, statistics.getDepartureCount());
+    }
+
+    @Test
+    void timeWithAnEmptyQueueIsNotCounted() {
+        QueueStatistics statistics = new QueueStatistics();
+
+        statistics.recordDeparture(0, 2 * SECOND);
+        statistics.recordDeparture(100 * SECOND, 102 * SECOND); // Joined long after the previous departure
+
+        assertEquals(2 * SECOND, statistics.estimateWait(0));
+        assertEquals(2 * SECOND, statistics.getWaitPercentile(100), 0.01 * 2 * SECOND);
+    }
+
+    @Test
+    void durationsAreFormattedAsMinutesAndSeconds() {
+        assertEquals("unknown", QueueStatistics.formatDuration(-1));
+        assertEquals("5s", QueueStatistics.formatDuration(5 * SECOND));
+        assertEquals("2m 05s", QueueStatistics.formatDuration(125 * SECOND));
+    }
+}
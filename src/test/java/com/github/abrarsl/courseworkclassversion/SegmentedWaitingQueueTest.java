@@ -0,0 +1,99 @@
+package com.github.abrarsl.courseworkclassversion;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Spilled {@link Customer}s of a {@link SegmentedWaitingQueue} must still be found, read and served in order.
+ */
+class SegmentedWaitingQueueTest {
+    private static final int MEMORY_BUDGET = 2 * SegmentedWaitingQueue.SEGMENT_SIZE;
+    private static final int CUSTOMER_COUNT = 6 * SegmentedWaitingQueue.SEGMENT_SIZE;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void spilledCustomersAreFoundByTheSearchIndex() throws Exception {
+        try (SegmentedWaitingQueue waitingQueue = newFilledQueue()) {
+            CustomerSearchIndex searchIndex = new CustomerSearchIndex(new FoodQueue[0], waitingQueue);
+            int position = 3 * SegmentedWaitingQueue.SEGMENT_SIZE + 7; // In a spilled segment
+
+            List<CustomerSearchIndex.Hit> hits = searchIndex.search("Last" + position + "x");
+
+            assertTrue(waitingQueue.getSpilledSegmentCount() > 0);
+            assertEquals(1, hits.size());
+            assertEquals(-1, hits.get(0).queueNumber());
+            assertEquals(position, hits.get(0).position());
+            assertEquals("First" + position, hits.get(0).customer().getFirstName());
+        }
+    }
+
+    @Test
+    void spilledSegmentIsDecodedOnceForReadsInOrder() throws Exception {
+        try (SegmentedWaitingQueue waitingQueue = newFilledQueue()) {
+            int position = 3 * SegmentedWaitingQueue.SEGMENT_SIZE;
+            Customer first = waitingQueue.getCustomer(position);
+
+            assertSame(first, waitingQueue.getCustomer(position), "The decoded segment must be reused");
+            assertEquals("First" + (position + 1), waitingQueue.getCustomer(position + 1).getFirstName());
+
+            for (int i = 0; i < CUSTOMER_COUNT; i++) { // Reading back in must not use a stale decoded segment
+                assertEquals("First" + i, waitingQueue.dequeue().getFirstName());
+            }
+
+            assertTrue(waitingQueue.isQueueEmpty());
+        }
+    }
+
+    @Test
+    void spilledQueueIsWrittenToASnapshotWithoutACopy() throws Exception {
+        try (SegmentedWaitingQueue waitingQueue = newFilledQueue()) {
+            ItemStock itemStock = new ItemStock(50, 10);
+            FoodQueue[] queues = {new FoodQueue(2, itemStock)};
+            queues[0].addCustomer(new Customer("Ada", "Lovelace", 2));
+            Path streamedPath = this.directory.resolve("streamed.bin");
+            Path copiedPath = this.directory.resolve("copied.bin");
+
+            long streamedChecksum = BinarySnapshot.write(streamedPath, queues, waitingQueue, itemStock);
+            long copiedChecksum = BinarySnapshot.write(
+                    copiedPath,
+                    ProgramState.capture(queues, waitingQueue, itemStock)
+            );
+            Customer[] waitingCustomers = BinarySnapshot.read(streamedPath).waitingCustomers();
+
+            assertEquals(copiedChecksum, streamedChecksum);
+            assertTrue(Arrays.equals(Files.readAllBytes(copiedPath), Files.readAllBytes(streamedPath)));
+            assertEquals("First" + (CUSTOMER_COUNT - 1), waitingCustomers[CUSTOMER_COUNT - 1].getFirstName());
+        }
+    }
+
+    @Test
+    void concurrentModeRejectsTheUnboundedWaitingQueue() {
+        assertThrows(IllegalArgumentException.class, () -> new ShopEngine.Options(true, false, MEMORY_BUDGET));
+    }
+
+    /**
+     * @return A {@link SegmentedWaitingQueue} holding {@link SegmentedWaitingQueueTest#CUSTOMER_COUNT} customers,
+     * most of them spilled.
+     */
+    private static SegmentedWaitingQueue newFilledQueue() throws Exception {
+        SegmentedWaitingQueue waitingQueue = new SegmentedWaitingQueue(MEMORY_BUDGET);
+
+        for (int i = 0; i < CUSTOMER_COUNT; i++) {
+            waitingQueue.enqueue(new Customer("First" + i, "Last" + i + "x", 1)); // The suffix makes every name unique
+        }
+
+        return waitingQueue;
+    }
+}
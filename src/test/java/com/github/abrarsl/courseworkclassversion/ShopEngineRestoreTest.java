@@ -0,0 +1,82 @@
+package com.github.abrarsl.courseworkclassversion;
+
+import com.github.abrarsl.courseworkclassversion.exceptions.InvalidFileDataException;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Saved data that cannot be restored must survive the new journal and snapshots written after it.
+ */
+class ShopEngineRestoreTest {
+    private static final int[] QUEUE_LAYOUT = {2, 3, 5};
+    private static final int WAITING_QUEUE_LENGTH = 5;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void corruptSnapshotIsMovedAsideBeforeANewJournalIsOpened() throws Exception {
+        Path snapshotPath = this.directory.resolve("programState.bin");
+        Path journalPath = this.directory.resolve("programState.journal");
+
+        try (ShopEngine engine = newEngine()) {
+            engine.openJournal(snapshotPath, journalPath, true);
+            engine.addItemStock(20);
+            engine.addCustomer("Ada", "Lovelace", 3);
+        }
+
+        byte[] snapshot = Files.readAllBytes(snapshotPath);
+        snapshot[snapshot.length / 2] ^= 0x5A; // The checksum no longer matches
+        Files.write(snapshotPath, snapshot);
+        byte[] journal = Files.readAllBytes(journalPath);
+
+        try (ShopEngine engine = newEngine()) {
+            assertThrows(InvalidFileDataException.class, () -> engine.restore(snapshotPath, journalPath));
+
+            List<Path> movedPaths = ShopEngine.moveAside(snapshotPath, journalPath);
+            engine.openJournal(snapshotPath, journalPath, false);
+            engine.addItemStock(5);
+            engine.compactJournal(); // Writes a new snapshot and empties the journal
+
+            assertEquals(List.of(
+                    this.directory.resolve("programState.bin" + ShopEngine.CORRUPT_SUFFIX),
+                    this.directory.resolve("programState.journal" + ShopEngine.CORRUPT_SUFFIX)
+            ), movedPaths);
+            assertTrue(Arrays.equals(snapshot, Files.readAllBytes(movedPaths.get(0))));
+            assertTrue(Arrays.equals(journal, Files.readAllBytes(movedPaths.get(1))));
+        }
+    }
+
+    @Test
+    void moveAsideNeverReplacesEarlierFiles() throws Exception {
+        Path path = this.directory.resolve("programState.journal");
+
+        Files.writeString(path, "first");
+        Path first = ShopEngine.moveAside(path).get(0);
+        Files.writeString(path, "second");
+        Path second = ShopEngine.moveAside(path).get(0);
+
+        assertEquals("first", Files.readString(first));
+        assertEquals("second", Files.readString(second));
+        assertEquals(this.directory.resolve("programState.journal" + ShopEngine.CORRUPT_SUFFIX + ".1"), second);
+        assertFalse(Files.exists(path));
+        assertTrue(ShopEngine.moveAside(path).isEmpty(), "Missing files are skipped");
+    }
+
+    /**
+     * @return An empty shop with the default options.
+     */
+    private static ShopEngine newEngine() {
+        return new ShopEngine(QUEUE_LAYOUT, WAITING_QUEUE_LENGTH, ShopEngine.Options.DEFAULT);
+    }
+}
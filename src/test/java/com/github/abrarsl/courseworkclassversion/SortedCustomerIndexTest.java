@@ -0,0 +1,83 @@
+package com.github.abrarsl.courseworkclassversion;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Names are collated rather than compared as strings, so case and accents do not push a name out of its place, and
+ * the keys of a {@link Customer} do not depend on the default locale.
+ */
+class SortedCustomerIndexTest {
+    @Test
+    void namesAreSortedIgnoringCaseAndAccentsWithTiesInTheOrderAdded() {
+        SortedCustomerIndex index = new SortedCustomerIndex();
+        Map<Long, Customer> customers = new HashMap<>();
+        List<Customer> added = List.of(
+                new Customer("Zoe", "Ada", 1),
+                new Customer("Édouard", "Lucas", 2),
+                new Customer("alan", "turing", 1),
+                new Customer("Grace", "Hopper", 3),
+                new Customer("Edsger", "Dijkstra", 1),
+                new Customer("Ada", "Lovelace", 2),
+                new Customer("Grace", "Hopper", 1)
+        );
+
+        for (Customer customer : added) {
+            customers.put(customer.getId(), customer);
+            index.add(customer);
+        }
+
+        assertEquals(
+                List.of("Ada Lovelace", "alan turing", "Édouard Lucas", "Edsger Dijkstra", "Grace Hopper",
+                        "Grace Hopper", "Zoe Ada"),
+                index.ids().mapToObj(id -> customers.get(id).getFullName()).toList()
+        );
+        assertEquals(
+                List.of(added.get(3), added.get(6)),
+                index.ids()
+                        .mapToObj(customers::get)
+                        .filter(customer -> customer.getLastName().equals("Hopper"))
+                        .toList()
+        );
+        assertEquals(6, index.getNameCount());
+    }
+
+    @Test
+    void removeMatchesByIdAmongSharedNames() {
+        SortedCustomerIndex index = new SortedCustomerIndex();
+        Customer first = new Customer("Grace", "Hopper", 3);
+        Customer second = new Customer("Grace", "Hopper", 1);
+
+        index.add(first);
+        index.add(second);
+
+        assertTrue(index.remove(first));
+        assertFalse(index.remove(first), "A customer must only be removed once");
+        assertEquals(List.of(second.getId()), index.ids().boxed().toList());
+        assertTrue(index.remove(second));
+        assertEquals(0, index.getNameCount());
+    }
+
+    @Test
+    void searchKeysDoNotDependOnTheDefaultLocale() {
+        Locale defaultLocale = Locale.getDefault();
+
+        try {
+            Locale.setDefault(Locale.forLanguageTag("tr"));
+
+            assertEquals("title", Customer.toSearchKey("TITLE"), "Turkish would lower 'I' to a dotless i");
+            assertEquals("strasse ince", new Customer("Straße", "INCE", 1).getSearchKey());
+            assertEquals(Customer.toSearchKey("STRASSE"), Customer.toSearchKey("straße"));
+        } finally {
+            Locale.setDefault(defaultLocale);
+        }
+    }
+}
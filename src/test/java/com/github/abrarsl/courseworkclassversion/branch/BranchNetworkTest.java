@@ -0,0 +1,106 @@
+package com.github.abrarsl.courseworkclassversion.branch;
+
+import com.github.abrarsl.courseworkclassversion.ShopEngine;
+import com.github.abrarsl.courseworkclassversion.exceptions.SelectionOutOfRangeException;
+import com.github.abrarsl.courseworkclassversion.server.ShopOperations;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+
+import java.util.List;
+import java.util.concurrent.CompletionException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Work is routed to the one thread of its branch, branches share no state, and reports fan out to every branch and
+ * merge the parts in order.
+ */
+@Timeout(30)
+class BranchNetworkTest {
+    private static final int[] QUEUE_LAYOUT = {2, 3, 5};
+    private static final int WAITING_QUEUE_LENGTH = 5;
+
+    @Test
+    void workForABranchRunsOnItsOwnThreadOnly() throws Exception {
+        try (BranchNetwork network = newNetwork(3)) {
+            String firstThread = network.submit(1, engine -> Thread.currentThread().getName()).join();
+            String secondThread = network.submit(1, engine -> Thread.currentThread().getName()).join();
+            String otherThread = network.submit(2, engine -> Thread.currentThread().getName()).join();
+
+            assertEquals(firstThread, secondThread, "A branch must always run on the same thread");
+            assertNotEquals(firstThread, otherThread);
+            assertNotEquals(Thread.currentThread().getName(), firstThread);
+            assertThrows(SelectionOutOfRangeException.class, () -> network.submit(3, ShopEngine::getItemStock));
+            assertThrows(SelectionOutOfRangeException.class, () -> network.getBranch(-1));
+        }
+    }
+
+    @Test
+    void branchesKeepTheirOwnQueuesAndStock() throws Exception {
+        try (BranchNetwork network = newNetwork(3)) {
+            ShopOperations first = network.getBranch(0);
+            ShopOperations second = network.getBranch(1);
+
+            first.addItemStock(10);
+            second.addItemStock(20);
+            first.addCustomer("Ada", "Lovelace", 2);
+            first.serveCustomer(0);
+
+            assertEquals(8, first.getItemStock());
+            assertEquals(20, second.getItemStock());
+            assertEquals(0, network.getBranch(2).getItemStock());
+            assertEquals(28, network.getTotalItemStock());
+            assertEquals(first.getQueueIncome(0), network.getTotalIncome());
+            assertEquals(List.of(8, 20, 0), network.queryAll(ShopEngine::getItemStock));
+        }
+    }
+
+    @Test
+    void queryAllAnswersInBranchOrderAndPassesOnFailures() {
+        try (BranchNetwork network = newNetwork(4)) {
+            assertEquals(
+                    List.of("branch-0", "branch-1", "branch-2", "branch-3"),
+                    network.queryAll(engine -> Thread.currentThread().getName())
+            );
+
+            CompletionException exception = assertThrows(CompletionException.class, () -> network.queryAll(engine -> {
+                throw new IllegalStateException("Failed on purpose");
+            }));
+
+            assertTrue(exception.getCause() instanceof IllegalStateException);
+        }
+    }
+
+    @Test
+    void sortedCustomersAreMergedAcrossBranchesWithTiesInBranchOrder() throws Exception {
+        try (BranchNetwork network = newNetwork(3)) {
+            network.getBranch(2).addCustomer("Grace", "Hopper", 1);
+            network.getBranch(0).addCustomer("Grace", "Hopper", 2);
+            network.getBranch(1).addCustomer("alan", "turing", 1);
+            network.getBranch(0).addCustomer("Edsger", "Dijkstra", 1);
+            network.getBranch(2).addCustomer("Ada", "Lovelace", 3);
+
+            List<BranchCustomer> customers = network.getSortedCustomers();
+
+            assertEquals(
+                    List.of("Ada Lovelace", "alan turing", "Edsger Dijkstra", "Grace Hopper", "Grace Hopper"),
+                    customers.stream().map(customer -> customer.customer().getFullName()).toList()
+            );
+            assertEquals(
+                    List.of(2, 1, 0, 0, 2),
+                    customers.stream().map(BranchCustomer::branchId).toList()
+            );
+        }
+    }
+
+    /**
+     * @param branchCount The number of branches.
+     * @return Empty branches with the default options.
+     */
+    private static BranchNetwork newNetwork(int branchCount) {
+        return new BranchNetwork(branchCount, QUEUE_LAYOUT, WAITING_QUEUE_LENGTH, ShopEngine.Options.DEFAULT);
+    }
+}
@@ -0,0 +1,68 @@
+package com.github.abrarsl.courseworkclassversion.metrics;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Small values get a bucket each, larger values share buckets that are never more than 1% wide, and a percentile is
+ * reported as the top of its bucket so it is never understated.
+ */
+class LatencyHistogramTest {
+    @Test
+    void valuesBelowTheFirstPowerOfTwoAreExact() {
+        LatencyHistogram histogram = new LatencyHistogram();
+
+        for (int value = 0; value < 128; value++) {
+            histogram.record(value);
+        }
+
+        assertEquals(128, histogram.getCount());
+        assertEquals(63, histogram.getPercentile(50));
+        assertEquals(126, histogram.getPercentile(99));
+        assertEquals(127, histogram.getPercentile(100));
+        assertEquals(63.5, histogram.getMean(), 1e-9);
+    }
+
+    @Test
+    void largerValuesAreWithinOnePercent() {
+        long[] values = {128, 129, 1_000, 12_345, 999_999, 1_000_000, 987_654_321, 60_000_000_000L};
+
+        for (long value : values) {
+            LatencyHistogram histogram = new LatencyHistogram();
+            histogram.record(value);
+            histogram.record(value * 10); // Keeps the max from hiding the bucket of the value
+
+            long percentile = histogram.getPercentile(50);
+
+            assertTrue(percentile >= value, String.format("%d must not be understated as %d", value, percentile));
+            assertTrue(percentile <= value * 1.01, String.format("%d must be within 1%%, was %d", value, percentile));
+        }
+    }
+
+    @Test
+    void valuesBeyondTheLastBucketAreReportedAsTheMax() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        long huge = Long.MAX_VALUE / 4;
+
+        histogram.record(huge);
+        histogram.record(huge / 2);
+
+        assertEquals(huge, histogram.getMax());
+        assertEquals(huge, histogram.getPercentile(50), "The last bucket holds every larger value");
+        assertEquals(0, new LatencyHistogram().getPercentile(50), "An empty histogram has no percentile");
+    }
+
+    @Test
+    void resetClearsEveryValue() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(5_000);
+        histogram.reset();
+        histogram.record(7);
+
+        assertEquals(1, histogram.getCount());
+        assertEquals(7, histogram.getMax());
+        assertEquals(7, histogram.getPercentile(100));
+    }
+}
@@ -0,0 +1,173 @@
+package com.github.abrarsl.courseworkclassversion.server;
+
+import com.github.abrarsl.courseworkclassversion.Customer;
+import com.github.abrarsl.courseworkclassversion.CustomerSearchIndex;
+import com.github.abrarsl.courseworkclassversion.exceptions.CustomerNotFoundException;
+import com.github.abrarsl.courseworkclassversion.exceptions.FullQueueException;
+import com.github.abrarsl.courseworkclassversion.exceptions.InsufficientStockException;
+import com.github.abrarsl.courseworkclassversion.exceptions.SelectionOutOfRangeException;
+import com.github.abrarsl.courseworkclassversion.exceptions.StockOutOfRangeException;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * Requests are parsed field by field and every failure is answered with ERR and a message, never an exception.
+ */
+class OrderProtocolTest {
+    /**
+     * A shop with three queues that answers with fixed values and records what it was asked.
+     */
+    private static final class FakeShop implements ShopOperations {
+        private static final int QUEUE_COUNT = 3;
+        private String addedName;
+        private String searchTerm;
+        private boolean full;
+
+        @Override
+        public int addCustomer(String firstName, String lastName, int burgersRequired) throws FullQueueException {
+            if (this.full) {
+                throw new FullQueueException();
+            }
+
+            this.addedName = firstName + " " + lastName + " " + burgersRequired;
+            return 1;
+        }
+
+        @Override
+        public long estimateWait(int queueNumber) {
+            return 1000L * (queueNumber + 2);
+        }
+
+        @Override
+        public Customer serveCustomer(int queueNumber)
+                throws SelectionOutOfRangeException, CustomerNotFoundException, InsufficientStockException {
+            checkQueueNumber(queueNumber);
+
+            if (queueNumber == 2) {
+                throw new InsufficientStockException("4");
+            }
+
+            return new Customer("Ada", "Lovelace", 3);
+        }
+
+        @Override
+        public Customer removeCustomer(int queueNumber, int position)
+                throws SelectionOutOfRangeException, CustomerNotFoundException {
+            checkQueueNumber(queueNumber);
+
+            if (position > 0) {
+                throw new CustomerNotFoundException();
+            }
+
+            return new Customer("Alan", "Turing", 1);
+        }
+
+        @Override
+        public List<CustomerSearchIndex.Hit> search(String searchTerm) {
+            this.searchTerm = searchTerm;
+            return List.of(
+                    new CustomerSearchIndex.Hit(0, 1, new Customer("Grace", "Hopper", 2)),
+                    new CustomerSearchIndex.Hit(-1, 0, new Customer("Grace", "Murray", 1))
+            );
+        }
+
+        @Override
+        public int getItemStock() {
+            return 20;
+        }
+
+        @Override
+        public int addItemStock(int amount) throws StockOutOfRangeException {
+            if (amount > 30) {
+                throw new StockOutOfRangeException("Range is 0 to 50.");
+            }
+
+            return 20 + amount;
+        }
+
+        @Override
+        public int getQueueCount() {
+            return QUEUE_COUNT;
+        }
+
+        @Override
+        public int getQueueIncome(int queueNumber) throws SelectionOutOfRangeException {
+            checkQueueNumber(queueNumber);
+            return 650 * (queueNumber + 1);
+        }
+
+        /**
+         * @param queueNumber The number of a queue.
+         * @throws SelectionOutOfRangeException If there is no queue with that number.
+         */
+        private static void checkQueueNumber(int queueNumber) throws SelectionOutOfRangeException {
+            if (queueNumber < 0 || queueNumber >= QUEUE_COUNT) {
+                throw new SelectionOutOfRangeException("Range is 0 to 2.");
+            }
+        }
+    }
+
+    @Test
+    void addStripsTheFieldsAndAnswersWithTheQueueAndTheEstimate() {
+        FakeShop shop = new FakeShop();
+
+        assertEquals("OK,1,3000\n", OrderProtocol.handle(shop, " add , Ada ,Lovelace, 3 "));
+        assertEquals("Ada Lovelace 3", shop.addedName);
+
+        shop.full = true;
+
+        assertEquals("ERR,All queues full! Customer could not be added!\n", OrderProtocol.handle(shop, "ADD,A,B,1"));
+    }
+
+    @Test
+    void malformedRequestsAreRejected() {
+        FakeShop shop = new FakeShop();
+
+        assertEquals("ERR,Expected 4 fields but found 3!\n", OrderProtocol.handle(shop, "ADD,Ada,3"));
+        assertEquals("ERR,'x' is not a number!\n", OrderProtocol.handle(shop, "SERVE,x"));
+        assertEquals("ERR,Expected 2 fields but found 3!\n", OrderProtocol.handle(shop, "SERVE,0,1"));
+        assertEquals("ERR,Unknown command 'ORDER'!\n", OrderProtocol.handle(shop, "order,1"));
+        assertEquals("ERR,Expected a search term!\n", OrderProtocol.handle(shop, "SEARCH"));
+        assertNull(shop.addedName, "A rejected request must not reach the shop");
+    }
+
+    @Test
+    void failuresOfTheShopAreAnsweredWithTheirReason() {
+        FakeShop shop = new FakeShop();
+
+        assertEquals("OK,Ada,Lovelace,3\n", OrderProtocol.handle(shop, "SERVE,0"));
+        assertEquals("ERR,Range is 0 to 2.\n", OrderProtocol.handle(shop, "SERVE,3"));
+        assertEquals(
+                "ERR,Insufficient stock level! Customer requires 4 items!\n",
+                OrderProtocol.handle(shop, "SERVE,2")
+        );
+        assertEquals("OK,Alan,Turing,1\n", OrderProtocol.handle(shop, "REMOVE,1,0"));
+        assertEquals("ERR,No customer found in that position!\n", OrderProtocol.handle(shop, "REMOVE,1,2"));
+        assertEquals("ERR,Range is 0 to 50.\n", OrderProtocol.handle(shop, "RESTOCK,31"));
+    }
+
+    @Test
+    void searchKeepsDelimitersInTheTermAndAnswersOneLinePerMatch() {
+        FakeShop shop = new FakeShop();
+
+        String response = OrderProtocol.handle(shop, "SEARCH,Grace,H");
+
+        assertEquals("Grace,H", shop.searchTerm);
+        assertEquals("OK,2\n0,1,Grace,Hopper,2\n-1,0,Grace,Murray,1\n", response);
+    }
+
+    @Test
+    void stockAndIncomeAreReported() {
+        FakeShop shop = new FakeShop();
+
+        assertEquals("OK,20\n", OrderProtocol.handle(shop, "STOCK"));
+        assertEquals("OK,25\n", OrderProtocol.handle(shop, "RESTOCK,5"));
+        assertEquals("OK,650,1300,1950\n", OrderProtocol.handle(shop, "INCOME"));
+        assertEquals("OK,1300\n", OrderProtocol.handle(shop, "INCOME,1"));
+        assertEquals("OK\n", OrderProtocol.handle(shop, "QUIT"));
+    }
+}
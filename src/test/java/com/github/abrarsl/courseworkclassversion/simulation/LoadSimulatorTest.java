@@ -0,0 +1,60 @@
+package com.github.abrarsl.courseworkclassversion.simulation;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * A simulation is driven only by its seed, so a run can be repeated exactly, and every customer that arrives must
+ * leave the shop one way or another.
+ */
+class LoadSimulatorTest {
+    @Test
+    void sameSeedRepeatsTheRun() {
+        SimulationConfig config = newConfig(42);
+
+        assertEquals(new LoadSimulator(config).run(), new LoadSimulator(config).run());
+    }
+
+    @Test
+    void differentSeedsGiveDifferentRuns() {
+        SimulationResult first = new LoadSimulator(newConfig(42)).run();
+        SimulationResult second = new LoadSimulator(newConfig(43)).run();
+
+        assertNotEquals(first.eventCount(), second.eventCount());
+    }
+
+    @Test
+    void everyArrivalIsServedRejectedOrLeaves() {
+        SimulationResult result = new LoadSimulator(newConfig(7)).run();
+
+        assertTrue(result.rejected() > 0 && result.abandoned() > 0, "The load must overflow the queues");
+        assertEquals(result.arrivals(), result.served() + result.rejected() + result.abandoned());
+        assertTrue(result.elapsedTime() >= result.config().duration() * 0.99, "The shop must run until it is empty");
+        assertTrue(result.waitP50() <= result.waitP90() && result.waitP90() <= result.waitP99());
+        assertTrue(result.waitP99() <= result.waitMax());
+    }
+
+    /**
+     * @param seed The seed of the run.
+     * @return A busy shop, with more arrivals than the queues can serve, that restocks itself.
+     */
+    static SimulationConfig newConfig(long seed) {
+        return new SimulationConfig(
+                new int[]{2, 3, 5},
+                5,
+                3.0,
+                2.0,
+                5,
+                3,
+                50,
+                10,
+                40,
+                5,
+                2_000,
+                seed
+        );
+    }
+}
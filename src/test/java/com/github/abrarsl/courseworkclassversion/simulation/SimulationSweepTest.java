@@ -0,0 +1,57 @@
+package com.github.abrarsl.courseworkclassversion.simulation;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Scenarios run in parallel share nothing, so a sweep must give the same results as running each scenario alone.
+ */
+class SimulationSweepTest {
+    @Test
+    void parallelSweepMatchesRunningEachScenarioAlone() {
+        List<SimulationConfig> configs = SimulationSweep.grid(
+                LoadSimulatorTest.newConfig(42),
+                List.of(new int[]{2, 3, 5}, new int[]{3, 3, 4}, new int[]{5, 5}),
+                new int[]{3, 8},
+                new int[]{5, 15},
+                new int[]{20, 50}
+        );
+        List<SimulationResult> expected = new ArrayList<>();
+
+        for (SimulationConfig config : configs) {
+            expected.add(new LoadSimulator(config).run());
+        }
+
+        expected.sort(SimulationResult.BEST_FIRST);
+        ForkJoinPool pool = new ForkJoinPool(4);
+
+        try {
+            assertEquals(expected, new SimulationSweep(pool).run(configs));
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    void gridSkipsThresholdsNotBelowTheMaximumStock() {
+        List<SimulationConfig> configs = SimulationSweep.grid(
+                LoadSimulatorTest.newConfig(42),
+                List.of(new int[]{2, 3, 5}),
+                new int[]{5},
+                new int[]{10, 30},
+                new int[]{20, 50}
+        );
+
+        assertEquals(3, configs.size());
+
+        for (SimulationConfig config : configs) {
+            assertTrue(config.warnThreshold() < config.maxStock());
+        }
+    }
+}